@@ -45,20 +45,51 @@ import com.foundationdb.sql.StandardException;
 import com.foundationdb.sql.types.DataTypeDescriptor;
 import com.foundationdb.sql.types.TypeId;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
 /** Perform normalization such as CNF on boolean expressions. */
 public class BooleanNormalizer implements Visitor
 {
     public static final int NOT_IN_AND_LIMIT = 100;
+    public static final int DEFAULT_EXPANSION_BUDGET = 10 * NOT_IN_AND_LIMIT;
 
     SQLParserContext parserContext;
     NodeFactory nodeFactory;
+    private int expansionBudget = DEFAULT_EXPANSION_BUDGET;
+    private int expansionUsed;
+    private boolean budgetExceeded;
+
     public BooleanNormalizer(SQLParserContext parserContext) {
         this.parserContext = parserContext;
         this.nodeFactory = parserContext.getNodeFactory();
     }
 
+    /**
+     * Get the most comparisons that expanding NOT IN lists may add
+     * to a single boolean expression.
+     */
+    public int getExpansionBudget() {
+        return expansionBudget;
+    }
+
+    public void setExpansionBudget(int expansionBudget) {
+        this.expansionBudget = expansionBudget;
+    }
+
+    /**
+     * Was something left unexpanded during the last {@link #normalize}
+     * because the expansion budget would have been exceeded?
+     */
+    public boolean isBudgetExceeded() {
+        return budgetExceeded;
+    }
+
     /** Normalize conditions anywhere in this statement. */
     public StatementNode normalize(StatementNode stmt) throws StandardException {
+        budgetExceeded = false;
         return (StatementNode)stmt.accept(this);
     }
 
@@ -87,6 +118,7 @@ public class BooleanNormalizer implements Visitor
          *  o Finish the job (changeToCNF())
          */
         if (boolClause != null) {
+            expansionUsed = 0;
             boolClause = eliminateNots(boolClause, false);
             assert verifyEliminateNots(boolClause);
             boolClause = putAndsOnTop(boolClause);
@@ -123,28 +155,7 @@ public class BooleanNormalizer implements Visitor
             }
         case NodeTypes.AND_NODE:
         case NodeTypes.OR_NODE:
-            {
-                BinaryLogicalOperatorNode bnode = (BinaryLogicalOperatorNode)node;
-                ValueNode leftOperand = bnode.getLeftOperand();
-                ValueNode rightOperand = bnode.getRightOperand();
-                leftOperand = eliminateNots(leftOperand, underNotNode);
-                rightOperand = eliminateNots(rightOperand, underNotNode);
-                if (underNotNode) {
-                    /* Convert AND to OR and vice versa. */
-                    BinaryLogicalOperatorNode cnode = (BinaryLogicalOperatorNode)
-                        nodeFactory.getNode((node.getNodeType() == NodeTypes.AND_NODE) ?
-                                            NodeTypes.OR_NODE : NodeTypes.AND_NODE,
-                                            leftOperand, rightOperand,
-                                            parserContext);
-                    cnode.setType(bnode.getType());
-                    return cnode;
-                }
-                else {
-                    bnode.setLeftOperand(leftOperand);
-                    bnode.setRightOperand(rightOperand);
-                }
-            }
-            break;
+            return eliminateNotsChain((BinaryLogicalOperatorNode)node, underNotNode);
         case NodeTypes.CONDITIONAL_NODE:
             {
                 ConditionalNode conditionalNode = (ConditionalNode)node;
@@ -276,20 +287,20 @@ public class BooleanNormalizer implements Visitor
                 boolean orNullable = false;
                 if ((leftType != null) && (right0Type != null)) {
                     boolean nullable = leftType.isNullable() || right0Type.isNullable();
-                    DataTypeDescriptor leftBCType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, 
-                                                                           nullable);
+                    DataTypeDescriptor leftBCType = DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, 
+                                                                               nullable);
                     leftBCO.setType(leftBCType);
                     orNullable = nullable;
                 }
                 if ((leftType != null) && (right1Type != null)) {
                     boolean nullable = leftType.isNullable() || right1Type.isNullable();
-                    DataTypeDescriptor rightBCType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, 
-                                                                            nullable);
+                    DataTypeDescriptor rightBCType = DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, 
+                                                                                nullable);
                     rightBCO.setType(rightBCType);
                     orNullable |= nullable;
                 }
                 if ((leftType != null) && (right0Type != null) && (right1Type != null))
-                    newOr.setType(new DataTypeDescriptor(TypeId.BOOLEAN_ID, orNullable));
+                    newOr.setType(DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, orNullable));
                 return newOr;
             }
             break;
@@ -399,6 +410,79 @@ public class BooleanNormalizer implements Visitor
         return node;
     }
 
+    /** Where {@link #eliminateNotsChain} is in one AND or OR node. */
+    static class ChainFrame {
+        BinaryLogicalOperatorNode bnode;
+        ValueNode leftOperand, rightOperand;
+        boolean leftDone;
+
+        ChainFrame(BinaryLogicalOperatorNode bnode) {
+            this.bnode = bnode;
+        }
+
+        ValueNode nextOperand() {
+            return (leftDone) ? bnode.getRightOperand() : bnode.getLeftOperand();
+        }
+
+        void setOperand(ValueNode operand) {
+            if (!leftDone) {
+                leftOperand = operand;
+                leftDone = true;
+            }
+            else
+                rightOperand = operand;
+        }
+
+        boolean isDone() {
+            return (rightOperand != null);
+        }
+    }
+
+    /**
+     * Eliminate NOTs in a run of ANDs or ORs, left to right as if
+     * recursing, but using a stack of our own, since generated
+     * conditions can run to many thousands of terms.
+     */
+    protected ValueNode eliminateNotsChain(BinaryLogicalOperatorNode node, 
+                                           boolean underNotNode)
+            throws StandardException {
+        int nodeType = node.getNodeType();
+        Deque<ChainFrame> stack = new ArrayDeque<ChainFrame>();
+        stack.push(new ChainFrame(node));
+        while (true) {
+            ChainFrame frame = stack.peek();
+            if (!frame.isDone()) {
+                ValueNode operand = frame.nextOperand();
+                if (operand.getNodeType() == nodeType)
+                    stack.push(new ChainFrame((BinaryLogicalOperatorNode)operand));
+                else
+                    frame.setOperand(eliminateNots(operand, underNotNode));
+                continue;
+            }
+            stack.pop();
+            BinaryLogicalOperatorNode bnode = frame.bnode;
+            ValueNode result;
+            if (underNotNode) {
+                /* Convert AND to OR and vice versa. */
+                BinaryLogicalOperatorNode cnode = (BinaryLogicalOperatorNode)
+                    nodeFactory.getNode((nodeType == NodeTypes.AND_NODE) ?
+                                        NodeTypes.OR_NODE : NodeTypes.AND_NODE,
+                                        frame.leftOperand, frame.rightOperand,
+                                        parserContext);
+                cnode.setType(bnode.getType());
+                result = cnode;
+            }
+            else {
+                bnode.setLeftOperand(frame.leftOperand);
+                bnode.setRightOperand(frame.rightOperand);
+                result = bnode;
+            }
+            if (stack.isEmpty())
+                return result;
+            stack.peek().setOperand(result);
+        }
+    }
+
     protected ValueNode getNotEqual(ValueNode left, ValueNode right) throws StandardException
     {
         if (left instanceof RowConstructorNode)
@@ -451,6 +535,14 @@ public class BooleanNormalizer implements Visitor
             return node;
         }
         RowConstructorNode leftList = node.getLeftOperand();
+        int cost = rightList.getNodeList().size() * 
+            Math.max(leftList.getNodeList().size(), 1);
+        if (expansionUsed + cost > expansionBudget) {
+            budgetExceeded = true;
+            node.setNegated(true);
+            return node;
+        }
+        expansionUsed += cost;
         ValueNode result = null;
         
         boolean nested = leftList.getDepth() >  0;
@@ -483,8 +575,8 @@ public class BooleanNormalizer implements Visitor
         return (ValueNode)
             nodeFactory.getNode(NodeTypes.CAST_NODE,
                                 node,
-                                new DataTypeDescriptor(TypeId.BOOLEAN_ID, 
-                                                       node.getType().isNullable()),
+                                DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, 
+                                                           node.getType().isNullable()),
                                 parserContext);
     }
 
@@ -500,8 +592,8 @@ public class BooleanNormalizer implements Visitor
                                 parserContext);
         if (node.getType() != null) {
             boolean nullableResult = node.getType().isNullable();
-            equalsNode.setType(new DataTypeDescriptor(TypeId.BOOLEAN_ID,
-                                                      nullableResult));
+            equalsNode.setType(DataTypeDescriptor.getType(TypeId.BOOLEAN_ID,
+                                                          nullableResult));
         }
         return equalsNode;
     }
@@ -559,8 +651,8 @@ public class BooleanNormalizer implements Visitor
                                                                parserContext);
                 if (node.getType() != null) {
                     boolean nullableResult = node.getType().isNullable();
-                    andNode.setType(new DataTypeDescriptor(TypeId.BOOLEAN_ID,
-                                                           nullableResult));
+                    andNode.setType(DataTypeDescriptor.getType(TypeId.BOOLEAN_ID,
+                                                               nullableResult));
                 }
                 return andNode;
             }
@@ -618,165 +710,93 @@ public class BooleanNormalizer implements Visitor
             throws StandardException {
         switch (node.getNodeType()) {
         case NodeTypes.AND_NODE:
-            {
-                AndNode andNode = (AndNode)node;
-                ValueNode leftOperand = andNode.getLeftOperand();
-                ValueNode rightOperand = andNode.getRightOperand();
-
-                /* Top chain will be a chain of Ands terminated by a non-AndNode.
-                 * (putAndsOnTop() has taken care of this. If the last node in
-                 * the chain is not a true BooleanConstantNode then we need to do the
-                 * transformation to make it so.
-                 */
-
-                /* Add the true BooleanConstantNode if not there yet */
-                if (!(rightOperand instanceof AndNode) &&
-                        !(rightOperand.isBooleanTrue())) {
-                    BooleanConstantNode trueNode = (BooleanConstantNode) 
-                        nodeFactory.getNode(NodeTypes.BOOLEAN_CONSTANT_NODE,
-                                            Boolean.TRUE,
-                                            parserContext);
-                    AndNode newRight = (AndNode)nodeFactory.getNode(NodeTypes.AND_NODE,
-                                                                    rightOperand, trueNode,
-                                                                    parserContext);
-                    newRight.setType(rightOperand.getType());
-                    rightOperand = newRight;
-                }
-
-                /* If leftOperand is an AndNode, then we modify the tree from:
-                 *
-                 *                              And1
-                 *                           /      \
-                 *                      And2        Nodex
-                 *                   /      \                ...
-                 *              left2        right2
-                 *
-                 *      to:
-                 *
-                 *                                              And1
-                 *                                           /      \
-                 *       changeToCNF(left2)          And2
-                 *                                                      /        \
-                 *               changeToCNF(right2)            changeToCNF(Nodex)
-                 *
-                 *  NOTE: We could easily switch places between changeToCNF(left2) and 
-                 *  changeToCNF(right2).
-                 */
-
-                /* Pull up the AndNode chain to our left */
-                while (leftOperand instanceof AndNode) {
-                    AndNode oldLeft = (AndNode)leftOperand;
-                    ValueNode oldRight = rightOperand;
-                    ValueNode newLeft = oldLeft.getLeftOperand();
-                    AndNode newRight = oldLeft;
-                    
-                    /* We then twiddle the tree to match the above diagram */
-                    leftOperand = newLeft;
-                    rightOperand = newRight;
-                    newRight.setLeftOperand(oldLeft.getRightOperand());
-                    newRight.setRightOperand(oldRight);
-                }
-                
-                /* We then twiddle the tree to match the above diagram */
-                leftOperand = changeToCNF(leftOperand, underTopAndNode);
-                rightOperand = changeToCNF(rightOperand, underTopAndNode);
-                
-                andNode.setLeftOperand(leftOperand);
-                andNode.setRightOperand(rightOperand);
-            }
-            break;
+            /* The top chain will be a chain of Ands terminated by a true
+             * BooleanConstantNode, with the same operands in the same order.
+             */
+            return changeToCNFChain((BinaryLogicalOperatorNode)node, 
+                                    underTopAndNode, Boolean.TRUE);
         case NodeTypes.OR_NODE:
-            {
-                OrNode orNode = (OrNode)node;
-                ValueNode leftOperand = orNode.getLeftOperand();
-                ValueNode rightOperand = orNode.getRightOperand();
-
-                /* If rightOperand is an AndNode, then we must generate an 
-                 * OrNode above it.
-                 */
-                if (rightOperand instanceof AndNode) {
-                    BooleanConstantNode falseNode = (BooleanConstantNode) 
-                        nodeFactory.getNode(NodeTypes.BOOLEAN_CONSTANT_NODE,
-                                            Boolean.FALSE,
-                                            parserContext);
-                    OrNode newRight = (OrNode)nodeFactory.getNode(NodeTypes.OR_NODE,
-                                                                  rightOperand, falseNode,
-                                                                  parserContext);
-                    newRight.setType(rightOperand.getType());
-                    rightOperand = newRight;
-                    orNode.setRightOperand(rightOperand);
-                }
-                
-                /* We need to ensure that the right chain is terminated by
-                 * a false BooleanConstantNode.
-                 */
-                while (rightOperand instanceof OrNode) {
-                    orNode = (OrNode)orNode.getRightOperand();
-                    rightOperand = orNode.getRightOperand();
-                }
-
-                /* Add the false BooleanConstantNode if not there yet */
-                if (!rightOperand.isBooleanFalse()) {
-                    BooleanConstantNode falseNode = (BooleanConstantNode) 
-                        nodeFactory.getNode(NodeTypes.BOOLEAN_CONSTANT_NODE,
-                                            Boolean.FALSE,
-                                            parserContext);
-                    OrNode newRight = (OrNode)nodeFactory.getNode(NodeTypes.OR_NODE,
-                                                                  rightOperand, 
-                                                                  falseNode,
-                                                                  parserContext);
-                    newRight.setType(rightOperand.getType());
-                    orNode.setRightOperand(newRight);
-                }
+            /* Likewise a chain of Ors terminated by a false BooleanConstantNode.
+             * An AndNode operand just gets normalized in place.
+             */
+            return changeToCNFChain((BinaryLogicalOperatorNode)node, 
+                                    false, Boolean.FALSE);
 
-                orNode = (OrNode)node;
-                rightOperand = orNode.getRightOperand();
-
-                /* If leftOperand is an OrNode, then we modify the tree from:
-                 *
-                 *                              Or1 
-                 *                           /      \
-                 *                      Or2              Nodex
-                 *                   /      \                ...
-                 *              left2        right2
-                 *
-                 *      to:
-                 *
-                 *                                              Or1 
-                 *                                           /      \
-                 *       changeToCNF(left2)          Or2
-                 *                                                      /        \
-                 *               changeToCNF(right2)            changeToCNF(Nodex)
-                 *
-                 *  NOTE: We could easily switch places between changeToCNF(left2) and 
-                 *  changeToCNF(right2).
-                 */
+            // TODO: subquery node to pick up underTopAndNode for flattening.
+            // BinaryComparisonOperatorNode for that case.
 
-                while (leftOperand instanceof OrNode) {
-                    OrNode oldLeft = (OrNode)leftOperand;
-                    ValueNode oldRight = rightOperand;
-                    ValueNode newLeft = oldLeft.getLeftOperand();
-                    OrNode newRight = oldLeft;
-
-                    /* We then twiddle the tree to match the above diagram */
-                    leftOperand = newLeft;
-                    rightOperand = newRight;
-                    newRight.setLeftOperand(oldLeft.getRightOperand());
-                    newRight.setRightOperand(oldRight);
-                }
+        }
+        return node;
+    }
 
-                /* Finally, we continue to normalize the left and right subtrees. */
-                leftOperand = changeToCNF(leftOperand, false);
-                rightOperand = changeToCNF(rightOperand, false);
-                
-                orNode.setLeftOperand(leftOperand);
-                orNode.setRightOperand(rightOperand);
+    /**
+     * Rearrange a tree of AndNodes or of OrNodes into a chain linked
+     * to the right and terminated by the given constant, and
+     * normalize the operands.
+     * <p>
+     * The operands are collected in order once, and the same logical
+     * nodes relinked, so that this is linear in the length of the chain
+     * and does not recurse along it. Rotating one node at a time and
+     * finding the end of the chain again for each was quadratic, and
+     * ran out of stack on generated conditions with many thousand terms.
+     *
+     * @param node The top AndNode or OrNode.
+     * @param underTopAndNode Whether or not operands are under a top level AndNode.
+     * @param terminator The identity for this operator.
+     *
+     * @return The modified expression
+     *
+     * @exception StandardException Thrown on error
+     */
+    protected ValueNode changeToCNFChain(BinaryLogicalOperatorNode node, 
+                                         boolean underTopAndNode,
+                                         Boolean terminator)
+            throws StandardException {
+        int nodeType = node.getNodeType();
+        List<BinaryLogicalOperatorNode> links = new ArrayList<BinaryLogicalOperatorNode>();
+        List<ValueNode> operands = new ArrayList<ValueNode>();
+        Deque<ValueNode> pending = new ArrayDeque<ValueNode>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            ValueNode next = pending.pop();
+            if (next.getNodeType() == nodeType) {
+                BinaryLogicalOperatorNode link = (BinaryLogicalOperatorNode)next;
+                links.add(link);
+                pending.push(link.getRightOperand());
+                pending.push(link.getLeftOperand());
             }
-            break;
+            else {
+                operands.add(next);
+            }
+        }
 
-            // TODO: subquery node to pick up underTopAndNode for flattening.
-            // BinaryComparisonOperatorNode for that case.
+        /* Add the BooleanConstantNode if not there yet */
+        ValueNode last = operands.get(operands.size() - 1);
+        boolean terminated = (terminator.booleanValue()) ? 
+            last.isBooleanTrue() : last.isBooleanFalse();
+        if (!terminated) {
+            BooleanConstantNode constantNode = (BooleanConstantNode) 
+                nodeFactory.getNode(NodeTypes.BOOLEAN_CONSTANT_NODE,
+                                    terminator,
+                                    parserContext);
+            BinaryLogicalOperatorNode newLink = (BinaryLogicalOperatorNode)
+                nodeFactory.getNode(nodeType,
+                                    last, constantNode,
+                                    parserContext);
+            newLink.setType(last.getType());
+            links.add(newLink);
+            operands.add(constantNode);
+        }
 
+        /* Finally, we continue to normalize the operands. */
+        int nlinks = links.size();
+        for (int i = 0; i < nlinks; i++) {
+            operands.set(i, changeToCNF(operands.get(i), underTopAndNode));
+        }
+        for (int i = 0; i < nlinks; i++) {
+            BinaryLogicalOperatorNode link = links.get(i);
+            link.setLeftOperand(operands.get(i));
+            link.setRightOperand((i + 1 < nlinks) ? links.get(i + 1) : operands.get(nlinks));
         }
         return node;
     }
@@ -0,0 +1,710 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.*;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Bind column references to the tables in scope, using a {@link SchemaCatalog}.
+ * <p>
+ * Each {@link ColumnReference} gets a {@link ColumnBinding} as its
+ * user data and, when it is known, the column's type, which is
+ * enough for {@link TypeComputer} to type the rest of the tree. Each
+ * {@link FromBaseTable} gets its {@link SchemaCatalog.Table}.
+ * <p>
+ * For each FROM list, and for each join with an <code>ON</code>
+ * clause, the columns of all the tables in it are put into one hash
+ * map, so a reference is found without looking through the tables.
+ * When tables are joined, the smaller map is merged into the larger.
+ * A column of the same name in more than one table is ambiguous
+ * unless qualified, except for the columns of a <code>USING</code>
+ * or <code>NATURAL</code> join. References not found are looked for
+ * in enclosing queries, making the subquery correlated. Derived
+ * tables see only enclosing queries, not the rest of their FROM list.
+ * <code>ORDER BY</code> sees the select list names first.
+ */
+public class ColumnBinder implements Visitor
+{
+    // Marks a column name that more than one table in scope has.
+    private static final Object AMBIGUOUS = new Object();
+
+    /** A column of a derived table. */
+    static class DerivedColumn {
+        ResultColumn resultColumn;
+        SchemaCatalog.Column column;
+        DataTypeDescriptor type;
+
+        DerivedColumn(ResultColumn resultColumn, SchemaCatalog.Column column,
+                      DataTypeDescriptor type) {
+            this.resultColumn = resultColumn;
+            this.column = column;
+            this.type = type;
+        }
+    }
+
+    /** A table in a FROM list. */
+    static class ScopeTable {
+        FromTable fromTable;
+        String exposedName;
+        // Only when not given a correlation name.
+        String schemaName;
+        // One or the other.
+        SchemaCatalog.Table table;
+        Map<String,DerivedColumn> derivedColumns;
+
+        ScopeTable(FromTable fromTable, String exposedName) {
+            this.fromTable = fromTable;
+            this.exposedName = exposedName;
+        }
+
+        boolean matches(TableName tableName) {
+            if (!tableName.getTableName().equals(exposedName))
+                return false;
+            if (tableName.hasSchema())
+                return tableName.getSchemaName().equals(schemaName);
+            return true;
+        }
+
+        ColumnBinding bind(String columnName, int outerLevels) {
+            if (table != null) {
+                SchemaCatalog.Column column = table.getColumn(columnName);
+                if (column == null)
+                    return null;
+                return new ColumnBinding(fromTable, column, null, column.getType(),
+                                         outerLevels);
+            }
+            else if (derivedColumns != null) {
+                DerivedColumn column = derivedColumns.get(columnName);
+                if (column == null)
+                    return null;
+                return new ColumnBinding(fromTable, column.column, column.resultColumn,
+                                         column.type, outerLevels);
+            }
+            else
+                return null;
+        }
+    }
+
+    /** The tables visible at one query level, or within one join. */
+    static class Scope {
+        // Exposed name to the tables with that name.
+        Map<String,List<ScopeTable>> tables = new HashMap<String,List<ScopeTable>>();
+        // Column name to the table that has it or AMBIGUOUS.
+        Map<String,Object> columns = new HashMap<String,Object>();
+        // For ORDER BY, the select list names and the select's own scope.
+        Map<String,ResultColumn> resultColumns;
+        Scope select;
+
+        void addTable(ScopeTable table) {
+            List<ScopeTable> named = tables.get(table.exposedName);
+            if (named == null) {
+                named = new ArrayList<ScopeTable>(1);
+                tables.put(table.exposedName, named);
+            }
+            named.add(table);
+        }
+
+        void addColumn(String name, Object table) {
+            Object prev = columns.put(name, table);
+            if ((prev != null) && (prev != table))
+                columns.put(name, AMBIGUOUS);
+        }
+
+        ScopeTable findTable(TableName tableName) throws StandardException {
+            List<ScopeTable> named = tables.get(tableName.getTableName());
+            if (named == null)
+                return null;
+            ScopeTable found = null;
+            for (ScopeTable table : named) {
+                if (table.matches(tableName)) {
+                    if (found != null)
+                        throw new StandardException("Ambiguous table name: " +
+                                                    tableName.getFullTableName());
+                    found = table;
+                }
+            }
+            return found;
+        }
+    }
+
+    private SchemaCatalog catalog;
+    private List<Scope> scopes = new ArrayList<Scope>();
+    private Map<FromTable,ScopeTable> fromTables =
+        new IdentityHashMap<FromTable,ScopeTable>();
+    private Map<SelectNode,Scope> selectScopes =
+        new IdentityHashMap<SelectNode,Scope>();
+    // Nodes whose children have already been bound.
+    private Set<QueryTreeNode> done =
+        Collections.newSetFromMap(new IdentityHashMap<QueryTreeNode,Boolean>());
+
+    public ColumnBinder(SchemaCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    public SchemaCatalog getCatalog() {
+        return catalog;
+    }
+
+    /** Bind all the column references in the given statement. */
+    public void bind(StatementNode stmt) throws StandardException {
+        try {
+            stmt.accept(this);
+        }
+        finally {
+            scopes.clear();
+            fromTables.clear();
+            selectScopes.clear();
+            done.clear();
+        }
+    }
+
+    /** Bind a derived table on its own, such as a view definition. */
+    public void bindDerivedTable(FromSubquery fromSubquery) throws StandardException {
+        try {
+            query(fromSubquery.getSubquery(), fromSubquery.getOrderByList(),
+                  fromSubquery.getOffset(), fromSubquery.getFetchFirst());
+        }
+        finally {
+            scopes.clear();
+            fromTables.clear();
+            selectScopes.clear();
+            done.clear();
+        }
+    }
+
+    /** Whether a derived table was already bound, so that only its
+     * columns need to be found. Its select list must not have
+     * <code>*</code>, whose expansion needs the tables inside.
+     */
+    protected boolean isBound(FromSubquery fromSubquery) {
+        return false;
+    }
+
+    /* Visitor interface. */
+
+    public Visitable visit(Visitable visitable) throws StandardException {
+        QueryTreeNode node = (QueryTreeNode)visitable;
+        switch (node.getNodeType()) {
+        case NodeTypes.SELECT_NODE:
+            popScope();
+            break;
+        case NodeTypes.COLUMN_REFERENCE:
+            columnReference((ColumnReference)node);
+            break;
+        }
+        return node;
+    }
+
+    public boolean skipChildren(Visitable visitable) throws StandardException {
+        QueryTreeNode node = (QueryTreeNode)visitable;
+        if (done.remove(node))
+            return true;
+        switch (node.getNodeType()) {
+        case NodeTypes.SELECT_NODE:
+            {
+                // FROM first, then everything else with its tables in scope.
+                SelectNode select = (SelectNode)node;
+                Scope scope = fromList(select.getFromList());
+                selectScopes.put(select, scope);
+                done.add(select.getFromList());
+                pushScope(scope);
+            }
+            return false;
+        case NodeTypes.CURSOR_NODE:
+            {
+                CursorNode cursor = (CursorNode)node;
+                query(cursor.getResultSetNode(), cursor.getOrderByList(),
+                      cursor.getOffsetClause(), cursor.getFetchFirstClause());
+            }
+            return true;
+        case NodeTypes.SUBQUERY_NODE:
+            {
+                SubqueryNode subquery = (SubqueryNode)node;
+                if (subquery.getLeftOperand() != null)
+                    subquery.getLeftOperand().accept(this);
+                query(subquery.getResultSet(), subquery.getOrderByList(),
+                      subquery.getOffset(), subquery.getFetchFirst());
+            }
+            return true;
+        case NodeTypes.UNION_NODE:
+        case NodeTypes.INTERSECT_OR_EXCEPT_NODE:
+            setOperator((SetOperatorNode)node);
+            return true;
+        case NodeTypes.INSERT_NODE:
+        case NodeTypes.UPDATE_NODE:
+        case NodeTypes.DELETE_NODE:
+            modStatement((DMLModStatementNode)node);
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    public boolean visitChildrenFirst(Visitable node) {
+        return true;
+    }
+
+    public boolean stopTraversal() {
+        return false;
+    }
+
+    protected void pushScope(Scope scope) {
+        scopes.add(scope);
+    }
+
+    protected void popScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    /** Bind a query with optional <code>ORDER BY</code>, <code>OFFSET</code>
+     * and <code>FETCH FIRST</code>, which can refer to its select list.
+     */
+    protected void query(ResultSetNode resultSet, OrderByList orderByList,
+                         ValueNode offset, ValueNode fetchFirst)
+            throws StandardException {
+        resultSet.accept(this);
+        if ((orderByList == null) && (offset == null) && (fetchFirst == null))
+            return;
+        Scope scope = new Scope();
+        scope.resultColumns = new HashMap<String,ResultColumn>();
+        ResultColumnList resultColumns = queryColumns(resultSet);
+        if (resultColumns != null) {
+            for (ResultColumn resultColumn : resultColumns) {
+                String name = resultColumn.getName();
+                if ((name != null) && !scope.resultColumns.containsKey(name))
+                    scope.resultColumns.put(name, resultColumn);
+            }
+        }
+        scope.select = selectScopes.get(resultSet);
+        pushScope(scope);
+        try {
+            if (orderByList != null)
+                orderByList.accept(this);
+            if (offset != null)
+                offset.accept(this);
+            if (fetchFirst != null)
+                fetchFirst.accept(this);
+        }
+        finally {
+            popScope();
+        }
+    }
+
+    /** Bind both sides of a <code>UNION</code>, <code>INTERSECT</code>
+     * or <code>EXCEPT</code>, then its own select list, which is a copy
+     * of the first query's, with the tables of that query in scope.
+     */
+    protected void setOperator(SetOperatorNode node) throws StandardException {
+        node.getLeftResultSet().accept(this);
+        node.getRightResultSet().accept(this);
+        ResultSetNode first = node.getLeftResultSet();
+        while (first instanceof SetOperatorNode) {
+            first = ((SetOperatorNode)first).getLeftResultSet();
+        }
+        Scope scope = selectScopes.get(first);
+        if ((scope == null) || (node.getResultColumns() == null))
+            return;
+        pushScope(scope);
+        try {
+            node.getResultColumns().accept(this);
+        }
+        finally {
+            popScope();
+        }
+    }
+
+    /** Bind the source of an <code>INSERT</code>, <code>UPDATE</code> or
+     * <code>DELETE</code>, then check the target columns and bind
+     * <code>RETURNING</code> against the target table.
+     */
+    protected void modStatement(DMLModStatementNode node) throws StandardException {
+        if (node instanceof InsertNode) {
+            InsertNode insert = (InsertNode)node;
+            query(insert.getResultSetNode(), insert.getOrderByList(),
+                  insert.getOffset(), insert.getFetchFirst());
+        }
+        else {
+            node.getResultSetNode().accept(this);
+        }
+        TableName targetName = node.getTargetTableName();
+        SchemaCatalog.Table target =
+            catalog.getTable(targetName.getSchemaName(), targetName.getTableName());
+        if (target == null)
+            throw new StandardException("Table not found: " +
+                                        targetName.getFullTableName());
+        if (node instanceof InsertNode) {
+            ResultColumnList targetColumns = ((InsertNode)node).getTargetColumnList();
+            if (targetColumns != null) {
+                for (ResultColumn resultColumn : targetColumns) {
+                    SchemaCatalog.Column column = target.getColumn(resultColumn.getName());
+                    if (column == null)
+                        throw new StandardException("Column not found: " +
+                                                    target + "." + resultColumn.getName());
+                    ColumnReference reference = resultColumn.getReference();
+                    if (reference != null) {
+                        reference.setUserData(new ColumnBinding(null, column, null,
+                                                                column.getType(), 0));
+                        reference.setType(column.getType());
+                    }
+                }
+            }
+        }
+        ResultColumnList returning = node.getReturningList();
+        if (returning != null) {
+            Scope scope = new Scope();
+            ScopeTable table = new ScopeTable(null, target.getTableName());
+            table.schemaName = target.getSchemaName();
+            table.table = target;
+            addTable(scope, table);
+            pushScope(scope);
+            try {
+                returning.accept(this);
+            }
+            finally {
+                popScope();
+            }
+        }
+    }
+
+    /** Get the scope of the tables in a FROM list, binding any join
+     * conditions and derived tables in it.
+     */
+    protected Scope fromList(FromList fromList) throws StandardException {
+        Scope scope = new Scope();
+        if (fromList != null) {
+            for (FromTable fromTable : fromList) {
+                scope = merge(scope, fromTable(fromTable));
+            }
+        }
+        return scope;
+    }
+
+    protected Scope fromTable(ResultSetNode resultSet) throws StandardException {
+        if (resultSet instanceof JoinNode)
+            return joinNode((JoinNode)resultSet);
+        Scope scope = new Scope();
+        if (resultSet instanceof FromBaseTable) {
+            FromBaseTable fromTable = (FromBaseTable)resultSet;
+            TableName tableName = fromTable.getOrigTableName();
+            SchemaCatalog.Table table =
+                catalog.getTable(tableName.getSchemaName(), tableName.getTableName());
+            if (table == null)
+                throw new StandardException("Table not found: " +
+                                            tableName.getFullTableName());
+            fromTable.setUserData(table);
+            ScopeTable scopeTable;
+            if (fromTable.getCorrelationName() != null) {
+                scopeTable = new ScopeTable(fromTable, fromTable.getCorrelationName());
+            }
+            else {
+                scopeTable = new ScopeTable(fromTable, table.getTableName());
+                scopeTable.schemaName = table.getSchemaName();
+            }
+            scopeTable.table = table;
+            addTable(scope, scopeTable);
+        }
+        else if (resultSet instanceof FromSubquery) {
+            FromSubquery fromSubquery = (FromSubquery)resultSet;
+            if (!isBound(fromSubquery))
+                query(fromSubquery.getSubquery(), fromSubquery.getOrderByList(),
+                      fromSubquery.getOffset(), fromSubquery.getFetchFirst());
+            ScopeTable scopeTable = new ScopeTable(fromSubquery,
+                                                   fromSubquery.getExposedName());
+            // An expanded view can still be qualified by its schema.
+            TableName origName = fromSubquery.getOrigTableName();
+            if ((origName != null) && origName.getTableName().equals(scopeTable.exposedName))
+                scopeTable.schemaName = origName.getSchemaName();
+            scopeTable.derivedColumns = derivedColumns(fromSubquery);
+            addTable(scope, scopeTable);
+        }
+        else if (resultSet instanceof FromTable) {
+            FromTable fromTable = (FromTable)resultSet;
+            resultSet.accept(this);
+            ScopeTable scopeTable = new ScopeTable(fromTable, fromTable.getCorrelationName());
+            addTable(scope, scopeTable);
+        }
+        return scope;
+    }
+
+    protected Scope joinNode(JoinNode join) throws StandardException {
+        Scope left = fromTable(join.getLeftResultSet());
+        Scope right = fromTable(join.getRightResultSet());
+        // The USING columns, with the table that supplies each after the join.
+        Map<String,Object> joinColumns = null;
+        if (join.getUsingClause() != null) {
+            joinColumns = new HashMap<String,Object>();
+            for (ResultColumn column : join.getUsingClause()) {
+                joinColumn(join, column.getName(), left, right, joinColumns);
+            }
+        }
+        else if (join.isNaturalJoin()) {
+            joinColumns = new HashMap<String,Object>();
+            Scope smaller = (left.columns.size() < right.columns.size()) ? left : right;
+            Scope larger = (smaller == left) ? right : left;
+            for (String name : smaller.columns.keySet()) {
+                if (larger.columns.containsKey(name))
+                    joinColumn(join, name, left, right, joinColumns);
+            }
+        }
+        Scope scope = merge(left, right);
+        if (joinColumns != null)
+            scope.columns.putAll(joinColumns);
+        if (join.getJoinClause() != null) {
+            pushScope(scope);
+            try {
+                join.getJoinClause().accept(this);
+            }
+            finally {
+                popScope();
+            }
+        }
+        return scope;
+    }
+
+    protected void joinColumn(JoinNode join, String name, Scope left, Scope right,
+                              Map<String,Object> joinColumns)
+            throws StandardException {
+        Object leftTable = left.columns.get(name);
+        Object rightTable = right.columns.get(name);
+        if ((leftTable == null) || (rightTable == null))
+            throw new StandardException("Join column not found: " + name);
+        if ((leftTable == AMBIGUOUS) || (rightTable == AMBIGUOUS))
+            throw new StandardException("Ambiguous join column: " + name);
+        boolean rightOuter = ((join instanceof HalfOuterJoinNode) &&
+                              ((HalfOuterJoinNode)join).isRightOuterJoin());
+        joinColumns.put(name, (rightOuter) ? rightTable : leftTable);
+    }
+
+    /** Add a table and its columns to a scope. */
+    protected void addTable(Scope scope, ScopeTable table) {
+        if (table.fromTable != null)
+            fromTables.put(table.fromTable, table);
+        if (table.exposedName != null)
+            scope.addTable(table);
+        if (table.table != null) {
+            for (SchemaCatalog.Column column : table.table.getColumns()) {
+                scope.addColumn(column.getName(), table);
+            }
+        }
+        else if (table.derivedColumns != null) {
+            for (String name : table.derivedColumns.keySet()) {
+                scope.addColumn(name, table);
+            }
+        }
+    }
+
+    /** Combine two scopes, adding the smaller into the larger. */
+    protected Scope merge(Scope scope1, Scope scope2) {
+        Scope into, from;
+        if (scope1.columns.size() >= scope2.columns.size()) {
+            into = scope1;
+            from = scope2;
+        }
+        else {
+            into = scope2;
+            from = scope1;
+        }
+        for (List<ScopeTable> named : from.tables.values()) {
+            for (ScopeTable table : named) {
+                into.addTable(table);
+            }
+        }
+        for (Map.Entry<String,Object> entry : from.columns.entrySet()) {
+            Object table = entry.getValue();
+            if (table == AMBIGUOUS)
+                into.columns.put(entry.getKey(), AMBIGUOUS);
+            else
+                into.addColumn(entry.getKey(), table);
+        }
+        return into;
+    }
+
+    /** The columns of a derived table, which has already been bound. */
+    protected Map<String,DerivedColumn> derivedColumns(FromSubquery fromSubquery)
+            throws StandardException {
+        List<DerivedColumn> columns = new ArrayList<DerivedColumn>();
+        ResultSetNode subquery = fromSubquery.getSubquery();
+        ResultColumnList resultColumns = queryColumns(subquery);
+        while (subquery instanceof SetOperatorNode) {
+            subquery = ((SetOperatorNode)subquery).getLeftResultSet();
+        }
+        if (resultColumns != null) {
+            for (ResultColumn resultColumn : resultColumns) {
+                if (resultColumn instanceof AllResultColumn) {
+                    if (subquery instanceof SelectNode)
+                        expandAll(((SelectNode)subquery).getFromList(),
+                                  ((AllResultColumn)resultColumn).getTableNameObject(),
+                                  columns);
+                }
+                else {
+                    SchemaCatalog.Column column = null;
+                    DataTypeDescriptor type = resultColumn.getType();
+                    if (resultColumn.getExpression() instanceof ColumnReference) {
+                        ColumnBinding binding =
+                            ColumnBinding.of((ColumnReference)resultColumn.getExpression());
+                        if (binding != null) {
+                            column = binding.getColumn();
+                            if (type == null)
+                                type = binding.getType();
+                        }
+                    }
+                    columns.add(new DerivedColumn(resultColumn, column, type));
+                }
+            }
+        }
+        Map<String,DerivedColumn> result = new LinkedHashMap<String,DerivedColumn>();
+        ResultColumnList names = fromSubquery.getResultColumns();
+        if (names != null) {
+            if (names.size() != columns.size())
+                throw new StandardException("Derived column list of " +
+                                            fromSubquery.getExposedName() +
+                                            " has " + names.size() + " columns for " +
+                                            columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                result.put(names.get(i).getName(), columns.get(i));
+            }
+        }
+        else {
+            for (DerivedColumn column : columns) {
+                String name;
+                if (column.resultColumn != null)
+                    name = column.resultColumn.getName();
+                else
+                    name = column.column.getName();
+                if ((name != null) && !result.containsKey(name))
+                    result.put(name, column);
+            }
+        }
+        return result;
+    }
+
+    /** Add the columns of the tables in a FROM list for <code>*</code>. */
+    protected void expandAll(FromList fromList, TableName tableName,
+                             List<DerivedColumn> columns) {
+        for (FromTable fromTable : fromList) {
+            expandAll((ResultSetNode)fromTable, tableName, columns);
+        }
+    }
+
+    protected void expandAll(ResultSetNode resultSet, TableName tableName,
+                             List<DerivedColumn> columns) {
+        if (resultSet instanceof JoinNode) {
+            JoinNode join = (JoinNode)resultSet;
+            expandAll(join.getLeftResultSet(), tableName, columns);
+            expandAll(join.getRightResultSet(), tableName, columns);
+            return;
+        }
+        ScopeTable table = fromTables.get(resultSet);
+        if ((table == null) ||
+            ((tableName != null) && !table.matches(tableName)))
+            return;
+        if (table.table != null) {
+            for (SchemaCatalog.Column column : table.table.getColumns()) {
+                columns.add(new DerivedColumn(null, column, column.getType()));
+            }
+        }
+        else if (table.derivedColumns != null) {
+            columns.addAll(table.derivedColumns.values());
+        }
+    }
+
+    /** The select list of a query, or of the first query in a <code>UNION</code>. */
+    protected static ResultColumnList queryColumns(ResultSetNode resultSet) {
+        while (resultSet instanceof SetOperatorNode) {
+            resultSet = ((SetOperatorNode)resultSet).getLeftResultSet();
+        }
+        return resultSet.getResultColumns();
+    }
+
+    protected void columnReference(ColumnReference columnReference)
+            throws StandardException {
+        TableName tableName = columnReference.getTableNameNode();
+        String columnName = columnReference.getColumnName();
+        int nscopes = scopes.size();
+        for (int i = nscopes - 1; i >= 0; i--) {
+            ColumnBinding binding = resolve(scopes.get(i), tableName, columnName,
+                                            nscopes - 1 - i);
+            if (binding != null) {
+                columnReference.setUserData(binding);
+                if (binding.getType() != null)
+                    columnReference.setType(binding.getType());
+                return;
+            }
+        }
+        throw new StandardException("Column not found: " +
+                                    columnReference.getSQLColumnName());
+    }
+
+    /** Find a column in one scope.
+     * @return the binding or <code>null</code> to keep looking further out.
+     */
+    protected ColumnBinding resolve(Scope scope, TableName tableName, String columnName,
+                                    int outerLevels)
+            throws StandardException {
+        if (scope.resultColumns != null) {
+            if (tableName == null) {
+                ResultColumn resultColumn = scope.resultColumns.get(columnName);
+                if (resultColumn != null) {
+                    ColumnBinding binding = null;
+                    if (resultColumn.getExpression() instanceof ColumnReference)
+                        binding = ColumnBinding.of((ColumnReference)resultColumn.getExpression());
+                    if (binding != null)
+                        return new ColumnBinding(binding.getFromTable(),
+                                                 binding.getColumn(), resultColumn,
+                                                 binding.getType(),
+                                                 binding.getOuterLevels() + outerLevels);
+                    return new ColumnBinding(null, null, resultColumn,
+                                             resultColumn.getType(), outerLevels);
+                }
+            }
+            scope = scope.select;
+            if (scope == null)
+                return null;
+        }
+        ScopeTable table;
+        if (tableName == null) {
+            Object entry = scope.columns.get(columnName);
+            if (entry == null)
+                return null;
+            if (entry == AMBIGUOUS)
+                throw new StandardException("Ambiguous column name: " + columnName);
+            table = (ScopeTable)entry;
+        }
+        else {
+            table = scope.findTable(tableName);
+            if (table == null)
+                return null;
+        }
+        ColumnBinding binding = table.bind(columnName, outerLevels);
+        if (binding == null)
+            throw new StandardException("Column not found: " +
+                                        tableName.getFullTableName() + "." + columnName);
+        return binding;
+    }
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.ColumnReference;
+import com.foundationdb.sql.parser.FromTable;
+import com.foundationdb.sql.parser.ResultColumn;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+
+/** What a {@link ColumnReference} was bound to by {@link ColumnBinder},
+ * kept as its user data.
+ */
+public class ColumnBinding
+{
+    private final FromTable fromTable;
+    private final SchemaCatalog.Column column;
+    private final ResultColumn resultColumn;
+    private final DataTypeDescriptor type;
+    private final int outerLevels;
+
+    public ColumnBinding(FromTable fromTable, SchemaCatalog.Column column,
+                         ResultColumn resultColumn, DataTypeDescriptor type,
+                         int outerLevels) {
+        this.fromTable = fromTable;
+        this.column = column;
+        this.resultColumn = resultColumn;
+        this.type = type;
+        this.outerLevels = outerLevels;
+    }
+
+    /** Get the binding of a column reference, or <code>null</code> if not bound. */
+    public static ColumnBinding of(ColumnReference columnReference) {
+        Object userData = columnReference.getUserData();
+        if (userData instanceof ColumnBinding)
+            return (ColumnBinding)userData;
+        else
+            return null;
+    }
+
+    /** The table in the FROM list that supplies the column, or
+     * <code>null</code> for a select list column named in
+     * <code>ORDER BY</code>.
+     */
+    public FromTable getFromTable() {
+        return fromTable;
+    }
+
+    /** The catalog column, if the value comes straight from one, even
+     * through derived tables.
+     */
+    public SchemaCatalog.Column getColumn() {
+        return column;
+    }
+
+    /** The select list column, for a column of a derived table or
+     * one named in <code>ORDER BY</code>.
+     */
+    public ResultColumn getResultColumn() {
+        return resultColumn;
+    }
+
+    /** The type, if known while binding. */
+    public DataTypeDescriptor getType() {
+        return type;
+    }
+
+    /** How many query levels out the table is: zero for the
+     * innermost, more for a correlated reference.
+     */
+    public int getOuterLevels() {
+        return outerLevels;
+    }
+
+    public boolean isCorrelated() {
+        return (outerLevels > 0);
+    }
+
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        if (column != null)
+            str.append(column);
+        else if (resultColumn != null)
+            str.append(resultColumn.getName());
+        if (fromTable != null) {
+            String exposedName = fromTable.getCorrelationName();
+            if ((exposedName == null) && (fromTable.getOrigTableName() != null))
+                exposedName = fromTable.getOrigTableName().getTableName();
+            if (exposedName != null)
+                str.append(" from ").append(exposedName);
+        }
+        if (outerLevels > 0)
+            str.append(" outer ").append(outerLevels);
+        return str.toString();
+    }
+
+}
@@ -0,0 +1,566 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.*;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Measure how hard a statement would be to plan, before planning it,
+ * so that pathological statements can be turned away.
+ * <p>
+ * A single traversal fills in a {@link Profile}: the tables in each
+ * FROM list, the shape of the join trees, how deeply queries are
+ * nested and which are correlated, the size of each WHERE, ON and
+ * HAVING condition, the largest IN list, the number of clauses that
+ * condition would have in full conjunctive normal form, the
+ * comparisons {@link BooleanNormalizer} would add for NOT IN lists, and
+ * the number of aggregate and window functions. {@link Limits} then
+ * says whether any of those is too much.
+ * <p>
+ * Correlation is taken from {@link ColumnBinding}s if the statement
+ * has been bound. Otherwise only references qualified by the name of a
+ * table in an enclosing query are seen as correlated.
+ */
+public class ComplexityAnalyzer implements Visitor
+{
+    /** The measurements of one statement. */
+    public static class Profile {
+        private int tables, maxFromListTables;
+        private int joins, maxJoinDepth;
+        private boolean bushyJoins;
+        private int subqueries, maxSubqueryDepth, correlatedSubqueries;
+        private int maxPredicateSize, maxInListSize;
+        private long maxCnfClauses;
+        private int notInExpansion;
+        private int aggregates, windowFunctions;
+
+        /** Tables in all FROM lists, not counting joins themselves. */
+        public int getTables() {
+            return tables;
+        }
+
+        /** Tables in the largest single FROM list, including inside its joins. */
+        public int getMaxFromListTables() {
+            return maxFromListTables;
+        }
+
+        public int getJoins() {
+            return joins;
+        }
+
+        /** Joins along the longest path of any join tree. */
+        public int getMaxJoinDepth() {
+            return maxJoinDepth;
+        }
+
+        /** Whether some join has joins on both sides. */
+        public boolean hasBushyJoins() {
+            return bushyJoins;
+        }
+
+        /** Subqueries in expressions and derived tables. */
+        public int getSubqueries() {
+            return subqueries;
+        }
+
+        /** How deeply queries are nested: zero with no subqueries. */
+        public int getMaxSubqueryDepth() {
+            return maxSubqueryDepth;
+        }
+
+        public int getCorrelatedSubqueries() {
+            return correlatedSubqueries;
+        }
+
+        /** Nodes in the largest WHERE, ON or HAVING condition. */
+        public int getMaxPredicateSize() {
+            return maxPredicateSize;
+        }
+
+        public int getMaxInListSize() {
+            return maxInListSize;
+        }
+
+        /** Clauses in the CNF of the worst condition, up to <code>Long.MAX_VALUE</code>. */
+        public long getMaxCnfClauses() {
+            return maxCnfClauses;
+        }
+
+        /** Comparisons that expanding NOT IN lists would add. */
+        public int getNotInExpansion() {
+            return notInExpansion;
+        }
+
+        public int getAggregates() {
+            return aggregates;
+        }
+
+        public int getWindowFunctions() {
+            return windowFunctions;
+        }
+
+        public String toString() {
+            return "tables: " + tables + " (max " + maxFromListTables + " per FROM)" +
+                ", joins: " + joins + " (depth " + maxJoinDepth +
+                (bushyJoins ? ", bushy" : "") + ")" +
+                ", subqueries: " + subqueries + " (depth " + maxSubqueryDepth +
+                ", " + correlatedSubqueries + " correlated)" +
+                ", predicate size: " + maxPredicateSize +
+                ", IN list: " + maxInListSize +
+                ", CNF clauses: " + maxCnfClauses +
+                ", NOT IN expansion: " + notInExpansion +
+                ", aggregates: " + aggregates +
+                ", window functions: " + windowFunctions;
+        }
+    }
+
+    /** How much of each measurement to allow. */
+    public static class Limits {
+        public static final int DEFAULT_FROM_LIST_TABLES = 32;
+        public static final int DEFAULT_JOIN_DEPTH = 32;
+        public static final int DEFAULT_SUBQUERY_DEPTH = 16;
+        public static final int DEFAULT_CORRELATED_SUBQUERIES = 32;
+        public static final int DEFAULT_PREDICATE_SIZE = 100000;
+        public static final int DEFAULT_IN_LIST_SIZE = 100000;
+        public static final long DEFAULT_CNF_CLAUSES = 4096;
+
+        private int maxFromListTables = DEFAULT_FROM_LIST_TABLES;
+        private int maxJoinDepth = DEFAULT_JOIN_DEPTH;
+        private int maxSubqueryDepth = DEFAULT_SUBQUERY_DEPTH;
+        private int maxCorrelatedSubqueries = DEFAULT_CORRELATED_SUBQUERIES;
+        private int maxPredicateSize = DEFAULT_PREDICATE_SIZE;
+        private int maxInListSize = DEFAULT_IN_LIST_SIZE;
+        private long maxCnfClauses = DEFAULT_CNF_CLAUSES;
+        private int maxNotInExpansion = BooleanNormalizer.DEFAULT_EXPANSION_BUDGET;
+        private int maxAggregates = Integer.MAX_VALUE;
+        private int maxWindowFunctions = Integer.MAX_VALUE;
+
+        public int getMaxFromListTables() {
+            return maxFromListTables;
+        }
+        public void setMaxFromListTables(int maxFromListTables) {
+            this.maxFromListTables = maxFromListTables;
+        }
+
+        public int getMaxJoinDepth() {
+            return maxJoinDepth;
+        }
+        public void setMaxJoinDepth(int maxJoinDepth) {
+            this.maxJoinDepth = maxJoinDepth;
+        }
+
+        public int getMaxSubqueryDepth() {
+            return maxSubqueryDepth;
+        }
+        public void setMaxSubqueryDepth(int maxSubqueryDepth) {
+            this.maxSubqueryDepth = maxSubqueryDepth;
+        }
+
+        public int getMaxCorrelatedSubqueries() {
+            return maxCorrelatedSubqueries;
+        }
+        public void setMaxCorrelatedSubqueries(int maxCorrelatedSubqueries) {
+            this.maxCorrelatedSubqueries = maxCorrelatedSubqueries;
+        }
+
+        public int getMaxPredicateSize() {
+            return maxPredicateSize;
+        }
+        public void setMaxPredicateSize(int maxPredicateSize) {
+            this.maxPredicateSize = maxPredicateSize;
+        }
+
+        public int getMaxInListSize() {
+            return maxInListSize;
+        }
+        public void setMaxInListSize(int maxInListSize) {
+            this.maxInListSize = maxInListSize;
+        }
+
+        public long getMaxCnfClauses() {
+            return maxCnfClauses;
+        }
+        public void setMaxCnfClauses(long maxCnfClauses) {
+            this.maxCnfClauses = maxCnfClauses;
+        }
+
+        public int getMaxNotInExpansion() {
+            return maxNotInExpansion;
+        }
+        public void setMaxNotInExpansion(int maxNotInExpansion) {
+            this.maxNotInExpansion = maxNotInExpansion;
+        }
+
+        public int getMaxAggregates() {
+            return maxAggregates;
+        }
+        public void setMaxAggregates(int maxAggregates) {
+            this.maxAggregates = maxAggregates;
+        }
+
+        public int getMaxWindowFunctions() {
+            return maxWindowFunctions;
+        }
+        public void setMaxWindowFunctions(int maxWindowFunctions) {
+            this.maxWindowFunctions = maxWindowFunctions;
+        }
+
+        /** Describe each measurement over its limit.
+         * @return an empty list if the statement is within all limits.
+         */
+        public List<String> check(Profile profile) {
+            List<String> result = new ArrayList<String>();
+            check(result, "tables in one FROM list",
+                  profile.maxFromListTables, maxFromListTables);
+            check(result, "join depth", profile.maxJoinDepth, maxJoinDepth);
+            check(result, "subquery depth", profile.maxSubqueryDepth, maxSubqueryDepth);
+            check(result, "correlated subqueries",
+                  profile.correlatedSubqueries, maxCorrelatedSubqueries);
+            check(result, "predicate size", profile.maxPredicateSize, maxPredicateSize);
+            check(result, "IN list size", profile.maxInListSize, maxInListSize);
+            check(result, "CNF clauses", profile.maxCnfClauses, maxCnfClauses);
+            check(result, "NOT IN expansion", profile.notInExpansion, maxNotInExpansion);
+            check(result, "aggregates", profile.aggregates, maxAggregates);
+            check(result, "window functions", profile.windowFunctions, maxWindowFunctions);
+            return result;
+        }
+
+        protected static void check(List<String> result, String what,
+                                    long value, long limit) {
+            if (value > limit)
+                result.add(what + " " + value + " over limit " + limit);
+        }
+    }
+
+    /** A query block being visited. */
+    static class Query {
+        Set<String> exposedNames = new HashSet<String>();
+        boolean correlated;
+        // NOTs around the query, which do not apply inside it.
+        int outerNegations;
+    }
+
+    /** A WHERE, ON or HAVING condition being visited. */
+    static class Predicate {
+        ValueNode root;
+        int startSize;
+
+        Predicate(ValueNode root, int startSize) {
+            this.root = root;
+            this.startSize = startSize;
+        }
+    }
+
+    private Profile profile;
+    private List<Query> queries = new ArrayList<Query>();
+    // Tables counted so far for each FROM list being visited.
+    private List<int[]> fromLists = new ArrayList<int[]>();
+    // Depth of each join whose parent has not been visited yet.
+    private Map<ResultSetNode,Integer> joinDepths =
+        new IdentityHashMap<ResultSetNode,Integer>();
+    private Set<ValueNode> predicateRoots =
+        java.util.Collections.newSetFromMap(new IdentityHashMap<ValueNode,Boolean>());
+    private List<Predicate> predicates = new ArrayList<Predicate>();
+    // {CNF clauses, DNF terms} of AND, OR and NOT operands not yet
+    // taken by their parent. Anything else is one of each.
+    private Map<ValueNode,long[]> normalForms = new IdentityHashMap<ValueNode,long[]>();
+    private int valueNodes;
+    // NOTs around the current node in this query.
+    private int negations;
+
+    public ComplexityAnalyzer() {
+    }
+
+    /** Measure the given statement. */
+    public Profile analyze(StatementNode stmt) throws StandardException {
+        profile = new Profile();
+        try {
+            stmt.accept(this);
+        }
+        finally {
+            queries.clear();
+            fromLists.clear();
+            joinDepths.clear();
+            predicateRoots.clear();
+            predicates.clear();
+            normalForms.clear();
+            valueNodes = 0;
+            negations = 0;
+        }
+        return profile;
+    }
+
+    /** Measure the given statement and fail if it is over any of the limits. */
+    public Profile check(StatementNode stmt, Limits limits) throws StandardException {
+        Profile profile = analyze(stmt);
+        List<String> over = limits.check(profile);
+        if (!over.isEmpty()) {
+            StringBuilder str = new StringBuilder("Statement too complex: ");
+            for (int i = 0; i < over.size(); i++) {
+                if (i > 0) str.append(", ");
+                str.append(over.get(i));
+            }
+            throw new StandardException(str.toString());
+        }
+        return profile;
+    }
+
+    /* Visitor interface. */
+
+    // Called before the children, since they are visited first.
+    public boolean skipChildren(Visitable visitable) throws StandardException {
+        QueryTreeNode node = (QueryTreeNode)visitable;
+        switch (node.getNodeType()) {
+        case NodeTypes.SELECT_NODE:
+            {
+                SelectNode select = (SelectNode)node;
+                Query query = new Query();
+                if (select.getFromList() != null) {
+                    for (FromTable fromTable : select.getFromList()) {
+                        addExposedNames(query, fromTable);
+                    }
+                }
+                query.outerNegations = negations;
+                negations = 0;
+                queries.add(query);
+                if (queries.size() - 1 > profile.maxSubqueryDepth)
+                    profile.maxSubqueryDepth = queries.size() - 1;
+                addPredicateRoot(select.getWhereClause());
+                addPredicateRoot(select.getHavingClause());
+            }
+            break;
+        case NodeTypes.FROM_LIST:
+            fromLists.add(new int[1]);
+            break;
+        case NodeTypes.JOIN_NODE:
+        case NodeTypes.HALF_OUTER_JOIN_NODE:
+        case NodeTypes.FULL_OUTER_JOIN_NODE:
+            addPredicateRoot(((JoinNode)node).getJoinClause());
+            break;
+        case NodeTypes.NOT_NODE:
+            negations++;
+            break;
+        }
+        if (predicateRoots.remove(node))
+            predicates.add(new Predicate((ValueNode)node, valueNodes));
+        return false;
+    }
+
+    public Visitable visit(Visitable visitable) throws StandardException {
+        QueryTreeNode node = (QueryTreeNode)visitable;
+        if (node instanceof ValueNode)
+            valueNode((ValueNode)node);
+        switch (node.getNodeType()) {
+        case NodeTypes.SELECT_NODE:
+            {
+                Query query = queries.remove(queries.size() - 1);
+                if (query.correlated)
+                    profile.correlatedSubqueries++;
+                negations = query.outerNegations;
+            }
+            break;
+        case NodeTypes.FROM_LIST:
+            {
+                int ntables = fromLists.remove(fromLists.size() - 1)[0];
+                if (ntables > profile.maxFromListTables)
+                    profile.maxFromListTables = ntables;
+            }
+            break;
+        case NodeTypes.FROM_BASE_TABLE:
+            countTable();
+            break;
+        case NodeTypes.FROM_SUBQUERY:
+            countTable();
+            profile.subqueries++;
+            break;
+        case NodeTypes.SUBQUERY_NODE:
+            profile.subqueries++;
+            break;
+        case NodeTypes.JOIN_NODE:
+        case NodeTypes.HALF_OUTER_JOIN_NODE:
+        case NodeTypes.FULL_OUTER_JOIN_NODE:
+            joinNode((JoinNode)node);
+            break;
+        }
+        return node;
+    }
+
+    public boolean visitChildrenFirst(Visitable node) {
+        return true;
+    }
+
+    public boolean stopTraversal() {
+        return false;
+    }
+
+    protected void addPredicateRoot(ValueNode node) {
+        if (node != null)
+            predicateRoots.add(node);
+    }
+
+    protected void addExposedNames(Query query, ResultSetNode resultSet)
+            throws StandardException {
+        if (resultSet instanceof JoinNode) {
+            addExposedNames(query, ((JoinNode)resultSet).getLeftResultSet());
+            addExposedNames(query, ((JoinNode)resultSet).getRightResultSet());
+        }
+        else if (resultSet instanceof FromTable) {
+            FromTable fromTable = (FromTable)resultSet;
+            if (fromTable.getCorrelationName() != null)
+                query.exposedNames.add(fromTable.getCorrelationName());
+            else if (fromTable.getOrigTableName() != null)
+                query.exposedNames.add(fromTable.getOrigTableName().getTableName());
+        }
+    }
+
+    protected void countTable() {
+        profile.tables++;
+        if (!fromLists.isEmpty())
+            fromLists.get(fromLists.size() - 1)[0]++;
+    }
+
+    protected void joinNode(JoinNode join) {
+        profile.joins++;
+        Integer left = joinDepths.remove(join.getLeftResultSet());
+        Integer right = joinDepths.remove(join.getRightResultSet());
+        if ((left != null) && (right != null))
+            profile.bushyJoins = true;
+        int depth = 1 + Math.max((left == null) ? 0 : left, (right == null) ? 0 : right);
+        if (depth > profile.maxJoinDepth)
+            profile.maxJoinDepth = depth;
+        joinDepths.put(join, depth);
+    }
+
+    protected void valueNode(ValueNode node) {
+        valueNodes++;
+        switch (node.getNodeType()) {
+        case NodeTypes.AND_NODE:
+        case NodeTypes.OR_NODE:
+            {
+                BinaryLogicalOperatorNode binary = (BinaryLogicalOperatorNode)node;
+                long[] left = takeNormalForm(binary.getLeftOperand());
+                long[] right = takeNormalForm(binary.getRightOperand());
+                if (node.getNodeType() == NodeTypes.AND_NODE)
+                    normalForms.put(node, new long[] {
+                                        add(left[0], right[0]), multiply(left[1], right[1])
+                                    });
+                else
+                    normalForms.put(node, new long[] {
+                                        multiply(left[0], right[0]), add(left[1], right[1])
+                                    });
+            }
+            break;
+        case NodeTypes.NOT_NODE:
+            {
+                long[] operand = takeNormalForm(((NotNode)node).getOperand());
+                normalForms.put(node, new long[] { operand[1], operand[0] });
+                negations--;
+            }
+            break;
+        case NodeTypes.IN_LIST_OPERATOR_NODE:
+            inListOperatorNode((InListOperatorNode)node);
+            break;
+        case NodeTypes.COLUMN_REFERENCE:
+            columnReference((ColumnReference)node);
+            break;
+        case NodeTypes.AGGREGATE_NODE:
+        case NodeTypes.GROUP_CONCAT_NODE:
+            profile.aggregates++;
+            break;
+        default:
+            if (node instanceof WindowFunctionNode)
+                profile.windowFunctions++;
+            break;
+        }
+        if (!predicates.isEmpty()) {
+            Predicate predicate = predicates.get(predicates.size() - 1);
+            if (predicate.root == node) {
+                predicates.remove(predicates.size() - 1);
+                int size = valueNodes - predicate.startSize;
+                if (size > profile.maxPredicateSize)
+                    profile.maxPredicateSize = size;
+                long cnfClauses = takeNormalForm(node)[0];
+                if (cnfClauses > profile.maxCnfClauses)
+                    profile.maxCnfClauses = cnfClauses;
+            }
+        }
+    }
+
+    protected long[] takeNormalForm(ValueNode node) {
+        long[] result = normalForms.remove(node);
+        if (result == null)
+            result = new long[] { 1, 1 };
+        return result;
+    }
+
+    protected void inListOperatorNode(InListOperatorNode node) {
+        int size = node.getRightOperandList().getNodeList().size();
+        if (size > profile.maxInListSize)
+            profile.maxInListSize = size;
+        // BooleanNormalizer turns an IN under NOT into an AND of
+        // comparisons, unless the list is longer than this.
+        if ((negations % 2 == 1) && !node.isNegated() &&
+            (size <= BooleanNormalizer.NOT_IN_AND_LIMIT)) {
+            int width = Math.max(node.getLeftOperand().getNodeList().size(), 1);
+            profile.notInExpansion += size * width;
+        }
+    }
+
+    protected void columnReference(ColumnReference column) {
+        int nqueries = queries.size();
+        if (nqueries < 2)
+            return;
+        int outerLevels = 0;
+        ColumnBinding binding = ColumnBinding.of(column);
+        if (binding != null) {
+            outerLevels = binding.getOuterLevels();
+        }
+        else if (column.getTableNameNode() != null) {
+            String tableName = column.getTableNameNode().getTableName();
+            for (int i = nqueries - 1; i >= 0; i--) {
+                if (queries.get(i).exposedNames.contains(tableName)) {
+                    outerLevels = nqueries - 1 - i;
+                    break;
+                }
+            }
+        }
+        // Every query between here and the table depends on it.
+        for (int i = 0; i < outerLevels && i < nqueries - 1; i++) {
+            queries.get(nqueries - 1 - i).correlated = true;
+        }
+    }
+
+    protected static long add(long x, long y) {
+        long result = x + y;
+        return (result < 0) ? Long.MAX_VALUE : result;
+    }
+
+    protected static long multiply(long x, long y) {
+        if ((x != 0) && (y > Long.MAX_VALUE / x))
+            return Long.MAX_VALUE;
+        return x * y;
+    }
+
+}
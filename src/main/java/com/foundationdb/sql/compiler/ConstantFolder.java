@@ -0,0 +1,612 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.*;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+import com.foundationdb.sql.types.TypeId;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Fold constant expressions and simplify trivial ones.
+ * <p>
+ * Operands are visited before the nodes that use them, so that
+ * <code>(1 + 2) * 3</code> or <code>NOT (1 = 1)</code> folds all the
+ * way down. The types are those assigned by {@link TypeComputer} when
+ * it has been run, or computed by it here when not. Arithmetic is only
+ * done when its result is exact and fits that type; anything that would
+ * overflow, divide by zero or depend on rounding is left for execution.
+ * <p>
+ * Run this before {@link BooleanNormalizer}, which adds <code>TRUE</code>
+ * and <code>FALSE</code> terminators that this would take right back out.
+ */
+public class ConstantFolder implements Visitor
+{
+    /** One replacement made by {@link #fold}. */
+    public static class Folding {
+        private ValueNode original, replacement;
+
+        public Folding(ValueNode original, ValueNode replacement) {
+            this.original = original;
+            this.replacement = replacement;
+        }
+
+        public ValueNode getOriginal() {
+            return original;
+        }
+        public ValueNode getReplacement() {
+            return replacement;
+        }
+    }
+
+    SQLParserContext parserContext;
+    NodeFactory nodeFactory;
+    TypeComputer typeComputer;
+    private List<Folding> foldings = new ArrayList<Folding>();
+
+    public ConstantFolder(SQLParserContext parserContext) {
+        this(parserContext, new TypeComputer());
+    }
+
+    public ConstantFolder(SQLParserContext parserContext, TypeComputer typeComputer) {
+        this.parserContext = parserContext;
+        this.nodeFactory = parserContext.getNodeFactory();
+        this.typeComputer = typeComputer;
+    }
+
+    /** Fold constants anywhere in this statement. */
+    public StatementNode fold(StatementNode stmt) throws StandardException {
+        foldings.clear();
+        return (StatementNode)stmt.accept(this);
+    }
+
+    /** The replacements made by the last {@link #fold}, innermost first. */
+    public List<Folding> getFoldings() {
+        return foldings;
+    }
+
+    /** Fold a single expression whose operands have already been folded.
+     * @return the replacement or <code>node</code> if unchanged.
+     */
+    protected ValueNode foldExpression(ValueNode node) throws StandardException {
+        switch (node.getNodeType()) {
+        case NodeTypes.BINARY_PLUS_OPERATOR_NODE:
+        case NodeTypes.BINARY_MINUS_OPERATOR_NODE:
+        case NodeTypes.BINARY_TIMES_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIVIDE_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIV_OPERATOR_NODE:
+            return binaryArithmeticOperatorNode((BinaryArithmeticOperatorNode)node);
+        case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_NOT_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
+            return binaryComparisonOperatorNode((BinaryComparisonOperatorNode)node);
+        case NodeTypes.AND_NODE:
+        case NodeTypes.OR_NODE:
+            return binaryLogicalOperatorNode((BinaryLogicalOperatorNode)node);
+        case NodeTypes.NOT_NODE:
+            return notNode((NotNode)node);
+        case NodeTypes.CAST_NODE:
+            return castNode((CastNode)node);
+        case NodeTypes.CONDITIONAL_NODE:
+            return conditionalNode((ConditionalNode)node);
+        default:
+            return node;
+        }
+    }
+
+    protected ValueNode binaryArithmeticOperatorNode(BinaryArithmeticOperatorNode node)
+            throws StandardException {
+        ValueNode leftOperand = node.getLeftOperand();
+        ValueNode rightOperand = node.getRightOperand();
+        int nodeType = node.getNodeType();
+        if (!(leftOperand instanceof NumericConstantNode) ||
+            !(rightOperand instanceof NumericConstantNode)) {
+            /* x + 0, 0 + x, x - 0, x * 1, 1 * x, x / 1 */
+            if (isNumber(rightOperand, 0)) {
+                if ((nodeType == NodeTypes.BINARY_PLUS_OPERATOR_NODE) ||
+                    (nodeType == NodeTypes.BINARY_MINUS_OPERATOR_NODE))
+                    return sameType(node, leftOperand);
+            }
+            else if (isNumber(rightOperand, 1)) {
+                if ((nodeType == NodeTypes.BINARY_TIMES_OPERATOR_NODE) ||
+                    (nodeType == NodeTypes.BINARY_DIVIDE_OPERATOR_NODE) ||
+                    (nodeType == NodeTypes.BINARY_DIV_OPERATOR_NODE))
+                    return sameType(node, leftOperand);
+            }
+            else if (isNumber(leftOperand, 0)) {
+                if (nodeType == NodeTypes.BINARY_PLUS_OPERATOR_NODE)
+                    return sameType(node, rightOperand);
+            }
+            else if (isNumber(leftOperand, 1)) {
+                if (nodeType == NodeTypes.BINARY_TIMES_OPERATOR_NODE)
+                    return sameType(node, rightOperand);
+            }
+            return node;
+        }
+        DataTypeDescriptor type = getType(node);
+        if ((type == null) || type.getTypeId().isUnsigned())
+            return node;
+        if (isApproximate(type)) {
+            double left = ((Number)((ConstantNode)leftOperand).getValue()).doubleValue();
+            double right = ((Number)((ConstantNode)rightOperand).getValue()).doubleValue();
+            double result;
+            switch (nodeType) {
+            case NodeTypes.BINARY_PLUS_OPERATOR_NODE:
+                result = left + right;
+                break;
+            case NodeTypes.BINARY_MINUS_OPERATOR_NODE:
+                result = left - right;
+                break;
+            case NodeTypes.BINARY_TIMES_OPERATOR_NODE:
+                result = left * right;
+                break;
+            case NodeTypes.BINARY_DIVIDE_OPERATOR_NODE:
+                if (right == 0.0)
+                    return node;
+                result = left / right;
+                break;
+            default:
+                return node;
+            }
+            ValueNode constant = getApproximateNode(result, type);
+            if (constant == null)
+                return node;
+            return folded(node, constant);
+        }
+        BigDecimal left = getExactValue((ConstantNode)leftOperand);
+        BigDecimal right = getExactValue((ConstantNode)rightOperand);
+        if ((left == null) || (right == null))
+            return node;
+        BigDecimal result;
+        switch (nodeType) {
+        case NodeTypes.BINARY_PLUS_OPERATOR_NODE:
+            result = left.add(right);
+            break;
+        case NodeTypes.BINARY_MINUS_OPERATOR_NODE:
+            result = left.subtract(right);
+            break;
+        case NodeTypes.BINARY_TIMES_OPERATOR_NODE:
+            result = left.multiply(right);
+            break;
+        case NodeTypes.BINARY_DIVIDE_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIV_OPERATOR_NODE:
+            // Only integer division truncates the same way everywhere.
+            if (!type.getTypeId().isIntegerTypeId() || (right.signum() == 0))
+                return node;
+            result = left.divide(right, 0, RoundingMode.DOWN);
+            break;
+        default:
+            return node;
+        }
+        ValueNode constant = getExactNode(result, type);
+        if (constant == null)
+            return node;
+        return folded(node, constant);
+    }
+
+    protected ValueNode binaryComparisonOperatorNode(BinaryComparisonOperatorNode node)
+            throws StandardException {
+        ValueNode leftOperand = node.getLeftOperand();
+        ValueNode rightOperand = node.getRightOperand();
+        int comparison;
+        if ((leftOperand instanceof NumericConstantNode) &&
+            (rightOperand instanceof NumericConstantNode)) {
+            Integer numericComparison = compareNumeric((ConstantNode)leftOperand,
+                                                       (ConstantNode)rightOperand);
+            if (numericComparison == null)
+                return node;
+            comparison = numericComparison;
+        }
+        else if ((leftOperand instanceof BooleanConstantNode) &&
+                 (rightOperand instanceof BooleanConstantNode) &&
+                 (((ConstantNode)leftOperand).getValue() != null) &&
+                 (((ConstantNode)rightOperand).getValue() != null)) {
+            boolean left = ((BooleanConstantNode)leftOperand).getBooleanValue();
+            boolean right = ((BooleanConstantNode)rightOperand).getBooleanValue();
+            comparison = (left == right) ? 0 : (left ? 1 : -1);
+        }
+        else {
+            // Strings depend on collation and padding.
+            return node;
+        }
+        boolean result;
+        switch (node.getNodeType()) {
+        case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
+            result = (comparison == 0);
+            break;
+        case NodeTypes.BINARY_NOT_EQUALS_OPERATOR_NODE:
+            result = (comparison != 0);
+            break;
+        case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
+            result = (comparison > 0);
+            break;
+        case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
+            result = (comparison >= 0);
+            break;
+        case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
+            result = (comparison < 0);
+            break;
+        case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
+            result = (comparison <= 0);
+            break;
+        default:
+            return node;
+        }
+        return folded(node, getBooleanNode(result));
+    }
+
+    protected ValueNode binaryLogicalOperatorNode(BinaryLogicalOperatorNode node)
+            throws StandardException {
+        ValueNode leftOperand = node.getLeftOperand();
+        ValueNode rightOperand = node.getRightOperand();
+        if (node.getNodeType() == NodeTypes.AND_NODE) {
+            if (leftOperand.isBooleanTrue())
+                return folded(node, rightOperand);
+            if (rightOperand.isBooleanTrue())
+                return folded(node, leftOperand);
+            if (leftOperand.isBooleanFalse() && canDrop(rightOperand))
+                return folded(node, leftOperand);
+            if (rightOperand.isBooleanFalse() && canDrop(leftOperand))
+                return folded(node, rightOperand);
+        }
+        else {
+            if (leftOperand.isBooleanFalse())
+                return folded(node, rightOperand);
+            if (rightOperand.isBooleanFalse())
+                return folded(node, leftOperand);
+            if (leftOperand.isBooleanTrue() && canDrop(rightOperand))
+                return folded(node, leftOperand);
+            if (rightOperand.isBooleanTrue() && canDrop(leftOperand))
+                return folded(node, rightOperand);
+        }
+        return node;
+    }
+
+    protected ValueNode notNode(NotNode node) throws StandardException {
+        ValueNode operand = node.getOperand();
+        if (operand.isBooleanTrue())
+            return folded(node, getBooleanNode(false));
+        if (operand.isBooleanFalse())
+            return folded(node, getBooleanNode(true));
+        if (operand.getNodeType() == NodeTypes.NOT_NODE)
+            return folded(node, ((NotNode)operand).getOperand());
+        return node;
+    }
+
+    protected ValueNode castNode(CastNode node) throws StandardException {
+        ValueNode operand = node.getCastOperand();
+        DataTypeDescriptor type = node.getType();
+        if (!(operand instanceof ConstantNode) || (type == null) ||
+            (((ConstantNode)operand).getValue() == null))
+            return node;
+        TypeId typeId = type.getTypeId();
+        if (typeId.isUnsigned())
+            return node;
+        ValueNode constant = null;
+        if (typeId.isNumericTypeId()) {
+            BigDecimal value = null;
+            if (operand instanceof NumericConstantNode) {
+                value = getComparableValue((ConstantNode)operand);
+            }
+            else if (operand instanceof CharConstantNode) {
+                String str = ((CharConstantNode)operand).getString().trim();
+                try {
+                    value = new BigDecimal(str);
+                }
+                catch (NumberFormatException ex) {
+                    // Leave it to fail at execution, if it is reached.
+                }
+            }
+            if (value == null)
+                return node;
+            if (isApproximate(type))
+                constant = getApproximateNode(value.doubleValue(), type);
+            else
+                constant = getExactNode(value, type);
+        }
+        else if ((type.getJDBCTypeId() == Types.VARCHAR) &&
+                 (type.getCharacterAttributes() == null)) {
+            String str = null;
+            if (operand instanceof CharConstantNode) {
+                str = ((CharConstantNode)operand).getString();
+            }
+            else if ((operand instanceof NumericConstantNode) &&
+                     operand.getTypeId().isIntegerTypeId()) {
+                str = ((ConstantNode)operand).getValue().toString();
+            }
+            if ((str != null) &&
+                (CharConstantNode.charLength(str) <= type.getMaximumWidth())) {
+                constant = (ValueNode)
+                    nodeFactory.getNode(NodeTypes.CHAR_CONSTANT_NODE,
+                                        str,
+                                        parserContext);
+                constant.setType(type);
+            }
+        }
+        else if (typeId.isBooleanTypeId() && 
+                 (operand instanceof BooleanConstantNode)) {
+            constant = operand;
+        }
+        if (constant == null)
+            return node;
+        return folded(node, constant);
+    }
+
+    protected ValueNode conditionalNode(ConditionalNode node) throws StandardException {
+        ValueNode testCondition = node.getTestCondition();
+        ValueNode thenNode = node.getThenNode();
+        ValueNode elseNode = node.getElseNode();
+        if (testCondition.isBooleanTrue()) {
+            if (canDrop(elseNode))
+                return folded(node, thenNode);
+        }
+        else if (testCondition.isBooleanFalse() ||
+                 (testCondition.getNodeType() == NodeTypes.UNTYPED_NULL_CONSTANT_NODE)) {
+            if (canDrop(thenNode))
+                return folded(node, elseNode);
+        }
+        return node;
+    }
+
+    /** Record a replacement. */
+    protected ValueNode folded(ValueNode original, ValueNode replacement) {
+        foldings.add(new Folding(original, replacement));
+        return replacement;
+    }
+
+    /** Can this be taken out of the statement without it being noticed?
+     * Parameters would leave gaps in the numbering.
+     */
+    protected boolean canDrop(ValueNode node) throws StandardException {
+        HasNodeVisitor visitor = new HasNodeVisitor(ParameterNode.class);
+        node.accept(visitor);
+        if (visitor.hasNode())
+            return false;
+        visitor = new HasNodeVisitor(NextSequenceNode.class);
+        node.accept(visitor);
+        return !visitor.hasNode();
+    }
+
+    /** Replace <code>node</code> with its operand if that has the same type. */
+    protected ValueNode sameType(ValueNode node, ValueNode operand) 
+            throws StandardException {
+        DataTypeDescriptor type = getType(node);
+        if ((type == null) || !type.equals(operand.getType()))
+            return node;
+        return folded(node, operand);
+    }
+
+    protected DataTypeDescriptor getType(ValueNode node) throws StandardException {
+        DataTypeDescriptor type = node.getType();
+        if (type == null)
+            type = typeComputer.computeType(node);
+        return type;
+    }
+
+    protected static boolean isNumber(ValueNode node, int number) {
+        if (!(node instanceof NumericConstantNode))
+            return false;
+        BigDecimal value = getComparableValue((ConstantNode)node);
+        return ((value != null) && (value.compareTo(BigDecimal.valueOf(number)) == 0));
+    }
+
+    protected static boolean isApproximate(DataTypeDescriptor type) {
+        switch (type.getJDBCTypeId()) {
+        case Types.DOUBLE:
+        case Types.FLOAT:
+        case Types.REAL:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Get the value of an exact numeric constant, or <code>null</code>. */
+    protected static BigDecimal getExactValue(ConstantNode node) {
+        Object value = node.getValue();
+        if (value instanceof BigDecimal)
+            return (BigDecimal)value;
+        if ((value instanceof Long) || (value instanceof Integer) ||
+            (value instanceof Short) || (value instanceof Byte))
+            return BigDecimal.valueOf(((Number)value).longValue());
+        return null;
+    }
+
+    /** Whether a constant's value is <code>DOUBLE</code> or <code>REAL</code>. */
+    protected static boolean isApproximateValue(Object value) {
+        return ((value instanceof Double) || (value instanceof Float));
+    }
+
+    /** Compare two numeric constants the way SQL does: as
+     * <code>DOUBLE</code> if either is <code>DOUBLE</code>, as
+     * <code>REAL</code> if either is <code>REAL</code>, and exactly
+     * otherwise.
+     * @return <code>null</code> if either is null or not a number.
+     */
+    protected static Integer compareNumeric(ConstantNode left, ConstantNode right) {
+        Object lvalue = left.getValue();
+        Object rvalue = right.getValue();
+        if (isApproximateValue(lvalue) || isApproximateValue(rvalue)) {
+            Number lnumber = isApproximateValue(lvalue) ? (Number)lvalue : getExactValue(left);
+            Number rnumber = isApproximateValue(rvalue) ? (Number)rvalue : getExactValue(right);
+            if ((lnumber == null) || (rnumber == null))
+                return null;
+            double l, r;
+            if ((lvalue instanceof Double) || (rvalue instanceof Double)) {
+                l = lnumber.doubleValue();
+                r = rnumber.doubleValue();
+            }
+            else {
+                l = lnumber.floatValue();
+                r = rnumber.floatValue();
+            }
+            if (Double.isNaN(l) || Double.isNaN(r))
+                return null;
+            return (l < r) ? -1 : ((l > r) ? 1 : 0);
+        }
+        BigDecimal l = getExactValue(left);
+        BigDecimal r = getExactValue(right);
+        if ((l == null) || (r == null))
+            return null;
+        return l.compareTo(r);
+    }
+
+    /** Get the value of any numeric constant, or <code>null</code>.
+     * An approximate value is converted exactly, so it only compares
+     * correctly with other approximate values: use
+     * {@link #compareNumeric} to compare two constants.
+     */
+    protected static BigDecimal getComparableValue(ConstantNode node) {
+        Object value = node.getValue();
+        if ((value instanceof Double) || (value instanceof Float)) {
+            double dvalue = ((Number)value).doubleValue();
+            if (Double.isNaN(dvalue) || Double.isInfinite(dvalue))
+                return null;
+            return new BigDecimal(dvalue);
+        }
+        return getExactValue(node);
+    }
+
+    /** Make a constant of the given exact type, if the value fits in it
+     * without rounding, or else return <code>null</code>. */
+    protected ValueNode getExactNode(BigDecimal value, DataTypeDescriptor type)
+            throws StandardException {
+        int nodeType;
+        Object nodeValue;
+        switch (type.getJDBCTypeId()) {
+        case Types.TINYINT:
+            if (!fitsInteger(value, Byte.MIN_VALUE, Byte.MAX_VALUE))
+                return null;
+            nodeType = NodeTypes.TINYINT_CONSTANT_NODE;
+            nodeValue = Byte.valueOf(value.byteValue());
+            break;
+        case Types.SMALLINT:
+            if (!fitsInteger(value, Short.MIN_VALUE, Short.MAX_VALUE))
+                return null;
+            nodeType = NodeTypes.SMALLINT_CONSTANT_NODE;
+            nodeValue = Short.valueOf(value.shortValue());
+            break;
+        case Types.INTEGER:
+            if (!fitsInteger(value, Integer.MIN_VALUE, Integer.MAX_VALUE))
+                return null;
+            nodeType = NodeTypes.INT_CONSTANT_NODE;
+            nodeValue = Integer.valueOf(value.intValue());
+            break;
+        case Types.BIGINT:
+            if (!fitsInteger(value, Long.MIN_VALUE, Long.MAX_VALUE))
+                return null;
+            nodeType = NodeTypes.LONGINT_CONSTANT_NODE;
+            nodeValue = Long.valueOf(value.longValue());
+            break;
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+            {
+                int scale = type.getScale();
+                if (value.scale() > scale) {
+                    value = value.stripTrailingZeros();
+                    if (value.scale() > scale)
+                        return null;
+                }
+                value = value.setScale(scale);
+                if (value.precision() > type.getPrecision())
+                    return null;
+                nodeType = NodeTypes.DECIMAL_CONSTANT_NODE;
+                nodeValue = value.toPlainString();
+            }
+            break;
+        default:
+            return null;
+        }
+        ValueNode constant = (ValueNode)nodeFactory.getNode(nodeType, nodeValue,
+                                                            parserContext);
+        constant.setType(type.getNullabilityType(false));
+        return constant;
+    }
+
+    protected static boolean fitsInteger(BigDecimal value, long min, long max) {
+        if (value.scale() > 0) {
+            try {
+                value = value.setScale(0);
+            }
+            catch (ArithmeticException ex) {
+                return false;
+            }
+        }
+        return ((value.compareTo(BigDecimal.valueOf(min)) >= 0) &&
+                (value.compareTo(BigDecimal.valueOf(max)) <= 0));
+    }
+
+    /** Make a constant of the given approximate type, or else return
+     * <code>null</code> if out of range. */
+    protected ValueNode getApproximateNode(double value, DataTypeDescriptor type)
+            throws StandardException {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return null;
+        ValueNode constant;
+        if (type.getJDBCTypeId() == Types.REAL) {
+            float fvalue = (float)value;
+            if (Float.isInfinite(fvalue))
+                return null;
+            constant = (ValueNode)nodeFactory.getNode(NodeTypes.FLOAT_CONSTANT_NODE,
+                                                      Float.valueOf(fvalue),
+                                                      parserContext);
+        }
+        else {
+            constant = (ValueNode)nodeFactory.getNode(NodeTypes.DOUBLE_CONSTANT_NODE,
+                                                      Double.valueOf(value),
+                                                      parserContext);
+        }
+        constant.setType(type.getNullabilityType(false));
+        return constant;
+    }
+
+    protected ValueNode getBooleanNode(boolean value) throws StandardException {
+        return (ValueNode)nodeFactory.getNode(NodeTypes.BOOLEAN_CONSTANT_NODE,
+                                              Boolean.valueOf(value),
+                                              parserContext);
+    }
+
+    /* Visitor interface */
+
+    public Visitable visit(Visitable node) throws StandardException {
+        if (node instanceof ValueNode)
+            return foldExpression((ValueNode)node);
+        return node;
+    }
+
+    public boolean visitChildrenFirst(Visitable node) {
+        return true;
+    }
+    public boolean stopTraversal() {
+        return false;
+    }
+    public boolean skipChildren(Visitable node) throws StandardException {
+        // A constant there means a column position, not a value.
+        return ((node instanceof OrderByColumn) ||
+                (node instanceof GroupByColumn));
+    }
+
+}
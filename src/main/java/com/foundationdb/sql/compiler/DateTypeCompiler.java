@@ -120,10 +120,10 @@ public class DateTypeCompiler extends TypeCompiler
                 switch (rightTypeId.getTypeFormatId()) {
                 case TypeId.FormatIds.DATE_TYPE_ID:
                     // DATE - DATE is INTERVAL DAY
-                    return new DataTypeDescriptor(TypeId.INTERVAL_DAY_ID, nullable);
+                    return DataTypeDescriptor.getType(TypeId.INTERVAL_DAY_ID, nullable);
                 default:
                     // DATE - other datetime is INTERVAL DAY TO SECOND
-                    return new DataTypeDescriptor(TypeId.INTERVAL_DAY_SECOND_ID, nullable);
+                    return DataTypeDescriptor.getType(TypeId.INTERVAL_DAY_SECOND_ID, nullable);
                 }
             }
         }
@@ -140,7 +140,7 @@ public class DateTypeCompiler extends TypeCompiler
                         return leftType.getNullabilityType(nullable);
                 }
                 // DATE +/- other interval is TIMESTAMP
-                return new DataTypeDescriptor(TypeId.TIMESTAMP_ID, nullable);
+                return DataTypeDescriptor.getType(TypeId.TIMESTAMP_ID, nullable);
             }
         }
 
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.*;
+
+import com.foundationdb.sql.StandardException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Remove duplicates from <code>IN</code> lists of constants and
+ * put numeric ones in order.
+ * <p>
+ * Numbers are compared by value, as they would be for a numeric
+ * column, so <code>1</code> and <code>1.0</code> are duplicates. An
+ * exact and an approximate number are not, even if equal, since the
+ * column is compared with them as different types.
+ * Strings are only deduplicated when exactly the same, and not
+ * reordered, since how they compare depends on the collation.
+ * <p>
+ * For each sorted list of integers or of approximate numbers, a
+ * {@link SortedConstantList} is also kept, from which probe structures
+ * can be built directly. This is an extra probe index alongside the
+ * tree, not a replacement for the constant nodes, which stay in the
+ * list: it costs memory in addition to them, held by this
+ * canonicalizer until the next statement.
+ * <p>
+ * Run this before {@link BooleanNormalizer}, so that duplicates do
+ * not count toward its limits on expanding <code>NOT IN</code>.
+ */
+public class InListCanonicalizer implements Visitor
+{
+    SQLParserContext parserContext;
+    NodeFactory nodeFactory;
+    private Map<InListOperatorNode,SortedConstantList> sortedLists =
+        new IdentityHashMap<InListOperatorNode,SortedConstantList>();
+
+    public InListCanonicalizer(SQLParserContext parserContext) {
+        this.parserContext = parserContext;
+        this.nodeFactory = parserContext.getNodeFactory();
+    }
+
+    /** Canonicalize IN lists anywhere in this statement. */
+    public StatementNode canonicalize(StatementNode stmt) throws StandardException {
+        sortedLists.clear();
+        return (StatementNode)stmt.accept(this);
+    }
+
+    /** Get the sorted values of a list canonicalized by the last
+     * {@link #canonicalize}, or <code>null</code> if it was not all
+     * integers or all approximate numbers. This is a separate copy of
+     * the values, kept only for probing; it does not follow later
+     * changes to the node. */
+    public SortedConstantList getSortedList(InListOperatorNode node) {
+        return sortedLists.get(node);
+    }
+
+    protected static final Comparator<ValueNode> NUMERIC_ORDER = new Comparator<ValueNode>() {
+            public int compare(ValueNode n1, ValueNode n2) {
+                return numericValue(n1).compareTo(numericValue(n2));
+            }
+        };
+
+    /** Canonicalize the list of a single IN. */
+    public void inListOperatorNode(InListOperatorNode node) throws StandardException {
+        RowConstructorNode rightOperandList = node.getRightOperandList();
+        if (node.getLeftOperand().listSize() != 1)
+            return;             // Row values.
+        ValueNodeList list = rightOperandList.getNodeList();
+        boolean numeric = true, character = true;
+        for (ValueNode value : list) {
+            if (numericValue(value) == null)
+                numeric = false;
+            if (!(value instanceof CharConstantNode) ||
+                (((ConstantNode)value).getValue() == null))
+                character = false;
+            if (!numeric && !character)
+                return;
+        }
+        List<ValueNode> values = new ArrayList<ValueNode>(list.size());
+        boolean changed = false;
+        if (numeric) {
+            for (ValueNode value : list) {
+                values.add(value);
+            }
+            // Stable, so the first of equal values is kept.
+            Collections.sort(values, NUMERIC_ORDER);
+            int nvalues = 0;
+            for (int i = 0; i < values.size(); i++) {
+                ValueNode value = values.get(i);
+                if (isDuplicate(value, values, nvalues))
+                    continue;
+                values.set(nvalues++, value);
+            }
+            values.subList(nvalues, values.size()).clear();
+            changed = (values.size() != list.size());
+            for (int i = 0; !changed && (i < values.size()); i++) {
+                if (values.get(i) != list.get(i)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        else {
+            Set<Object> seen = new HashSet<Object>();
+            for (ValueNode value : list) {
+                if (seen.add(((ConstantNode)value).getValue()))
+                    values.add(value);
+            }
+            changed = (values.size() < list.size());
+        }
+        if (changed) {
+            ValueNodeList newList = (ValueNodeList)
+                nodeFactory.getNode(NodeTypes.VALUE_NODE_LIST,
+                                    parserContext);
+            for (ValueNode value : values) {
+                newList.addValueNode(value);
+            }
+            node.setRightOperandList((RowConstructorNode)
+                                     nodeFactory.getNode(NodeTypes.ROW_CTOR_NODE,
+                                                         newList, 
+                                                         new int[] { rightOperandList.getDepth() },
+                                                         parserContext));
+        }
+        if (numeric) {
+            SortedConstantList sortedList = SortedConstantList.of(values);
+            if (sortedList != null)
+                sortedLists.put(node, sortedList);
+        }
+    }
+
+    /** Whether a value equal to this one and compared with the column
+     * as the same type is among the first <code>nvalues</code>, which
+     * are in order.
+     */
+    protected static boolean isDuplicate(ValueNode value, List<ValueNode> values, 
+                                         int nvalues) {
+        boolean approximate = isApproximate(value);
+        for (int i = nvalues - 1; i >= 0; i--) {
+            ValueNode other = values.get(i);
+            if (NUMERIC_ORDER.compare(other, value) != 0)
+                break;
+            if (isApproximate(other) == approximate)
+                return true;
+        }
+        return false;
+    }
+
+    protected static boolean isApproximate(ValueNode node) {
+        return ConstantFolder.isApproximateValue(((ConstantNode)node).getValue());
+    }
+
+    /** Get the value of a numeric literal, or <code>null</code>. */
+    protected static BigDecimal numericValue(ValueNode node) {
+        if (!(node instanceof NumericConstantNode))
+            return null;
+        return ConstantFolder.getComparableValue((ConstantNode)node);
+    }
+
+    /* Visitor interface */
+
+    public Visitable visit(Visitable node) throws StandardException {
+        if (node instanceof InListOperatorNode)
+            inListOperatorNode((InListOperatorNode)node);
+        return node;
+    }
+
+    public boolean visitChildrenFirst(Visitable node) {
+        return true;
+    }
+    public boolean stopTraversal() {
+        return false;
+    }
+    public boolean skipChildren(Visitable node) throws StandardException {
+        return false;
+    }
+
+}
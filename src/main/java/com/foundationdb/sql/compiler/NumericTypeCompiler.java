@@ -258,17 +258,17 @@ public final class NumericTypeCompiler extends TypeCompiler
         nullable = leftType.isNullable() || rightType.isNullable();
 
         /*
-        ** The higher type does not have the right nullability.  Create a
-        ** new DataTypeDescriptor that has the correct type and nullability.
+        ** The higher type does not have the right nullability.  Get a
+        ** DataTypeDescriptor that has the correct type and nullability.
         **
         ** It's OK to call the implementation of the DataTypeDescriptorFactory
         ** here, because we're in the same package.
         */
-        return new DataTypeDescriptor(higherType.getTypeId(),
-                                      precision,
-                                      scale,
-                                      nullable,
-                                      maximumWidth);
+        return DataTypeDescriptor.getType(higherType.getTypeId(),
+                                          precision,
+                                          scale,
+                                          nullable,
+                                          maximumWidth);
     }
 
     /** @see TypeCompiler#convertible */
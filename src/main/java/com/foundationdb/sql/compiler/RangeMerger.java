@@ -0,0 +1,487 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.*;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Merge the comparisons of a column with constants in a conjunction
+ * into the fewest conditions for the same range, or into
+ * <code>FALSE</code> if there is no such range.
+ * <p>
+ * This is meant to run on the CNF from {@link BooleanNormalizer}, so
+ * it only looks at the top-level AND operands. Within those it knows
+ * about <code>=</code>, <code>&lt;</code>, <code>&lt;=</code>,
+ * <code>&gt;</code>, <code>&gt;=</code>, <code>BETWEEN</code> and
+ * <code>IN</code> between a column and numeric literals, which is all
+ * that can be compared without knowing any collation.
+ */
+public class RangeMerger implements Visitor
+{
+    SQLParserContext parserContext;
+    NodeFactory nodeFactory;
+    private int contradictions;
+
+    public RangeMerger(SQLParserContext parserContext) {
+        this.parserContext = parserContext;
+        this.nodeFactory = parserContext.getNodeFactory();
+    }
+
+    /** Merge ranges anywhere in this statement. */
+    public StatementNode merge(StatementNode stmt) throws StandardException {
+        contradictions = 0;
+        return (StatementNode)stmt.accept(this);
+    }
+
+    /** The number of conjunctions found to be always false by the last {@link #merge}. */
+    public int getContradictions() {
+        return contradictions;
+    }
+
+    /** Merge ranges in WHERE and HAVING clauses in this SELECT node. */
+    public void selectNode(SelectNode node) throws StandardException {
+        node.setWhereClause(mergeExpression(node.getWhereClause()));
+        node.setHavingClause(mergeExpression(node.getHavingClause()));
+    }
+
+    /** Merge ranges in ON clause in this JOIN node. */
+    public void joinNode(JoinNode node) throws StandardException {
+        node.setJoinClause(mergeExpression(node.getJoinClause()));
+    }
+
+    /** One end of a range. */
+    static class Bound {
+        BigDecimal value;
+        ValueNode constant;
+        boolean inclusive;
+        boolean approximate;
+
+        Bound(BigDecimal value, ValueNode constant, boolean inclusive,
+              boolean approximate) {
+            this.value = value;
+            this.constant = constant;
+            this.inclusive = inclusive;
+            this.approximate = approximate;
+        }
+    }
+
+    /** The range of one column, and where its conditions were. */
+    static class Range {
+        List<Integer> positions = new ArrayList<Integer>();
+        List<ColumnReference> columns = new ArrayList<ColumnReference>();
+        Bound lower, upper;
+        List<Bound> values;     // null for any value in bounds
+        boolean comparisonsOnly = true;
+        // Whether any condition compares as DOUBLE or REAL, and whether
+        // any compares exactly. Bounds from both do not order the same
+        // way that the conditions do, so such ranges are left alone.
+        boolean approximate, exact;
+
+        void addKind(Bound bound) {
+            if (bound.approximate)
+                approximate = true;
+            else
+                exact = true;
+        }
+
+        boolean isMixed() {
+            return (approximate && exact);
+        }
+
+        void addLower(Bound bound) {
+            addKind(bound);
+            if (lower == null) {
+                lower = bound;
+                return;
+            }
+            int cmp = bound.value.compareTo(lower.value);
+            if ((cmp > 0) || ((cmp == 0) && !bound.inclusive))
+                lower = bound;
+        }
+
+        void addUpper(Bound bound) {
+            addKind(bound);
+            if (upper == null) {
+                upper = bound;
+                return;
+            }
+            int cmp = bound.value.compareTo(upper.value);
+            if ((cmp < 0) || ((cmp == 0) && !bound.inclusive))
+                upper = bound;
+        }
+
+        void addValues(List<Bound> newValues) {
+            List<Bound> kept = new ArrayList<Bound>();
+            for (Bound value : newValues) {
+                addKind(value);
+                if (values != null) {
+                    value = find(values, value);
+                    if (value == null)
+                        continue;
+                }
+                if (find(kept, value) == null)
+                    kept.add(value);
+            }
+            values = kept;
+        }
+
+        static Bound find(List<Bound> values, Bound value) {
+            for (Bound other : values) {
+                if (other.value.compareTo(value.value) == 0)
+                    return other;
+            }
+            return null;
+        }
+
+        boolean inBounds(Bound value) {
+            if (lower != null) {
+                int cmp = value.value.compareTo(lower.value);
+                if ((cmp < 0) || ((cmp == 0) && !lower.inclusive))
+                    return false;
+            }
+            if (upper != null) {
+                int cmp = value.value.compareTo(upper.value);
+                if ((cmp > 0) || ((cmp == 0) && !upper.inclusive))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /** Merge ranges in the top-level conjunction of a boolean expression. */
+    public ValueNode mergeExpression(ValueNode boolClause) throws StandardException {
+        if ((boolClause == null) || (boolClause.getNodeType() != NodeTypes.AND_NODE))
+            return boolClause;
+
+        List<AndNode> links = new ArrayList<AndNode>();
+        List<ValueNode> operands = new ArrayList<ValueNode>();
+        Deque<ValueNode> pending = new ArrayDeque<ValueNode>();
+        pending.push(boolClause);
+        while (!pending.isEmpty()) {
+            ValueNode next = pending.pop();
+            if (next.getNodeType() == NodeTypes.AND_NODE) {
+                AndNode andNode = (AndNode)next;
+                links.add(andNode);
+                pending.push(andNode.getRightOperand());
+                pending.push(andNode.getLeftOperand());
+            }
+            else {
+                operands.add(next);
+            }
+        }
+
+        Map<List<String>,Range> ranges = new LinkedHashMap<List<String>,Range>();
+        for (int i = 0; i < operands.size(); i++) {
+            addCondition(operands.get(i), i, ranges);
+        }
+        boolean changed = false;
+        for (Range range : ranges.values()) {
+            if ((range.positions.size() > 1) && !range.isMixed() &&
+                mergeRange(range, operands))
+                changed = true;
+        }
+        if (!changed)
+            return boolClause;
+
+        int noperands = 0;
+        for (ValueNode operand : operands) {
+            if (operand != null)
+                operands.set(noperands++, operand);
+        }
+        if (noperands == 1)
+            return operands.get(0);
+        for (int i = 0; i < noperands - 1; i++) {
+            AndNode link = links.get(i);
+            link.setLeftOperand(operands.get(i));
+            link.setRightOperand((i < noperands - 2) ? links.get(i + 1) : operands.get(noperands - 1));
+        }
+        return links.get(0);
+    }
+
+    /** Add the range of a single condition, if it is one. */
+    protected void addCondition(ValueNode condition, int position, 
+                                Map<List<String>,Range> ranges) 
+            throws StandardException {
+        switch (condition.getNodeType()) {
+        case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
+            {
+                BinaryComparisonOperatorNode comparison = (BinaryComparisonOperatorNode)condition;
+                ValueNode leftOperand = comparison.getLeftOperand();
+                ValueNode rightOperand = comparison.getRightOperand();
+                int nodeType = condition.getNodeType();
+                if (!isColumn(leftOperand)) {
+                    ValueNode temp = leftOperand;
+                    leftOperand = rightOperand;
+                    rightOperand = temp;
+                    nodeType = reverseComparison(nodeType);
+                }
+                if (!isColumn(leftOperand))
+                    return;
+                Bound bound = getBound(rightOperand);
+                if (bound == null)
+                    return;
+                Range range = getRange((ColumnReference)leftOperand, position, ranges);
+                switch (nodeType) {
+                case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
+                    List<Bound> values = new ArrayList<Bound>(1);
+                    values.add(bound);
+                    range.addValues(values);
+                    break;
+                case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
+                    bound.inclusive = false;
+                    /* falls through */
+                case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
+                    range.addLower(bound);
+                    break;
+                case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
+                    bound.inclusive = false;
+                    /* falls through */
+                case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
+                    range.addUpper(bound);
+                    break;
+                }
+            }
+            break;
+        case NodeTypes.BETWEEN_OPERATOR_NODE:
+            {
+                BetweenOperatorNode between = (BetweenOperatorNode)condition;
+                ValueNodeList rightOperandList = between.getRightOperandList();
+                if (!isColumn(between.getLeftOperand()))
+                    return;
+                Bound lower = getBound(rightOperandList.get(0));
+                Bound upper = getBound(rightOperandList.get(1));
+                if ((lower == null) || (upper == null))
+                    return;
+                Range range = getRange((ColumnReference)between.getLeftOperand(), 
+                                       position, ranges);
+                range.comparisonsOnly = false;
+                range.addLower(lower);
+                range.addUpper(upper);
+            }
+            break;
+        case NodeTypes.IN_LIST_OPERATOR_NODE:
+            {
+                InListOperatorNode inList = (InListOperatorNode)condition;
+                RowConstructorNode leftOperand = inList.getLeftOperand();
+                RowConstructorNode rightOperandList = inList.getRightOperandList();
+                if (inList.isNegated() || 
+                    (leftOperand.listSize() != 1) ||
+                    !isColumn(leftOperand.getNodeList().get(0)))
+                    return;
+                List<Bound> values = new ArrayList<Bound>(rightOperandList.listSize());
+                for (ValueNode value : rightOperandList.getNodeList()) {
+                    Bound bound = getBound(value);
+                    if (bound == null)
+                        return;
+                    values.add(bound);
+                }
+                Range range = getRange((ColumnReference)leftOperand.getNodeList().get(0), 
+                                       position, ranges);
+                range.comparisonsOnly = false;
+                range.addValues(values);
+            }
+            break;
+        }
+    }
+
+    /** Replace the conditions of a range with the merged ones.
+     * @return whether anything changed
+     */
+    protected boolean mergeRange(Range range, List<ValueNode> operands)
+            throws StandardException {
+        List<Integer> positions = range.positions;
+        List<ValueNode> merged = new ArrayList<ValueNode>(2);
+        if (range.values != null) {
+            List<Bound> values = new ArrayList<Bound>(range.values.size());
+            for (Bound value : range.values) {
+                if (range.inBounds(value))
+                    values.add(value);
+            }
+            if (values.size() == 1) {
+                merged.add(getComparison(NodeTypes.BINARY_EQUALS_OPERATOR_NODE,
+                                         range, 0, values.get(0), operands));
+            }
+            else if (values.size() > 1) {
+                merged.add(getInList(range, values, operands));
+            }
+        }
+        else {
+            Bound lower = range.lower;
+            Bound upper = range.upper;
+            int cmp = ((lower == null) || (upper == null)) ? -1 :
+                lower.value.compareTo(upper.value);
+            if (cmp == 0) {
+                if (lower.inclusive && upper.inclusive)
+                    merged.add(getComparison(NodeTypes.BINARY_EQUALS_OPERATOR_NODE,
+                                             range, 0, lower, operands));
+            }
+            else if (cmp < 0) {
+                if (lower != null)
+                    merged.add(getComparison(lower.inclusive ? 
+                                             NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE :
+                                             NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE,
+                                             range, merged.size(), lower, operands));
+                if (upper != null)
+                    merged.add(getComparison(upper.inclusive ? 
+                                             NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE :
+                                             NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE,
+                                             range, merged.size(), upper, operands));
+            }
+        }
+        if (merged.isEmpty()) {
+            contradictions++;
+            merged.add((ValueNode)nodeFactory.getNode(NodeTypes.BOOLEAN_CONSTANT_NODE,
+                                                      Boolean.FALSE,
+                                                      parserContext));
+        }
+        else if ((merged.size() == positions.size()) && range.comparisonsOnly) {
+            // Already as simple as it gets.
+            return false;
+        }
+        for (int i = 0; i < positions.size(); i++) {
+            operands.set(positions.get(i), (i < merged.size()) ? merged.get(i) : null);
+        }
+        return true;
+    }
+
+    protected ValueNode getComparison(int nodeType, Range range, int index, Bound bound,
+                                      List<ValueNode> operands)
+            throws StandardException {
+        ValueNode comparison = (ValueNode)
+            nodeFactory.getNode(nodeType,
+                                range.columns.get(index), bound.constant,
+                                parserContext);
+        comparison.setType(operands.get(range.positions.get(index)).getType());
+        return comparison;
+    }
+
+    protected ValueNode getInList(Range range, List<Bound> values, 
+                                  List<ValueNode> operands)
+            throws StandardException {
+        ValueNodeList list = (ValueNodeList)
+            nodeFactory.getNode(NodeTypes.VALUE_NODE_LIST,
+                                parserContext);
+        for (Bound value : values) {
+            list.addValueNode(value.constant);
+        }
+        RowConstructorNode rightOperandList = (RowConstructorNode)
+            nodeFactory.getNode(NodeTypes.ROW_CTOR_NODE,
+                                list, new int[] { 1 },
+                                parserContext);
+        ValueNode inList = (ValueNode)
+            nodeFactory.getNode(NodeTypes.IN_LIST_OPERATOR_NODE,
+                                range.columns.get(0), rightOperandList,
+                                parserContext);
+        inList.setType(operands.get(range.positions.get(0)).getType());
+        return inList;
+    }
+
+    protected static boolean isColumn(ValueNode node) {
+        if (!(node instanceof ColumnReference))
+            return false;
+        DataTypeDescriptor type = node.getType();
+        return ((type == null) || type.getTypeId().isNumericTypeId());
+    }
+
+    /** Get the value of a numeric literal, or <code>null</code>. */
+    protected static Bound getBound(ValueNode node) {
+        if (!(node instanceof NumericConstantNode))
+            return null;
+        BigDecimal value = ConstantFolder.getComparableValue((ConstantNode)node);
+        if (value == null)
+            return null;
+        return new Bound(value, node, true,
+                         ConstantFolder.isApproximateValue(((ConstantNode)node).getValue()));
+    }
+
+    protected Range getRange(ColumnReference column, int position, 
+                             Map<List<String>,Range> ranges) {
+        // The whole name, since the same table name in another schema
+        // is another column.
+        TableName tableName = column.getTableNameNode();
+        List<String> key = Arrays.asList((tableName == null) ? null : tableName.getSchemaName(),
+                                         (tableName == null) ? null : tableName.getTableName(),
+                                         column.getColumnName());
+        Range range = ranges.get(key);
+        if (range == null) {
+            range = new Range();
+            ranges.put(key, range);
+        }
+        range.positions.add(position);
+        range.columns.add(column);
+        // Even exact constants are compared with it as DOUBLE or REAL.
+        if ((column.getType() != null) && ConstantFolder.isApproximate(column.getType()))
+            range.approximate = true;
+        return range;
+    }
+
+    protected static int reverseComparison(int nodeType) {
+        switch (nodeType) {
+        case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
+            return NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE;
+        case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
+            return NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE;
+        case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
+            return NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE;
+        case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
+            return NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE;
+        default:
+            return nodeType;
+        }
+    }
+
+    /* Visitor interface */
+
+    public Visitable visit(Visitable node) throws StandardException {
+        switch (((QueryTreeNode)node).getNodeType()) {
+        case NodeTypes.SELECT_NODE:
+            selectNode((SelectNode)node);
+            break;
+        case NodeTypes.JOIN_NODE:
+        case NodeTypes.HALF_OUTER_JOIN_NODE:
+            joinNode((JoinNode)node);
+            break;
+        }
+        return node;
+    }
+
+    public boolean visitChildrenFirst(Visitable node) {
+        return true;
+    }
+    public boolean stopTraversal() {
+        return false;
+    }
+    public boolean skipChildren(Visitable node) throws StandardException {
+        return false;
+    }
+
+}
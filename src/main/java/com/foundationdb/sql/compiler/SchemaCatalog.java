@@ -0,0 +1,235 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The tables, columns and column types that statements are bound
+ * against by {@link ColumnBinder}.
+ * <p>
+ * A catalog is made with a {@link Builder} and does not change
+ * after that, so it can be shared between threads. Tables are found
+ * by schema and name, and columns within a table by name, through
+ * hash maps, so lookup does not depend on how many tables or columns
+ * there are.
+ */
+public class SchemaCatalog
+{
+    /** A column of a catalog table. */
+    public static class Column {
+        private final Table table;
+        private final String name;
+        private final DataTypeDescriptor type;
+        private final int position;
+
+        Column(Table table, String name, DataTypeDescriptor type, int position) {
+            this.table = table;
+            this.name = name;
+            this.type = type;
+            this.position = position;
+        }
+
+        public Table getTable() {
+            return table;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public DataTypeDescriptor getType() {
+            return type;
+        }
+
+        /** The zero-based position of this column in its table. */
+        public int getPosition() {
+            return position;
+        }
+
+        public String toString() {
+            return table + "." + name;
+        }
+    }
+
+    /** A catalog table. */
+    public static class Table {
+        private final String schemaName, tableName;
+        private final List<Column> columns = new ArrayList<Column>();
+        private final Map<String,Column> columnsByName = new HashMap<String,Column>();
+
+        Table(String schemaName, String tableName) {
+            this.schemaName = schemaName;
+            this.tableName = tableName;
+        }
+
+        public String getSchemaName() {
+            return schemaName;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        /** The columns in order. */
+        public List<Column> getColumns() {
+            return Collections.unmodifiableList(columns);
+        }
+
+        /** The named column, or <code>null</code> if there is none. */
+        public Column getColumn(String name) {
+            return columnsByName.get(name);
+        }
+
+        public String toString() {
+            return schemaName + "." + tableName;
+        }
+    }
+
+    /** Collect the tables for a new catalog. */
+    public static class Builder {
+        private String defaultSchema;
+        private Map<String,Map<String,Table>> schemas =
+            new LinkedHashMap<String,Map<String,Table>>();
+        private Table table;
+
+        /**
+         * @param defaultSchema the schema of tables whose name is not
+         * qualified, or <code>null</code> to look for any table by that
+         * name, as long as there is only one.
+         */
+        public Builder(String defaultSchema) {
+            this.defaultSchema = defaultSchema;
+        }
+
+        /** Start a new table, to which {@link #addColumn} adds. */
+        public Builder addTable(String schemaName, String tableName)
+                throws StandardException {
+            checkBuilding();
+            Map<String,Table> tables = schemas.get(schemaName);
+            if (tables == null) {
+                tables = new LinkedHashMap<String,Table>();
+                schemas.put(schemaName, tables);
+            }
+            if (tables.containsKey(tableName))
+                throw new StandardException("Duplicate table: " +
+                                            schemaName + "." + tableName);
+            table = new Table(schemaName, tableName);
+            tables.put(tableName, table);
+            return this;
+        }
+
+        /** Add a column to the last table added. */
+        public Builder addColumn(String name, DataTypeDescriptor type)
+                throws StandardException {
+            checkBuilding();
+            if (table == null)
+                throw new StandardException("No table for column " + name);
+            if (table.columnsByName.containsKey(name))
+                throw new StandardException("Duplicate column: " + table + "." + name);
+            Column column = new Column(table, name, type, table.columns.size());
+            table.columns.add(column);
+            table.columnsByName.put(name, column);
+            return this;
+        }
+
+        /** Make the catalog. The builder cannot be used after that. */
+        public SchemaCatalog build() {
+            checkBuilding();
+            SchemaCatalog catalog = new SchemaCatalog(defaultSchema, schemas);
+            schemas = null;
+            return catalog;
+        }
+
+        private void checkBuilding() {
+            if (schemas == null)
+                throw new IllegalStateException("Catalog already built");
+        }
+    }
+
+    private final String defaultSchema;
+    private final Map<String,Map<String,Table>> schemas;
+    // Unqualified name to the only table by that name, or null if more than one.
+    private final Map<String,Table> tablesByName;
+
+    private SchemaCatalog(String defaultSchema, Map<String,Map<String,Table>> schemas) {
+        this.defaultSchema = defaultSchema;
+        this.schemas = schemas;
+        if (defaultSchema == null) {
+            tablesByName = new HashMap<String,Table>();
+            for (Map<String,Table> tables : schemas.values()) {
+                for (Table table : tables.values()) {
+                    if (tablesByName.containsKey(table.tableName))
+                        tablesByName.put(table.tableName, null);
+                    else
+                        tablesByName.put(table.tableName, table);
+                }
+            }
+        }
+        else {
+            tablesByName = null;
+        }
+    }
+
+    public String getDefaultSchema() {
+        return defaultSchema;
+    }
+
+    /** Find a table.
+     * @param schemaName the schema, or <code>null</code> for the default.
+     * @return the table or <code>null</code> if there is none.
+     * @throws StandardException if there is no default schema and the
+     * name is in more than one schema.
+     */
+    public Table getTable(String schemaName, String tableName)
+            throws StandardException {
+        if (schemaName == null) {
+            if (defaultSchema != null) {
+                schemaName = defaultSchema;
+            }
+            else {
+                if (!tablesByName.containsKey(tableName))
+                    return null;
+                Table table = tablesByName.get(tableName);
+                if (table == null)
+                    throw new StandardException("Ambiguous table name: " + tableName);
+                return table;
+            }
+        }
+        Map<String,Table> tables = schemas.get(schemaName);
+        if (tables == null)
+            return null;
+        return tables.get(tableName);
+    }
+
+    /** All the tables, by schema. */
+    public List<Table> getTables() {
+        List<Table> result = new ArrayList<Table>();
+        for (Map<String,Table> tables : schemas.values()) {
+            result.addAll(tables.values());
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.ConstantNode;
+import com.foundationdb.sql.parser.NumericConstantNode;
+import com.foundationdb.sql.parser.ValueNode;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/** The values of a sorted, duplicate-free list of numeric constants,
+ * held in a primitive array so that they can be probed by binary
+ * search without going back to the nodes.
+ * @see InListCanonicalizer
+ */
+public abstract class SortedConstantList
+{
+    public abstract int size();
+
+    /** Is this value (of any numeric type) in the list? */
+    public abstract boolean contains(BigDecimal value);
+
+    /** A list of exact integers. */
+    public static class Longs extends SortedConstantList {
+        private final long[] values;
+
+        public Longs(long[] values) {
+            this.values = values;
+        }
+
+        public int size() {
+            return values.length;
+        }
+
+        public long get(int index) {
+            return values[index];
+        }
+
+        public boolean contains(long value) {
+            return (Arrays.binarySearch(values, value) >= 0);
+        }
+
+        public boolean contains(BigDecimal value) {
+            try {
+                return contains(value.longValueExact());
+            }
+            catch (ArithmeticException ex) {
+                return false;   // Fractional or out of range.
+            }
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+
+    /** A list of approximate numbers. If they are all
+     * <code>REAL</code>, values are looked up at that precision, since
+     * that is how they are compared with them.
+     */
+    public static class Doubles extends SortedConstantList {
+        private final double[] values;
+        private final boolean real;
+
+        public Doubles(double[] values) {
+            this(values, false);
+        }
+
+        public Doubles(double[] values, boolean real) {
+            this.values = values;
+            this.real = real;
+        }
+
+        public int size() {
+            return values.length;
+        }
+
+        public double get(int index) {
+            return values[index];
+        }
+
+        public boolean isReal() {
+            return real;
+        }
+
+        public boolean contains(double value) {
+            if (real)
+                value = (float)value;
+            return (Arrays.binarySearch(values, value) >= 0);
+        }
+
+        public boolean contains(BigDecimal value) {
+            if (real)
+                // Straight to float, not by way of double.
+                return (Arrays.binarySearch(values, value.floatValue()) >= 0);
+            return contains(value.doubleValue());
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+
+    /** Make a list from already sorted and distinct constant nodes.
+     * @return <code>null</code> if they are not all integers or all approximate.
+     */
+    public static SortedConstantList of(List<? extends ValueNode> nodes) {
+        int size = nodes.size();
+        if (size == 0) 
+            return null;
+        Object first = constantValue(nodes.get(0));
+        if (isInteger(first)) {
+            long[] values = new long[size];
+            for (int i = 0; i < size; i++) {
+                Object value = constantValue(nodes.get(i));
+                if (!isInteger(value))
+                    return null;
+                values[i] = ((Number)value).longValue();
+            }
+            return new Longs(values);
+        }
+        if (isApproximate(first)) {
+            double[] values = new double[size];
+            boolean real = true;
+            for (int i = 0; i < size; i++) {
+                Object value = constantValue(nodes.get(i));
+                if (!isApproximate(value))
+                    return null;
+                if (!(value instanceof Float))
+                    real = false;
+                values[i] = ((Number)value).doubleValue();
+            }
+            return new Doubles(values, real);
+        }
+        return null;
+    }
+
+    protected static Object constantValue(ValueNode node) {
+        if (node instanceof NumericConstantNode)
+            return ((ConstantNode)node).getValue();
+        return null;
+    }
+
+    protected static boolean isInteger(Object value) {
+        return ((value instanceof Long) || (value instanceof Integer) ||
+                (value instanceof Short) || (value instanceof Byte));
+    }
+
+    protected static boolean isApproximate(Object value) {
+        return ((value instanceof Double) || (value instanceof Float));
+    }
+
+}
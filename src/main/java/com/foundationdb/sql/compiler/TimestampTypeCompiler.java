@@ -143,7 +143,7 @@ public class TimestampTypeCompiler extends TypeCompiler
         if (rightTypeId.isDateTimeTimeStampTypeId()) {
             if (operator.equals(TypeCompiler.MINUS_OP)) {
                 // TIMESTAMP - other datetime is INTERVAL DAY TO SECOND
-                return new DataTypeDescriptor(TypeId.INTERVAL_DAY_SECOND_ID, nullable);
+                return DataTypeDescriptor.getType(TypeId.INTERVAL_DAY_SECOND_ID, nullable);
             }
         }
         else if (rightTypeId.isIntervalTypeId()) {
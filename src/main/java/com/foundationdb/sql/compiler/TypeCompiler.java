@@ -225,30 +225,31 @@ public abstract class TypeCompiler
     }
 
     // These are all the TypeCompilers that are stateless, so we can
-    // use a single instance of each. Initialize all to null, and fault
-    // them in.
-    private static TypeCompiler bitTypeCompiler;
-    private static TypeCompiler booleanTypeCompiler;
-    private static TypeCompiler charTypeCompiler;
-    private static TypeCompiler decimalTypeCompiler;
-    private static TypeCompiler doubleTypeCompiler;
-    private static TypeCompiler intTypeCompiler;
-    private static TypeCompiler longintTypeCompiler;
-    private static TypeCompiler longvarbitTypeCompiler;
-    private static TypeCompiler longvarcharTypeCompiler;
-    private static TypeCompiler realTypeCompiler;
-    private static TypeCompiler smallintTypeCompiler;
-    private static TypeCompiler tinyintTypeCompiler;
-    private static TypeCompiler dateTypeCompiler;
-    private static TypeCompiler timeTypeCompiler;
-    private static TypeCompiler timestampTypeCompiler;
-    private static TypeCompiler varbitTypeCompiler;
-    private static TypeCompiler varcharTypeCompiler;
-    private static TypeCompiler refTypeCompiler;
-    private static TypeCompiler blobTypeCompiler;
-    private static TypeCompiler clobTypeCompiler;
-    private static TypeCompiler xmlTypeCompiler;
-    private static TypeCompiler intervalMonthTypeCompiler, intervalSecondTypeCompiler;
+    // use a single instance of each. They are all made up front, so
+    // that they are safely published to every thread.
+    private static final TypeCompiler bitTypeCompiler = new BitTypeCompiler(TypeId.BIT_ID);
+    private static final TypeCompiler booleanTypeCompiler = new BooleanTypeCompiler(TypeId.BOOLEAN_ID);
+    private static final TypeCompiler charTypeCompiler = new CharTypeCompiler(TypeId.CHAR_ID);
+    private static final TypeCompiler decimalTypeCompiler = new NumericTypeCompiler(TypeId.DECIMAL_ID);
+    private static final TypeCompiler doubleTypeCompiler = new NumericTypeCompiler(TypeId.DOUBLE_ID);
+    private static final TypeCompiler intTypeCompiler = new NumericTypeCompiler(TypeId.INTEGER_ID);
+    private static final TypeCompiler longintTypeCompiler = new NumericTypeCompiler(TypeId.BIGINT_ID);
+    private static final TypeCompiler longvarbitTypeCompiler = new BitTypeCompiler(TypeId.LONGVARBIT_ID);
+    private static final TypeCompiler longvarcharTypeCompiler = new CharTypeCompiler(TypeId.LONGVARCHAR_ID);
+    private static final TypeCompiler realTypeCompiler = new NumericTypeCompiler(TypeId.REAL_ID);
+    private static final TypeCompiler smallintTypeCompiler = new NumericTypeCompiler(TypeId.SMALLINT_ID);
+    private static final TypeCompiler tinyintTypeCompiler = new NumericTypeCompiler(TypeId.TINYINT_ID);
+    private static final TypeCompiler dateTypeCompiler = new DateTypeCompiler(TypeId.DATE_ID);
+    private static final TypeCompiler timeTypeCompiler = new TimeTypeCompiler(TypeId.TIME_ID);
+    private static final TypeCompiler timestampTypeCompiler = new TimestampTypeCompiler(TypeId.TIMESTAMP_ID);
+    private static final TypeCompiler varbitTypeCompiler = new BitTypeCompiler(TypeId.VARBIT_ID);
+    private static final TypeCompiler varcharTypeCompiler = new CharTypeCompiler(TypeId.VARCHAR_ID);
+    private static final TypeCompiler refTypeCompiler = new RefTypeCompiler(TypeId.REF_ID);
+    private static final TypeCompiler blobTypeCompiler = new LOBTypeCompiler(TypeId.BLOB_ID);
+    private static final TypeCompiler clobTypeCompiler = new CLOBTypeCompiler(TypeId.CLOB_ID);
+    private static final TypeCompiler xmlTypeCompiler = new XMLTypeCompiler(TypeId.XML_ID);
+    private static final TypeCompiler intervalMonthTypeCompiler = new IntervalTypeCompiler(TypeId.INTERVAL_YEAR_MONTH_ID);
+    private static final TypeCompiler intervalSecondTypeCompiler = new IntervalTypeCompiler(TypeId.INTERVAL_DAY_SECOND_ID);
 
     /**
      * Get the TypeCompiler that corresponds to the given TypeId.
@@ -256,118 +257,74 @@ public abstract class TypeCompiler
     public static TypeCompiler getTypeCompiler(TypeId typeId) {
         switch (typeId.getJDBCTypeId()) {
         case Types.BINARY:
-            if (bitTypeCompiler == null)
-                bitTypeCompiler = new BitTypeCompiler(typeId);
             return bitTypeCompiler;
 
         case Types.BIT:
         case Types.BOOLEAN:
-            if (booleanTypeCompiler == null)
-                booleanTypeCompiler = new BooleanTypeCompiler(typeId);
             return booleanTypeCompiler;
 
         case Types.CHAR:
-            if (charTypeCompiler == null)
-                charTypeCompiler = new CharTypeCompiler(typeId);
             return charTypeCompiler;
 
         case Types.NUMERIC:
         case Types.DECIMAL:
-            if (decimalTypeCompiler == null)
-                decimalTypeCompiler = new NumericTypeCompiler(typeId);
             return decimalTypeCompiler;
 
         case Types.DOUBLE:
-            if (doubleTypeCompiler == null)
-                doubleTypeCompiler = new NumericTypeCompiler(typeId);
             return doubleTypeCompiler;
 
         case Types.INTEGER:
-            if (intTypeCompiler == null)
-                intTypeCompiler = new NumericTypeCompiler(typeId);
             return intTypeCompiler;
 
         case Types.BIGINT:
-            if (longintTypeCompiler == null)
-                longintTypeCompiler = new NumericTypeCompiler(typeId);
             return longintTypeCompiler;
 
         case Types.BLOB:
-            if (blobTypeCompiler == null)
-                blobTypeCompiler = new LOBTypeCompiler(typeId);
             return blobTypeCompiler;
 
         case Types.LONGVARBINARY:
-            if (longvarbitTypeCompiler == null)
-                longvarbitTypeCompiler = new BitTypeCompiler(typeId);
             return longvarbitTypeCompiler;
 
         case Types.CLOB:
-            if (clobTypeCompiler == null)
-                clobTypeCompiler = new CLOBTypeCompiler(typeId);
             return clobTypeCompiler;
 
         case Types.LONGVARCHAR:
-            if (longvarcharTypeCompiler == null)
-                longvarcharTypeCompiler = new CharTypeCompiler(typeId);
             return longvarcharTypeCompiler;
 
         case Types.REAL:
-            if (realTypeCompiler == null)
-                realTypeCompiler = new NumericTypeCompiler(typeId);
             return realTypeCompiler;
 
         case Types.SMALLINT:
-            if (smallintTypeCompiler == null)
-                smallintTypeCompiler = new NumericTypeCompiler(typeId);
             return smallintTypeCompiler;
 
         case Types.TINYINT:
-            if (tinyintTypeCompiler == null)
-                tinyintTypeCompiler = new NumericTypeCompiler(typeId);
             return tinyintTypeCompiler;
 
         case Types.DATE:
-            if (dateTypeCompiler == null)
-                dateTypeCompiler = new DateTypeCompiler(typeId);
             return dateTypeCompiler;
 
         case Types.TIME:
-            if (timeTypeCompiler == null)
-                timeTypeCompiler = new TimeTypeCompiler(typeId);
             return timeTypeCompiler;
 
         case Types.TIMESTAMP:
-            if (timestampTypeCompiler == null)
-                timestampTypeCompiler = new TimestampTypeCompiler(typeId);
             return timestampTypeCompiler;
 
         case Types.VARBINARY:
-            if (varbitTypeCompiler == null)
-                varbitTypeCompiler = new BitTypeCompiler(typeId);
             return varbitTypeCompiler;
 
         case Types.VARCHAR:
-            if (varcharTypeCompiler == null)
-                varcharTypeCompiler = new CharTypeCompiler(typeId);
             return varcharTypeCompiler;
 
         case Types.JAVA_OBJECT:
         case Types.OTHER:
             if (typeId.isRefTypeId()) {
-                if (refTypeCompiler == null)
-                    refTypeCompiler = new RefTypeCompiler(typeId);
                 return refTypeCompiler;
             }
             else if (typeId.isIntervalTypeId()) {
                 switch (typeId.getTypeFormatId()) {
                 case TypeId.FormatIds.INTERVAL_YEAR_MONTH_ID:
-                    if (intervalMonthTypeCompiler == null)
-                        intervalMonthTypeCompiler = new IntervalTypeCompiler(typeId);
                     return intervalMonthTypeCompiler;
                 case TypeId.FormatIds.INTERVAL_DAY_SECOND_ID:                        
-                    if (intervalSecondTypeCompiler == null)
-                        intervalSecondTypeCompiler = new IntervalTypeCompiler(typeId);
                     return intervalSecondTypeCompiler;
                 default:
                     return null;
@@ -380,8 +337,6 @@ public abstract class TypeCompiler
             }
 
         case Types.SQLXML:
-            if (xmlTypeCompiler == null)
-                xmlTypeCompiler = new XMLTypeCompiler(typeId);
             return xmlTypeCompiler;
 
         default:
@@ -24,15 +24,53 @@ import com.foundationdb.sql.types.CharacterTypeAttributes;
 import com.foundationdb.sql.types.DataTypeDescriptor;
 import com.foundationdb.sql.types.TypeId;
 
-
-/** Calculate types from schema information. */
+import java.util.Arrays;
+
+/** Calculate types from schema information.
+ * <p>
+ * Types are only computed where needed: for nodes that do not have one
+ * yet, nodes one of whose operands has been replaced (see {@link
+ * ValueNode#isTypeStale}), and, going up from those, nodes one of whose
+ * operands got a different type. So after a rewrite, only the spine
+ * above the change is typed again, although the whole tree is still
+ * visited to find it.
+ */
 public class TypeComputer implements Visitor
 {
+    // Whether to compute every type, not just the ones that might have changed.
+    private boolean all;
+    // For each node being visited, whether one of its children's types changed.
+    private boolean[] childChanged = new boolean[16];
+    private int depth;
+
     public TypeComputer() {
     }
 
+    /** Compute types that are missing or might be out of date. */
     public void compute(StatementNode stmt) throws StandardException {
-        stmt.accept(this);
+        computeTypes(stmt);
+    }
+
+    /** Compute all types again. */
+    public void computeAll(StatementNode stmt) throws StandardException {
+        all = true;
+        try {
+            computeTypes(stmt);
+        }
+        finally {
+            all = false;
+        }
+    }
+
+    protected void computeTypes(StatementNode stmt) throws StandardException {
+        // Put the change stack back even if the traversal fails part way.
+        int startDepth = depth;
+        try {
+            stmt.accept(this);
+        }
+        finally {
+            depth = startDepth;
+        }
     }
     
     protected ValueNode setType(ValueNode node) throws StandardException {
@@ -46,7 +84,8 @@ public class TypeComputer implements Visitor
     }
 
     /** Probably need to subclass and handle <code>NodeTypes.COLUMN_REFERENCE</code>
-     * to get type propagation started. */
+     * to get type propagation started, unless {@link ColumnBinder} has
+     * already typed them. */
     protected DataTypeDescriptor computeType(ValueNode node) throws StandardException {
         switch (node.getNodeType()) {
         case NodeTypes.RESULT_COLUMN:
@@ -87,11 +126,11 @@ public class TypeComputer implements Visitor
             return concatenationOperatorNode((ConcatenationOperatorNode)node);
         case NodeTypes.IS_NULL_NODE:
         case NodeTypes.IS_NOT_NULL_NODE:
-            return new DataTypeDescriptor(TypeId.BOOLEAN_ID, false);
+            return DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, false);
         case NodeTypes.NEXT_SEQUENCE_NODE:
-            return new DataTypeDescriptor(TypeId.BIGINT_ID, false);
+            return DataTypeDescriptor.getType(TypeId.BIGINT_ID, false);
         case NodeTypes.CURRENT_SEQUENCE_NODE:
-            return new DataTypeDescriptor(TypeId.BIGINT_ID, false);
+            return DataTypeDescriptor.getType(TypeId.BIGINT_ID, false);
         default:
             // assert false;
             return null;
@@ -128,7 +167,7 @@ public class TypeComputer implements Visitor
         DataTypeDescriptor type = operand.getType();
         if ((type != null) &&
             !type.getTypeId().isBooleanTypeId()) {
-            type = new DataTypeDescriptor(TypeId.BOOLEAN_ID, type.isNullable());
+            type = DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, type.isNullable());
             operand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE, 
                          operand, type, 
@@ -136,7 +175,7 @@ public class TypeComputer implements Visitor
             node.setOperand(operand);
         }
         if ((type == null) && isParameterOrUntypedNull(operand)) {
-            type = new DataTypeDescriptor(TypeId.BOOLEAN_ID, true);
+            type = DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, true);
             operand.setType(type);
         }
         return type;
@@ -150,7 +189,7 @@ public class TypeComputer implements Visitor
         DataTypeDescriptor rightType = rightOperand.getType();
         if ((leftType != null) &&
             !leftType.getTypeId().isBooleanTypeId()) {
-            leftType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, leftType.isNullable());
+            leftType = DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, leftType.isNullable());
             leftOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE, 
                          leftOperand, leftType, 
@@ -158,12 +197,12 @@ public class TypeComputer implements Visitor
             node.setLeftOperand(leftOperand);
         }
         if ((leftType == null) && isParameterOrUntypedNull(leftOperand)) {
-            leftType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, true);
+            leftType = DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, true);
             leftOperand.setType(leftType);
         }
         if ((rightType != null) &&
             !rightType.getTypeId().isBooleanTypeId()) {
-            rightType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, rightType.isNullable());
+            rightType = DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, rightType.isNullable());
             rightOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE, 
                          rightOperand, rightType, 
@@ -171,11 +210,11 @@ public class TypeComputer implements Visitor
             node.setRightOperand(rightOperand);
         }
         if ((rightType == null) && isParameterOrUntypedNull(rightOperand)) {
-            rightType = new DataTypeDescriptor(TypeId.BOOLEAN_ID, true);
+            rightType = DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, true);
             rightOperand.setType(rightType);
         }
         if (node.getNodeType() == NodeTypes.IS_NODE)
-            return new DataTypeDescriptor(TypeId.BOOLEAN_ID, false);
+            return DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, false);
         if (leftType == null) 
             return rightType;
         else if (rightType == null)
@@ -227,9 +266,9 @@ public class TypeComputer implements Visitor
             leftOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE,
                          leftOperand, 
-                         new DataTypeDescriptor(rightTypeId, precision,
-                                                scale, nullableResult, 
-                                                maxWidth),
+                         DataTypeDescriptor.getType(rightTypeId, precision,
+                                                    scale, nullableResult, 
+                                                    maxWidth),
                          node.getParserContext());
             node.setLeftOperand(leftOperand);
         }
@@ -255,9 +294,9 @@ public class TypeComputer implements Visitor
             rightOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE,
                          rightOperand, 
-                         new DataTypeDescriptor(leftTypeId, precision,
-                                                scale, nullableResult, 
-                                                maxWidth),
+                         DataTypeDescriptor.getType(leftTypeId, precision,
+                                                    scale, nullableResult, 
+                                                    maxWidth),
                          node.getParserContext());
             node.setRightOperand(rightOperand);
         }
@@ -350,7 +389,7 @@ public class TypeComputer implements Visitor
         */
         boolean nullableResult = leftOperand.getType().isNullable() ||
                                  rightOperand.getType().isNullable();
-        return new DataTypeDescriptor(TypeId.BOOLEAN_ID, nullableResult);
+        return DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, nullableResult);
     }
 
     protected DataTypeDescriptor betweenOperatorNode(BetweenOperatorNode node) throws StandardException {
@@ -396,7 +435,7 @@ public class TypeComputer implements Visitor
         boolean nullableResult = leftType.isNullable() ||
                                  lowType.isNullable() ||
                                  highType.isNullable();
-        return new DataTypeDescriptor(TypeId.BOOLEAN_ID, nullableResult);
+        return DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, nullableResult);
     }
 
     protected DataTypeDescriptor inListOperatorNode(InListOperatorNode node) throws StandardException {
@@ -422,14 +461,14 @@ public class TypeComputer implements Visitor
                 if ((rightType == null) || rightType.isNullable())
                     nullableResult = true;
             }
-            return new DataTypeDescriptor(TypeId.BOOLEAN_ID, nullableResult);
+            return DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, nullableResult);
         }
         else
         {
             boolean nullable = isNestedTupleNullable(leftOperand)
                                 || isNestedTupleNullable(node.getRightOperandList());
             
-            return new DataTypeDescriptor(TypeId.BOOLEAN_ID, nullable);
+            return DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, nullable);
         }
     }
     
@@ -463,7 +502,7 @@ public class TypeComputer implements Visitor
                 return col1Type.getNullabilityType(true);
         }
         else
-            return new DataTypeDescriptor(TypeId.BOOLEAN_ID, true);
+            return DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, true);
     }
 
     protected DataTypeDescriptor conditionalNode(ConditionalNode node) 
@@ -481,7 +520,7 @@ public class TypeComputer implements Visitor
             throws StandardException {
         if (node.getAggregateName().equals("COUNT") ||
             node.getAggregateName().equals("COUNT(*)"))
-            return new DataTypeDescriptor(TypeId.BIGINT_ID, false);
+            return DataTypeDescriptor.getType(TypeId.BIGINT_ID, false);
 
         ValueNode operand = node.getOperand();
         if ((operand == null) ||
@@ -489,7 +528,7 @@ public class TypeComputer implements Visitor
             return null;
         if (node.getAggregateName().equals("AVG") &&
             operand.getType().getTypeId().isIntegerTypeId())
-            return new DataTypeDescriptor(TypeId.DOUBLE_ID, true);
+            return DataTypeDescriptor.getType(TypeId.DOUBLE_ID, true);
         return operand.getType().getNullabilityType(true);
     }
 
@@ -501,9 +540,9 @@ public class TypeComputer implements Visitor
         DataTypeDescriptor rightType = rightOperand.getType();
         if ((leftType != null) &&
             !leftType.getTypeId().isStringTypeId()) {
-            leftType = new DataTypeDescriptor(TypeId.VARCHAR_ID,
-                                              leftType.isNullable(),
-                                              leftType.getMaximumWidth());
+            leftType = DataTypeDescriptor.getType(TypeId.VARCHAR_ID,
+                                               leftType.isNullable(),
+                                               leftType.getMaximumWidth());
             leftOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE, 
                          leftOperand, leftType, 
@@ -511,14 +550,14 @@ public class TypeComputer implements Visitor
             node.setLeftOperand(leftOperand);
         }
         else if (isParameterOrUntypedNull(leftOperand)) {
-            leftType = new DataTypeDescriptor(TypeId.VARCHAR_ID, true);
+            leftType = DataTypeDescriptor.getType(TypeId.VARCHAR_ID, true);
             leftOperand.setType(leftType);
         }
         if ((rightType != null) &&
             !rightType.getTypeId().isStringTypeId()) {
-            rightType = new DataTypeDescriptor(TypeId.VARCHAR_ID,
-                                              rightType.isNullable(),
-                                              rightType.getMaximumWidth());
+            rightType = DataTypeDescriptor.getType(TypeId.VARCHAR_ID,
+                                               rightType.isNullable(),
+                                               rightType.getMaximumWidth());
             rightOperand = (ValueNode)node.getNodeFactory()
                 .getNode(NodeTypes.CAST_NODE, 
                          rightOperand, rightType, 
@@ -526,15 +565,15 @@ public class TypeComputer implements Visitor
             node.setRightOperand(rightOperand);
         }
         else if (isParameterOrUntypedNull(rightOperand)) {
-            rightType = new DataTypeDescriptor(TypeId.VARCHAR_ID, true);
+            rightType = DataTypeDescriptor.getType(TypeId.VARCHAR_ID, true);
             rightOperand.setType(rightType);
         }
         if ((leftType == null) || (rightType == null))
             return null;
-        return new DataTypeDescriptor(TypeId.VARCHAR_ID,
+        return DataTypeDescriptor.intern(new DataTypeDescriptor(TypeId.VARCHAR_ID,
                                       leftType.isNullable() || rightType.isNullable(),
                                       leftType.getMaximumWidth() + rightType.getMaximumWidth(),
-                                      CharacterTypeAttributes.mergeCollations(leftType.getCharacterAttributes(), rightType.getCharacterAttributes()));
+                                      CharacterTypeAttributes.mergeCollations(leftType.getCharacterAttributes(), rightType.getCharacterAttributes())));
     }
 
     protected ValueNode collateNode(ExplicitCollateNode node)
@@ -547,7 +586,7 @@ public class TypeComputer implements Visitor
             CharacterTypeAttributes characterAttributes =
                 CharacterTypeAttributes.forCollation(origType.getCharacterAttributes(),
                                                      node.getCollation());
-            operand.setType(new DataTypeDescriptor(origType, characterAttributes));
+            operand.setType(DataTypeDescriptor.intern(new DataTypeDescriptor(origType, characterAttributes)));
         }
         return operand;
     }
@@ -629,14 +668,36 @@ public class TypeComputer implements Visitor
     /* Visitor interface. */
 
     public Visitable visit(Visitable node) throws StandardException {
+        boolean changed = false;
+        if (depth > 0)
+            changed = childChanged[--depth];
         if (node instanceof ValueNode) {
             // Value nodes compute type if necessary.
             ValueNode valueNode = (ValueNode)node;
-            if (valueNode.getType() == null) {
-                return setType(valueNode);
+            DataTypeDescriptor oldType = valueNode.getType();
+            if ((oldType == null) || changed || all || valueNode.isTypeStale()) {
+                ValueNode result = setType(valueNode);
+                boolean typeChanged = true;
+                if (result == valueNode) {
+                    valueNode.setTypeStale(false);
+                    DataTypeDescriptor newType = valueNode.getType();
+                    if ((newType == null) && (oldType != null)) {
+                        // Not one that is computed here.
+                        valueNode.setType(oldType);
+                        newType = oldType;
+                    }
+                    typeChanged = (newType == null) ? (oldType != null) : !newType.equals(oldType);
+                }
+                if (typeChanged && (depth > 0))
+                    childChanged[depth - 1] = true;
+                return result;
             }
         }
         else {
+            // Pass a change up through structural nodes, so that, for
+            // instance, a subquery's type follows its result column.
+            if (changed && (depth > 0))
+                childChanged[depth - 1] = true;
             // Some structural nodes require special handling.
             switch (((QueryTreeNode)node).getNodeType()) {
             case NodeTypes.SELECT_NODE:
@@ -654,6 +715,9 @@ public class TypeComputer implements Visitor
     }
     
     public boolean skipChildren(Visitable node) throws StandardException {
+        if (depth == childChanged.length)
+            childChanged = Arrays.copyOf(childChanged, depth * 2);
+        childChanged[depth++] = false;
         return false;
     }
     public boolean visitChildrenFirst(Visitable node) {
@@ -304,7 +304,7 @@ public class AlterTableNode extends DDLStatementNode
         super.acceptChildren(v);
 
         if (tableElementList != null) {
-            tableElementList.accept(v);
+            tableElementList = (TableElementList)tableElementList.accept(v);
         }
     }
 }
@@ -129,6 +129,7 @@ public abstract class BinaryListOperatorNode extends ValueNode
      */
     public void setLeftOperand(ValueNode newLeftOperand) {
         leftOperand = newLeftOperand;
+        setTypeStale(true);
     }
 
     /**
@@ -148,6 +149,7 @@ public abstract class BinaryListOperatorNode extends ValueNode
      */
     public void setRightOperandList(ValueNodeList newRightOperandList) {
         rightOperandList = newRightOperandList;
+        setTypeStale(true);
     }
 
     /**
@@ -180,11 +182,11 @@ public abstract class BinaryListOperatorNode extends ValueNode
         super.acceptChildren(v);
 
         if (leftOperand != null) {
-            leftOperand = (ValueNode)leftOperand.accept(v);
+            leftOperand = acceptOperand(leftOperand, v);
         }
 
         if (rightOperandList != null) {
-            rightOperandList = (ValueNodeList)rightOperandList.accept(v);
+            rightOperandList = acceptOperands(rightOperandList, v);
         }
     }
                 
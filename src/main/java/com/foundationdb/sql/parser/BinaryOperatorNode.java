@@ -194,6 +194,7 @@ public class BinaryOperatorNode extends ValueNode
      */
     public void setLeftOperand(ValueNode newLeftOperand) {
         leftOperand = newLeftOperand;
+        setTypeStale(true);
     }
 
     /**
@@ -212,6 +213,7 @@ public class BinaryOperatorNode extends ValueNode
      */
     public void setRightOperand(ValueNode newRightOperand) {
         rightOperand = newRightOperand;
+        setTypeStale(true);
     }
 
     /**
@@ -244,11 +246,11 @@ public class BinaryOperatorNode extends ValueNode
         super.acceptChildren(v);
 
         if (leftOperand != null) {
-            leftOperand = (ValueNode)leftOperand.accept(v);
+            leftOperand = acceptOperand(leftOperand, v);
         }
 
         if (rightOperand != null) {
-            rightOperand = (ValueNode)rightOperand.accept(v);
+            rightOperand = acceptOperand(rightOperand, v);
         }
     }
 
@@ -167,7 +167,7 @@ public class CastNode extends ValueNode
         super.acceptChildren(v);
 
         if (castOperand != null) {
-            castOperand = (ValueNode)castOperand.accept(v);
+            castOperand = acceptOperand(castOperand, v);
         }
     }
 
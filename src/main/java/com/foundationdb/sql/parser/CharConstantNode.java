@@ -44,6 +44,14 @@ import com.foundationdb.sql.types.TypeId;
 
 public final class CharConstantNode extends ConstantNode
 {
+    // Where the value is in the source, if it was not given on its own.
+    private String source;
+    private int sourceBegin, sourceEnd;
+    // The value copied out of the source, once needed. Only this field
+    // changes when the value is read, so that a tree shared between
+    // threads is never seen partly updated.
+    private volatile String sourceValue;
+
     /**
      * Initializer for a CharConstantNode.
      *
@@ -98,6 +106,80 @@ public final class CharConstantNode extends ConstantNode
         setValue(val);
     }
 
+    /**
+     * Make a CharConstantNode whose value is part of a larger string,
+     * such as a quoted literal that needs no unescaping. The value is
+     * only copied out when first asked for.
+     *
+     * @param source The containing String
+     * @param begin The start of the value in it
+     * @param end The end of the value in it
+     *
+     * @exception StandardException
+     */
+    public static CharConstantNode fromSource(String source, int begin, int end,
+                                              SQLParserContext parserContext)
+            throws StandardException {
+        CharConstantNode node = (CharConstantNode)
+            parserContext.getNodeFactory().getNode(NodeTypes.CHAR_CONSTANT_NODE,
+                                                   TypeId.CHAR_ID,
+                                                   parserContext);
+        node.source = source;
+        node.sourceBegin = begin;
+        node.sourceEnd = end;
+        node.setType(TypeId.CHAR_ID, false, source.codePointCount(begin, end));
+        return node;
+    }
+
+    public void copyFrom(QueryTreeNode node) throws StandardException {
+        super.copyFrom(node);
+
+        CharConstantNode other = (CharConstantNode)node;
+        this.source = other.source;
+        this.sourceBegin = other.sourceBegin;
+        this.sourceEnd = other.sourceEnd;
+        this.sourceValue = other.sourceValue;
+    }
+
+    /**
+     * Get the value in this CharConstantNode
+     */
+    public Object getValue() {
+        if (source == null)
+            return value;
+        String result = sourceValue;
+        if (result == null) {
+            // Another thread may copy it too, which is harmless.
+            result = source.substring(sourceBegin, sourceEnd);
+            sourceValue = result;
+        }
+        return result;
+    }
+
+    /** The string that contains the value, without copying it out. */
+    String getSourceString() {
+        return (source != null) ? source : (String)value;
+    }
+
+    /** Where the value begins in {@link #getSourceString}. */
+    int getSourceBegin() {
+        return (source != null) ? sourceBegin : 0;
+    }
+
+    /** Where the value ends in {@link #getSourceString}. */
+    int getSourceEnd() {
+        return (source != null) ? sourceEnd : ((String)value).length();
+    }
+
+    /**
+     * Set the value in this CharConstantNode.
+     */
+    public void setValue(Object value) {
+        source = null;
+        sourceValue = null;
+        super.setValue(value);
+    }
+
     /**
      * Return the value from this CharConstantNode
      *
@@ -107,7 +189,7 @@ public final class CharConstantNode extends ConstantNode
      */
 
     public String getString() throws StandardException {
-        return (String)value;
+        return (String)getValue();
     }
 
     /**
@@ -123,7 +205,7 @@ public final class CharConstantNode extends ConstantNode
      * @exception StandardException Thrown on error
      */
     Object getConstantValueAsObject() throws StandardException {
-        return (String)value;
+        return (String)getValue();
     }
 
     public static int charLength(String s) {
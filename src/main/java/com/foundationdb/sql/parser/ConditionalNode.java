@@ -84,6 +84,7 @@ public class ConditionalNode extends ValueNode
 
     public void setTestCondition(ValueNode testCondition) {
         this.testCondition = testCondition;
+        setTypeStale(true);
     }
 
     public ValueNodeList getThenElseList() {
@@ -96,6 +97,7 @@ public class ConditionalNode extends ValueNode
 
     public void setThenNode(ValueNode thenNode) {
         thenElseList.set(0, thenNode);
+        setTypeStale(true);
     }
 
     public ValueNode getElseNode() {
@@ -104,6 +106,7 @@ public class ConditionalNode extends ValueNode
 
     public void setElseNode(ValueNode elseNode) {
         thenElseList.set(1, elseNode);
+        setTypeStale(true);
     }
 
     /**
@@ -148,11 +151,11 @@ public class ConditionalNode extends ValueNode
         super.acceptChildren(v);
 
         if (testCondition != null) {
-            testCondition = (ValueNode)testCondition.accept(v);
+            testCondition = acceptOperand(testCondition, v);
         }
 
         if (thenElseList != null) {
-            thenElseList = (ValueNodeList)thenElseList.accept(v);
+            thenElseList = acceptOperands(thenElseList, v);
         }
     }
                 
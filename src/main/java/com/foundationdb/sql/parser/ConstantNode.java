@@ -113,7 +113,7 @@ public abstract class ConstantNode extends ValueNode
      */
 
     public String toString() {
-        return "value: " + value + "\n" +
+        return "value: " + getValue() + "\n" +
             super.toString();
     }
 
@@ -131,7 +131,7 @@ public abstract class ConstantNode extends ValueNode
      *
      */
     boolean isNull() {
-        return (value == null);
+        return (getValue() == null);
     }
                 
     protected boolean isEquivalent(ValueNode o) throws StandardException {
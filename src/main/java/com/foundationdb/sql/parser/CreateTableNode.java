@@ -300,10 +300,10 @@ public class CreateTableNode extends DDLStatementNode
         super.acceptChildren(v);
 
         if (tableElementList != null) {
-            tableElementList.accept(v);
+            tableElementList = (TableElementList)tableElementList.accept(v);
         }
         if (queryExpression != null) {
-            queryExpression.accept(v);
+            queryExpression = (CursorNode)queryExpression.accept(v);
         }
         if (storageFormat != null) {
             storageFormat = (StorageFormatNode)storageFormat.accept(v);
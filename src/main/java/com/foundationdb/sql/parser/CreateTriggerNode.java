@@ -158,6 +158,16 @@ public class CreateTriggerNode extends DDLStatementNode
         this.actionOffset = other.actionOffset;
     }
 
+    /**
+     * Make a shallow copy of this node with its own list of actions.
+     */
+    protected QueryTreeNode shallowCopy() {
+        CreateTriggerNode copy = (CreateTriggerNode)super.shallowCopy();
+        if (actionNodes != null)
+            copy.actionNodes = new ArrayList<StatementNode>(actionNodes);
+        return copy;
+    }
+
     public String statementToString() {
         return "CREATE TRIGGER";
     }
@@ -102,7 +102,7 @@ public class ExplicitCollateNode extends ValueNode
         super.acceptChildren(v);
 
         if (operand != null) {
-            operand = (ValueNode)operand.accept(v);
+            operand = acceptOperand(operand, v);
         }
     }
 
@@ -0,0 +1,309 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.SQLParserContext.IdentifierCase;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+
+/**
+ * Compute a 64-bit digest of the shape of a statement, for grouping
+ * statements that differ only in their constants.
+ * <p>
+ * Literals and parameters all hash the same, and IN lists of only
+ * literals hash the same regardless of their length. Identifiers are
+ * case-standardized the way the parser does it.
+ * <p>
+ * A digest can be computed from a parsed tree, which considers node
+ * types and names, or from just the tokens of the statement text,
+ * which is cheaper but sensitive to syntactic variation. The two
+ * kinds of digest are not comparable with one another.
+ */
+public class Fingerprinter implements Visitor
+{
+    // FNV-1a 64-bit.
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    // Markers mixed in for things that are not nodes or tokens.
+    private static final int LITERAL = -1, LITERAL_LIST = -2, END_NAME = -3, 
+        NO_NAME = -4, NEGATED = -5;
+
+    private long hash;
+
+    public Fingerprinter() {
+        reset();
+    }
+
+    public void reset() {
+        hash = OFFSET_BASIS;
+    }
+
+    /** Get the final digest of everything mixed in so far. */
+    public long getDigest() {
+        // Finalization step from MurmurHash3, so that all bits are mixed.
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    protected void mix(int value) {
+        hash = (hash ^ value) * PRIME;
+    }
+
+    protected void mix(boolean flag) {
+        mix(flag ? 1 : 0);
+    }
+
+    protected void mixName(String name) {
+        if (name == null) {
+            mix(NO_NAME);
+            return;
+        }
+        for (int i = 0; i < name.length(); i++)
+            mix(name.charAt(i));
+        mix(END_NAME);
+    }
+
+    protected void mixName(TableName name) {
+        if (name == null) {
+            mix(NO_NAME);
+            return;
+        }
+        mixName(name.getSchemaName());
+        mixName(name.getTableName());
+    }
+
+    /** Compute the digest of the given tree. */
+    public long fingerprint(QueryTreeNode node) throws StandardException {
+        reset();
+        node.accept(this);
+        return getDigest();
+    }
+
+    /* Visitor */
+
+    public Visitable visit(Visitable visitable) throws StandardException {
+        QueryTreeNode node = (QueryTreeNode)visitable;
+        if ((node instanceof ConstantNode) || (node instanceof ParameterNode)) {
+            mix(LITERAL);
+            return node;
+        }
+        mix(node.getNodeType());
+        if (node instanceof QueryTreeNodeList) {
+            mix(((QueryTreeNodeList)node).size());
+        }
+        else if (node instanceof ColumnReference) {
+            ColumnReference column = (ColumnReference)node;
+            mixName(column.getColumnName());
+            mixName(column.getTableName());
+        }
+        else if (node instanceof FromBaseTable) {
+            mixName(((FromBaseTable)node).getOrigTableName());
+        }
+        else if (node instanceof TableName) {
+            mixName((TableName)node);
+        }
+        else if (node instanceof DDLStatementNode) {
+            // Names here are not visited as children.
+            mixName(((DDLStatementNode)node).getObjectName());
+            if (node instanceof CreateIndexNode)
+                mixName(((CreateIndexNode)node).getIndexTableName());
+        }
+        else if (node instanceof ResultColumn) {
+            mixName(((ResultColumn)node).getName());
+        }
+        // Flags that change what the statement means.
+        else if (node instanceof SelectNode) {
+            SelectNode select = (SelectNode)node;
+            mix(select.isDistinct());
+            mix(select.isStraightJoin());
+        }
+        else if (node instanceof SetOperatorNode) {
+            mix(((SetOperatorNode)node).isAll());
+            if (node instanceof IntersectOrExceptNode)
+                mix(((IntersectOrExceptNode)node).getOpType().ordinal());
+        }
+        else if (node instanceof OrderByColumn) {
+            OrderByColumn column = (OrderByColumn)node;
+            mix(column.isAscending());
+            mix(column.isNullsOrderedLow());
+        }
+        else if (node instanceof JoinNode) {
+            mix(((JoinNode)node).isNaturalJoin());
+            if (node instanceof HalfOuterJoinNode)
+                mix(((HalfOuterJoinNode)node).isRightOuterJoin());
+        }
+        else if (node instanceof SubqueryNode) {
+            mix(((SubqueryNode)node).getSubqueryType().ordinal());
+        }
+        else if (node instanceof AggregateNode) {
+            mixName(((AggregateNode)node).getAggregateName());
+        }
+        else if (node instanceof MethodCallNode) {
+            mixName(((MethodCallNode)node).getMethodName());
+        }
+        else if (node instanceof CastNode) {
+            // Not its nullability, which type computation can change.
+            DataTypeDescriptor type = ((CastNode)node).getType();
+            mixName((type == null) ? null : type.getSQLstring());
+        }
+        // Also how TRIM says which end and EXTRACT which field.
+        else if (node instanceof UnaryOperatorNode) {
+            mixName(((UnaryOperatorNode)node).getOperator());
+        }
+        else if (node instanceof BinaryOperatorNode) {
+            mixName(((BinaryOperatorNode)node).getOperator());
+        }
+        else if (node instanceof TernaryOperatorNode) {
+            mixName(((TernaryOperatorNode)node).getOperator());
+        }
+        else if (node instanceof CursorNode) {
+            CursorNode cursor = (CursorNode)node;
+            if (cursor.getUpdateMode() != null)
+                mix(cursor.getUpdateMode().ordinal());
+            if (cursor.getUpdatableColumns() != null) {
+                for (String column : cursor.getUpdatableColumns())
+                    mixName(column);
+            }
+        }
+        else if (node instanceof InListOperatorNode) {
+            InListOperatorNode inList = (InListOperatorNode)node;
+            if (inList.isNegated())
+                mix(NEGATED);
+            inList.getLeftOperand().accept(this);
+            RowConstructorNode values = inList.getRightOperandList();
+            if (isLiteralList(values)) {
+                mix(LITERAL_LIST);
+                mix(values.getDepth());
+            }
+            else {
+                values.accept(this);
+            }
+        }
+        return node;
+    }
+
+    public boolean skipChildren(Visitable node) {
+        return (node instanceof InListOperatorNode);
+    }
+
+    public boolean visitChildrenFirst(Visitable node) {
+        return false;
+    }
+
+    public boolean stopTraversal() {
+        return false;
+    }
+
+    protected static boolean isLiteralList(RowConstructorNode row) {
+        for (ValueNode value : row.getNodeList()) {
+            if (value instanceof RowConstructorNode) {
+                if (!isLiteralList((RowConstructorNode)value))
+                    return false;
+            }
+            else if (!((value instanceof ConstantNode) || (value instanceof ParameterNode)))
+                return false;
+        }
+        return true;
+    }
+
+    /* Tokens */
+
+    /**
+     * Compute the digest of the tokens remaining in the given grammar's input.
+     * A sign before a number is taken as part of the literal where it
+     * cannot be a binary operator.
+     */
+    long fingerprint(SQLGrammar grammar, IdentifierCase identifierCase) {
+        reset();
+        int previous = SQLGrammarConstants.EOF;
+        while (true) {
+            Token token = grammar.getNextToken();
+            int kind = token.kind;
+            if (kind == SQLGrammarConstants.EOF)
+                break;
+            if ((kind == SQLGrammarConstants.SEMICOLON) &&
+                (grammar.getToken(1).kind == SQLGrammarConstants.EOF))
+                break;
+            switch (kind) {
+            case SQLGrammarConstants.IDENTIFIER:
+                mixIdentifier(token.image, identifierCase);
+                break;
+            case SQLGrammarConstants.BACKQUOTED_IDENTIFIER:
+            case SQLGrammarConstants.DOUBLEQUOTED_IDENTIFIER:
+                // Same as the equivalent regular identifier.
+                mixName(token.image.substring(1, token.image.length() - 1));
+                break;
+            case SQLGrammarConstants.PLUS_SIGN:
+            case SQLGrammarConstants.MINUS_SIGN:
+                if (SQLTokens.isLiteralSign(grammar, kind, previous)) {
+                    grammar.getNextToken();
+                    mix(LITERAL);
+                    kind = SQLTokens.LITERAL;
+                }
+                else
+                    mix(kind);
+                break;
+            case SQLGrammarConstants.IN:
+                mix(kind);
+                if (grammar.getToken(1).kind == SQLGrammarConstants.LEFT_PAREN) {
+                    int length = SQLTokens.literalListLength(grammar);
+                    if (length > 0) {
+                        for (int i = 0; i < length; i++)
+                            grammar.getNextToken();
+                        mix(LITERAL_LIST);
+                        kind = SQLGrammarConstants.RIGHT_PAREN;
+                    }
+                }
+                break;
+            default:
+                if (SQLTokens.isNonReservedKeyword(kind))
+                    mixIdentifier(token.image, identifierCase);
+                else if (SQLTokens.isLiteral(kind)) {
+                    mix(LITERAL);
+                    kind = SQLTokens.LITERAL;
+                }
+                else
+                    mix(kind);
+            }
+            previous = kind;
+        }
+        return getDigest();
+    }
+
+    protected void mixIdentifier(String image, IdentifierCase identifierCase) {
+        for (int i = 0; i < image.length(); i++) {
+            char ch = image.charAt(i);
+            switch (identifierCase) {
+            case UPPER:
+                ch = Character.toUpperCase(ch);
+                break;
+            case LOWER:
+                ch = Character.toLowerCase(ch);
+                break;
+            }
+            mix(ch);
+        }
+        mix(END_NAME);
+    }
+
+}
@@ -0,0 +1,329 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parsed statement flattened into parallel arrays, for keeping
+ * very many statements around for analysis.
+ * <p>
+ * Nodes are numbered in pre-order, so the root is <code>0</code> and
+ * each subtree is a contiguous range. For each node, there is its
+ * node type, parent, first child and next sibling (<code>-1</code>
+ * if none), the offsets of its source text, and an index into a pool
+ * of constants: the value of a {@link ConstantNode}, the name of a
+ * {@link ColumnReference} or {@link ResultColumn}, or the full name
+ * of a {@link FromBaseTable}.
+ * <p>
+ * Children are those reachable through {@link QueryTreeNode#accept}.
+ * Other node details are not kept.
+ */
+public class FlatTree
+{
+    public static final int NONE = -1;
+
+    private final String sql;
+    private final int[] nodeTypes, parents, firstChildren, nextSiblings;
+    private final int[] beginOffsets, endOffsets, constants;
+    private final Object[] constantPool;
+
+    private FlatTree(String sql, int size, 
+                     int[] nodeTypes, int[] parents, int[] firstChildren, int[] nextSiblings,
+                     int[] beginOffsets, int[] endOffsets, int[] constants,
+                     Object[] constantPool) {
+        this.sql = sql;
+        this.nodeTypes = Arrays.copyOf(nodeTypes, size);
+        this.parents = Arrays.copyOf(parents, size);
+        this.firstChildren = Arrays.copyOf(firstChildren, size);
+        this.nextSiblings = Arrays.copyOf(nextSiblings, size);
+        this.beginOffsets = Arrays.copyOf(beginOffsets, size);
+        this.endOffsets = Arrays.copyOf(endOffsets, size);
+        this.constants = Arrays.copyOf(constants, size);
+        this.constantPool = constantPool;
+    }
+
+    /** Flatten the given tree, parsed from the given SQL text. */
+    public static FlatTree fromTree(QueryTreeNode root, String sql) 
+            throws StandardException {
+        return new Builder().build(root, sql);
+    }
+
+    /** Get the source text. */
+    public String getSQL() {
+        return sql;
+    }
+
+    /** Get the number of nodes. */
+    public int size() {
+        return nodeTypes.length;
+    }
+
+    public int getNodeType(int node) {
+        return nodeTypes[node];
+    }
+
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public int getBeginOffset(int node) {
+        return beginOffsets[node];
+    }
+
+    public int getEndOffset(int node) {
+        return endOffsets[node];
+    }
+
+    /** Get the source text of the given node, if known. */
+    public String getText(int node) {
+        int begin = beginOffsets[node];
+        int end = endOffsets[node];
+        if ((sql == null) || (begin < 0) || (end < begin) || (end >= sql.length()))
+            return null;
+        return sql.substring(begin, end + 1);
+    }
+
+    /** Get the constant for the given node, or <code>null</code>. */
+    public Object getConstant(int node) {
+        int index = constants[node];
+        if (index == NONE)
+            return null;
+        return constantPool[index];
+    }
+
+    /**
+     * Get the node after the given node's subtree, which is the
+     * end of the subtree's range.
+     */
+    public int getSubtreeEnd(int node) {
+        while (node != NONE) {
+            int next = nextSiblings[node];
+            if (next != NONE)
+                return next;
+            node = parents[node];
+        }
+        return size();
+    }
+
+    /** Get a cursor positioned on the root. */
+    public Cursor cursor() {
+        return new Cursor(0);
+    }
+
+    /**
+     * A position in the tree, for navigating like nodes.
+     */
+    public class Cursor {
+        private int node;
+
+        public Cursor(int node) {
+            this.node = node;
+        }
+
+        public FlatTree getTree() {
+            return FlatTree.this;
+        }
+
+        /** Get the index of the current node. */
+        public int getNode() {
+            return node;
+        }
+
+        public void setNode(int node) {
+            this.node = node;
+        }
+
+        public int getNodeType() {
+            return nodeTypes[node];
+        }
+
+        public Object getConstant() {
+            return FlatTree.this.getConstant(node);
+        }
+
+        public String getText() {
+            return FlatTree.this.getText(node);
+        }
+
+        public boolean hasParent() {
+            return (parents[node] != NONE);
+        }
+
+        public boolean hasChildren() {
+            return (firstChildren[node] != NONE);
+        }
+
+        public boolean hasNextSibling() {
+            return (nextSiblings[node] != NONE);
+        }
+
+        /** Move to the parent, returning <code>false</code> if none. */
+        public boolean toParent() {
+            return moveTo(parents[node]);
+        }
+
+        /** Move to the first child, returning <code>false</code> if none. */
+        public boolean toFirstChild() {
+            return moveTo(firstChildren[node]);
+        }
+
+        /** Move to the next sibling, returning <code>false</code> if none. */
+        public boolean toNextSibling() {
+            return moveTo(nextSiblings[node]);
+        }
+
+        private boolean moveTo(int next) {
+            if (next == NONE)
+                return false;
+            node = next;
+            return true;
+        }
+
+        public Cursor copy() {
+            return new Cursor(node);
+        }
+    }
+
+    static class Builder {
+        private int size;
+        private int[] nodeTypes, parents, firstChildren, nextSiblings, lastChildren;
+        private int[] beginOffsets, endOffsets, constants;
+        private List<Object> constantPool = new ArrayList<Object>();
+        private Map<Object,Integer> constantIndexes = new HashMap<Object,Integer>();
+
+        public Builder() {
+            allocate(64);
+        }
+
+        public FlatTree build(QueryTreeNode root, String sql) 
+                throws StandardException {
+            PersistentTree.ChildrenCollector children = 
+                new PersistentTree.ChildrenCollector();
+            Deque<QueryTreeNode> pendingNodes = new ArrayDeque<QueryTreeNode>();
+            Deque<Integer> pendingParents = new ArrayDeque<Integer>();
+            pendingNodes.push(root);
+            pendingParents.push(NONE);
+            while (!pendingNodes.isEmpty()) {
+                QueryTreeNode node = pendingNodes.pop();
+                int parent = pendingParents.pop();
+                int index = add(node, parent);
+                children.collect(node);
+                List<QueryTreeNode> list = children.getChildren();
+                // Reversed so that they come off the stack in order.
+                for (int i = list.size() - 1; i >= 0; i--) {
+                    pendingNodes.push(list.get(i));
+                    pendingParents.push(index);
+                }
+            }
+            return new FlatTree(sql, size, 
+                                nodeTypes, parents, firstChildren, nextSiblings,
+                                beginOffsets, endOffsets, constants,
+                                constantPool.toArray());
+        }
+
+        protected int add(QueryTreeNode node, int parent) 
+                throws StandardException {
+            if (size >= nodeTypes.length)
+                allocate(size * 2);
+            int index = size++;
+            nodeTypes[index] = node.getNodeType();
+            parents[index] = parent;
+            firstChildren[index] = NONE;
+            nextSiblings[index] = NONE;
+            lastChildren[index] = NONE;
+            beginOffsets[index] = node.getBeginOffset();
+            endOffsets[index] = node.getEndOffset();
+            constants[index] = constantIndex(constantValue(node));
+            if (parent != NONE) {
+                int sibling = lastChildren[parent];
+                if (sibling == NONE)
+                    firstChildren[parent] = index;
+                else
+                    nextSiblings[sibling] = index;
+                lastChildren[parent] = index;
+            }
+            return index;
+        }
+
+        protected Object constantValue(QueryTreeNode node) 
+                throws StandardException {
+            if (node instanceof ConstantNode)
+                return ((ConstantNode)node).getValue();
+            else if (node instanceof ColumnReference)
+                return ((ColumnReference)node).getColumnName();
+            else if (node instanceof ResultColumn)
+                return ((ResultColumn)node).getName();
+            else if (node instanceof FromBaseTable)
+                return ((FromBaseTable)node).getOrigTableName().getFullTableName();
+            else
+                return null;
+        }
+
+        protected int constantIndex(Object value) {
+            if (value == null)
+                return NONE;
+            Integer index = constantIndexes.get(value);
+            if (index == null) {
+                index = constantPool.size();
+                constantPool.add(value);
+                constantIndexes.put(value, index);
+            }
+            return index;
+        }
+
+        private void allocate(int capacity) {
+            if (nodeTypes == null) {
+                nodeTypes = new int[capacity];
+                parents = new int[capacity];
+                firstChildren = new int[capacity];
+                nextSiblings = new int[capacity];
+                lastChildren = new int[capacity];
+                beginOffsets = new int[capacity];
+                endOffsets = new int[capacity];
+                constants = new int[capacity];
+            }
+            else {
+                nodeTypes = Arrays.copyOf(nodeTypes, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                firstChildren = Arrays.copyOf(firstChildren, capacity);
+                nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+                lastChildren = Arrays.copyOf(lastChildren, capacity);
+                beginOffsets = Arrays.copyOf(beginOffsets, capacity);
+                endOffsets = Arrays.copyOf(endOffsets, capacity);
+                constants = Arrays.copyOf(constants, capacity);
+            }
+        }
+    }
+
+}
@@ -205,6 +205,15 @@ public class FromBaseTable extends FromTable
             return tableName;
     }
 
+    /**
+     * Is this the target table of an UPDATE or DELETE?
+     *
+     * @return UPDATE or DELETE if so, otherwise null.
+     */
+    public UpdateOrDelete getUpdateOrDelete() {
+        return updateOrDelete;
+    }
+
     public IndexHintList getIndexHints() {
         return indexHints;
     }
@@ -137,6 +137,7 @@ public final class InListOperatorNode extends ValueNode
     public void setLeftOperand(RowConstructorNode newLeftOperand)
     {
         leftOperand = newLeftOperand;
+        setTypeStale(true);
     }
 
     /**
@@ -158,6 +159,7 @@ public final class InListOperatorNode extends ValueNode
     public void setRightOperandList(RowConstructorNode newRightOperandList)
     {
         rightOperandList = newRightOperandList;
+        setTypeStale(true);
     }
 
     /**
@@ -195,12 +197,12 @@ public final class InListOperatorNode extends ValueNode
 
         if (leftOperand != null)
         {
-            leftOperand = (RowConstructorNode) leftOperand.accept(v);
+            leftOperand = (RowConstructorNode) acceptOperand(leftOperand, v);
         }
 
         if (rightOperandList != null)
         {
-            rightOperandList = (RowConstructorNode) rightOperandList.accept(v);
+            rightOperandList = (RowConstructorNode) acceptOperand(rightOperandList, v);
         }
     }
 
@@ -26,7 +26,7 @@ public class IndexColumnList extends QueryTreeNodeList<IndexColumn>
 {
     private FunctionApplication functionApplication;
 
-    private static class FunctionApplication
+    static class FunctionApplication
     {
         public FunctionApplication(String functionName,
                                    int firstArgumentPosition,
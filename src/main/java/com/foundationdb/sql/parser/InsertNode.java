@@ -221,7 +221,7 @@ public final class InsertNode extends DMLModStatementNode
         super.acceptChildren(v);
 
         if (targetColumnList != null) {
-            targetColumnList.accept(v);
+            targetColumnList = (ResultColumnList)targetColumnList.accept(v);
         }
     }
 
@@ -0,0 +1,339 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Find the tables a statement reads and writes and the columns it
+ * references in each, in a single traversal.
+ * <p>
+ * Column references are resolved against the FROM lists in scope,
+ * innermost first, by correlation name or table name. An unqualified
+ * column is assigned to the only table in the innermost FROM list;
+ * with more than one, it is ambiguous without a schema and is reported
+ * separately. Columns of derived tables are not traced further.
+ * <p>
+ * The columns of a <code>USING</code> join are read from both sides,
+ * and an unqualified reference to one belongs to both. Without a
+ * schema, the columns a <code>NATURAL</code> join compares are not
+ * known, so it counts as reading all the columns of both sides.
+ */
+public class LineageExtractor implements Visitor
+{
+    /** The tables and columns used by one statement. */
+    public static class Lineage {
+        private Set<TableName> tablesRead = new LinkedHashSet<TableName>();
+        private Set<TableName> tablesWritten = new LinkedHashSet<TableName>();
+        private Map<TableName,Set<String>> columns = 
+            new LinkedHashMap<TableName,Set<String>>();
+        private Set<String> unresolvedColumns = new LinkedHashSet<String>();
+
+        /** Tables that appear in FROM lists. */
+        public Set<TableName> getTablesRead() {
+            return tablesRead;
+        }
+
+        /** Targets of INSERT, UPDATE or DELETE. */
+        public Set<TableName> getTablesWritten() {
+            return tablesWritten;
+        }
+
+        /** Columns referenced, by table. <code>*</code> for all columns. */
+        public Map<TableName,Set<String>> getColumns() {
+            return columns;
+        }
+
+        public Set<String> getColumns(TableName table) {
+            Set<String> result = columns.get(table);
+            if (result == null)
+                return Collections.emptySet();
+            return result;
+        }
+
+        /** Columns whose table could not be determined. */
+        public Set<String> getUnresolvedColumns() {
+            return unresolvedColumns;
+        }
+
+        protected void addColumn(TableName table, String column) {
+            Set<String> tableColumns = columns.get(table);
+            if (tableColumns == null) {
+                tableColumns = new LinkedHashSet<String>();
+                columns.put(table, tableColumns);
+            }
+            tableColumns.add(column);
+        }
+    }
+
+    /** A table in a FROM list, with its base table if not derived. */
+    static class ScopeEntry {
+        String exposedName;
+        TableName baseTable;
+
+        ScopeEntry(String exposedName, TableName baseTable) {
+            this.exposedName = exposedName;
+            this.baseTable = baseTable;
+        }
+    }
+
+    /** The tables of one FROM list and the join columns among them. */
+    static class Scope {
+        List<ScopeEntry> tables = new ArrayList<ScopeEntry>();
+        // USING column name to the tables it is read from.
+        Map<String,List<ScopeEntry>> joinColumns;
+    }
+
+    private Lineage lineage;
+    private List<Scope> scopes = new ArrayList<Scope>();
+
+    /** Get the lineage of the given statement. */
+    public Lineage extract(StatementNode stmt) throws StandardException {
+        lineage = new Lineage();
+        scopes.clear();
+        stmt.accept(this);
+        return lineage;
+    }
+
+    /* Visitor */
+
+    public Visitable visit(Visitable visitable) throws StandardException {
+        QueryTreeNode node = (QueryTreeNode)visitable;
+        switch (node.getNodeType()) {
+        case NodeTypes.SELECT_NODE:
+            withScope(node, ((SelectNode)node).getFromList());
+            break;
+        case NodeTypes.CURSOR_NODE:
+            {
+                // ORDER BY can refer to the tables of the top SELECT.
+                ResultSetNode resultSet = ((CursorNode)node).getResultSetNode();
+                withScope(node, (resultSet instanceof SelectNode) ? 
+                          ((SelectNode)resultSet).getFromList() : null);
+            }
+            break;
+        case NodeTypes.INSERT_NODE:
+            {
+                InsertNode insert = (InsertNode)node;
+                TableName target = insert.getTargetTableName();
+                lineage.tablesWritten.add(target);
+                ResultColumnList targetColumns = insert.getTargetColumnList();
+                if (targetColumns != null) {
+                    for (ResultColumn column : targetColumns) {
+                        lineage.addColumn(target, column.getName());
+                    }
+                }
+            }
+            break;
+        case NodeTypes.UPDATE_NODE:
+        case NodeTypes.DELETE_NODE:
+            lineage.tablesWritten.add(((DMLModStatementNode)node).getTargetTableName());
+            break;
+        case NodeTypes.FROM_BASE_TABLE:
+            {
+                FromBaseTable table = (FromBaseTable)node;
+                if (table.getUpdateOrDelete() == null)
+                    lineage.tablesRead.add(table.getOrigTableName());
+            }
+            break;
+        case NodeTypes.COLUMN_REFERENCE:
+            {
+                ColumnReference column = (ColumnReference)node;
+                resolve(column.getTableNameNode(), column.getColumnName());
+            }
+            break;
+        case NodeTypes.ALL_RESULT_COLUMN:
+            {
+                AllResultColumn all = (AllResultColumn)node;
+                resolve(all.getTableNameObject(), "*");
+            }
+            break;
+        }
+        return node;
+    }
+
+    public boolean skipChildren(Visitable node) {
+        switch (((QueryTreeNode)node).getNodeType()) {
+        case NodeTypes.SELECT_NODE:
+        case NodeTypes.CURSOR_NODE:
+            // Visited by withScope instead.
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    public boolean visitChildrenFirst(Visitable node) {
+        return false;
+    }
+
+    public boolean stopTraversal() {
+        return false;
+    }
+
+    /** Visit the children of <code>node</code> with a FROM list in scope. */
+    protected void withScope(QueryTreeNode node, FromList fromList) 
+            throws StandardException {
+        Scope scope = new Scope();
+        if (fromList != null) {
+            for (FromTable fromTable : fromList) {
+                addToScope(scope, fromTable);
+            }
+        }
+        scopes.add(scope);
+        try {
+            node.acceptChildren(this);
+        }
+        finally {
+            scopes.remove(scopes.size() - 1);
+        }
+    }
+
+    protected void addToScope(Scope scope, ResultSetNode resultSet) 
+            throws StandardException {
+        if (resultSet instanceof FromBaseTable) {
+            FromBaseTable table = (FromBaseTable)resultSet;
+            scope.tables.add(new ScopeEntry(table.getCorrelationName(), table.getOrigTableName()));
+        }
+        else if (resultSet instanceof TableOperatorNode) {
+            TableOperatorNode join = (TableOperatorNode)resultSet;
+            int start = scope.tables.size();
+            addToScope(scope, join.getLeftResultSet());
+            int middle = scope.tables.size();
+            addToScope(scope, join.getRightResultSet());
+            int end = scope.tables.size();
+            if (join instanceof JoinNode) {
+                ResultColumnList using = ((JoinNode)join).getUsingClause();
+                if (using != null) {
+                    for (ResultColumn column : using) {
+                        joinColumn(scope, column.getName(), start, middle, end);
+                    }
+                }
+                else if (((JoinNode)join).isNaturalJoin()) {
+                    joinColumn(scope, "*", start, middle, end);
+                }
+            }
+        }
+        else if (resultSet instanceof FromTable) {
+            scope.tables.add(new ScopeEntry(((FromTable)resultSet).getCorrelationName(), null));
+        }
+    }
+
+    /** Read a join column from the tables on both sides of a join,
+     * which are <code>scope.tables</code> from <code>start</code> to
+     * <code>middle</code> and from there to <code>end</code>.
+     */
+    protected void joinColumn(Scope scope, String columnName, 
+                              int start, int middle, int end) {
+        List<ScopeEntry> tables = new ArrayList<ScopeEntry>();
+        joinColumnSide(scope, columnName, scope.tables.subList(start, middle), tables);
+        joinColumnSide(scope, columnName, scope.tables.subList(middle, end), tables);
+        for (ScopeEntry entry : tables) {
+            if (entry.baseTable != null)
+                lineage.addColumn(entry.baseTable, columnName);
+        }
+        if (!columnName.equals("*")) {
+            if (scope.joinColumns == null)
+                scope.joinColumns = new HashMap<String,List<ScopeEntry>>();
+            scope.joinColumns.put(columnName, tables);
+        }
+    }
+
+    protected void joinColumnSide(Scope scope, String columnName, 
+                                  List<ScopeEntry> side, List<ScopeEntry> into) {
+        if ((side.size() == 1) || columnName.equals("*")) {
+            into.addAll(side);
+            return;
+        }
+        // Within a side that is itself a join, only a column it joins on is known.
+        List<ScopeEntry> joined = (scope.joinColumns == null) ? null :
+            scope.joinColumns.get(columnName);
+        if ((joined != null) && side.containsAll(joined))
+            into.addAll(joined);
+        else if (!side.isEmpty())
+            lineage.unresolvedColumns.add(columnName);
+    }
+
+    protected void resolve(TableName tableName, String columnName) {
+        ScopeEntry entry = null;
+        boolean ambiguous = false;
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Scope scope = scopes.get(i);
+            if (tableName == null) {
+                if (scope.tables.isEmpty())
+                    continue;
+                if (scope.tables.size() == 1)
+                    entry = scope.tables.get(0);
+                else if (columnName.equals("*")) {
+                    for (ScopeEntry each : scope.tables) {
+                        if (each.baseTable != null)
+                            lineage.addColumn(each.baseTable, columnName);
+                    }
+                    return;
+                }
+                else if ((scope.joinColumns != null) && 
+                         scope.joinColumns.containsKey(columnName)) {
+                    // Already read from the tables it joins.
+                    return;
+                }
+                else
+                    ambiguous = true;
+                break;
+            }
+            entry = findTable(scope.tables, tableName);
+            if (entry != null)
+                break;
+        }
+        if (entry != null) {
+            if (entry.baseTable != null)
+                lineage.addColumn(entry.baseTable, columnName);
+        }
+        else if (ambiguous || (tableName != null) || !scopes.isEmpty()) {
+            if (tableName != null)
+                columnName = tableName.getFullTableName() + "." + columnName;
+            lineage.unresolvedColumns.add(columnName);
+        }
+    }
+
+    protected static ScopeEntry findTable(List<ScopeEntry> scope, TableName tableName) {
+        for (ScopeEntry entry : scope) {
+            if (entry.exposedName != null) {
+                if ((tableName.getSchemaName() == null) &&
+                    entry.exposedName.equals(tableName.getTableName()))
+                    return entry;
+            }
+            else if (entry.baseTable != null) {
+                if (tableName.getSchemaName() == null) {
+                    if (tableName.getTableName().equals(entry.baseTable.getTableName()))
+                        return entry;
+                }
+                else if (tableName.equals(entry.baseTable))
+                    return entry;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,439 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+import com.foundationdb.sql.types.TypeId;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * The rows of a multi-row VALUES clause whose values are all simple
+ * literals, kept column by column instead of as nodes.
+ * <p>
+ * Each column has a single {@link ColumnType}, fixed by its first
+ * non-null value, and keeps its values in a primitive array: integers
+ * in a <code>long[]</code>, decimals as unscaled <code>long</code>s
+ * with one scale for the column, approximate numbers in a
+ * <code>double[]</code>, and strings as offsets into the quoted
+ * literal they were parsed from. Nulls are a bitmap per column.
+ * <p>
+ * A row that does not fit is not added; see {@link
+ * RowsResultSetNode#addLiteralRow}. Rows are turned back into the
+ * same nodes the parser would have made by {@link #getRowNode}.
+ */
+public class LiteralRowBatch
+{
+    public static enum ColumnType {
+        /** Only nulls so far. */
+        NULL,
+        /** An <code>INT</code> or <code>BIGINT</code> literal. */
+        LONG,
+        /** An exact literal with a fractional part. */
+        DECIMAL,
+        /** An approximate literal. */
+        DOUBLE,
+        /** A character string literal. */
+        STRING
+    }
+
+    private static class Column {
+        ColumnType type = ColumnType.NULL;
+        long[] nulls;
+        long[] longs;
+        int scale;
+        double[] doubles;
+        String[] sources;
+        int[] begins, ends;
+    }
+
+    private final Column[] columns;
+    private int rowCount, capacity;
+
+    public LiteralRowBatch(int columnCount) {
+        columns = new Column[columnCount];
+        for (int i = 0; i < columnCount; i++)
+            columns[i] = new Column();
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public ColumnType getColumnType(int column) {
+        return columns[column].type;
+    }
+
+    /** The scale of a {@link ColumnType#DECIMAL} column. */
+    public int getScale(int column) {
+        return columns[column].scale;
+    }
+
+    public boolean isNull(int row, int column) {
+        long[] nulls = columns[column].nulls;
+        return ((nulls != null) && ((nulls[row >> 6] & (1L << row)) != 0));
+    }
+
+    /** The value of a {@link ColumnType#LONG} column, or the unscaled
+     * value of a {@link ColumnType#DECIMAL} one. */
+    public long getLong(int row, int column) {
+        return columns[column].longs[row];
+    }
+
+    public double getDouble(int row, int column) {
+        return columns[column].doubles[row];
+    }
+
+    public String getString(int row, int column) {
+        Column col = columns[column];
+        return col.sources[row].substring(col.begins[row], col.ends[row]);
+    }
+
+    /**
+     * Get a value as the object a constant node would hold:
+     * <code>Integer</code> or <code>Long</code>, <code>BigDecimal</code>,
+     * <code>Double</code> or <code>String</code>.
+     */
+    public Object getValue(int row, int column) {
+        if (isNull(row, column))
+            return null;
+        Column col = columns[column];
+        switch (col.type) {
+        case LONG:
+            {
+                long value = col.longs[row];
+                if ((value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE))
+                    return Integer.valueOf((int)value);
+                else
+                    return Long.valueOf(value);
+            }
+        case DECIMAL:
+            return BigDecimal.valueOf(col.longs[row], col.scale);
+        case DOUBLE:
+            return Double.valueOf(col.doubles[row]);
+        case STRING:
+            return getString(row, column);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Add a row of parsed values, if they all fit.
+     * @return <code>false</code> if the row was not added
+     */
+    boolean addRow(ResultColumnList row) throws StandardException {
+        int ncols = columns.length;
+        if (row.size() != ncols)
+            return false;
+        ColumnType[] types = new ColumnType[ncols];
+        for (int i = 0; i < ncols; i++) {
+            ResultColumn rc = row.get(i);
+            if (rc.getName() != null)
+                return false;
+            types[i] = literalType(rc.getExpression());
+            if (!fits(i, types[i], rc.getExpression()))
+                return false;
+        }
+        int index = newRow();
+        for (int i = 0; i < ncols; i++) {
+            ValueNode value = row.get(i).getExpression();
+            if ((types[i] == ColumnType.DECIMAL) && (columns[i].type == ColumnType.NULL))
+                columns[i].scale = ((BigDecimal)((ConstantNode)value).getValue()).scale();
+            setType(i, types[i]);
+            switch (types[i]) {
+            case NULL:
+                setNull(index, i);
+                break;
+            case LONG:
+                setLong(index, i, ((Number)((ConstantNode)value).getValue()).longValue());
+                break;
+            case DECIMAL:
+                setLong(index, i, ((BigDecimal)((ConstantNode)value).getValue()).unscaledValue().longValue());
+                break;
+            case DOUBLE:
+                setDouble(index, i, ((Double)((ConstantNode)value).getValue()).doubleValue());
+                break;
+            case STRING:
+                {
+                    CharConstantNode cn = (CharConstantNode)value;
+                    setString(index, i, cn.getSourceString(), cn.getSourceBegin(), cn.getSourceEnd());
+                }
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add a row of values as returned by {@link #getValue}, if they all fit.
+     * @return <code>false</code> if the row was not added
+     */
+    boolean addValues(Object[] values) {
+        int ncols = columns.length;
+        if (values.length != ncols)
+            return false;
+        ColumnType[] types = new ColumnType[ncols];
+        for (int i = 0; i < ncols; i++) {
+            Object value = values[i];
+            if (value == null)
+                types[i] = ColumnType.NULL;
+            else if ((value instanceof Integer) || (value instanceof Long))
+                types[i] = ColumnType.LONG;
+            else if ((value instanceof BigDecimal) &&
+                     (((BigDecimal)value).unscaledValue().bitLength() < 64))
+                types[i] = ColumnType.DECIMAL;
+            else if (value instanceof Double)
+                types[i] = ColumnType.DOUBLE;
+            else if (value instanceof String)
+                types[i] = ColumnType.STRING;
+            else
+                return false;
+            Column col = columns[i];
+            if ((types[i] != ColumnType.NULL) && (col.type != ColumnType.NULL)) {
+                if ((types[i] != col.type) ||
+                    ((col.type == ColumnType.DECIMAL) &&
+                     (((BigDecimal)value).scale() != col.scale)))
+                    return false;
+            }
+        }
+        int index = newRow();
+        for (int i = 0; i < ncols; i++) {
+            Object value = values[i];
+            if ((types[i] == ColumnType.DECIMAL) && (columns[i].type == ColumnType.NULL))
+                columns[i].scale = ((BigDecimal)value).scale();
+            setType(i, types[i]);
+            switch (types[i]) {
+            case NULL:
+                setNull(index, i);
+                break;
+            case LONG:
+                setLong(index, i, ((Number)value).longValue());
+                break;
+            case DECIMAL:
+                setLong(index, i, ((BigDecimal)value).unscaledValue().longValue());
+                break;
+            case DOUBLE:
+                setDouble(index, i, ((Double)value).doubleValue());
+                break;
+            case STRING:
+                setString(index, i, (String)value, 0, ((String)value).length());
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Make the nodes for one row, the same as the parser would have.
+     */
+    public RowResultSetNode getRowNode(int row, NodeFactory nodeFactory, SQLParserContext pc)
+            throws StandardException {
+        ResultColumnList resultColumns = (ResultColumnList)
+            nodeFactory.getNode(NodeTypes.RESULT_COLUMN_LIST, pc);
+        for (int i = 0; i < columns.length; i++) {
+            resultColumns.addResultColumn((ResultColumn)
+                nodeFactory.getNode(NodeTypes.RESULT_COLUMN,
+                                    null,
+                                    getValueNode(row, i, nodeFactory, pc),
+                                    pc));
+        }
+        return (RowResultSetNode)
+            nodeFactory.getNode(NodeTypes.ROW_RESULT_SET_NODE,
+                                resultColumns,
+                                null,
+                                pc);
+    }
+
+    protected ValueNode getValueNode(int row, int column, 
+                                     NodeFactory nodeFactory, SQLParserContext pc)
+            throws StandardException {
+        if (isNull(row, column))
+            return (ValueNode)nodeFactory.getNode(NodeTypes.UNTYPED_NULL_CONSTANT_NODE, pc);
+        Column col = columns[column];
+        switch (col.type) {
+        case LONG:
+            {
+                Object value = getValue(row, column);
+                return (ValueNode)nodeFactory.getNode((value instanceof Integer) ?
+                                                      NodeTypes.INT_CONSTANT_NODE :
+                                                      NodeTypes.LONGINT_CONSTANT_NODE,
+                                                      value, pc);
+            }
+        case DECIMAL:
+            return (ValueNode)nodeFactory.getNode(NodeTypes.DECIMAL_CONSTANT_NODE,
+                                                  BigDecimal.valueOf(col.longs[row], col.scale).toPlainString(),
+                                                  pc);
+        case DOUBLE:
+            return (ValueNode)nodeFactory.getNode(NodeTypes.DOUBLE_CONSTANT_NODE,
+                                                  Double.valueOf(col.doubles[row]),
+                                                  pc);
+        case STRING:
+            {
+                String source = col.sources[row];
+                int begin = col.begins[row], end = col.ends[row];
+                if ((begin == 0) && (end == source.length()))
+                    return (ValueNode)nodeFactory.getNode(NodeTypes.CHAR_CONSTANT_NODE,
+                                                          source, pc);
+                else
+                    return CharConstantNode.fromSource(source, begin, end, pc);
+            }
+        default:
+            throw new StandardException("Unknown column type " + col.type);
+        }
+    }
+
+    /** Which column type would hold the given value exactly, if any. */
+    protected static ColumnType literalType(ValueNode value) {
+        switch (value.getNodeType()) {
+        case NodeTypes.UNTYPED_NULL_CONSTANT_NODE:
+            return ColumnType.NULL;
+        case NodeTypes.INT_CONSTANT_NODE:
+            if (((ConstantNode)value).getValue() instanceof Integer)
+                return ColumnType.LONG;
+            break;
+        case NodeTypes.LONGINT_CONSTANT_NODE:
+            {
+                // Only if it would be parsed back as a BIGINT.
+                Object lvalue = ((ConstantNode)value).getValue();
+                if ((lvalue instanceof Long) &&
+                    ((((Long)lvalue).longValue() < Integer.MIN_VALUE) ||
+                     (((Long)lvalue).longValue() > Integer.MAX_VALUE)))
+                    return ColumnType.LONG;
+            }
+            break;
+        case NodeTypes.DECIMAL_CONSTANT_NODE:
+            {
+                Object dvalue = ((ConstantNode)value).getValue();
+                if ((dvalue instanceof BigDecimal) &&
+                    (((BigDecimal)dvalue).unscaledValue().bitLength() < 64) &&
+                    isPlainDecimal((BigDecimal)dvalue, value.getType()))
+                    return ColumnType.DECIMAL;
+            }
+            break;
+        case NodeTypes.DOUBLE_CONSTANT_NODE:
+            if (((ConstantNode)value).getValue() instanceof Double)
+                return ColumnType.DOUBLE;
+            break;
+        case NodeTypes.CHAR_CONSTANT_NODE:
+            // Not the value itself, which would copy it out.
+            if ((value.getType().getTypeId() == TypeId.CHAR_ID) &&
+                !value.getType().isNullable())
+                return ColumnType.STRING;
+            break;
+        }
+        return null;
+    }
+
+    /** Would the plain form of this decimal give back the same type? 
+     * Not so for <code>.5</code> or <code>+1.0</code>, for instance. */
+    protected static boolean isPlainDecimal(BigDecimal value, DataTypeDescriptor type) {
+        if ((type == null) || (value.scale() < 0))
+            return false;
+        String image = value.toPlainString();
+        int length = image.length();
+        int precision = length;
+        if (value.signum() < 0)
+            precision--;
+        if (value.scale() > 0)
+            precision--;
+        return ((type.getPrecision() == precision) &&
+                (type.getScale() == value.scale()) &&
+                (type.getMaximumWidth() == length));
+    }
+
+    /** Can a value of the given type go into the given column? */
+    protected boolean fits(int column, ColumnType type, ValueNode value) {
+        if (type == null)
+            return false;
+        Column col = columns[column];
+        if ((type == ColumnType.NULL) || (col.type == ColumnType.NULL))
+            return true;
+        if (type != col.type)
+            return false;
+        if (type == ColumnType.DECIMAL)
+            return (((BigDecimal)((ConstantNode)value).getValue()).scale() == col.scale);
+        return true;
+    }
+
+    protected int newRow() {
+        if (rowCount == capacity) {
+            capacity = Math.max(16, capacity * 2);
+            for (Column col : columns) {
+                if (col.nulls != null)
+                    col.nulls = Arrays.copyOf(col.nulls, (capacity + 63) >> 6);
+                if (col.longs != null)
+                    col.longs = Arrays.copyOf(col.longs, capacity);
+                if (col.doubles != null)
+                    col.doubles = Arrays.copyOf(col.doubles, capacity);
+                if (col.sources != null) {
+                    col.sources = Arrays.copyOf(col.sources, capacity);
+                    col.begins = Arrays.copyOf(col.begins, capacity);
+                    col.ends = Arrays.copyOf(col.ends, capacity);
+                }
+            }
+        }
+        return rowCount++;
+    }
+
+    protected void setType(int column, ColumnType type) {
+        if (columns[column].type == ColumnType.NULL)
+            columns[column].type = type;
+    }
+
+    protected void setNull(int row, int column) {
+        Column col = columns[column];
+        if (col.nulls == null)
+            col.nulls = new long[(capacity + 63) >> 6];
+        col.nulls[row >> 6] |= (1L << row);
+    }
+
+    protected void setLong(int row, int column, long value) {
+        Column col = columns[column];
+        if (col.longs == null) {
+            col.longs = new long[capacity];
+        }
+        col.longs[row] = value;
+    }
+
+    protected void setDouble(int row, int column, double value) {
+        Column col = columns[column];
+        if (col.doubles == null) {
+            col.doubles = new double[capacity];
+        }
+        col.doubles[row] = value;
+    }
+
+    protected void setString(int row, int column, String source, int begin, int end) {
+        Column col = columns[column];
+        if (col.sources == null) {
+            col.sources = new String[capacity];
+            col.begins = new int[capacity];
+            col.ends = new int[capacity];
+        }
+        col.sources[row] = source;
+        col.begins[row] = begin;
+        col.ends[row] = end;
+    }
+
+}
@@ -94,6 +94,16 @@ public abstract class MethodCallNode extends JavaValueNode
         }
     }
 
+    /**
+     * Make a shallow copy of this node with its own array of parameters.
+     */
+    protected QueryTreeNode shallowCopy() {
+        MethodCallNode copy = (MethodCallNode)super.shallowCopy();
+        if (methodParms != null)
+            copy.methodParms = methodParms.clone();
+        return copy;
+    }
+
     public String getMethodName() {
         return methodName;
     }
@@ -110,6 +110,16 @@ public final class NodeFactoryImpl extends NodeFactory
         return retval;
     }
 
+    /** 
+     * Make a deep copy of the given node for the given context.
+     * Since the node classes are the standard ones, use a {@link
+     * TreeCopier} rather than each class's <code>copyFrom</code>.
+     */
+    public QueryTreeNode copyNode(QueryTreeNode node, SQLParserContext pc)
+            throws StandardException {
+        return TreeCopier.copy(node, pc);
+    }
+
     /**
      * Translate a node type from NodeTypes to a class name
      *
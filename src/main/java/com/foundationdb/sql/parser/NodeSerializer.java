@@ -0,0 +1,980 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.types.CharacterTypeAttributes;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+import com.foundationdb.sql.types.MethodAliasInfo;
+import com.foundationdb.sql.types.RoutineAliasInfo;
+import com.foundationdb.sql.types.SynonymAliasInfo;
+import com.foundationdb.sql.types.TypeId;
+import com.foundationdb.sql.types.UDTAliasInfo;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary encoding of parsed trees, so that they can be saved
+ * and loaded without parsing again.
+ * <p>
+ * The encoding starts with a version and a table of all the strings
+ * used, such as identifiers. Then each node is its node type as a
+ * varint followed by the values of its fields. Constants are stored
+ * in their native form. Nodes are rebuilt through the {@link
+ * NodeFactory} of the given context.
+ * <p>
+ * Only the parse tree itself is encoded: not user data or parser
+ * state like the parameter list. The encoding depends on the
+ * fields of the node classes, so {@link #FORMAT_VERSION} must change
+ * whenever they do; the names and types of the fields are also
+ * checked when decoding. Only classes of the parser itself can be
+ * named by an encoded tree, and a malformed one is reported as a
+ * {@link StandardException}.
+ */
+public class NodeSerializer
+{
+    public static final int FORMAT_VERSION = 7;
+
+    private static final byte[] MAGIC = { 'F', 'D', 'B', 'S' };
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // Value tags.
+    private static final int NULL = 0, FALSE = 1, TRUE = 2,
+        INT = 3, LONG = 4, SHORT = 5, BYTE = 6, CHAR = 7, FLOAT = 8, DOUBLE = 9,
+        STRING = 10, BIG_DECIMAL = 11, BIG_INTEGER = 12, BYTES = 13, ENUM = 14,
+        NODE = 15, LIST = 16, MAP = 17, ARRAY = 18, BOOLEANS = 19,
+        DATA_TYPE = 20, BUILTIN_TYPE_ID = 21, USER_TYPE_ID = 22, CHARACTER_ATTRIBUTES = 23,
+        INTS = 24, FUNCTION_APPLICATION = 25,
+        METHOD_ALIAS = 26, ROUTINE_ALIAS = 27, SYNONYM_ALIAS = 28, UDT_ALIAS = 29,
+        ROW_BATCH = 30;
+
+    // Built-in type ids are encoded by the name of their constant.
+    private static final Map<TypeId,String> BUILTIN_TYPE_ID_NAMES =
+        new IdentityHashMap<TypeId,String>();
+    private static final Map<String,TypeId> BUILTIN_TYPE_IDS =
+        new HashMap<String,TypeId>();
+    static {
+        try {
+            for (Field field : TypeId.class.getFields()) {
+                if (Modifier.isStatic(field.getModifiers()) &&
+                    (field.getType() == TypeId.class)) {
+                    TypeId typeId = (TypeId)field.get(null);
+                    BUILTIN_TYPE_ID_NAMES.put(typeId, field.getName());
+                    BUILTIN_TYPE_IDS.put(field.getName(), typeId);
+                }
+            }
+        }
+        catch (IllegalAccessException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    private static final Map<Class<?>,Field[]> fieldsByClass =
+        new ConcurrentHashMap<Class<?>,Field[]>();
+    private static final Map<String,Class<?>> classesByName =
+        new ConcurrentHashMap<String,Class<?>>();
+    static {
+        classesByName.put(Object.class.getName(), Object.class);
+        classesByName.put(String.class.getName(), String.class);
+    }
+    // Other classes that can be named, for enums and arrays.
+    private static final String[] CLASS_PACKAGES = {
+        "com.foundationdb.sql.parser.", "com.foundationdb.sql.types."
+    };
+
+    private NodeSerializer() {
+    }
+
+    /** Encode the given tree. */
+    public static byte[] serialize(QueryTreeNode node) throws StandardException {
+        return new Writer().write(node);
+    }
+
+    /** Decode a tree, making its nodes belong to the given context. */
+    public static QueryTreeNode deserialize(byte[] bytes, SQLParserContext pc)
+            throws StandardException {
+        return new Reader(bytes, pc).read();
+    }
+
+    /** Get the fields to encode for the given node class, in a fixed order. */
+    protected static Field[] getFields(Class<?> clazz) {
+        Field[] result = fieldsByClass.get(clazz);
+        if (result == null) {
+            List<Field> fields = new ArrayList<Field>();
+            Comparator<Field> byName = new Comparator<Field>() {
+                    public int compare(Field f1, Field f2) {
+                        return f1.getName().compareTo(f2.getName());
+                    }
+                };
+            for (Class<?> c = clazz; c != QueryTreeNode.class; c = c.getSuperclass()) {
+                List<Field> declared = new ArrayList<Field>();
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()))
+                        continue;
+                    field.setAccessible(true);
+                    declared.add(field);
+                }
+                Collections.sort(declared, byName);
+                fields.addAll(0, declared);
+            }
+            try {
+                // Just the offsets from the base: the node type is
+                // encoded separately and context and user data not at all.
+                Field beginOffset = QueryTreeNode.class.getDeclaredField("beginOffset");
+                Field endOffset = QueryTreeNode.class.getDeclaredField("endOffset");
+                beginOffset.setAccessible(true);
+                endOffset.setAccessible(true);
+                fields.add(0, endOffset);
+                fields.add(0, beginOffset);
+            }
+            catch (NoSuchFieldException ex) {
+                throw new AssertionError(ex);
+            }
+            result = fields.toArray(new Field[fields.size()]);
+            fieldsByClass.put(clazz, result);
+        }
+        return result;
+    }
+
+    protected static Class<?> classForName(String name) throws StandardException {
+        Class<?> clazz = classesByName.get(name);
+        if (clazz == null) {
+            boolean allowed = false;
+            for (String prefix : CLASS_PACKAGES) {
+                if (name.startsWith(prefix)) {
+                    allowed = true;
+                    break;
+                }
+            }
+            if (!allowed)
+                throw new StandardException("Serialized class " + name + " is not allowed");
+            try {
+                clazz = Class.forName(name, false, NodeSerializer.class.getClassLoader());
+            }
+            catch (ClassNotFoundException ex) {
+                throw new StandardException(ex);
+            }
+            classesByName.put(name, clazz);
+        }
+        return clazz;
+    }
+
+    static class Writer {
+        private byte[] buffer = new byte[256];
+        private int length;
+        private Map<String,Integer> strings = new HashMap<String,Integer>();
+        private List<String> stringTable = new ArrayList<String>();
+        private boolean[] nodeTypesSeen = new boolean[NodeTypes.FINAL_VALUE+1];
+
+        public byte[] write(QueryTreeNode node) throws StandardException {
+            writeValue(node);
+            byte[] body = buffer;
+            int bodyLength = length;
+            buffer = new byte[bodyLength + stringTable.size() * 8 + 16];
+            length = 0;
+            for (byte b : MAGIC)
+                writeByte(b);
+            writeVarint(FORMAT_VERSION);
+            writeVarint(stringTable.size());
+            for (String str : stringTable) {
+                byte[] bytes = str.getBytes(UTF8);
+                writeVarint(bytes.length);
+                writeBytes(bytes);
+            }
+            writeBytes(body, bodyLength);
+            return Arrays.copyOf(buffer, length);
+        }
+
+        /**
+         * Write a value and everything it contains. Nodes and
+         * collections are written from an explicit stack, so that deep
+         * trees do not need a deep Java stack.
+         */
+        protected void writeValue(Object value) throws StandardException {
+            List<Object> pending = new ArrayList<Object>();
+            pending.add(value);
+            while (!pending.isEmpty()) {
+                writeOne(pending.remove(pending.size() - 1), pending);
+            }
+        }
+
+        /**
+         * Write a single value. The values inside a node or collection
+         * are added to <code>pending</code>, last first, instead.
+         */
+        protected void writeOne(Object value, List<Object> pending) throws StandardException {
+            if (value == null) {
+                writeByte(NULL);
+            }
+            else if (value instanceof QueryTreeNode) {
+                writeByte(NODE);
+                writeNode((QueryTreeNode)value, pending);
+            }
+            else if (value instanceof String) {
+                writeByte(STRING);
+                writeString((String)value);
+            }
+            else if (value instanceof Boolean) {
+                writeByte(((Boolean)value).booleanValue() ? TRUE : FALSE);
+            }
+            else if (value instanceof Integer) {
+                writeByte(INT);
+                writeSignedVarint(((Integer)value).intValue());
+            }
+            else if (value instanceof Long) {
+                writeByte(LONG);
+                writeSignedVarint(((Long)value).longValue());
+            }
+            else if (value instanceof Short) {
+                writeByte(SHORT);
+                writeSignedVarint(((Short)value).shortValue());
+            }
+            else if (value instanceof Byte) {
+                writeByte(BYTE);
+                writeByte(((Byte)value).byteValue());
+            }
+            else if (value instanceof Character) {
+                writeByte(CHAR);
+                writeVarint(((Character)value).charValue());
+            }
+            else if (value instanceof Float) {
+                writeByte(FLOAT);
+                writeFixed(Float.floatToIntBits(((Float)value).floatValue()), 4);
+            }
+            else if (value instanceof Double) {
+                writeByte(DOUBLE);
+                writeFixed(Double.doubleToLongBits(((Double)value).doubleValue()), 8);
+            }
+            else if (value instanceof BigDecimal) {
+                BigDecimal decimal = (BigDecimal)value;
+                writeByte(BIG_DECIMAL);
+                writeSignedVarint(decimal.scale());
+                byte[] bytes = decimal.unscaledValue().toByteArray();
+                writeVarint(bytes.length);
+                writeBytes(bytes);
+            }
+            else if (value instanceof BigInteger) {
+                writeByte(BIG_INTEGER);
+                byte[] bytes = ((BigInteger)value).toByteArray();
+                writeVarint(bytes.length);
+                writeBytes(bytes);
+            }
+            else if (value instanceof byte[]) {
+                byte[] bytes = (byte[])value;
+                writeByte(BYTES);
+                writeVarint(bytes.length);
+                writeBytes(bytes);
+            }
+            else if (value instanceof boolean[]) {
+                boolean[] booleans = (boolean[])value;
+                writeByte(BOOLEANS);
+                writeVarint(booleans.length);
+                for (boolean b : booleans)
+                    writeByte(b ? 1 : 0);
+            }
+            else if (value instanceof Enum) {
+                Enum<?> e = (Enum<?>)value;
+                writeByte(ENUM);
+                writeString(e.getDeclaringClass().getName());
+                writeVarint(e.ordinal());
+            }
+            else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>)value;
+                Object[] elems = collection.toArray();
+                writeByte(LIST);
+                writeVarint(elems.length);
+                addPending(pending, elems);
+            }
+            else if (value instanceof Map) {
+                Map<?,?> map = (Map<?,?>)value;
+                Object[] elems = new Object[map.size() * 2];
+                int i = 0;
+                for (Map.Entry<?,?> entry : map.entrySet()) {
+                    elems[i++] = entry.getKey();
+                    elems[i++] = entry.getValue();
+                }
+                writeByte(MAP);
+                writeVarint(map.size());
+                addPending(pending, elems);
+            }
+            else if (value instanceof Object[]) {
+                Object[] array = (Object[])value;
+                writeByte(ARRAY);
+                writeString(array.getClass().getComponentType().getName());
+                writeVarint(array.length);
+                addPending(pending, array);
+            }
+            else if (value instanceof DataTypeDescriptor) {
+                DataTypeDescriptor type = (DataTypeDescriptor)value;
+                writeByte(DATA_TYPE);
+                writeValue(type.getTypeId());
+                writeVarint(type.getPrecision());
+                writeSignedVarint(type.getScale());
+                writeByte(type.isNullable() ? 1 : 0);
+                writeVarint(type.getMaximumWidth());
+                writeValue(type.getCharacterAttributes());
+            }
+            else if (value instanceof TypeId) {
+                TypeId typeId = (TypeId)value;
+                String name = BUILTIN_TYPE_ID_NAMES.get(typeId);
+                if (name != null) {
+                    writeByte(BUILTIN_TYPE_ID);
+                    writeString(name);
+                }
+                else if (typeId.isUserDefinedTypeId()) {
+                    writeByte(USER_TYPE_ID);
+                    writeValue(typeId.getSchemaName());
+                    writeValue(typeId.getUnqualifiedName());
+                    writeValue(typeId.getCorrespondingJavaTypeName());
+                    writeByte(typeId.getClassNameWasDelimitedIdentifier() ? 1 : 0);
+                }
+                else {
+                    throw new StandardException("Cannot serialize type " + typeId);
+                }
+            }
+            else if (value instanceof CharacterTypeAttributes) {
+                CharacterTypeAttributes attrs = (CharacterTypeAttributes)value;
+                writeByte(CHARACTER_ATTRIBUTES);
+                writeValue(attrs.getCharacterSet());
+                writeValue(attrs.getCollation());
+                writeValue(attrs.getCollationDerivation());
+            }
+            else if (value instanceof int[]) {
+                int[] ints = (int[])value;
+                writeByte(INTS);
+                writeVarint(ints.length);
+                for (int i : ints)
+                    writeSignedVarint(i);
+            }
+            else if (value instanceof IndexColumnList.FunctionApplication) {
+                IndexColumnList.FunctionApplication function = 
+                    (IndexColumnList.FunctionApplication)value;
+                writeByte(FUNCTION_APPLICATION);
+                writeString(function.functionName);
+                writeVarint(function.firstArgumentPosition);
+                writeVarint(function.nArguments);
+            }
+            else if (value instanceof RoutineAliasInfo) {
+                RoutineAliasInfo routine = (RoutineAliasInfo)value;
+                writeByte(ROUTINE_ALIAS);
+                writeValue(routine.getMethodName());
+                writeVarint(routine.getParameterCount());
+                writeValue(routine.getParameterNames());
+                writeValue(routine.getParameterTypes());
+                writeValue(routine.getParameterModes());
+                writeVarint(routine.getMaxDynamicResultSets());
+                writeValue(routine.getLanguage());
+                writeValue(routine.getParameterStyle());
+                writeValue(routine.getSQLAllowed());
+                writeByte(routine.isDeterministic() ? 1 : 0);
+                writeByte(routine.hasDefinersRights() ? 1 : 0);
+                writeByte(routine.calledOnNullInput() ? 1 : 0);
+                writeValue(routine.getReturnType());
+            }
+            else if (value instanceof MethodAliasInfo) {
+                writeByte(METHOD_ALIAS);
+                writeValue(((MethodAliasInfo)value).getMethodName());
+            }
+            else if (value instanceof SynonymAliasInfo) {
+                SynonymAliasInfo synonym = (SynonymAliasInfo)value;
+                writeByte(SYNONYM_ALIAS);
+                writeValue(synonym.getSynonymSchema());
+                writeValue(synonym.getSynonymTable());
+            }
+            else if (value instanceof UDTAliasInfo) {
+                writeByte(UDT_ALIAS);
+            }
+            else if (value instanceof LiteralRowBatch) {
+                LiteralRowBatch batch = (LiteralRowBatch)value;
+                writeByte(ROW_BATCH);
+                writeVarint(batch.getColumnCount());
+                writeVarint(batch.getRowCount());
+                for (int i = 0; i < batch.getRowCount(); i++) {
+                    for (int j = 0; j < batch.getColumnCount(); j++)
+                        writeValue(batch.getValue(i, j));
+                }
+            }
+            else {
+                throw new StandardException("Cannot serialize " + value.getClass().getName());
+            }
+        }
+
+        protected void writeNode(QueryTreeNode node, List<Object> pending)
+                throws StandardException {
+            int nodeType = node.getNodeType();
+            Field[] fields = getFields(node.getClass());
+            writeVarint(nodeType);
+            if (!nodeTypesSeen[nodeType]) {
+                // The first node of each type also has its fields.
+                nodeTypesSeen[nodeType] = true;
+                writeVarint(fields.length);
+                for (Field field : fields) {
+                    writeString(field.getName());
+                    writeString(field.getType().getName());
+                }
+            }
+            Object[] values = new Object[fields.length];
+            try {
+                for (int i = 0; i < fields.length; i++) {
+                    values[i] = fields[i].get(node);
+                }
+            }
+            catch (IllegalAccessException ex) {
+                throw new StandardException(ex);
+            }
+            addPending(pending, values);
+        }
+
+        protected static void addPending(List<Object> pending, Object[] values) {
+            for (int i = values.length - 1; i >= 0; i--)
+                pending.add(values[i]);
+        }
+
+        protected void writeString(String str) {
+            Integer index = strings.get(str);
+            if (index == null) {
+                index = stringTable.size();
+                stringTable.add(str);
+                strings.put(str, index);
+            }
+            writeVarint(index);
+        }
+
+        protected void writeSignedVarint(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        protected void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int)((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int)value);
+        }
+
+        protected void writeFixed(long value, int nbytes) {
+            for (int i = 0; i < nbytes; i++) {
+                writeByte((int)value);
+                value >>>= 8;
+            }
+        }
+
+        protected void writeByte(int b) {
+            if (length == buffer.length)
+                buffer = Arrays.copyOf(buffer, length * 2);
+            buffer[length++] = (byte)b;
+        }
+
+        protected void writeBytes(byte[] bytes) {
+            writeBytes(bytes, bytes.length);
+        }
+
+        protected void writeBytes(byte[] bytes, int nbytes) {
+            if (length + nbytes > buffer.length)
+                buffer = Arrays.copyOf(buffer, Math.max(length * 2, length + nbytes));
+            System.arraycopy(bytes, 0, buffer, length, nbytes);
+            length += nbytes;
+        }
+    }
+
+    static class Reader {
+        private final byte[] buffer;
+        private int position;
+        private final SQLParserContext pc;
+        private final NodeFactory nodeFactory;
+        private String[] strings;
+        private boolean[] nodeTypesSeen = new boolean[NodeTypes.FINAL_VALUE+1];
+
+        public Reader(byte[] buffer, SQLParserContext pc) {
+            this.buffer = buffer;
+            this.pc = pc;
+            this.nodeFactory = pc.getNodeFactory();
+        }
+
+        public QueryTreeNode read() throws StandardException {
+            try {
+                for (byte b : MAGIC) {
+                    if (readByte() != b)
+                        throw new StandardException("Not a serialized statement");
+                }
+                int version = (int)readVarint();
+                if (version != FORMAT_VERSION)
+                    throw new StandardException("Serialized statement version " + version +
+                                                " is not supported");
+                strings = new String[readSize()];
+                for (int i = 0; i < strings.length; i++) {
+                    int nbytes = readSize();
+                    strings[i] = new String(buffer, position, nbytes, UTF8);
+                    position += nbytes;
+                }
+                return (QueryTreeNode)readValue();
+            }
+            catch (ArrayIndexOutOfBoundsException ex) {
+                throw new StandardException("Serialized statement is truncated", ex);
+            }
+            catch (ClassCastException ex) {
+                throw new StandardException("Serialized statement is malformed", ex);
+            }
+            catch (IllegalArgumentException ex) {
+                throw new StandardException("Serialized statement is malformed", ex);
+            }
+            catch (ArrayStoreException ex) {
+                throw new StandardException("Serialized statement is malformed", ex);
+            }
+        }
+
+        /**
+         * Read a value and everything it contains. Nodes and
+         * collections are filled in from an explicit stack, so that
+         * deep trees do not need a deep Java stack.
+         */
+        protected Object readValue() throws StandardException {
+            List<Container> stack = new ArrayList<Container>();
+            while (true) {
+                Object value = readOne(stack);
+                while (value != PENDING) {
+                    if (stack.isEmpty())
+                        return value;
+                    Container container = stack.get(stack.size() - 1);
+                    if (!container.add(value))
+                        break;
+                    stack.remove(stack.size() - 1);
+                    value = container.getResult();
+                }
+            }
+        }
+
+        /**
+         * Read a single value. A node or collection with values inside
+         * is pushed onto <code>stack</code> to be filled in and {@link
+         * #PENDING} returned instead.
+         */
+        protected Object readOne(List<Container> stack) throws StandardException {
+            int tag = readByte();
+            switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case INT:
+                return Integer.valueOf((int)readSignedVarint());
+            case LONG:
+                return Long.valueOf(readSignedVarint());
+            case SHORT:
+                return Short.valueOf((short)readSignedVarint());
+            case BYTE:
+                return Byte.valueOf(buffer[position++]);
+            case CHAR:
+                return Character.valueOf((char)readVarint());
+            case FLOAT:
+                return Float.valueOf(Float.intBitsToFloat((int)readFixed(4)));
+            case DOUBLE:
+                return Double.valueOf(Double.longBitsToDouble(readFixed(8)));
+            case STRING:
+                return readString();
+            case BIG_DECIMAL:
+                {
+                    int scale = (int)readSignedVarint();
+                    return new BigDecimal(new BigInteger(readBytes()), scale);
+                }
+            case BIG_INTEGER:
+                return new BigInteger(readBytes());
+            case BYTES:
+                return readBytes();
+            case BOOLEANS:
+                {
+                    boolean[] booleans = new boolean[readSize()];
+                    for (int i = 0; i < booleans.length; i++)
+                        booleans[i] = (readByte() != 0);
+                    return booleans;
+                }
+            case ENUM:
+                {
+                    Class<?> clazz = classForName(readString());
+                    if (!clazz.isEnum())
+                        throw new StandardException("Serialized class " + clazz.getName() +
+                                                    " is not an enum");
+                    Object[] constants = clazz.getEnumConstants();
+                    long ordinal = readVarint();
+                    if ((ordinal < 0) || (ordinal >= constants.length))
+                        throw new StandardException("Serialized " + clazz.getName() +
+                                                    " ordinal " + ordinal + " is out of range");
+                    return constants[(int)ordinal];
+                }
+            case NODE:
+                return push(stack, readNode());
+            case LIST:
+                return push(stack, new ListContainer(readSize()));
+            case MAP:
+                return push(stack, new MapContainer(readSize()));
+            case ARRAY:
+                {
+                    Class<?> clazz = classForName(readString());
+                    Object[] array = (Object[])Array.newInstance(clazz, readSize());
+                    return push(stack, new ArrayContainer(array));
+                }
+            case DATA_TYPE:
+                {
+                    TypeId typeId = (TypeId)readValue();
+                    int precision = (int)readVarint();
+                    int scale = (int)readSignedVarint();
+                    boolean nullable = (readByte() != 0);
+                    int maximumWidth = (int)readVarint();
+                    CharacterTypeAttributes attrs = (CharacterTypeAttributes)readValue();
+                    DataTypeDescriptor type = new DataTypeDescriptor(typeId, precision, scale,
+                                                                     nullable, maximumWidth);
+                    if (attrs != null)
+                        type = new DataTypeDescriptor(type, attrs);
+                    return DataTypeDescriptor.intern(type);
+                }
+            case BUILTIN_TYPE_ID:
+                {
+                    String name = readString();
+                    TypeId typeId = BUILTIN_TYPE_IDS.get(name);
+                    if (typeId == null)
+                        throw new StandardException("Unknown serialized type " + name);
+                    return typeId;
+                }
+            case USER_TYPE_ID:
+                {
+                    String schemaName = (String)readValue();
+                    String unqualifiedName = (String)readValue();
+                    String className = (String)readValue();
+                    boolean delimited = (readByte() != 0);
+                    if (delimited)
+                        return TypeId.getUserDefinedTypeId(className, delimited);
+                    else
+                        return TypeId.getUserDefinedTypeId(schemaName, unqualifiedName, className);
+                }
+            case CHARACTER_ATTRIBUTES:
+                {
+                    String characterSet = (String)readValue();
+                    String collation = (String)readValue();
+                    CharacterTypeAttributes.CollationDerivation derivation =
+                        (CharacterTypeAttributes.CollationDerivation)readValue();
+                    return new CharacterTypeAttributes(characterSet, collation, derivation);
+                }
+            case INTS:
+                {
+                    int[] ints = new int[readSize()];
+                    for (int i = 0; i < ints.length; i++)
+                        ints[i] = (int)readSignedVarint();
+                    return ints;
+                }
+            case FUNCTION_APPLICATION:
+                {
+                    String functionName = readString();
+                    int firstArgumentPosition = (int)readVarint();
+                    int nArguments = (int)readVarint();
+                    return new IndexColumnList.FunctionApplication(functionName,
+                                                                   firstArgumentPosition,
+                                                                   nArguments);
+                }
+            case ROUTINE_ALIAS:
+                {
+                    String methodName = (String)readValue();
+                    int parameterCount = (int)readVarint();
+                    String[] parameterNames = (String[])readValue();
+                    DataTypeDescriptor[] parameterTypes = (DataTypeDescriptor[])readValue();
+                    int[] parameterModes = (int[])readValue();
+                    int dynamicResultSets = (int)readVarint();
+                    String language = (String)readValue();
+                    String parameterStyle = (String)readValue();
+                    RoutineAliasInfo.SQLAllowed sqlAllowed = 
+                        (RoutineAliasInfo.SQLAllowed)readValue();
+                    boolean deterministic = (readByte() != 0);
+                    boolean definersRights = (readByte() != 0);
+                    boolean calledOnNullInput = (readByte() != 0);
+                    DataTypeDescriptor returnType = (DataTypeDescriptor)readValue();
+                    return new RoutineAliasInfo(methodName, parameterCount, 
+                                                parameterNames, parameterTypes, parameterModes,
+                                                dynamicResultSets, language, parameterStyle,
+                                                sqlAllowed, deterministic, definersRights,
+                                                calledOnNullInput, returnType);
+                }
+            case METHOD_ALIAS:
+                return new MethodAliasInfo((String)readValue());
+            case SYNONYM_ALIAS:
+                {
+                    String schemaName = (String)readValue();
+                    return new SynonymAliasInfo(schemaName, (String)readValue());
+                }
+            case UDT_ALIAS:
+                return new UDTAliasInfo();
+            case ROW_BATCH:
+                {
+                    int ncols = readSize();
+                    int nrows = readSize();
+                    LiteralRowBatch batch = new LiteralRowBatch(ncols);
+                    Object[] values = new Object[ncols];
+                    for (int i = 0; i < nrows; i++) {
+                        for (int j = 0; j < ncols; j++)
+                            values[j] = readValue();
+                        if (!batch.addValues(values))
+                            throw new StandardException("Inconsistent row batch");
+                    }
+                    return batch;
+                }
+            default:
+                throw new StandardException("Unknown serialized value tag " + tag);
+            }
+        }
+
+        /** Read a node's type and make it, with its fields still to be read. */
+        protected Container readNode() throws StandardException {
+            int nodeType = (int)readVarint();
+            if ((nodeType < 0) || (nodeType > NodeTypes.FINAL_VALUE))
+                throw new StandardException("Unknown serialized node type " + nodeType);
+            QueryTreeNode node = nodeFactory.getNode(nodeType, pc);
+            Field[] fields = getFields(node.getClass());
+            if (!nodeTypesSeen[nodeType]) {
+                nodeTypesSeen[nodeType] = true;
+                int nfields = (int)readVarint();
+                if (nfields != fields.length)
+                    throw new StandardException("Serialized " + node.getClass().getName() +
+                                                " has " + nfields + " fields" +
+                                                " but node class has " + fields.length);
+                for (Field field : fields) {
+                    String name = readString();
+                    String type = readString();
+                    if (!(name.equals(field.getName()) &&
+                          type.equals(field.getType().getName())))
+                        throw new StandardException("Serialized " + node.getClass().getName() +
+                                                    " field " + name + " " + type +
+                                                    " does not match node class field " +
+                                                    field.getName() + " " +
+                                                    field.getType().getName());
+                }
+            }
+            return new NodeContainer(node, fields);
+        }
+
+        protected static Object push(List<Container> stack, Container container) {
+            if (container.isFull())
+                return container.getResult();
+            stack.add(container);
+            return PENDING;
+        }
+
+        /** Set the field, keeping any collection the node started with. */
+        protected static void setField(QueryTreeNode node, Field field, Object value)
+                throws IllegalAccessException {
+            if (value instanceof List) {
+                Object current = field.get(node);
+                if (current instanceof Collection) {
+                    Collection<Object> collection = (Collection<Object>)current;
+                    collection.clear();
+                    collection.addAll((List<Object>)value);
+                    return;
+                }
+            }
+            else if (value instanceof Map) {
+                Object current = field.get(node);
+                if (current instanceof Map) {
+                    Map<Object,Object> map = (Map<Object,Object>)current;
+                    map.clear();
+                    map.putAll((Map<Object,Object>)value);
+                    return;
+                }
+                if (field.getType() == Properties.class) {
+                    Properties properties = new Properties();
+                    properties.putAll((Map<Object,Object>)value);
+                    value = properties;
+                }
+            }
+            field.set(node, value);
+        }
+
+        /** Read a count of values or bytes, each of which takes at
+         * least a byte, so that it cannot be more than what is left. */
+        protected int readSize() throws StandardException {
+            long size = readVarint();
+            if ((size < 0) || (size > buffer.length - position))
+                throw new StandardException("Serialized statement is truncated");
+            return (int)size;
+        }
+
+        protected String readString() throws StandardException {
+            long index = readVarint();
+            if ((index < 0) || (index >= strings.length))
+                throw new StandardException("Serialized string index " + index +
+                                            " is out of range");
+            return strings[(int)index];
+        }
+
+        // Returned by readOne when the value is not complete yet.
+        private static final Object PENDING = new Object();
+
+        /** Something that values are read into. */
+        static abstract class Container {
+            private final int size;
+            private int index;
+
+            protected Container(int size) {
+                this.size = size;
+            }
+
+            public boolean isFull() {
+                return (index == size);
+            }
+
+            /** Add the next value and return whether that was the last one. */
+            public boolean add(Object value) throws StandardException {
+                set(index++, value);
+                return isFull();
+            }
+
+            protected abstract void set(int index, Object value) throws StandardException;
+            public abstract Object getResult();
+        }
+
+        static class NodeContainer extends Container {
+            private final QueryTreeNode node;
+            private final Field[] fields;
+
+            public NodeContainer(QueryTreeNode node, Field[] fields) {
+                super(fields.length);
+                this.node = node;
+                this.fields = fields;
+            }
+
+            protected void set(int index, Object value) throws StandardException {
+                try {
+                    setField(node, fields[index], value);
+                }
+                catch (IllegalAccessException ex) {
+                    throw new StandardException(ex);
+                }
+            }
+
+            public Object getResult() {
+                return node;
+            }
+        }
+
+        static class ListContainer extends Container {
+            private final List<Object> list;
+
+            public ListContainer(int size) {
+                super(size);
+                list = new ArrayList<Object>(size);
+            }
+
+            protected void set(int index, Object value) {
+                list.add(value);
+            }
+
+            public Object getResult() {
+                return list;
+            }
+        }
+
+        static class MapContainer extends Container {
+            private final Map<Object,Object> map;
+            private Object key;
+
+            public MapContainer(int size) {
+                super(size * 2);
+                map = new LinkedHashMap<Object,Object>(size);
+            }
+
+            protected void set(int index, Object value) {
+                if ((index & 1) == 0)
+                    key = value;
+                else
+                    map.put(key, value);
+            }
+
+            public Object getResult() {
+                return map;
+            }
+        }
+
+        static class ArrayContainer extends Container {
+            private final Object[] array;
+
+            public ArrayContainer(Object[] array) {
+                super(array.length);
+                this.array = array;
+            }
+
+            protected void set(int index, Object value) {
+                array[index] = value;
+            }
+
+            public Object getResult() {
+                return array;
+            }
+        }
+
+        protected byte[] readBytes() throws StandardException {
+            int nbytes = readSize();
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + nbytes);
+            position += nbytes;
+            return bytes;
+        }
+
+        protected long readSignedVarint() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        protected long readVarint() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                int b = buffer[position++];
+                value |= (long)(b & 0x7F) << shift;
+                if ((b & 0x80) == 0) break;
+                shift += 7;
+            }
+            return value;
+        }
+
+        protected long readFixed(int nbytes) {
+            long value = 0;
+            for (int i = 0; i < nbytes; i++) {
+                value |= (long)(buffer[position++] & 0xFF) << (i * 8);
+            }
+            return value;
+        }
+
+        protected int readByte() {
+            return buffer[position++];
+        }
+    }
+
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A tree of nodes that is no longer modified in place, from which
+ * edited versions can be derived cheaply.
+ * <p>
+ * An {@link Editor} starts out sharing the whole tree. Asking it to
+ * {@link Editor#modify} a node makes a shallow copy of that node and
+ * of each of its ancestors up to the root, leaving every other
+ * subtree shared with the original. So the cost of an edit is
+ * proportional to the depth of the modified node, not the size of
+ * the tree.
+ * <p>
+ * The roots returned are ordinary nodes. But nodes that have not been
+ * returned by <code>modify</code> are shared and must not be changed.
+ * Only children reachable through {@link QueryTreeNode#accept} are
+ * known to the tree; shared user data is not copied. The rows of a
+ * {@link RowsResultSetNode} kept in columnar form are not nodes until
+ * visited and cannot be edited one at a time.
+ * <p>
+ * A node that is the child of more than one parent in the original
+ * tree has no single path to copy, so it and everything under it
+ * cannot be modified or replaced.
+ */
+public class PersistentTree<T extends QueryTreeNode>
+{
+    private final T root;
+    private final Map<QueryTreeNode,QueryTreeNode> parents;
+    // Nodes reached from more than one place.
+    private final Set<QueryTreeNode> shared;
+
+    /**
+     * Take over the given tree, which must not be changed afterwards.
+     */
+    public PersistentTree(T root) throws StandardException {
+        this.root = root;
+        this.parents = new IdentityHashMap<QueryTreeNode,QueryTreeNode>();
+        this.shared = Collections.newSetFromMap(new IdentityHashMap<QueryTreeNode,Boolean>());
+        ChildrenCollector children = new ChildrenCollector();
+        Deque<QueryTreeNode> pending = new ArrayDeque<QueryTreeNode>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            QueryTreeNode node = pending.pop();
+            children.collect(node);
+            for (QueryTreeNode child : children.getChildren()) {
+                if ((child == root) || parents.containsKey(child)) {
+                    // Already seen, along with everything under it.
+                    shared.add(child);
+                    continue;
+                }
+                parents.put(child, node);
+                pending.push(child);
+            }
+        }
+    }
+
+    /** Get the original root. */
+    public T getRoot() {
+        return root;
+    }
+
+    /** Does the original tree contain the given node? */
+    public boolean contains(QueryTreeNode node) {
+        return (node == root) || parents.containsKey(node);
+    }
+
+    /** Get the parent of the given node in the original tree. For a
+     * node with several parents, this is just the first one found. */
+    public QueryTreeNode getParent(QueryTreeNode node) {
+        return parents.get(node);
+    }
+
+    /** Is the given node the child of more than one parent? */
+    public boolean isShared(QueryTreeNode node) {
+        return shared.contains(node);
+    }
+
+    /** Get the parent of a node that is to be copied or replaced. */
+    protected QueryTreeNode getEditableParent(QueryTreeNode node) {
+        QueryTreeNode parent = parents.get(node);
+        if (parent == null)
+            throw new IllegalArgumentException("Node is not part of tree: " + node.getClass().getName());
+        if (shared.contains(node))
+            throw new IllegalArgumentException("Node has more than one parent: " + node.getClass().getName());
+        return parent;
+    }
+
+    /** Start a new edited version of the tree. */
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * One edited version of the tree.
+     */
+    public class Editor {
+        private T editedRoot = root;
+        private Map<QueryTreeNode,QueryTreeNode> copies =
+            new IdentityHashMap<QueryTreeNode,QueryTreeNode>();
+        private Map<QueryTreeNode,QueryTreeNode> copied =
+            new IdentityHashMap<QueryTreeNode,QueryTreeNode>();
+        // Original nodes whose place has been taken by a replacement.
+        private Map<QueryTreeNode,QueryTreeNode> replaced =
+            new IdentityHashMap<QueryTreeNode,QueryTreeNode>();
+
+        /** Get the root of this version. */
+        public T getRoot() {
+            return editedRoot;
+        }
+
+        /** Has the given original node been copied yet? */
+        public boolean isModified(QueryTreeNode node) {
+            return copies.containsKey(node);
+        }
+
+        /**
+         * Get a private copy of the given node, which can then be
+         * changed freely. The node can be from the original tree or
+         * an already modified node, in which case it is returned. If
+         * the node was replaced by a new node, that is returned.
+         */
+        public <N extends QueryTreeNode> N modify(N node) throws StandardException {
+            if (copied.containsKey(node))
+                return node;
+            QueryTreeNode copy = copies.get(node);
+            if (copy == null) {
+                if (replaced.containsKey(node))
+                    throw new IllegalArgumentException("Node was replaced by a node of the original tree: " + node.getClass().getName());
+                if (node == root) {
+                    copy = node.shallowCopy();
+                    editedRoot = (T)copy;
+                }
+                else {
+                    QueryTreeNode parentCopy = modifyParent(node);
+                    copy = node.shallowCopy();
+                    replaceChild(parentCopy, node, copy);
+                }
+                copies.put(node, copy);
+                copied.put(copy, node);
+            }
+            return (N)copy;
+        }
+
+        /**
+         * Replace the given node, copying its ancestors as needed. The
+         * node can be from the original tree or an already modified
+         * node. Nodes under it can no longer be edited.
+         */
+        public void replace(QueryTreeNode node, QueryTreeNode replacement)
+                throws StandardException {
+            QueryTreeNode original = copied.get(node);
+            if (original != null)
+                node = original;
+            // What is in its place now.
+            QueryTreeNode current = copies.get(node);
+            if (current == null)
+                current = replaced.get(node);
+            if (current == null)
+                current = node;
+            if (node == root) {
+                editedRoot = (T)replacement;
+            }
+            else {
+                replaceChild(modifyParent(node), current, replacement);
+            }
+            copies.remove(node);
+            copied.remove(current);
+            replaced.put(node, replacement);
+            if (!contains(replacement) && !copied.containsKey(replacement)) {
+                // A new node, which is now private to this version.
+                copies.put(node, replacement);
+                copied.put(replacement, node);
+            }
+        }
+
+        protected QueryTreeNode modifyParent(QueryTreeNode node)
+                throws StandardException {
+            QueryTreeNode parent = getEditableParent(node);
+            QueryTreeNode parentCopy = modify(parent);
+            if (replaced.containsKey(parent))
+                throw new IllegalArgumentException("Node is under a replaced node: " + node.getClass().getName());
+            return parentCopy;
+        }
+    }
+
+    /** Replace <code>child</code> in <code>parent</code>, which must be private. */
+    protected static void replaceChild(QueryTreeNode parent,
+                                       QueryTreeNode child, QueryTreeNode replacement)
+            throws StandardException {
+        ChildReplacer replacer = new ChildReplacer(child, replacement);
+        parent.acceptChildren(replacer);
+        if (!replacer.isReplaced())
+            throw new IllegalStateException("Child not found in " + parent.getClass().getName());
+    }
+
+    /** Visit just the immediate children of a node. */
+    static abstract class ChildVisitor implements Visitor {
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+
+        public boolean stopTraversal() {
+            return false;
+        }
+
+        public boolean skipChildren(Visitable node) {
+            return true;
+        }
+    }
+
+    static class ChildrenCollector extends ChildVisitor {
+        private List<QueryTreeNode> children =
+            new ArrayList<QueryTreeNode>();
+
+        public void collect(QueryTreeNode node) throws StandardException {
+            children.clear();
+            node.acceptChildren(this);
+        }
+
+        public List<QueryTreeNode> getChildren() {
+            return children;
+        }
+
+        public Visitable visit(Visitable node) {
+            children.add((QueryTreeNode)node);
+            return node;
+        }
+    }
+
+    static class ChildReplacer extends ChildVisitor {
+        private QueryTreeNode child, replacement;
+        private boolean replaced;
+
+        public ChildReplacer(QueryTreeNode child, QueryTreeNode replacement) {
+            this.child = child;
+            this.replacement = replacement;
+        }
+
+        public boolean isReplaced() {
+            return replaced;
+        }
+
+        public Visitable visit(Visitable node) {
+            if (node == child) {
+                replaced = true;
+                return replacement;
+            }
+            return node;
+        }
+    }
+
+}
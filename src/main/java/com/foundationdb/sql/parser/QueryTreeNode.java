@@ -54,7 +54,7 @@ import java.io.Writer;
  *
  */
 
-public abstract class QueryTreeNode implements Visitable
+public abstract class QueryTreeNode implements Visitable, Cloneable
 {
     public static final int AUTOINCREMENT_START_INDEX = 0;
     public static final int AUTOINCREMENT_INC_INDEX     = 1;
@@ -120,6 +120,21 @@ public abstract class QueryTreeNode implements Visitable
         this.userData = getNodeFactory().copyUserData(this, other.userData);
     }
 
+    /**
+     * Make a shallow copy of this node, sharing all children with it.
+     * Specific node classes that keep their children in a collection
+     * must override to copy the collection itself.
+     * @see PersistentTree
+     */
+    protected QueryTreeNode shallowCopy() {
+        try {
+            return (QueryTreeNode)clone();
+        }
+        catch (CloneNotSupportedException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
     /**
      * Gets the beginning offset of the SQL substring which this
      * query node represents.
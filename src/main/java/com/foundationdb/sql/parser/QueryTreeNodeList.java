@@ -56,6 +56,9 @@ public abstract class QueryTreeNodeList<N extends QueryTreeNode>
     extends QueryTreeNode implements Iterable<N>
 {
     private List<N> list = new ArrayList<N>();
+    // How many elements visitors have replaced, so that the node that
+    // owns the list can tell without keeping a copy of it.
+    private int replacements;
 
     public final int size() {
         return list.size();
@@ -74,6 +77,11 @@ public abstract class QueryTreeNodeList<N extends QueryTreeNode>
         return list.get(index);
     }
 
+    /** The number of elements ever replaced through {@link #accept}. */
+    int getReplacements() {
+        return replacements;
+    }
+
     public void add(N n) {
         list.add(n);
     }
@@ -126,6 +134,15 @@ public abstract class QueryTreeNodeList<N extends QueryTreeNode>
             list.add((N)getNodeFactory().copyNode(n, getParserContext()));
     }
 
+    /**
+     * Make a shallow copy of this node with its own list.
+     */
+    protected QueryTreeNode shallowCopy() {
+        QueryTreeNodeList<N> copy = (QueryTreeNodeList<N>)super.shallowCopy();
+        copy.list = new ArrayList<N>(list);
+        return copy;
+    }
+
     /**
      * Prints the sub-nodes of this object.  See QueryTreeNode.java for
      * how tree printing is supposed to work.
@@ -151,7 +168,12 @@ public abstract class QueryTreeNodeList<N extends QueryTreeNode>
 
         int size = size();
         for (int index = 0; index < size; index++) {
-            set(index, (N)get(index).accept(v));
+            N element = get(index);
+            N result = (N)element.accept(v);
+            if (result != element) {
+                set(index, result);
+                replacements++;
+            }
         }
     }
 }
@@ -276,6 +276,7 @@ public class ResultColumn extends ValueNode
 
     public void setExpression(ValueNode expression) {
         this.expression = expression;
+        setTypeStale(true);
     }
 
     /**
@@ -410,7 +411,7 @@ public class ResultColumn extends ValueNode
         super.acceptChildren(v);
 
         if (expression != null) {
-            setExpression((ValueNode)expression.accept(v));
+            expression = acceptOperand(expression, v);
         }
         if (reference != null) {
             reference = (ColumnReference)reference.accept(v);
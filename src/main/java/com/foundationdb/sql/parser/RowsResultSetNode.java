@@ -29,6 +29,8 @@ import java.util.List;
 public class RowsResultSetNode extends FromTable
 {
     private List<RowResultSetNode> rows;
+    // All the rows, when kept in columnar form instead.
+    private LiteralRowBatch batch;
 
     /**
      * Initializer for a RowsResultSetNode.
@@ -44,12 +46,77 @@ public class RowsResultSetNode extends FromTable
             getNodeFactory().copyNode(row.getResultColumns(), getParserContext());
     }
 
+    /**
+     * Get the rows as nodes. If they were being kept in columnar form,
+     * they are converted now and from then on.
+     */
     public List<RowResultSetNode> getRows() {
+        if (batch != null) {
+            List<RowResultSetNode> nodes = new ArrayList<RowResultSetNode>(batch.getRowCount());
+            for (int i = 0; i < batch.getRowCount(); i++)
+                nodes.add(getBatchRow(i));
+            rows = nodes;
+            batch = null;
+        }
         return rows;
     }
 
+    public int getRowCount() {
+        return (batch != null) ? batch.getRowCount() : rows.size();
+    }
+
+    /**
+     * Get one row as a node. If the rows are in columnar form, this is
+     * a new node each time, which is not kept.
+     */
+    public RowResultSetNode getRow(int index) {
+        if (batch != null)
+            return getBatchRow(index);
+        return rows.get(index);
+    }
+
+    protected RowResultSetNode getBatchRow(int index) {
+        try {
+            return batch.getRowNode(index, getNodeFactory(), getParserContext());
+        }
+        catch (StandardException ex) {
+            // The same nodes were already made once, when parsing.
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Get the rows in columnar form, or <code>null</code> if they are
+     * not kept that way.
+     */
+    public LiteralRowBatch getBatch() {
+        return batch;
+    }
+
     public void addRow(RowResultSetNode row) {
-        rows.add(row);
+        getRows().add(row);
+    }
+
+    /**
+     * Add a row of literal values in columnar form, if all the rows so
+     * far and this one can be kept that way.
+     * @return <code>false</code> if the row was not added and needs
+     * to be added as a node instead
+     */
+    public boolean addLiteralRow(ResultColumnList row) throws StandardException {
+        if (batch == null) {
+            if (rows.size() != 1)
+                return false;
+            LiteralRowBatch first = new LiteralRowBatch(resultColumns.size());
+            if (!first.addRow(rows.get(0).getResultColumns()))
+                return false;
+            batch = first;
+            rows = null;
+        }
+        if (batch.addRow(row))
+            return true;
+        getRows();
+        return false;
     }
 
     public String statementToString() {
@@ -63,11 +130,27 @@ public class RowsResultSetNode extends FromTable
         super.copyFrom(node);
 
         RowsResultSetNode other = (RowsResultSetNode)node;
+        if (other.batch != null) {
+            // Not changed once parsed, so can be shared.
+            batch = other.batch;
+            rows = null;
+            return;
+        }
         rows = new ArrayList<RowResultSetNode>(other.rows.size());
         for (RowResultSetNode row : other.rows)
             rows.add((RowResultSetNode)getNodeFactory().copyNode(row, getParserContext()));
     }
 
+    /**
+     * Make a shallow copy of this node with its own list of rows.
+     */
+    protected QueryTreeNode shallowCopy() {
+        RowsResultSetNode copy = (RowsResultSetNode)super.shallowCopy();
+        if (rows != null)
+            copy.rows = new ArrayList<RowResultSetNode>(rows);
+        return copy;
+    }
+
     /**
      * Prints the sub-nodes of this object.  See QueryTreeNode.java for
      * how tree printing is supposed to work.
@@ -77,15 +160,19 @@ public class RowsResultSetNode extends FromTable
 
     public void printSubNodes(int depth) {
         super.printSubNodes(depth);
-        for (int index = 0; index < rows.size(); index++) {
+        int size = getRowCount();
+        for (int index = 0; index < size; index++) {
             debugPrint(formatNodeString("[" + index + "]:", depth));
-            RowResultSetNode row = rows.get(index);
+            RowResultSetNode row = getRow(index);
             row.treePrint(depth);
         }
     }
 
     /**
      * Accept the visitor for all visitable children of this node.
+     * Rows in columnar form are visited as new nodes, which are not
+     * kept, so that visiting does not change this node. Only if the
+     * visitor replaces a row are the rows converted to nodes.
      * 
      * @param v the visitor
      *
@@ -93,10 +180,24 @@ public class RowsResultSetNode extends FromTable
      */
     void acceptChildren(Visitor v) throws StandardException {
         super.acceptChildren(v);
-
-        int size = rows.size();
-        for (int index = 0; index < size; index++) {
-            rows.set(index, (RowResultSetNode)rows.get(index).accept(v));
+        int size = getRowCount();
+        int index = 0;
+        if (batch != null) {
+            while (index < size) {
+                RowResultSetNode row = getBatchRow(index);
+                RowResultSetNode result = (RowResultSetNode)row.accept(v);
+                if (result != row) {
+                    getRows().set(index, result);
+                    index++;
+                    break;
+                }
+                index++;
+            }
+        }
+        if (batch == null) {
+            for (; index < size; index++) {
+                rows.set(index, (RowResultSetNode)rows.get(index).accept(v));
+            }
         }
     }
 
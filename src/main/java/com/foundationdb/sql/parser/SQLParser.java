@@ -146,6 +146,46 @@ public class SQLParser implements SQLParserContext {
         }
     }
 
+    /**
+     * Compute a digest of the shape of the given statement, ignoring
+     * constants. See {@link Fingerprinter}.
+     */
+    public long fingerprint(QueryTreeNode node) throws StandardException {
+        return new Fingerprinter().fingerprint(node);
+    }
+
+    /**
+     * Compute a digest of the shape of the given statement text from
+     * its tokens alone, without parsing it. See {@link Fingerprinter}.
+     */
+    public long fingerprint(String sqlText) throws StandardException {
+        try {
+            reinit(sqlText);
+            return new Fingerprinter().fingerprint(parser, getIdentifierCase());
+        }
+        catch (TokenMgrError ex) {
+            throw tokenError(ex, sqlText);
+        }
+    }
+
+    /**
+     * Append a canonical form of the given statement text to
+     * <code>into</code>, working from its tokens alone. Literals become
+     * <code>?</code>, comments are removed, keywords upper-cased and
+     * whitespace standardized.
+     */
+    public StringBuilder normalize(String sqlText, StringBuilder into) 
+            throws StandardException {
+        try {
+            reinit(sqlText);
+            TokenNormalizer.normalize(parser, getIdentifierCase(), into);
+            return into;
+        }
+        catch (TokenMgrError ex) {
+            throw tokenError(ex, sqlText);
+        }
+    }
+
     /** Undo ParseException.initialise()'s eol handling. 
      * Want something platform independent.
      */
@@ -157,6 +197,20 @@ public class SQLParser implements SQLParserContext {
             return msg.replaceAll(eol, "\n");
     }
 
+    /** Translate an error from just tokenizing. */
+    private StandardException tokenError(TokenMgrError ex, String sqlText) {
+        // Throw away the cached parser.
+        parser = null;
+        if (ex.errorCode == TokenMgrError.LEXICAL_ERROR)
+            return new SQLParserException(ex.getMessage(),
+                                          ex,
+                                          lineColumnErrorPosition(ex.errorLine,
+                                                                  ex.errorColumn,
+                                                                  sqlText));
+        else
+            return new StandardException(ex);
+    }
+
     /** Translate position of token into linear position. */
     private static int tokenErrorPosition(Token token, String sql) {
         if (token == null) return 0;
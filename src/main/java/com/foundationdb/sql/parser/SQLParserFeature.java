@@ -37,4 +37,7 @@ public enum SQLParserFeature
     DOUBLE_QUOTED_STRING,
     /** Allows {@code !} as {@code NOT}, but with a higher precedence. */
     INFIX_NOT_OPERATOR,
+    /** Keeps multi-row VALUES of just literals in a {@link LiteralRowBatch}
+     * instead of nodes for each value. */
+    COLUMNAR_VALUES,
 }
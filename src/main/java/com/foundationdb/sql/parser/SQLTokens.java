@@ -0,0 +1,159 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+/**
+ * Classification of token kinds, for working from just the tokens of
+ * a statement without parsing it.
+ */
+final class SQLTokens implements SQLGrammarConstants
+{
+    private SQLTokens() {
+    }
+
+    /** Pseudo-kind for a literal, including any sign. */
+    public static final int LITERAL = -1;
+
+    private static final boolean[] KEYWORDS = new boolean[tokenImage.length];
+    private static final boolean[] NON_RESERVED = new boolean[tokenImage.length];
+    static {
+        // Ask the grammar itself which keywords can be identifiers.
+        SQLGrammar grammar = new SQLGrammar(new StringCharStream(""));
+        grammar.setParserContext(new SQLParser());
+        for (int i = 0; i < tokenImage.length; i++) {
+            String image = tokenImage[i];
+            if ((image.length() > 2) && 
+                (image.charAt(0) == '"') &&
+                Character.isLetter(image.charAt(1))) {
+                KEYWORDS[i] = true;
+                grammar.ReInit(new StringCharStream(image.substring(1, image.length() - 1)));
+                try {
+                    if (grammar.getToken(1).kind == i) {
+                        grammar.nonReservedKeyword();
+                        NON_RESERVED[i] = true;
+                    }
+                }
+                catch (ParseException ex) {
+                }
+                catch (TokenMgrError ex) {
+                }
+            }
+        }
+    }
+
+    /** Is this token kind a keyword, reserved or not? */
+    public static boolean isKeyword(int kind) {
+        return (kind >= 0) && (kind < KEYWORDS.length) && KEYWORDS[kind];
+    }
+
+    /** Is this token kind a keyword that can also be an identifier? */
+    public static boolean isNonReservedKeyword(int kind) {
+        return (kind >= 0) && (kind < NON_RESERVED.length) && NON_RESERVED[kind];
+    }
+
+    /** Is this token kind a literal or parameter? */
+    public static boolean isLiteral(int kind) {
+        switch (kind) {
+        case EXACT_NUMERIC:
+        case UINT:
+        case LENGTH_MODIFIER:
+        case APPROXIMATE_NUMERIC:
+        case SINGLEQUOTED_STRING:
+        case DOUBLEQUOTED_STRING:
+        case ESCAPEQUOTED_STRING:
+        case DOUBLEDOLLAR_STRING:
+        case HEX_STRING:
+        case QUESTION_MARK:
+        case DOLLAR_N:
+        case LITERAL:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Can a token of this kind be followed by a binary operator? */
+    public static boolean endsOperand(int kind) {
+        switch (kind) {
+        case IDENTIFIER:
+        case BACKQUOTED_IDENTIFIER:
+        case DOUBLEQUOTED_IDENTIFIER:
+        case RIGHT_PAREN:
+        case RIGHT_BRACKET:
+            return true;
+        // Reserved keywords that are whole operands by themselves.
+        case END:
+        case NULL:
+        case TRUE:
+        case FALSE:
+        case UNKNOWN:
+        case CURRENT_DATE:
+        case CURRENT_TIME:
+        case CURRENT_TIMESTAMP:
+        case CURRENT_USER:
+        case SESSION_USER:
+        case SYSTEM_USER:
+        case USER:
+            return true;
+        default:
+            return isLiteral(kind) || isNonReservedKeyword(kind);
+        }
+    }
+
+    /**
+     * Is the current token a sign that belongs to the literal after
+     * it, given the kind of the token before?
+     */
+    public static boolean isLiteralSign(SQLGrammar grammar, int kind, int previous) {
+        return (((kind == PLUS_SIGN) || (kind == MINUS_SIGN)) &&
+                isLiteral(grammar.getToken(1).kind) &&
+                !endsOperand(previous));
+    }
+
+    /**
+     * If the upcoming tokens are a parenthesized list of only
+     * literals, return the number of tokens in it, otherwise zero.
+     */
+    public static int literalListLength(SQLGrammar grammar) {
+        int depth = 0;
+        boolean sign = false;
+        for (int i = 1; ; i++) {
+            int kind = grammar.getToken(i).kind;
+            switch (kind) {
+            case LEFT_PAREN:
+                depth++;
+                break;
+            case RIGHT_PAREN:
+                if (--depth == 0)
+                    return i;
+                break;
+            case COMMA:
+                break;
+            case PLUS_SIGN:
+            case MINUS_SIGN:
+                if (sign) return 0;
+                sign = true;
+                continue;
+            default:
+                if (!isLiteral(kind))
+                    return 0;
+            }
+            sign = false;
+        }
+    }
+
+}
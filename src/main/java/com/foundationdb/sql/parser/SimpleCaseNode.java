@@ -80,6 +80,7 @@ public class SimpleCaseNode extends ValueNode
 
     public void setElseValue(ValueNode elseValue) {
         this.elseValue = elseValue;
+        setTypeStale(true);
     }
 
     /** The number of <code>WHEN</code> cases. */
@@ -138,11 +139,11 @@ public class SimpleCaseNode extends ValueNode
     void acceptChildren(Visitor v) throws StandardException {
         super.acceptChildren(v);
 
-        operand = (ValueNode)operand.accept(v);
-        caseOperands = (ValueNodeList)caseOperands.accept(v);
-        resultValues = (ValueNodeList)resultValues.accept(v);
+        operand = acceptOperand(operand, v);
+        caseOperands = acceptOperands(caseOperands, v);
+        resultValues = acceptOperands(resultValues, v);
         if (elseValue != null)
-            elseValue = (ValueNode)elseValue.accept(v);
+            elseValue = acceptOperand(elseValue, v);
     }
                 
     /**
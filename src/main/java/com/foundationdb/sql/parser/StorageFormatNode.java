@@ -63,6 +63,16 @@ public class StorageFormatNode extends QueryTreeNode
         options.putAll(other.options);
     }
 
+    /**
+     * Make a shallow copy of this node with its own options.
+     */
+    protected QueryTreeNode shallowCopy() {
+        StorageFormatNode copy = (StorageFormatNode)super.shallowCopy();
+        copy.options = new TreeMap<String,String>(String.CASE_INSENSITIVE_ORDER);
+        copy.options.putAll(options);
+        return copy;
+    }
+
     /**
      * Convert this object to a String.  See comments in QueryTreeNode.java
      * for how this should be done for tree printing.
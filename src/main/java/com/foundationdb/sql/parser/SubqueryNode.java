@@ -221,7 +221,7 @@ public class SubqueryNode extends ValueNode
         }
 
         if (leftOperand != null) {
-            leftOperand = (ValueNode)leftOperand.accept(v);
+            leftOperand = acceptOperand(leftOperand, v);
         }
 
         if (orderByList != null) {
@@ -248,6 +248,7 @@ public class SubqueryNode extends ValueNode
 
     public void setResultSet(ResultSetNode resultSet) {
         this.resultSet = resultSet;
+        setTypeStale(true);
     }
 
     /**
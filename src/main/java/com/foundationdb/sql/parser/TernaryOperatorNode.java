@@ -222,6 +222,7 @@ public class TernaryOperatorNode extends ValueNode
 
     public void setReceiver(ValueNode receiver) {
         this.receiver = receiver;
+        setTypeStale(true);
     }
 
     /**
@@ -231,6 +232,7 @@ public class TernaryOperatorNode extends ValueNode
      */
     public void setLeftOperand(ValueNode newLeftOperand) {
         leftOperand = newLeftOperand;
+        setTypeStale(true);
     }
 
     /**
@@ -249,6 +251,7 @@ public class TernaryOperatorNode extends ValueNode
      */
     public void setRightOperand(ValueNode newRightOperand) {
         rightOperand = newRightOperand;
+        setTypeStale(true);
     }
 
     /**
@@ -271,15 +274,15 @@ public class TernaryOperatorNode extends ValueNode
         super.acceptChildren(v);
 
         if (receiver != null) {
-            receiver = (ValueNode)receiver.accept(v);
+            receiver = acceptOperand(receiver, v);
         }
 
         if (leftOperand != null) {
-            leftOperand = (ValueNode)leftOperand.accept(v);
+            leftOperand = acceptOperand(leftOperand, v);
         }
 
         if (rightOperand != null) {
-            rightOperand = (ValueNode)rightOperand.accept(v);
+            rightOperand = acceptOperand(rightOperand, v);
         }
     }
                 
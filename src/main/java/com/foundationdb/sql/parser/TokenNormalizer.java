@@ -0,0 +1,130 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.parser.SQLParserContext.IdentifierCase;
+
+/**
+ * Canonical text of a statement, from just its tokens.
+ * <p>
+ * Literals and parameters become <code>?</code>, as does a whole IN
+ * list of only literals. Comments are dropped, reserved keywords
+ * upper-cased, identifiers and non-reserved keywords case-standardized
+ * and tokens separated by single spaces where needed. Since tokens come from the grammar's token manager,
+ * they follow the same dialect features as the parser.
+ */
+class TokenNormalizer implements SQLGrammarConstants
+{
+    private TokenNormalizer() {
+    }
+
+    /** Append the normalized form of the grammar's remaining input. */
+    static void normalize(SQLGrammar grammar, IdentifierCase identifierCase,
+                          StringBuilder into) {
+        int previous = EOF;
+        while (true) {
+            Token token = grammar.getNextToken();
+            int kind = token.kind;
+            if (kind == EOF)
+                break;
+            if ((kind == SEMICOLON) && (grammar.getToken(1).kind == EOF))
+                break;
+            if (SQLTokens.isLiteralSign(grammar, kind, previous)) {
+                grammar.getNextToken();
+                kind = SQLTokens.LITERAL;
+            }
+            else if (SQLTokens.isLiteral(kind)) {
+                kind = SQLTokens.LITERAL;
+            }
+            if (spaceBetween(previous, kind))
+                into.append(' ');
+            if (kind == SQLTokens.LITERAL) {
+                into.append('?');
+            }
+            else if ((kind == IDENTIFIER) || SQLTokens.isNonReservedKeyword(kind)) {
+                appendIdentifier(token.image, identifierCase, into);
+            }
+            else if (SQLTokens.isKeyword(kind)) {
+                appendUpper(token.image, into);
+            }
+            else {
+                into.append(token.image);
+            }
+            if ((kind == IN) && (grammar.getToken(1).kind == LEFT_PAREN)) {
+                int length = SQLTokens.literalListLength(grammar);
+                if (length > 0) {
+                    for (int i = 0; i < length; i++)
+                        grammar.getNextToken();
+                    into.append(" (?)");
+                    kind = RIGHT_PAREN;
+                }
+            }
+            previous = kind;
+        }
+    }
+
+    protected static boolean spaceBetween(int previous, int kind) {
+        switch (previous) {
+        case EOF:
+        case LEFT_PAREN:
+        case LEFT_BRACKET:
+        case PERIOD:
+            return false;
+        }
+        switch (kind) {
+        case RIGHT_PAREN:
+        case RIGHT_BRACKET:
+        case COMMA:
+        case PERIOD:
+        case SEMICOLON:
+            return false;
+        case LEFT_PAREN:
+            // Function calls and column lists, but not after other keywords.
+            switch (previous) {
+            case IDENTIFIER:
+            case BACKQUOTED_IDENTIFIER:
+            case DOUBLEQUOTED_IDENTIFIER:
+            case VALUES:
+                return false;
+            }
+            return !SQLTokens.isNonReservedKeyword(previous);
+        }
+        return true;
+    }
+
+    protected static void appendIdentifier(String image, IdentifierCase identifierCase,
+                                           StringBuilder into) {
+        switch (identifierCase) {
+        case UPPER:
+            appendUpper(image, into);
+            break;
+        case LOWER:
+            for (int i = 0; i < image.length(); i++)
+                into.append(Character.toLowerCase(image.charAt(i)));
+            break;
+        case PRESERVE:
+        default:
+            into.append(image);
+        }
+    }
+
+    protected static void appendUpper(String image, StringBuilder into) {
+        for (int i = 0; i < image.length(); i++)
+            into.append(Character.toUpperCase(image.charAt(i)));
+    }
+
+}
@@ -176,6 +176,7 @@ public class UnaryOperatorNode extends ValueNode
 
     public void setOperand(ValueNode operand) {
         this.operand = operand;
+        setTypeStale(true);
     }
 
     /**
@@ -189,7 +190,7 @@ public class UnaryOperatorNode extends ValueNode
         super.acceptChildren(v);
 
         if (operand != null) {
-            operand = (ValueNode)operand.accept(v);
+            operand = acceptOperand(operand, v);
         }
     }
         
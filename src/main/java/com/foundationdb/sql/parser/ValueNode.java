@@ -56,6 +56,11 @@ public abstract class ValueNode extends QueryTreeNode
      */
     private DataTypeDescriptor type;
 
+    /**
+     * Whether an operand has been replaced since the type was computed.
+     */
+    private boolean typeStale;
+
     /*
     ** Constructor for untyped ValueNodes, for example, untyped NULLs
     ** and parameter nodes.
@@ -71,7 +76,7 @@ public abstract class ValueNode extends QueryTreeNode
      */
     final void setType(TypeId typeId, boolean isNullable, int maximumWidth)
             throws StandardException {
-        setType(new DataTypeDescriptor(typeId, isNullable, maximumWidth));
+        setType(DataTypeDescriptor.getType(typeId, isNullable, maximumWidth));
     }
 
     /**
@@ -81,9 +86,9 @@ public abstract class ValueNode extends QueryTreeNode
                        int precision, int scale,
                        boolean isNullable, int maximumWidth)
             throws StandardException {
-        setType(new DataTypeDescriptor(typeId,
-                                       precision, scale,
-                                       isNullable, maximumWidth));     
+        setType(DataTypeDescriptor.getType(typeId,
+                                           precision, scale,
+                                           isNullable, maximumWidth));
     }
 
     /**
@@ -105,11 +110,11 @@ public abstract class ValueNode extends QueryTreeNode
                      Object isNullable,
                      Object maximumWidth)
             throws StandardException {
-        setType(new DataTypeDescriptor((TypeId)typeId,
-                                       ((Integer)precision).intValue(),
-                                       ((Integer)scale).intValue(),
-                                       ((Boolean)isNullable).booleanValue(),
-                                       ((Integer)maximumWidth).intValue()));
+        setType(DataTypeDescriptor.getType((TypeId)typeId,
+                                           ((Integer)precision).intValue(),
+                                           ((Integer)scale).intValue(),
+                                           ((Boolean)isNullable).booleanValue(),
+                                           ((Integer)maximumWidth).intValue()));
     }
 
     /**
@@ -120,6 +125,7 @@ public abstract class ValueNode extends QueryTreeNode
 
         ValueNode other = (ValueNode)node;
         this.type = other.type;
+        this.typeStale = other.typeStale;
     }
 
     /**
@@ -177,6 +183,49 @@ public abstract class ValueNode extends QueryTreeNode
         this.type = type;
     }
 
+    /**
+     * Whether an operand has been replaced since this node's type was
+     * computed, so that it may need computing again.
+     */
+    public boolean isTypeStale() {
+        return typeStale;
+    }
+
+    /**
+     * Mark this node's type as needing computing again, or not.
+     * Setters that replace an operand mark it, and so does visiting
+     * the node if the visitor replaces an operand.
+     */
+    public void setTypeStale(boolean typeStale) {
+        this.typeStale = typeStale;
+    }
+
+    /**
+     * Visit an operand, marking this node's type stale if the visitor
+     * replaces it, since a replacement that already has a type would
+     * not otherwise cause this node to be typed again.
+     */
+    protected ValueNode acceptOperand(ValueNode operand, Visitor v)
+            throws StandardException {
+        ValueNode result = (ValueNode)operand.accept(v);
+        if (result != operand)
+            typeStale = true;
+        return result;
+    }
+
+    /**
+     * Visit a list of operands, marking this node's type stale if the
+     * visitor replaces any of them.
+     */
+    protected ValueNodeList acceptOperands(ValueNodeList operands, Visitor v)
+            throws StandardException {
+        int replacements = operands.getReplacements();
+        ValueNodeList result = (ValueNodeList)operands.accept(v);
+        if ((result != operands) || (result.getReplacements() != replacements))
+            typeStale = true;
+        return result;
+    }
+
     /**
      * Get the source for this ValueNode.
      *
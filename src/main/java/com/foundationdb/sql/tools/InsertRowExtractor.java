@@ -0,0 +1,541 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.tools;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.InsertNode;
+import com.foundationdb.sql.parser.ResultColumnList;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.SQLParserException;
+import com.foundationdb.sql.parser.SQLParserFeature;
+import com.foundationdb.sql.parser.StatementNode;
+import com.foundationdb.sql.parser.TableName;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Read the rows of extended <code>INSERT ... VALUES (...),(...)</code>
+ * statements, such as those in a <code>mysqldump</code> file, one at a
+ * time as they are read.
+ * <p>
+ * The statement up to <code>VALUES</code> is parsed by {@link SQLParser},
+ * which gives the target table and column list. After that, each row
+ * is scanned straight from the input into Java values and passed to a
+ * {@link RowHandler}, without making nodes or holding the statement,
+ * so memory use depends on the size of a row, not of the statement.
+ * Other statements are passed along as text.
+ * <p>
+ * Values are as a constant node would hold them: <code>Integer</code>,
+ * <code>Long</code> or <code>BigDecimal</code> for exact numbers,
+ * <code>Double</code> for approximate ones, <code>String</code>,
+ * <code>Boolean</code>, <code>byte[]</code> for hex literals and
+ * <code>null</code>. Strings take MySQL backslash escapes.
+ * <p>
+ * An extractor can be shared by several threads, each reading its own
+ * input, such as the per-table files of a dump; see {@link #task}.
+ */
+public class InsertRowExtractor
+{
+    /** Receives what is read, in order. */
+    public interface RowHandler {
+        /** An <code>INSERT</code> whose rows come next.
+         * @param columns the target column list or <code>null</code>
+         */
+        public void startInsert(TableName table, ResultColumnList columns) 
+                throws StandardException;
+
+        /** One row of values. The array is reused for the next row. */
+        public void row(Object[] values) throws StandardException;
+
+        /** Any other statement, without its terminating semicolon. */
+        public void statement(String sql) throws StandardException;
+    }
+
+    private Set<SQLParserFeature> features = new SQLParser().getFeatures();
+
+    /** The features of the parser used for the start of each <code>INSERT</code>.
+     * <code>DOUBLE_QUOTED_STRING</code> also applies to row values. */
+    public Set<SQLParserFeature> getFeatures() {
+        return features;
+    }
+
+    /**
+     * Read all the statements from the given input.
+     * @return the number of rows
+     */
+    public long extract(Reader input, RowHandler handler) 
+            throws IOException, StandardException {
+        SQLParser parser = new SQLParser();
+        parser.getFeatures().clear();
+        parser.getFeatures().addAll(features);
+        return new Scanner(input, parser, handler).statements();
+    }
+
+    /** A task for an executor that reads the given input and then closes it. */
+    public Callable<Long> task(final Reader input, final RowHandler handler) {
+        return new Callable<Long>() {
+                public Long call() throws Exception {
+                    try {
+                        return extract(input, handler);
+                    }
+                    finally {
+                        input.close();
+                    }
+                }
+            };
+    }
+
+    /** The state of reading one input. */
+    protected static class Scanner {
+        private final Reader input;
+        private final SQLParser parser;
+        private final RowHandler handler;
+        private final boolean doubleQuotedStrings;
+        private final char[] buffer = new char[8192];
+        private int position, limit;
+        private long offset;
+        private final StringBuilder str = new StringBuilder();
+        private final List<Object> row = new ArrayList<Object>();
+        private Object[] values;
+        private long rowCount;
+
+        public Scanner(Reader input, SQLParser parser, RowHandler handler) {
+            this.input = input;
+            this.parser = parser;
+            this.handler = handler;
+            this.doubleQuotedStrings = parser.hasFeature(SQLParserFeature.DOUBLE_QUOTED_STRING);
+        }
+
+        public long statements() throws IOException, StandardException {
+            while (true) {
+                skipSpace();
+                int ch = peek();
+                if (ch < 0)
+                    break;
+                if (ch == ';') {
+                    next();
+                    continue;
+                }
+                str.setLength(0);
+                if (startsWord("INSERT") && prefix()) {
+                    rows();
+                }
+                else {
+                    copyToEnd();
+                    String sql = str.toString().trim();
+                    if (sql.length() > 0)
+                        handler.statement(sql);
+                }
+            }
+            return rowCount;
+        }
+
+        /** Copy the start of an <code>INSERT</code> up to
+         * <code>VALUES</code> and parse it, if there is one. */
+        protected boolean prefix() throws IOException, StandardException {
+            int depth = 0;
+            while (true) {
+                int ch = peek();
+                if ((ch < 0) || ((ch == ';') && (depth == 0)))
+                    return false;
+                if (Character.isLetter(ch) || (ch == '_')) {
+                    int start = str.length();
+                    copyWord();
+                    if ((depth == 0) &&
+                        "VALUES".equalsIgnoreCase(str.substring(start)))
+                        break;
+                    continue;
+                }
+                if (ch == '(')
+                    depth++;
+                else if (ch == ')')
+                    depth--;
+                copyToken();
+            }
+            long start = offset;
+            str.append(" (DEFAULT)");
+            StatementNode stmt = parser.parseStatement(str.toString());
+            if (!(stmt instanceof InsertNode))
+                throw error("Not an INSERT statement", start);
+            InsertNode insert = (InsertNode)stmt;
+            handler.startInsert(insert.getTargetTableName(), insert.getTargetColumnList());
+            return true;
+        }
+
+        /** Read the rows of the current statement through its end. */
+        protected void rows() throws IOException, StandardException {
+            values = null;
+            while (true) {
+                skipSpace();
+                expect('(');
+                row.clear();
+                while (true) {
+                    skipSpace();
+                    row.add(value());
+                    skipSpace();
+                    int ch = next();
+                    if (ch == ')')
+                        break;
+                    if (ch != ',')
+                        throw error("Expected , or )", offset - 1);
+                }
+                if (values == null)
+                    values = new Object[row.size()];
+                else if (values.length != row.size())
+                    throw error("Row value size is different", offset - 1);
+                row.toArray(values);
+                handler.row(values);
+                rowCount++;
+                skipSpace();
+                int ch = next();
+                if ((ch < 0) || (ch == ';'))
+                    break;
+                if (ch != ',')
+                    throw error("Expected , or ;", offset - 1);
+            }
+        }
+
+        protected Object value() throws IOException, StandardException {
+            int ch = peek();
+            if ((ch == '\'') || ((ch == '"') && doubleQuotedStrings))
+                return string();
+            if (((ch >= '0') && (ch <= '9')) || 
+                (ch == '-') || (ch == '+') || (ch == '.'))
+                return number();
+            if (Character.isLetter(ch) || (ch == '_')) {
+                long start = offset;
+                str.setLength(0);
+                copyWord();
+                String word = str.toString();
+                if ("NULL".equalsIgnoreCase(word))
+                    return null;
+                if ("TRUE".equalsIgnoreCase(word))
+                    return Boolean.TRUE;
+                if ("FALSE".equalsIgnoreCase(word))
+                    return Boolean.FALSE;
+                if ("X".equalsIgnoreCase(word) && (peek() == '\'')) {
+                    next();
+                    str.setLength(0);
+                    copyHexDigits();
+                    expect('\'');
+                    return hex(str, start);
+                }
+                if (word.charAt(0) == '_') {
+                    // Character set introducer, such as _binary.
+                    skipSpace();
+                    if (peek() == '\'')
+                        return string();
+                }
+                throw error("Unsupported value " + word, start);
+            }
+            throw error("Expected a value", offset);
+        }
+
+        protected String string() throws IOException, StandardException {
+            long start = offset;
+            int quote = next();
+            str.setLength(0);
+            while (true) {
+                int ch = next();
+                if (ch < 0)
+                    throw error("Unterminated string", start);
+                if (ch == quote) {
+                    if (peek() != quote)
+                        break;
+                    next();
+                }
+                else if (ch == '\\') {
+                    ch = next();
+                    switch (ch) {
+                    case -1:
+                        throw error("Unterminated string", start);
+                    case '0':
+                        ch = '\0';
+                        break;
+                    case 'b':
+                        ch = '\b';
+                        break;
+                    case 'n':
+                        ch = '\n';
+                        break;
+                    case 'r':
+                        ch = '\r';
+                        break;
+                    case 't':
+                        ch = '\t';
+                        break;
+                    case 'Z':
+                        ch = '\u001A';
+                        break;
+                    case '%':
+                    case '_':
+                        // Kept for LIKE.
+                        str.append('\\');
+                        break;
+                    }
+                }
+                str.append((char)ch);
+            }
+            return str.toString();
+        }
+
+        protected Object number() throws IOException, StandardException {
+            long start = offset;
+            str.setLength(0);
+            int ch = peek();
+            if (ch == '+')
+                next();
+            else if (ch == '-')
+                str.append((char)next());
+            if ((peek() == '0') && (str.length() == 0)) {
+                str.append((char)next());
+                if ((peek() == 'x') || (peek() == 'X')) {
+                    next();
+                    str.setLength(0);
+                    copyHexDigits();
+                    return hex(str, start);
+                }
+            }
+            boolean exact = true;
+            boolean digits = (str.length() > 0) && (str.charAt(str.length() - 1) == '0');
+            digits |= copyDigits();
+            if (peek() == '.') {
+                str.append((char)next());
+                digits |= copyDigits();
+                exact = false;
+            }
+            if (!digits)
+                throw error("Expected a number", start);
+            if ((peek() == 'e') || (peek() == 'E')) {
+                str.append((char)next());
+                if ((peek() == '+') || (peek() == '-'))
+                    str.append((char)next());
+                if (!copyDigits())
+                    throw error("Expected an exponent", start);
+                return Double.valueOf(str.toString());
+            }
+            String image = str.toString();
+            if (exact) {
+                // Like the parser: the smallest of these that holds it.
+                int length = image.length();
+                if (image.charAt(0) == '-')
+                    length--;
+                if (length < 19) {
+                    long value = Long.parseLong(image);
+                    if ((value >= Integer.MIN_VALUE) && (value <= Integer.MAX_VALUE))
+                        return Integer.valueOf((int)value);
+                    return Long.valueOf(value);
+                }
+                BigDecimal value = new BigDecimal(image);
+                if ((value.compareTo(LONG_MIN) >= 0) && (value.compareTo(LONG_MAX) <= 0))
+                    return Long.valueOf(value.longValue());
+                return value;
+            }
+            return new BigDecimal(image);
+        }
+
+        private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+        private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+        protected byte[] hex(CharSequence digits, long start) throws StandardException {
+            int length = digits.length();
+            if ((length % 2) != 0)
+                throw error("Odd number of hex digits", start);
+            byte[] bytes = new byte[length / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte)((Character.digit(digits.charAt(i * 2), 16) << 4) |
+                                  Character.digit(digits.charAt(i * 2 + 1), 16));
+            }
+            return bytes;
+        }
+
+        /* Scanning */
+
+        protected int peek() throws IOException {
+            if (position == limit) {
+                limit = input.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position];
+        }
+
+        protected int next() throws IOException {
+            int ch = peek();
+            if (ch >= 0) {
+                position++;
+                offset++;
+            }
+            return ch;
+        }
+
+        protected void expect(char ch) throws IOException, StandardException {
+            if (next() != ch)
+                throw error("Expected " + ch, offset - 1);
+        }
+
+        /** Does the input continue with the given keyword? Only
+         * looks within what is already buffered. */
+        protected boolean startsWord(String word) throws IOException {
+            if (limit - position < word.length() + 1) {
+                // Move what is left to the start and fill in more.
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+                while (limit < word.length() + 1) {
+                    int n = input.read(buffer, limit, buffer.length - limit);
+                    if (n <= 0) break;
+                    limit += n;
+                }
+            }
+            int end = position + word.length();
+            if (end > limit)
+                return false;
+            for (int i = 0; i < word.length(); i++) {
+                if (Character.toUpperCase(buffer[position + i]) != word.charAt(i))
+                    return false;
+            }
+            return ((end == limit) || !Character.isLetterOrDigit(buffer[end]));
+        }
+
+        protected void skipSpace() throws IOException {
+            while (true) {
+                int ch = peek();
+                if (Character.isWhitespace(ch)) {
+                    next();
+                }
+                else if ((ch == '#') || ((ch == '-') && startsWith("--"))) {
+                    while ((ch >= 0) && (ch != '\n'))
+                        ch = next();
+                }
+                else if ((ch == '/') && startsWith("/*")) {
+                    next();
+                    next();
+                    int prev = 0;
+                    while (((ch = next()) >= 0) && !((prev == '*') && (ch == '/')))
+                        prev = ch;
+                }
+                else {
+                    break;
+                }
+            }
+        }
+
+        protected boolean startsWith(String prefix) throws IOException {
+            if (limit - position < prefix.length()) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+                while (limit < prefix.length()) {
+                    int n = input.read(buffer, limit, buffer.length - limit);
+                    if (n <= 0) break;
+                    limit += n;
+                }
+            }
+            if (limit - position < prefix.length())
+                return false;
+            for (int i = 0; i < prefix.length(); i++) {
+                if (buffer[position + i] != prefix.charAt(i))
+                    return false;
+            }
+            return true;
+        }
+
+        protected void copyWord() throws IOException {
+            int ch;
+            while (((ch = peek()) >= 0) && 
+                   (Character.isLetterOrDigit(ch) || (ch == '_') || (ch == '$')))
+                str.append((char)next());
+        }
+
+        protected boolean copyDigits() throws IOException {
+            boolean any = false;
+            int ch;
+            while (((ch = peek()) >= '0') && (ch <= '9')) {
+                str.append((char)next());
+                any = true;
+            }
+            return any;
+        }
+
+        protected void copyHexDigits() throws IOException {
+            int ch;
+            while (((ch = peek()) >= 0) && (Character.digit(ch, 16) >= 0))
+                str.append((char)next());
+        }
+
+        /** Copy one token or quoted string, or a run of space and
+         * comments as a single space. */
+        protected void copyToken() throws IOException, StandardException {
+            int ch = peek();
+            if ((ch == '\'') || (ch == '"') || (ch == '`')) {
+                long start = offset;
+                str.append((char)next());
+                while (true) {
+                    int c = next();
+                    if (c < 0)
+                        throw error("Unterminated quoted string", start);
+                    str.append((char)c);
+                    if ((c == '\\') && (ch == '\'')) {
+                        c = next();
+                        if (c >= 0) str.append((char)c);
+                    }
+                    else if (c == ch) {
+                        if (peek() != ch)
+                            break;
+                        str.append((char)next());
+                    }
+                }
+            }
+            else if (Character.isWhitespace(ch) || (ch == '#') || 
+                     ((ch == '-') && startsWith("--")) ||
+                     ((ch == '/') && startsWith("/*"))) {
+                skipSpace();
+                str.append(' ');
+            }
+            else {
+                str.append((char)next());
+            }
+        }
+
+        /** Copy the rest of a statement other than <code>INSERT ... VALUES</code>. */
+        protected void copyToEnd() throws IOException, StandardException {
+            while (true) {
+                int ch = peek();
+                if (ch < 0)
+                    break;
+                if (ch == ';') {
+                    next();
+                    break;
+                }
+                copyToken();
+            }
+        }
+
+        protected StandardException error(String message, long at) {
+            return new SQLParserException(message + " at position " + at, null,
+                                          (int)Math.min(at, Integer.MAX_VALUE));
+        }
+    }
+
+}
@@ -0,0 +1,578 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.tools;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.AlterTableNode;
+import com.foundationdb.sql.parser.CreateIndexNode;
+import com.foundationdb.sql.parser.CreateTableNode;
+import com.foundationdb.sql.parser.DDLStatementNode;
+import com.foundationdb.sql.parser.DMLModStatementNode;
+import com.foundationdb.sql.parser.DropTableNode;
+import com.foundationdb.sql.parser.FromBaseTable;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.StatementNode;
+import com.foundationdb.sql.parser.TableName;
+import com.foundationdb.sql.parser.Visitable;
+import com.foundationdb.sql.parser.Visitor;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Summarize a log of SQL statements by their shape.
+ * <p>
+ * The input is either one statement per line or scripts with
+ * statements terminated by semicolons. Statements are parsed on
+ * several threads, each with its own parser, and counted by {@link
+ * SQLParser#fingerprint}. For each distinct fingerprint, the statement
+ * type, the tables it uses and a normalized sample are kept. Statements
+ * that do not parse are counted by the fingerprint of their tokens.
+ * <p>
+ * Input is read in batches through a bounded queue, so memory use
+ * depends on the number of distinct statements, not the size of the log.
+ */
+public class QueryLogAnalyzer
+{
+    public static final String PARSE_ERROR = "PARSE ERROR";
+
+    public enum Format { CSV, JSON };
+
+    /** What is known about one kind of statement. */
+    public static class Summary {
+        private long fingerprint;
+        private String statementType, sample, error;
+        private Set<String> tables;
+        private long count;
+
+        public Summary(long fingerprint, String statementType, String sample,
+                       String error, Set<String> tables) {
+            this.fingerprint = fingerprint;
+            this.statementType = statementType;
+            this.sample = sample;
+            this.error = error;
+            this.tables = tables;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+        public String getStatementType() {
+            return statementType;
+        }
+        public String getSample() {
+            return sample;
+        }
+        public String getError() {
+            return error;
+        }
+        public Set<String> getTables() {
+            return tables;
+        }
+        public long getCount() {
+            return count;
+        }
+
+        public String getFingerprintString() {
+            return String.format("%016x", fingerprint);
+        }
+    }
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 256;
+    private boolean scripts;
+    private Map<Long,Summary> statements = new HashMap<Long,Summary>();
+    private Map<Long,Summary> errors = new HashMap<Long,Summary>();
+    private long statementCount, errorCount;
+
+    public int getThreads() {
+        return threads;
+    }
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /** Is input semicolon-terminated scripts rather than one statement per line? */
+    public boolean isScripts() {
+        return scripts;
+    }
+    public void setScripts(boolean scripts) {
+        this.scripts = scripts;
+    }
+
+    public long getStatementCount() {
+        return statementCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /** Get statements that parsed, most frequent first. */
+    public List<Summary> getStatements() {
+        return sorted(statements);
+    }
+
+    /** Get statements that did not parse, most frequent first. */
+    public List<Summary> getErrors() {
+        return sorted(errors);
+    }
+
+    protected static List<Summary> sorted(Map<Long,Summary> summaries) {
+        List<Summary> result = new ArrayList<Summary>(summaries.values());
+        Collections.sort(result, new Comparator<Summary>() {
+                public int compare(Summary s1, Summary s2) {
+                    if (s1.count != s2.count)
+                        return (s1.count > s2.count) ? -1 : +1;
+                    return s1.sample.compareTo(s2.sample);
+                }
+            });
+        return result;
+    }
+
+    private static final List<String> END = Collections.emptyList();
+
+    /** Read and summarize all the statements from the given input. */
+    public void analyze(Reader input) throws IOException, StandardException {
+        BlockingQueue<List<String>> queue = 
+            new ArrayBlockingQueue<List<String>>(threads * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Worker>> futures = new ArrayList<Future<Worker>>(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Worker(queue)));
+            }
+            try {
+                read(input, queue, futures);
+            }
+            finally {
+                for (int i = 0; i < threads; i++) {
+                    put(queue, END, futures);
+                }
+            }
+            for (Future<Worker> future : futures) {
+                merge(future.get());
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof StandardException)
+                throw (StandardException)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new StandardException(cause);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected void read(Reader input, BlockingQueue<List<String>> queue,
+                        List<Future<Worker>> futures) 
+            throws IOException, InterruptedException {
+        BufferedReader reader = new BufferedReader(input);
+        List<String> batch = new ArrayList<String>(batchSize);
+        StringBuilder script = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String trimmed = line.trim();
+            if (scripts) {
+                if ((trimmed.length() == 0) && (script.length() == 0))
+                    continue;
+                script.append(line).append('\n');
+                if (!trimmed.endsWith(";"))
+                    continue;
+                line = script.toString();
+                script.setLength(0);
+            }
+            else {
+                if (trimmed.length() == 0)
+                    continue;
+            }
+            batch.add(line);
+            if (batch.size() >= batchSize) {
+                put(queue, batch, futures);
+                batch = new ArrayList<String>(batchSize);
+            }
+        }
+        if (script.toString().trim().length() > 0)
+            batch.add(script.toString());
+        if (!batch.isEmpty())
+            put(queue, batch, futures);
+    }
+
+    protected void put(BlockingQueue<List<String>> queue, List<String> batch,
+                       List<Future<Worker>> futures) 
+            throws InterruptedException {
+        while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+            // Do not wait forever for workers that have died.
+            for (Future<Worker> future : futures) {
+                if (future.isDone())
+                    return;
+            }
+        }
+    }
+
+    protected void merge(Worker worker) {
+        statementCount += worker.statementCount;
+        errorCount += worker.errorCount;
+        merge(statements, worker.statements);
+        merge(errors, worker.errors);
+    }
+
+    protected static void merge(Map<Long,Summary> into, Map<Long,Summary> from) {
+        for (Summary summary : from.values()) {
+            Summary existing = into.get(summary.fingerprint);
+            if (existing == null)
+                into.put(summary.fingerprint, summary);
+            else
+                existing.count += summary.count;
+        }
+    }
+
+    /** Parse batches of statements, summarizing into its own maps. */
+    protected static class Worker implements Callable<Worker> {
+        private BlockingQueue<List<String>> queue;
+        private SQLParser parser = new SQLParser();
+        private TableCollector tables = new TableCollector();
+        private StringBuilder str = new StringBuilder();
+        private Map<Long,Summary> statements = new HashMap<Long,Summary>();
+        private Map<Long,Summary> errors = new HashMap<Long,Summary>();
+        private long statementCount, errorCount;
+
+        public Worker(BlockingQueue<List<String>> queue) {
+            this.queue = queue;
+        }
+
+        public Worker call() throws Exception {
+            while (true) {
+                List<String> batch = queue.take();
+                if (batch == END) break;
+                for (String sql : batch) {
+                    process(sql);
+                }
+            }
+            return this;
+        }
+
+        protected void process(String sql) throws StandardException {
+            List<StatementNode> stmts;
+            try {
+                stmts = parser.parseStatements(sql);
+            }
+            catch (StandardException ex) {
+                error(sql, ex);
+                return;
+            }
+            for (StatementNode stmt : stmts) {
+                statementCount++;
+                long fingerprint = parser.fingerprint(stmt);
+                Summary summary = statements.get(fingerprint);
+                if (summary == null) {
+                    // Names are part of the fingerprint, so tables are too.
+                    String text = sql;
+                    if ((stmts.size() > 1) && 
+                        (stmt.getBeginOffset() >= 0) &&
+                        (stmt.getEndOffset() < sql.length()))
+                        text = sql.substring(stmt.getBeginOffset(),
+                                             stmt.getEndOffset() + 1);
+                    summary = new Summary(fingerprint, stmt.statementToString(),
+                                          normalize(text), null, 
+                                          tables.collect(stmt));
+                    statements.put(fingerprint, summary);
+                }
+                summary.count++;
+            }
+        }
+
+        protected void error(String sql, StandardException ex) {
+            statementCount++;
+            errorCount++;
+            long fingerprint;
+            String sample;
+            try {
+                fingerprint = parser.fingerprint(sql);
+                sample = normalize(sql);
+            }
+            catch (StandardException ex2) {
+                // Cannot even tokenize: lump together.
+                fingerprint = 0;
+                sample = "";
+            }
+            Summary summary = errors.get(fingerprint);
+            if (summary == null) {
+                String message = ex.getMessage();
+                if (message != null) {
+                    int nl = message.indexOf('\n');
+                    if (nl > 0)
+                        message = message.substring(0, nl);
+                }
+                summary = new Summary(fingerprint, PARSE_ERROR, sample, message,
+                                      Collections.<String>emptySet());
+                errors.put(fingerprint, summary);
+            }
+            summary.count++;
+        }
+
+        protected String normalize(String sql) throws StandardException {
+            str.setLength(0);
+            return parser.normalize(sql, str).toString();
+        }
+    }
+
+    /** Collect the names of the tables used by a statement. */
+    protected static class TableCollector implements Visitor {
+        private Set<String> tables;
+
+        public Set<String> collect(StatementNode stmt) throws StandardException {
+            tables = new TreeSet<String>();
+            if (stmt instanceof DMLModStatementNode)
+                add(((DMLModStatementNode)stmt).getTargetTableName());
+            else if ((stmt instanceof CreateTableNode) ||
+                     (stmt instanceof AlterTableNode) ||
+                     (stmt instanceof DropTableNode))
+                add(((DDLStatementNode)stmt).getObjectName());
+            else if (stmt instanceof CreateIndexNode)
+                add(((CreateIndexNode)stmt).getIndexTableName());
+            stmt.accept(this);
+            return tables;
+        }
+
+        protected void add(TableName table) {
+            if (table != null)
+                tables.add(table.getFullTableName());
+        }
+
+        public Visitable visit(Visitable node) {
+            if (node instanceof FromBaseTable)
+                add(((FromBaseTable)node).getOrigTableName());
+            return node;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+        public boolean stopTraversal() {
+            return false;
+        }
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+    }
+
+    /* Output */
+
+    public void write(Appendable out, Format format) throws IOException {
+        switch (format) {
+        case CSV:
+            writeCSV(out);
+            break;
+        case JSON:
+            writeJSON(out);
+            break;
+        }
+    }
+
+    public void writeCSV(Appendable out) throws IOException {
+        out.append("fingerprint,statement_type,count,tables,sample,error\n");
+        for (List<Summary> summaries : Arrays.asList(getStatements(), getErrors())) {
+            for (Summary summary : summaries) {
+                out.append(summary.getFingerprintString()).append(',');
+                csvString(out, summary.statementType);
+                out.append(',').append(Long.toString(summary.count)).append(',');
+                StringBuilder tables = new StringBuilder();
+                for (String table : summary.tables) {
+                    if (tables.length() > 0) tables.append(' ');
+                    tables.append(table);
+                }
+                csvString(out, tables.toString());
+                out.append(',');
+                csvString(out, summary.sample);
+                out.append(',');
+                csvString(out, summary.error);
+                out.append('\n');
+            }
+        }
+    }
+
+    protected static void csvString(Appendable out, String str) throws IOException {
+        if (str == null) return;
+        out.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch == '"')
+                out.append('"');
+            out.append(ch);
+        }
+        out.append('"');
+    }
+
+    public void writeJSON(Appendable out) throws IOException {
+        out.append("{\"statements\":").append(Long.toString(statementCount))
+           .append(",\"errors\":").append(Long.toString(errorCount))
+           .append(",\"fingerprints\":[");
+        boolean first = true;
+        for (List<Summary> summaries : Arrays.asList(getStatements(), getErrors())) {
+            for (Summary summary : summaries) {
+                if (first) 
+                    first = false;
+                else
+                    out.append(',');
+                out.append("\n{\"fingerprint\":\"").append(summary.getFingerprintString())
+                   .append("\",\"statement_type\":");
+                jsonString(out, summary.statementType);
+                out.append(",\"count\":").append(Long.toString(summary.count))
+                   .append(",\"tables\":[");
+                boolean firstTable = true;
+                for (String table : summary.tables) {
+                    if (firstTable) 
+                        firstTable = false;
+                    else
+                        out.append(',');
+                    jsonString(out, table);
+                }
+                out.append("],\"sample\":");
+                jsonString(out, summary.sample);
+                if (summary.error != null) {
+                    out.append(",\"error\":");
+                    jsonString(out, summary.error);
+                }
+                out.append('}');
+            }
+        }
+        out.append("\n]}\n");
+    }
+
+    protected static void jsonString(Appendable out, String str) throws IOException {
+        if (str == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            switch (ch) {
+            case '"':
+            case '\\':
+                out.append('\\').append(ch);
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                if (ch < ' ')
+                    out.append(String.format("\\u%04x", (int)ch));
+                else
+                    out.append(ch);
+            }
+        }
+        out.append('"');
+    }
+
+    /* Command line */
+
+    protected static void usage() {
+        System.err.println("Usage: QueryLogAnalyzer [-t threads] [-s] [-f csv|json] [-o output] [file...]");
+        System.err.println("  -s  input is scripts of statements terminated by semicolons");
+        System.err.println("      rather than one statement per line");
+        System.exit(1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        QueryLogAnalyzer analyzer = new QueryLogAnalyzer();
+        Format format = Format.CSV;
+        String output = null;
+        List<String> inputs = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-s")) {
+                analyzer.setScripts(true);
+            }
+            else if (arg.equals("-t") && (i + 1 < args.length)) {
+                analyzer.setThreads(Integer.parseInt(args[++i]));
+            }
+            else if (arg.equals("-f") && (i + 1 < args.length)) {
+                format = Format.valueOf(args[++i].toUpperCase());
+            }
+            else if (arg.equals("-o") && (i + 1 < args.length)) {
+                output = args[++i];
+            }
+            else if (arg.startsWith("-") && !arg.equals("-")) {
+                usage();
+            }
+            else {
+                inputs.add(arg);
+            }
+        }
+        if (inputs.isEmpty())
+            inputs.add("-");
+        long start = System.nanoTime();
+        for (String input : inputs) {
+            Reader reader;
+            if (input.equals("-"))
+                reader = new InputStreamReader(System.in, "UTF-8");
+            else
+                reader = new InputStreamReader(new FileInputStream(input), "UTF-8");
+            try {
+                analyzer.analyze(reader);
+            }
+            finally {
+                reader.close();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        Writer writer;
+        if (output == null)
+            writer = new OutputStreamWriter(System.out, "UTF-8");
+        else
+            writer = new OutputStreamWriter(new FileOutputStream(output), "UTF-8");
+        writer = new BufferedWriter(writer);
+        try {
+            analyzer.write(writer, format);
+        }
+        finally {
+            writer.close();
+        }
+        System.err.println(String.format("%d statements, %d errors, %d distinct in %.3f s (%.0f statements/s)",
+                                         analyzer.getStatementCount(),
+                                         analyzer.getErrorCount(),
+                                         analyzer.statements.size() + analyzer.errors.size(),
+                                         elapsed / 1.0e9,
+                                         analyzer.getStatementCount() * 1.0e9 / elapsed));
+    }
+
+}
@@ -25,9 +25,9 @@ public final class CharacterTypeAttributes
         NONE, IMPLICIT, EXPLICIT
     }
 
-    private String characterSet;
-    private String collation;
-    private CollationDerivation collationDerivation;
+    private final String characterSet;
+    private final String collation;
+    private final CollationDerivation collationDerivation;
 
     public CharacterTypeAttributes(String characterSet,
                                    String collation, 
@@ -105,6 +105,13 @@ public final class CharacterTypeAttributes
                  collation.equals(other.collation)));
     }
 
+    @Override
+    public int hashCode() {
+        int hash = (characterSet == null) ? 0 : characterSet.hashCode();
+        hash = hash * 31 + ((collation == null) ? 0 : collation.hashCode());
+        return hash;
+    }
+
     @Override
     public String toString() {
         if ((characterSet == null) && (collation == null)) return "none";
@@ -41,7 +41,10 @@ package com.foundationdb.sql.types;
 
 import com.foundationdb.sql.StandardException;
 
+import java.lang.ref.WeakReference;
 import java.sql.Types;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /** 
  * DataTypeDescriptor describes a runtime SQL type.
@@ -52,7 +55,9 @@ import java.sql.Types;
  * <LI> Collation Derivation
  * </UL>
  * <P>
- * A DataTypeDescriptor is immutable.
+ * A DataTypeDescriptor is immutable. The static creators and
+ * {@link #getType} return shared instances, so that equal types
+ * are usually identical; see {@link #intern}.
  */
 
 // NOTE: The Derby original had two levels of type descriptor, this
@@ -64,8 +69,22 @@ public final class DataTypeDescriptor
 {
     public static final int MAXIMUM_WIDTH_UNKNOWN = -1;
 
+    // Canonical instances, weakly held. The value is a reference to
+    // the key itself, which is the only way to get it back out.
+    // Split by hash so that threads typing different things do not
+    // all wait on the same lock.
+    private static final int INTERN_STRIPES = 16;
+    @SuppressWarnings("unchecked")
+    private static final Map<DataTypeDescriptor,WeakReference<DataTypeDescriptor>>[] interned =
+        new Map[INTERN_STRIPES];
+    static {
+        for (int i = 0; i < INTERN_STRIPES; i++) {
+            interned[i] = new WeakHashMap<DataTypeDescriptor,WeakReference<DataTypeDescriptor>>();
+        }
+    }
+
     public static final DataTypeDescriptor MEDIUMINT =
-        new DataTypeDescriptor(TypeId.MEDIUMINT_ID, true);
+        intern(new DataTypeDescriptor(TypeId.MEDIUMINT_ID, true));
     
     public static final DataTypeDescriptor MEDIUMINT_NOT_NULL =
         MEDIUMINT.getNullabilityType(true);
@@ -74,7 +93,7 @@ public final class DataTypeDescriptor
      * Runtime INTEGER type that is nullable.
      */
     public static final DataTypeDescriptor INTEGER =
-        new DataTypeDescriptor(TypeId.INTEGER_ID, true);
+        intern(new DataTypeDescriptor(TypeId.INTEGER_ID, true));
         
     /**
      * Runtime INTEGER type that is not nullable.
@@ -86,13 +105,49 @@ public final class DataTypeDescriptor
      * Runtime SMALLINT type that is nullable.
      */
     public static final DataTypeDescriptor SMALLINT =
-        new DataTypeDescriptor(TypeId.SMALLINT_ID, true);
+        intern(new DataTypeDescriptor(TypeId.SMALLINT_ID, true));
         
     /**
      * Runtime INTEGER type that is not nullable.
      */
     public static final DataTypeDescriptor SMALLINT_NOT_NULL =
         SMALLINT.getNullabilityType(false);
+
+    /**
+     * Runtime BIGINT type that is nullable.
+     */
+    public static final DataTypeDescriptor BIGINT =
+        intern(new DataTypeDescriptor(TypeId.BIGINT_ID, true));
+        
+    /**
+     * Runtime BIGINT type that is not nullable.
+     */
+    public static final DataTypeDescriptor BIGINT_NOT_NULL =
+        BIGINT.getNullabilityType(false);
+
+    /**
+     * Runtime DOUBLE type that is nullable.
+     */
+    public static final DataTypeDescriptor DOUBLE =
+        intern(new DataTypeDescriptor(TypeId.DOUBLE_ID, true));
+        
+    /**
+     * Runtime DOUBLE type that is not nullable.
+     */
+    public static final DataTypeDescriptor DOUBLE_NOT_NULL =
+        DOUBLE.getNullabilityType(false);
+
+    /**
+     * Runtime BOOLEAN type that is nullable.
+     */
+    public static final DataTypeDescriptor BOOLEAN =
+        intern(new DataTypeDescriptor(TypeId.BOOLEAN_ID, true));
+        
+    /**
+     * Runtime BOOLEAN type that is not nullable.
+     */
+    public static final DataTypeDescriptor BOOLEAN_NOT_NULL =
+        BOOLEAN.getNullabilityType(false);
          
     /*
  *** Static creators
@@ -160,6 +215,12 @@ public final class DataTypeDescriptor
             return isNullable ? INTEGER : INTEGER_NOT_NULL;
         case Types.SMALLINT:
             return isNullable ? SMALLINT : SMALLINT_NOT_NULL;
+        case Types.BIGINT:
+            return isNullable ? BIGINT : BIGINT_NOT_NULL;
+        case Types.DOUBLE:
+            return isNullable ? DOUBLE : DOUBLE_NOT_NULL;
+        case Types.BOOLEAN:
+            return isNullable ? BOOLEAN : BOOLEAN_NOT_NULL;
         default:
             break;
         }
@@ -169,7 +230,7 @@ public final class DataTypeDescriptor
             return null;
         }
 
-        return new DataTypeDescriptor(typeId, isNullable);
+        return intern(new DataTypeDescriptor(typeId, isNullable));
     }
 
     /**
@@ -193,7 +254,7 @@ public final class DataTypeDescriptor
             return null;
         }
 
-        return new DataTypeDescriptor(typeId, isNullable, maxLength);
+        return intern(new DataTypeDescriptor(typeId, isNullable, maxLength));
     }
 
     /**
@@ -208,7 +269,7 @@ public final class DataTypeDescriptor
      *               A null return value means there is no corresponding SQL type (only for 'char')
      */
     public static DataTypeDescriptor getBuiltInDataTypeDescriptor(String sqlTypeName) {
-        return new DataTypeDescriptor(TypeId.getBuiltInTypeId(sqlTypeName), true);
+        return getType(TypeId.getBuiltInTypeId(sqlTypeName), true);
     }
 
     /**
@@ -224,7 +285,7 @@ public final class DataTypeDescriptor
      */
     public static DataTypeDescriptor getBuiltInDataTypeDescriptor(String sqlTypeName, 
                                                                   int length) {
-        return new DataTypeDescriptor(TypeId.getBuiltInTypeId(sqlTypeName), true, length);
+        return intern(new DataTypeDescriptor(TypeId.getBuiltInTypeId(sqlTypeName), true, length));
     }
 
     /**
@@ -260,7 +321,7 @@ public final class DataTypeDescriptor
             return null;
         }
 
-        return new DataTypeDescriptor(typeId, isNullable);
+        return getType(typeId, isNullable);
     }
 
     /**
@@ -288,11 +349,7 @@ public final class DataTypeDescriptor
             return null;
         }
 
-        return new DataTypeDescriptor(typeId,
-                                      precision,
-                                      scale,
-                                      isNullable,
-                                      maximumWidth);
+        return getType(typeId, precision, scale, isNullable, maximumWidth);
     }
         
     /**
@@ -309,15 +366,112 @@ public final class DataTypeDescriptor
                                       true);
     }
 
+    /**
+     * Get the shared descriptor for a type with its maximum size.
+     *
+     * @param typeId The typeId of the type being described
+     * @param isNullable TRUE means it could contain NULL, FALSE means
+     *                                   it definitely cannot contain NULL.
+     */
+    public static DataTypeDescriptor getType(TypeId typeId, boolean isNullable) {
+        DataTypeDescriptor predefined = predefinedType(typeId, isNullable);
+        if (predefined != null)
+            return predefined;
+        return intern(new DataTypeDescriptor(typeId, isNullable));
+    }
+
+    /**
+     * Get the shared descriptor for a numeric type.
+     *
+     * @param typeId The typeId of the type being described
+     * @param precision The number of decimal digits.
+     * @param scale The number of digits after the decimal point.
+     * @param isNullable TRUE means it could contain NULL, FALSE means
+     *                                   it definitely cannot contain NULL.
+     * @param maximumWidth The maximum number of bytes for this datatype
+     */
+    public static DataTypeDescriptor getType(TypeId typeId, int precision, int scale,
+                                             boolean isNullable, int maximumWidth) {
+        DataTypeDescriptor predefined = predefinedType(typeId, isNullable);
+        if ((predefined != null) &&
+            predefined.sameAs(typeId, precision, scale, isNullable, maximumWidth, null))
+            return predefined;
+        return intern(new DataTypeDescriptor(typeId, precision, scale, 
+                                             isNullable, maximumWidth));
+    }
+
+    // Re-use pre-defined types without a lookup.
+    private static DataTypeDescriptor predefinedType(TypeId typeId, boolean isNullable) {
+        if (typeId == TypeId.BOOLEAN_ID)
+            return isNullable ? BOOLEAN : BOOLEAN_NOT_NULL;
+        else if (typeId == TypeId.BIGINT_ID)
+            return isNullable ? BIGINT : BIGINT_NOT_NULL;
+        else if (typeId == TypeId.INTEGER_ID)
+            return isNullable ? INTEGER : INTEGER_NOT_NULL;
+        else if (typeId == TypeId.SMALLINT_ID)
+            return isNullable ? SMALLINT : SMALLINT_NOT_NULL;
+        else if (typeId == TypeId.DOUBLE_ID)
+            return isNullable ? DOUBLE : DOUBLE_NOT_NULL;
+        else
+            return null;
+    }
+
+    /**
+     * Get the shared descriptor for a non-numeric type.
+     *
+     * @param typeId The typeId of the type being described
+     * @param isNullable TRUE means it could contain NULL, FALSE means
+     *                                   it definitely cannot contain NULL.
+     * @param maximumWidth The maximum number of bytes for this datatype
+     */
+    public static DataTypeDescriptor getType(TypeId typeId, boolean isNullable,
+                                             int maximumWidth) {
+        return intern(new DataTypeDescriptor(typeId, isNullable, maximumWidth));
+    }
+
+    /**
+     * Get the canonical instance equal to the given type.
+     * The first one interned is returned for as long as anything else
+     * still refers to it. User-defined and row multiset types are not
+     * shared, since their equality only goes by name. Nor is a type
+     * that is equal to the interned one but not the same in every
+     * respect, such as its {@link TypeId} instance or collation
+     * derivation, which {@link #equals} does not consider.
+     */
+    public static DataTypeDescriptor intern(DataTypeDescriptor type) {
+        if (type.typeId.userType() || type.typeId.isRowMultiSet())
+            return type;
+        Map<DataTypeDescriptor,WeakReference<DataTypeDescriptor>> stripe =
+            interned[(type.hashCode() & 0x7FFFFFFF) % INTERN_STRIPES];
+        synchronized (stripe) {
+            WeakReference<DataTypeDescriptor> ref = stripe.get(type);
+            if (ref != null) {
+                DataTypeDescriptor existing = ref.get();
+                if (existing != null) {
+                    if (existing.sameAs(type.typeId, type.precision, type.scale,
+                                        type.isNullable, type.maximumWidth,
+                                        type.characterAttributes))
+                        return existing;
+                    return type;
+                }
+            }
+            stripe.put(type, new WeakReference<DataTypeDescriptor>(type));
+            return type;
+        }
+    }
+
     /*
     ** Instance fields & methods
     */
-    private TypeId typeId;
-    private int precision;
-    private int scale;
-    private boolean isNullable;
-    private int maximumWidth;
-    private CharacterTypeAttributes characterAttributes;
+    private final TypeId typeId;
+    private final int precision;
+    private final int scale;
+    private final boolean isNullable;
+    private final int maximumWidth;
+    private final CharacterTypeAttributes characterAttributes;
+
+    // The same type with the other nullability, once asked for.
+    private DataTypeDescriptor otherNullabilityType;
 
     /**
      * Constructor for use with numeric types
@@ -331,11 +485,7 @@ public final class DataTypeDescriptor
      */
     public DataTypeDescriptor(TypeId typeId, int precision, int scale,
                               boolean isNullable, int maximumWidth) {
-        this.typeId = typeId;
-        this.precision = precision;
-        this.scale = scale;
-        this.isNullable = isNullable;
-        this.maximumWidth = maximumWidth;
+        this(typeId, precision, scale, isNullable, maximumWidth, null);
     }
 
     /**
@@ -348,54 +498,38 @@ public final class DataTypeDescriptor
      */
     public DataTypeDescriptor(TypeId typeId, boolean isNullable,
                               int maximumWidth) {
-        this.typeId = typeId;
-        this.isNullable = isNullable;
-        this.maximumWidth = maximumWidth;
+        this(typeId, 0, 0, isNullable, maximumWidth, null);
     }
 
     public DataTypeDescriptor(TypeId typeId, boolean isNullable) {
-
-        this.typeId = typeId;
-        this.precision = typeId.getMaximumPrecision();
-        this.scale = typeId.getMaximumScale();
-        this.isNullable = isNullable;
-        this.maximumWidth = typeId.getMaximumMaximumWidth();
+        this(typeId, typeId.getMaximumPrecision(), typeId.getMaximumScale(),
+             isNullable, typeId.getMaximumMaximumWidth(), null);
     }
 
     private DataTypeDescriptor(DataTypeDescriptor source, boolean isNullable) {
-        this.typeId = source.typeId;
-        this.precision = source.precision;
-        this.scale = source.scale;
-        this.isNullable = isNullable;
-        this.maximumWidth = source.maximumWidth;
-        this.characterAttributes = source.characterAttributes;
-    }
-
-    private DataTypeDescriptor(DataTypeDescriptor source, 
-                               int precision, int scale,
-                               boolean isNullable, int maximumWidth) {
-        this.typeId = source.typeId;
-        this.precision = precision;
-        this.scale = scale;
-        this.isNullable = isNullable;
-        this.maximumWidth = maximumWidth;
+        this(source.typeId, source.precision, source.scale,
+             isNullable, source.maximumWidth, source.characterAttributes);
     }
 
     public DataTypeDescriptor(TypeId typeId, boolean isNullable, int maximumWidth,
                               CharacterTypeAttributes characterAttributes) {
-        this.typeId = typeId;
-        this.isNullable = isNullable;
-        this.maximumWidth = maximumWidth;
-        this.characterAttributes = characterAttributes;
+        this(typeId, 0, 0, isNullable, maximumWidth, characterAttributes);
     }
 
     public DataTypeDescriptor(DataTypeDescriptor source,
                               CharacterTypeAttributes characterAttributes) {
-        this.typeId = source.typeId;
-        this.precision = source.precision;
-        this.scale = source.scale;
-        this.isNullable = source.isNullable;
-        this.maximumWidth = source.maximumWidth;
+        this(source.typeId, source.precision, source.scale,
+             source.isNullable, source.maximumWidth, characterAttributes);
+    }
+
+    private DataTypeDescriptor(TypeId typeId, int precision, int scale,
+                               boolean isNullable, int maximumWidth,
+                               CharacterTypeAttributes characterAttributes) {
+        this.typeId = typeId;
+        this.precision = precision;
+        this.scale = scale;
+        this.isNullable = isNullable;
+        this.maximumWidth = maximumWidth;
         this.characterAttributes = characterAttributes;
     }
 
@@ -581,14 +715,40 @@ public final class DataTypeDescriptor
         }
 
 
-        higherType = new DataTypeDescriptor(higherType, 
-                                            precision, scale, nullable, maximumWidth);
-
-        higherType.characterAttributes = 
+        CharacterTypeAttributes attributes =
             CharacterTypeAttributes.mergeCollations(characterAttributes, 
                                                     otherDTS.characterAttributes);
 
-        return higherType;
+        // Usually the result is the same as one of the inputs.
+        if (higherType.sameAs(higherType.typeId, precision, scale, nullable, 
+                              maximumWidth, attributes))
+            return higherType;
+        if ((lowerType != null) &&
+            lowerType.sameAs(higherType.typeId, precision, scale, nullable, 
+                             maximumWidth, attributes))
+            return lowerType;
+
+        if (attributes == null)
+            return getType(higherType.typeId, 
+                           precision, scale, nullable, maximumWidth);
+        return intern(new DataTypeDescriptor(higherType.typeId, 
+                                             precision, scale, nullable, maximumWidth,
+                                             attributes));
+    }
+
+    private boolean sameAs(TypeId typeId, int precision, int scale,
+                           boolean isNullable, int maximumWidth,
+                           CharacterTypeAttributes characterAttributes) {
+        return ((this.typeId == typeId) &&
+                (this.precision == precision) &&
+                (this.scale == scale) &&
+                (this.isNullable == isNullable) &&
+                (this.maximumWidth == maximumWidth) &&
+                ((this.characterAttributes == null) ? 
+                 (characterAttributes == null) :
+                 (this.characterAttributes.equals(characterAttributes) &&
+                  (this.characterAttributes.getCollationDerivation() ==
+                   characterAttributes.getCollationDerivation()))));
     }
 
     /**
@@ -678,7 +838,13 @@ public final class DataTypeDescriptor
         if (isNullable() == isNullable)
             return this;
                 
-        return new DataTypeDescriptor(this, isNullable);
+        // Racing threads intern the same instance.
+        DataTypeDescriptor other = otherNullabilityType;
+        if (other == null) {
+            other = intern(new DataTypeDescriptor(this, isNullable));
+            otherNullabilityType = other;
+        }
+        return other;
     }
 
     public CharacterTypeAttributes getCharacterAttributes() {
@@ -690,6 +856,8 @@ public final class DataTypeDescriptor
      * @param other the type to compare to.
     */
     public boolean equals(Object other) {
+        if (this == other)
+            return true;
         if (!(other instanceof DataTypeDescriptor))
             return false;
                 
@@ -705,6 +873,17 @@ public final class DataTypeDescriptor
             return true;
     }
 
+    public int hashCode() {
+        int hash = getTypeName().hashCode();
+        hash = hash * 31 + precision;
+        hash = hash * 31 + scale;
+        hash = hash * 31 + maximumWidth;
+        hash = hash * 2 + (isNullable ? 1 : 0);
+        if (characterAttributes != null)
+            hash = hash * 31 + characterAttributes.hashCode();
+        return hash;
+    }
+
     /**
      * Check if this type is comparable with the passed type.
      * 
@@ -1115,8 +1294,8 @@ public final class DataTypeDescriptor
             unsignedTypeId = TypeId.NUMERIC_UNSIGNED_ID;
         else
             throw new StandardException("Not a numeric type: " + this);            
-        return new DataTypeDescriptor(unsignedTypeId, precision, scale,
-                                      isNullable, maximumWidth);
+        return getType(unsignedTypeId, precision, scale,
+                       isNullable, maximumWidth);
     }
 
     public static int intervalMaxWidth(TypeId typeId, 
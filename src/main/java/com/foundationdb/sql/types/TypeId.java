@@ -42,6 +42,9 @@ package com.foundationdb.sql.types;
 import com.foundationdb.sql.StandardException;
 
 import java.sql.Types;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * TypeId describes the static information about a SQL type
@@ -428,6 +431,81 @@ public class TypeId
         GUID_ID,
     };
 
+    // Built-in types by SQL name, upper case.
+    private static final Map<String,TypeId> BUILTIN_TYPE_IDS_BY_NAME = 
+        new HashMap<String,TypeId>();
+    static {
+        putBuiltInTypeId(BOOLEAN_NAME, BOOLEAN_ID);
+        putBuiltInTypeId(CHAR_NAME, CHAR_ID);
+        putBuiltInTypeId(DATE_NAME, DATE_ID);
+        putBuiltInTypeId(DOUBLE_NAME, DOUBLE_ID);
+        putBuiltInTypeId(FLOAT_NAME, REAL_ID);
+        putBuiltInTypeId(MEDIUMINT_NAME, MEDIUMINT_ID);
+        putBuiltInTypeId(INTEGER_NAME, INTEGER_ID);
+        putBuiltInTypeId(INT_NAME, INTEGER_ID);
+        putBuiltInTypeId(LONGINT_NAME, BIGINT_ID);
+        putBuiltInTypeId(REAL_NAME, REAL_ID);
+        putBuiltInTypeId(SMALLINT_NAME, SMALLINT_ID);
+        putBuiltInTypeId(TIME_NAME, TIME_ID);
+        putBuiltInTypeId(TIMESTAMP_NAME, TIMESTAMP_ID);
+        putBuiltInTypeId(VARCHAR_NAME, VARCHAR_ID);
+        putBuiltInTypeId(BIT_NAME, BIT_ID);
+        putBuiltInTypeId(VARBIT_NAME, VARBIT_ID);
+        putBuiltInTypeId(TINYINT_NAME, TINYINT_ID);
+        putBuiltInTypeId(DECIMAL_NAME, DECIMAL_ID);
+        putBuiltInTypeId(NUMERIC_NAME, NUMERIC_ID);
+        putBuiltInTypeId(LONGVARCHAR_NAME, LONGVARCHAR_ID);
+        putBuiltInTypeId(LONGVARBIT_NAME, LONGVARBIT_ID);
+        putBuiltInTypeId(BLOB_NAME, BLOB_ID);
+        putBuiltInTypeId(CLOB_NAME, CLOB_ID);
+        putBuiltInTypeId(TEXT_NAME, TEXT_ID);
+        putBuiltInTypeId(TINYBLOB_NAME, TINYBLOB_ID);
+        putBuiltInTypeId(TINYTEXT_NAME, TINYTEXT_ID);
+        putBuiltInTypeId(MEDIUMBLOB_NAME, MEDIUMBLOB_ID);
+        putBuiltInTypeId(MEDIUMTEXT_NAME, MEDIUMTEXT_ID);
+        putBuiltInTypeId(LONGBLOB_NAME, LONGBLOB_ID);
+        putBuiltInTypeId(LONGTEXT_NAME, LONGTEXT_ID);
+        putBuiltInTypeId(XML_NAME, XML_ID);
+        putBuiltInTypeId(INTERVAL_YEAR_NAME, INTERVAL_YEAR_ID);
+        putBuiltInTypeId(INTERVAL_MONTH_NAME, INTERVAL_MONTH_ID);
+        putBuiltInTypeId(INTERVAL_YEAR_MONTH_NAME, INTERVAL_YEAR_MONTH_ID);
+        putBuiltInTypeId(INTERVAL_DAY_NAME, INTERVAL_DAY_ID);
+        putBuiltInTypeId(INTERVAL_HOUR_NAME, INTERVAL_HOUR_ID);
+        putBuiltInTypeId(INTERVAL_MINUTE_NAME, INTERVAL_MINUTE_ID);
+        putBuiltInTypeId(INTERVAL_SECOND_NAME, INTERVAL_SECOND_ID);
+        putBuiltInTypeId(INTERVAL_DAY_HOUR_NAME, INTERVAL_DAY_HOUR_ID);
+        putBuiltInTypeId(INTERVAL_DAY_MINUTE_NAME, INTERVAL_DAY_MINUTE_ID);
+        putBuiltInTypeId(INTERVAL_DAY_SECOND_NAME, INTERVAL_DAY_SECOND_ID);
+        putBuiltInTypeId(INTERVAL_HOUR_MINUTE_NAME, INTERVAL_HOUR_MINUTE_ID);
+        putBuiltInTypeId(INTERVAL_HOUR_SECOND_NAME, INTERVAL_HOUR_SECOND_ID);
+        putBuiltInTypeId(INTERVAL_MINUTE_SECOND_NAME, INTERVAL_MINUTE_SECOND_ID);
+        putBuiltInTypeId(TINYINT_UNSIGNED_NAME, TINYINT_UNSIGNED_ID);
+        putBuiltInTypeId(SMALLINT_UNSIGNED_NAME, SMALLINT_UNSIGNED_ID);
+        putBuiltInTypeId(INTEGER_UNSIGNED_NAME, INTEGER_UNSIGNED_ID);
+        putBuiltInTypeId(INT_UNSIGNED_NAME, INTEGER_UNSIGNED_ID);
+        putBuiltInTypeId(LONGINT_UNSIGNED_NAME, BIGINT_UNSIGNED_ID);
+        putBuiltInTypeId(FLOAT_UNSIGNED_NAME, REAL_UNSIGNED_ID);
+        putBuiltInTypeId(REAL_UNSIGNED_NAME, REAL_UNSIGNED_ID);
+        putBuiltInTypeId(DOUBLE_UNSIGNED_NAME, DOUBLE_UNSIGNED_ID);
+        putBuiltInTypeId(NUMERIC_UNSIGNED_NAME, NUMERIC_UNSIGNED_ID);
+        putBuiltInTypeId(DECIMAL_UNSIGNED_NAME, DECIMAL_UNSIGNED_ID);
+        putBuiltInTypeId(DATETIME_NAME, DATETIME_ID);
+        putBuiltInTypeId(YEAR_NAME, YEAR_ID);
+        putBuiltInTypeId(NATIONAL_CHAR_NAME, NATIONAL_CHAR_ID);
+        putBuiltInTypeId(NATIONAL_VARCHAR_NAME, NATIONAL_VARCHAR_ID);
+        putBuiltInTypeId(NATIONAL_LONGVARCHAR_NAME, NATIONAL_LONGVARCHAR_ID);
+        putBuiltInTypeId(GUID_NAME, GUID_ID);
+        // Types defined below here are SQL types and non-JDBC types that are
+        // supported by Derby
+        putBuiltInTypeId(REF_NAME, REF_ID);
+    }
+
+    private static void putBuiltInTypeId(String name, TypeId typeId) {
+        name = name.toUpperCase(Locale.ROOT);
+        if (!BUILTIN_TYPE_IDS_BY_NAME.containsKey(name))
+            BUILTIN_TYPE_IDS_BY_NAME.put(name, typeId);
+    }
+
     /*
     ** Static methods to obtain TypeIds
     */
@@ -656,193 +734,14 @@ public class TypeId
 
     /**
      * Given a SQL type name return the corresponding TypeId.
-     * @param SQLTypeName Name of SQL type
+     * @param SQLTypeName Name of SQL type, in any case
      * @return TypeId or null if there is no corresponding SQL type.
      */
     public static TypeId getBuiltInTypeId(String SQLTypeName) {
-
-        if (SQLTypeName.equals(BOOLEAN_NAME)) {
-            return BOOLEAN_ID;
-        }
-        if (SQLTypeName.equals(CHAR_NAME)) {
-            return CHAR_ID;
-        }
-        if (SQLTypeName.equals(DATE_NAME)) {
-            return DATE_ID;
-        }
-        if (SQLTypeName.equals(DOUBLE_NAME)) {
-            return DOUBLE_ID;
-        }
-        if (SQLTypeName.equals(FLOAT_NAME)) {
-            return REAL_ID;
-        }
-        if (SQLTypeName.equals(MEDIUMINT_NAME))
-            return MEDIUMINT_ID;
-        if (SQLTypeName.equals(INTEGER_NAME) ||
-            SQLTypeName.equals(INT_NAME)) {
-            return INTEGER_ID;
-        }
-        if (SQLTypeName.equals(LONGINT_NAME)) {
-            return BIGINT_ID;
-        }
-        if (SQLTypeName.equals(REAL_NAME)) {
-            return REAL_ID;
-        }
-        if (SQLTypeName.equals(SMALLINT_NAME)) {
-            return SMALLINT_ID;
-        }
-        if (SQLTypeName.equals(TIME_NAME)) {
-            return TIME_ID;
-        }
-        if (SQLTypeName.equals(TIMESTAMP_NAME)) {
-            return TIMESTAMP_ID;
-        }
-        if (SQLTypeName.equals(VARCHAR_NAME)) {
-            return VARCHAR_ID;
-        }
-        if (SQLTypeName.equals(BIT_NAME)) {
-            return BIT_ID;
-        }
-        if (SQLTypeName.equals(VARBIT_NAME)) {
-            return VARBIT_ID;
-        }
-        if (SQLTypeName.equals(TINYINT_NAME)) {
-            return TINYINT_ID;
-        }
-        if (SQLTypeName.equals(DECIMAL_NAME)) {
-            return DECIMAL_ID;
-        }
-        if (SQLTypeName.equals(NUMERIC_NAME)) {
-            return NUMERIC_ID;
-        }
-        if (SQLTypeName.equals(LONGVARCHAR_NAME)) {
-            return LONGVARCHAR_ID;
-        }
-        if (SQLTypeName.equals(LONGVARBIT_NAME)) {
-            return LONGVARBIT_ID;
-        }
-        if (SQLTypeName.equals(BLOB_NAME)) {
-            return BLOB_ID;
-        }
-        if (SQLTypeName.equals(CLOB_NAME)) {
-            return CLOB_ID;
-        }
-        if (SQLTypeName.equals(TEXT_NAME)) {
-            return TEXT_ID;
-        }
-        if (SQLTypeName.equals(TINYBLOB_NAME)) {
-            return TINYBLOB_ID;
-        }
-        if (SQLTypeName.equals(TINYTEXT_NAME)) {
-            return TINYTEXT_ID;
-        }
-        if (SQLTypeName.equals(MEDIUMBLOB_NAME)) {
-            return MEDIUMBLOB_ID;
-        }
-        if (SQLTypeName.equals(MEDIUMTEXT_NAME)) {
-            return MEDIUMTEXT_ID;
-        }
-        if (SQLTypeName.equals(LONGBLOB_NAME)) {
-            return LONGBLOB_ID;
-        }
-        if (SQLTypeName.equals(LONGTEXT_NAME)) {
-            return LONGTEXT_ID;
-        }
-        if (SQLTypeName.equals(XML_NAME)) {
-            return XML_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_YEAR_NAME)) {
-            return INTERVAL_YEAR_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_MONTH_NAME)) {
-            return INTERVAL_MONTH_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_YEAR_MONTH_NAME)) {
-            return INTERVAL_YEAR_MONTH_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_DAY_NAME)) {
-            return INTERVAL_DAY_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_HOUR_NAME)) {
-            return INTERVAL_HOUR_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_MINUTE_NAME)) {
-            return INTERVAL_MINUTE_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_SECOND_NAME)) {
-            return INTERVAL_SECOND_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_DAY_HOUR_NAME)) {
-            return INTERVAL_DAY_HOUR_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_DAY_MINUTE_NAME)) {
-            return INTERVAL_DAY_MINUTE_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_DAY_SECOND_NAME)) {
-            return INTERVAL_DAY_SECOND_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_HOUR_MINUTE_NAME)) {
-            return INTERVAL_HOUR_MINUTE_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_HOUR_SECOND_NAME)) {
-            return INTERVAL_HOUR_SECOND_ID;
-        }
-        if (SQLTypeName.equals(INTERVAL_MINUTE_SECOND_NAME)) {
-            return INTERVAL_MINUTE_SECOND_ID;
-        }
-        if (SQLTypeName.equals(TINYINT_UNSIGNED_NAME)) {
-            return TINYINT_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(SMALLINT_UNSIGNED_NAME)) {
-            return SMALLINT_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(INTEGER_UNSIGNED_NAME) ||
-            SQLTypeName.equals(INT_UNSIGNED_NAME)) {
-            return INTEGER_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(LONGINT_UNSIGNED_NAME)) {
-            return BIGINT_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(FLOAT_UNSIGNED_NAME)) {
-            return REAL_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(REAL_UNSIGNED_NAME)) {
-            return REAL_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(DOUBLE_UNSIGNED_NAME)) {
-            return DOUBLE_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(NUMERIC_UNSIGNED_NAME)) {
-            return NUMERIC_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(DECIMAL_UNSIGNED_NAME)) {
-            return DECIMAL_UNSIGNED_ID;
-        }
-        if (SQLTypeName.equals(DATETIME_NAME)) {
-            return DATETIME_ID;
-        }
-        if (SQLTypeName.equals(YEAR_NAME)) {
-            return YEAR_ID;
-        }
-        if (SQLTypeName.equals(NATIONAL_CHAR_NAME)) {
-            return NATIONAL_CHAR_ID;
-        }
-        if (SQLTypeName.equals(NATIONAL_VARCHAR_NAME)) {
-            return NATIONAL_VARCHAR_ID;
-        }
-        if (SQLTypeName.equals(NATIONAL_LONGVARCHAR_NAME)) {
-            return NATIONAL_LONGVARCHAR_ID;
-        }
-        if (SQLTypeName.equals(GUID_NAME) ) {
-            return GUID_ID;
-        }
-
-        // Types defined below here are SQL types and non-JDBC types that are
-        // supported by Derby
-        if (SQLTypeName.equals(REF_NAME)) {
-            return REF_ID;
-        }
-        return null;
+        TypeId typeId = BUILTIN_TYPE_IDS_BY_NAME.get(SQLTypeName);
+        if (typeId == null)
+            typeId = BUILTIN_TYPE_IDS_BY_NAME.get(SQLTypeName.toUpperCase(Locale.ROOT));
+        return typeId;
     }
 
     /*
@@ -1379,6 +1278,21 @@ public class TypeId
         return classNameWasDelimitedIdentifier;
     }
 
+    /**
+     * For ANSI UDTs, get the schema of the type. For all other types,
+     * return null.
+     */
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    /**
+     * Get the name of the type without any schema.
+     */
+    public String getUnqualifiedName() {
+        return unqualifiedName;
+    }
+
     /**
      * Does this TypeId represent a TypeId for a StringDataType.
      *
@@ -20,205 +20,355 @@ import com.foundationdb.sql.StandardException;
 import com.foundationdb.sql.parser.*;
 import com.foundationdb.sql.parser.ConstraintDefinitionNode.ConstraintType;
 
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Turn a tree back into SQL text.
+ * <p>
+ * All of the text is appended to a single <code>StringBuilder</code>,
+ * so each node's SQL is only written once, however deeply nested.
+ * When writing to some other <code>Appendable</code>, that builder is
+ * drained as it goes, so only a bounded amount is ever held.
+ */
 public class NodeToString
 {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private StreamingBuffer stream;
+
     public NodeToString() {
     }
 
-    public String toString(QueryTreeNode node) throws StandardException {
+    /**
+     * Get the SQL for the given node. This used to be called for each
+     * node in the tree; now {@link #toString(QueryTreeNode,StringBuilder)}
+     * is, so this is final, like the old hooks.
+     */
+    public final String toString(QueryTreeNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        toString(node, str);
+        return str.toString();
+    }
+
+    /** Append the SQL for the given node to <code>out</code>. */
+    public void toString(QueryTreeNode node, Appendable out)
+            throws StandardException, IOException {
+        if (out instanceof StringBuilder) {
+            toString(node, (StringBuilder)out);
+        }
+        else {
+            toString(node, out, DEFAULT_BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Write the SQL for the given node to <code>out</code> as it is
+     * generated, holding about <code>bufferSize</code> characters at a time.
+     * A <code>Writer</code> is not flushed or closed.
+     */
+    public void toString(QueryTreeNode node, Appendable out, int bufferSize)
+            throws StandardException, IOException {
+        StreamingBuffer saved = stream;
+        stream = new StreamingBuffer(out, bufferSize);
+        try {
+            StringBuilder str = new StringBuilder(bufferSize + (bufferSize >> 2));
+            toString(node, str);
+            stream.finish(str);
+        }
+        catch (WriteException ex) {
+            throw (IOException)ex.getCause();
+        }
+        finally {
+            stream = saved;
+        }
+    }
+
+    /** Append the SQL for the given node to <code>str</code>. */
+    public void toString(QueryTreeNode node, StringBuilder str) throws StandardException {
+        if (stream != null) {
+            try {
+                stream.checkpoint(str);
+            }
+            catch (IOException ex) {
+                throw new WriteException(ex);
+            }
+        }
         switch (node.getNodeType()) {
         case NodeTypes.CREATE_TABLE_NODE:
-            return createTableNode((CreateTableNode)node);
+            createTableNode((CreateTableNode)node, str);
+            break;
         case NodeTypes.CREATE_VIEW_NODE:
-            return createViewNode((CreateViewNode)node);
+            createViewNode((CreateViewNode)node, str);
+            break;
         case NodeTypes.DROP_TABLE_NODE:
-            return dropTableNode((DropTableNode)node);
+            dropTableNode((DropTableNode)node, str);
+            break;
         case NodeTypes.DROP_VIEW_NODE:
-            return dropViewNode((DropViewNode)node);
+            dropViewNode((DropViewNode)node, str);
+            break;
         case NodeTypes.DROP_TRIGGER_NODE:
-            return dropTriggerNode((DropTriggerNode)node);
+            dropTriggerNode((DropTriggerNode)node, str);
+            break;
         case NodeTypes.DROP_INDEX_NODE:
-            return dropIndexNode((DropIndexNode)node);
+            dropIndexNode((DropIndexNode)node, str);
+            break;
         case NodeTypes.EXPLAIN_STATEMENT_NODE:
-            return explainStatementNode((ExplainStatementNode)node);
+            explainStatementNode((ExplainStatementNode)node, str);
+            break;
         case NodeTypes.TRANSACTION_CONTROL_NODE:
-            return transactionControlNode((TransactionControlNode)node);
+            transactionControlNode((TransactionControlNode)node, str);
+            break;
         case NodeTypes.SET_TRANSACTION_ISOLATION_NODE:
-            return setTransactionIsolationNode((SetTransactionIsolationNode)node);
+            setTransactionIsolationNode((SetTransactionIsolationNode)node, str);
+            break;
         case NodeTypes.SET_TRANSACTION_ACCESS_NODE:
-            return setTransactionAccessNode((SetTransactionAccessNode)node);
+            setTransactionAccessNode((SetTransactionAccessNode)node, str);
+            break;
         case NodeTypes.SET_CONSTRAINTS_NODE:
-            return setConstraintsNode((SetConstraintsNode)node);
+            setConstraintsNode((SetConstraintsNode)node, str);
+            break;
         case NodeTypes.SET_CONFIGURATION_NODE:
-            return setConfigurationNode((SetConfigurationNode)node);
+            setConfigurationNode((SetConfigurationNode)node, str);
+            break;
         case NodeTypes.SHOW_CONFIGURATION_NODE:
-            return showConfigurationNode((ShowConfigurationNode)node);
+            showConfigurationNode((ShowConfigurationNode)node, str);
+            break;
         case NodeTypes.TABLE_ELEMENT_LIST:
-            return tableElementList((TableElementList)node);
+            tableElementList((TableElementList)node, str);
+            break;
         case NodeTypes.TABLE_NAME_LIST:
-            return tableNameList((TableNameList)node);
+            tableNameList((TableNameList)node, str);
+            break;
         case NodeTypes.COLUMN_DEFINITION_NODE:
-            return columnDefinitionNode((ColumnDefinitionNode)node);
+            columnDefinitionNode((ColumnDefinitionNode)node, str);
+            break;
         case NodeTypes.CONSTRAINT_DEFINITION_NODE:
-            return constraintDefinitionNode((ConstraintDefinitionNode)node);
+            constraintDefinitionNode((ConstraintDefinitionNode)node, str);
+            break;
         case NodeTypes.FK_CONSTRAINT_DEFINITION_NODE:
-            return fkConstraintDefinitionNode((FKConstraintDefinitionNode)node);
+            fkConstraintDefinitionNode((FKConstraintDefinitionNode)node, str);
+            break;
         case NodeTypes.CREATE_INDEX_NODE:
-            return createIndexNode((CreateIndexNode)node);
+            createIndexNode((CreateIndexNode)node, str);
+            break;
         case NodeTypes.INDEX_COLUMN_LIST:
-            return indexColumnList((IndexColumnList)node);
+            indexColumnList((IndexColumnList)node, str);
+            break;
         case NodeTypes.INDEX_COLUMN:
-            return indexColumn((IndexColumn)node);
+            indexColumn((IndexColumn)node, str);
+            break;
         case NodeTypes.STORAGE_FORMAT_NODE:
-            return storageFormatNode((StorageFormatNode)node);
+            storageFormatNode((StorageFormatNode)node, str);
+            break;
         case NodeTypes.CREATE_ALIAS_NODE:
-            return createAliasNode((CreateAliasNode)node);
+            createAliasNode((CreateAliasNode)node, str);
+            break;
         case NodeTypes.RENAME_NODE:
-            return renameNode((RenameNode)node);
+            renameNode((RenameNode)node, str);
+            break;
         case NodeTypes.CURSOR_NODE:
-            return cursorNode((CursorNode)node);
+            cursorNode((CursorNode)node, str);
+            break;
         case NodeTypes.SELECT_NODE:
-            return selectNode((SelectNode)node);
+            selectNode((SelectNode)node, str);
+            break;
         case NodeTypes.INSERT_NODE:
-            return insertNode((InsertNode)node);
+            insertNode((InsertNode)node, str);
+            break;
         case NodeTypes.UPDATE_NODE:
-            return updateNode((UpdateNode)node);
+            updateNode((UpdateNode)node, str);
+            break;
         case NodeTypes.DELETE_NODE:
-            return deleteNode((DeleteNode)node);
+            deleteNode((DeleteNode)node, str);
+            break;
         case NodeTypes.SUBQUERY_NODE:
-            return subqueryNode((SubqueryNode)node);
+            subqueryNode((SubqueryNode)node, str);
+            break;
         case NodeTypes.RESULT_COLUMN_LIST:
-            return resultColumnList((ResultColumnList)node);
+            resultColumnList((ResultColumnList)node, str);
+            break;
         case NodeTypes.RESULT_COLUMN:
-            return resultColumn((ResultColumn)node);
+            resultColumn((ResultColumn)node, str);
+            break;
         case NodeTypes.ALL_RESULT_COLUMN:
-            return allResultColumn((AllResultColumn)node);
+            allResultColumn((AllResultColumn)node, str);
+            break;
         case NodeTypes.FROM_LIST:
-            return fromList((FromList)node);
+            fromList((FromList)node, str);
+            break;
         case NodeTypes.JOIN_NODE:
         case NodeTypes.HALF_OUTER_JOIN_NODE:
         case NodeTypes.FULL_OUTER_JOIN_NODE:
-            return joinNode((JoinNode)node);
+            joinNode((JoinNode)node, str);
+            break;
         case NodeTypes.UNION_NODE:
-            return unionNode((UnionNode)node);
+            unionNode((UnionNode)node, str);
+            break;
         case NodeTypes.GROUP_BY_LIST:
-            return groupByList((GroupByList)node);
+            groupByList((GroupByList)node, str);
+            break;
         case NodeTypes.GROUP_CONCAT_NODE:
-            return groupConcat((GroupConcatNode)node);
+            groupConcat((GroupConcatNode)node, str);
+            break;
         case NodeTypes.ORDER_BY_LIST:
-            return orderByList((OrderByList)node);
+            orderByList((OrderByList)node, str);
+            break;
         case NodeTypes.VALUE_NODE_LIST:
-            return valueNodeList((ValueNodeList)node);
+            valueNodeList((ValueNodeList)node, str);
+            break;
         case NodeTypes.FROM_BASE_TABLE:
-            return fromBaseTable((FromBaseTable)node);
+            fromBaseTable((FromBaseTable)node, str);
+            break;
         case NodeTypes.FROM_SUBQUERY:
-            return fromSubquery((FromSubquery)node);
+            fromSubquery((FromSubquery)node, str);
+            break;
         case NodeTypes.TABLE_NAME:
-            return tableName((TableName)node);
+            tableName((TableName)node, str);
+            break;
         case NodeTypes.COLUMN_REFERENCE:
-            return columnReference((ColumnReference)node);
+            columnReference((ColumnReference)node, str);
+            break;
         case NodeTypes.VIRTUAL_COLUMN_NODE:
-            return virtualColumnNode((VirtualColumnNode)node);
+            virtualColumnNode((VirtualColumnNode)node, str);
+            break;
         case NodeTypes.ROW_RESULT_SET_NODE:
-            return rowResultSetNode((RowResultSetNode)node);
+            rowResultSetNode((RowResultSetNode)node, str);
+            break;
         case NodeTypes.ROWS_RESULT_SET_NODE:
-            return rowsResultSetNode((RowsResultSetNode)node);
+            rowsResultSetNode((RowsResultSetNode)node, str);
+            break;
         case NodeTypes.GROUP_BY_COLUMN:
-            return groupByColumn((GroupByColumn)node);
+            groupByColumn((GroupByColumn)node, str);
+            break;
         case NodeTypes.ORDER_BY_COLUMN:
-            return orderByColumn((OrderByColumn)node);
+            orderByColumn((OrderByColumn)node, str);
+            break;
         case NodeTypes.PARTITION_BY_LIST:
-            return partitionByList((PartitionByList)node);
+            partitionByList((PartitionByList)node, str);
+            break;
         case NodeTypes.PARTITION_BY_COLUMN:
-            return partitionByColumn((PartitionByColumn)node);
+            partitionByColumn((PartitionByColumn)node, str);
+            break;
         case NodeTypes.WINDOW_DEFINITION_NODE:
-            return windowDefinitionNode((WindowDefinitionNode)node);
+            windowDefinitionNode((WindowDefinitionNode)node, str);
+            break;
         case NodeTypes.WINDOW_REFERENCE_NODE:
-            return windowReferenceNode((WindowReferenceNode)node);
+            windowReferenceNode((WindowReferenceNode)node, str);
+            break;
         case NodeTypes.AGGREGATE_WINDOW_FUNCTION_NODE:
-            return aggregateWindowFunctionNode((AggregateWindowFunctionNode)node);
+            aggregateWindowFunctionNode((AggregateWindowFunctionNode)node, str);
+            break;
         case NodeTypes.ROW_NUMBER_FUNCTION_NODE:
-            return rowNumberFunctionNode((RowNumberFunctionNode)node);
+            rowNumberFunctionNode((RowNumberFunctionNode)node, str);
+            break;
         case NodeTypes.AND_NODE:
         case NodeTypes.OR_NODE:
-            return binaryLogicalOperatorNode((BinaryLogicalOperatorNode)node);
+            binaryLogicalOperatorNode((BinaryLogicalOperatorNode)node, str);
+            break;
         case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
         case NodeTypes.BINARY_NOT_EQUALS_OPERATOR_NODE:
         case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
         case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
         case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
         case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
-            return binaryComparisonOperatorNode((BinaryComparisonOperatorNode)node);
+            binaryComparisonOperatorNode((BinaryComparisonOperatorNode)node, str);
+            break;
         case NodeTypes.BINARY_PLUS_OPERATOR_NODE:
         case NodeTypes.BINARY_TIMES_OPERATOR_NODE:
         case NodeTypes.BINARY_DIVIDE_OPERATOR_NODE:
         case NodeTypes.BINARY_DIV_OPERATOR_NODE:
         case NodeTypes.BINARY_MINUS_OPERATOR_NODE:
         case NodeTypes.MOD_OPERATOR_NODE:
-            return binaryArithmeticOperatorNode((BinaryArithmeticOperatorNode)node);
+            binaryArithmeticOperatorNode((BinaryArithmeticOperatorNode)node, str);
+            break;
         case NodeTypes.BINARY_BIT_OPERATOR_NODE:
-            return binaryBitOperatorNode((BinaryBitOperatorNode)node);
+            binaryBitOperatorNode((BinaryBitOperatorNode)node, str);
+            break;
         case NodeTypes.CONCATENATION_OPERATOR_NODE:
-            return concatenationOperatorNode((ConcatenationOperatorNode)node);
+            concatenationOperatorNode((ConcatenationOperatorNode)node, str);
+            break;
         case NodeTypes.NOT_NODE:
-            return notNode((NotNode)node);
+            notNode((NotNode)node, str);
+            break;
         case NodeTypes.IS_NULL_NODE:
         case NodeTypes.IS_NOT_NULL_NODE:
-            return isNullNode((IsNullNode)node);
+            isNullNode((IsNullNode)node, str);
+            break;
         case NodeTypes.IS_NODE:
-            return isNode((IsNode)node);
+            isNode((IsNode)node, str);
+            break;
         case NodeTypes.ABSOLUTE_OPERATOR_NODE:
         case NodeTypes.SQRT_OPERATOR_NODE:
-            return unaryArithmeticOperatorNode((UnaryArithmeticOperatorNode)node);
+            unaryArithmeticOperatorNode((UnaryArithmeticOperatorNode)node, str);
+            break;
         case NodeTypes.UNARY_PLUS_OPERATOR_NODE:
         case NodeTypes.UNARY_MINUS_OPERATOR_NODE:
-            return unaryPrefixOperatorNode((UnaryArithmeticOperatorNode)node);
+            unaryPrefixOperatorNode((UnaryArithmeticOperatorNode)node, str);
+            break;
         case NodeTypes.UNARY_BITNOT_OPERATOR_NODE:
-            return unaryBitOperatorNode((UnaryBitOperatorNode)node);
+            unaryBitOperatorNode((UnaryBitOperatorNode)node, str);
+            break;
         case NodeTypes.UNARY_DATE_TIMESTAMP_OPERATOR_NODE:
-          return unaryDateTimestampOperatorNode((UnaryDateTimestampOperatorNode)node);
+            unaryDateTimestampOperatorNode((UnaryDateTimestampOperatorNode)node, str);
+            break;
         case NodeTypes.TIMESTAMP_OPERATOR_NODE:
-          return timestampOperatorNode((TimestampOperatorNode)node);
+            timestampOperatorNode((TimestampOperatorNode)node, str);
+            break;
         case NodeTypes.EXTRACT_OPERATOR_NODE:
-          return extractOperatorNode((ExtractOperatorNode)node);
+            extractOperatorNode((ExtractOperatorNode)node, str);
+            break;
         case NodeTypes.CHAR_LENGTH_OPERATOR_NODE:
-          return lengthOperatorNode((LengthOperatorNode)node);
+            lengthOperatorNode((LengthOperatorNode)node, str);
+            break;
         case NodeTypes.OCTET_LENGTH_OPERATOR_NODE:
-          return octetLengthOperatorNode((OctetLengthOperatorNode)node);
+            octetLengthOperatorNode((OctetLengthOperatorNode)node, str);
+            break;
         case NodeTypes.RIGHT_FN_NODE:
         case NodeTypes.LEFT_FN_NODE:
-            return leftRightFuncOperatorNode((LeftRightFuncOperatorNode)node);
+            leftRightFuncOperatorNode((LeftRightFuncOperatorNode)node, str);
+            break;
         case NodeTypes.SIMPLE_STRING_OPERATOR_NODE:
-            return simpleStringOperatorNode((SimpleStringOperatorNode)node);
+            simpleStringOperatorNode((SimpleStringOperatorNode)node, str);
+            break;
         case NodeTypes.LIKE_OPERATOR_NODE:
-            return likeEscapeOperatorNode((LikeEscapeOperatorNode)node);
+            likeEscapeOperatorNode((LikeEscapeOperatorNode)node, str);
+            break;
         case NodeTypes.LOCATE_FUNCTION_NODE:
         case NodeTypes.SUBSTRING_OPERATOR_NODE:
-            return ternaryOperatorNode((TernaryOperatorNode)node);
+            ternaryOperatorNode((TernaryOperatorNode)node, str);
+            break;
         case NodeTypes.TIMESTAMP_ADD_FN_NODE:
         case NodeTypes.TIMESTAMP_DIFF_FN_NODE:
-            return timestampFunctionNode((TernaryOperatorNode)node);
+            timestampFunctionNode((TernaryOperatorNode)node, str);
+            break;
         case NodeTypes.TRIM_OPERATOR_NODE:
-            return trimOperatorNode((TrimOperatorNode)node);
+            trimOperatorNode((TrimOperatorNode)node, str);
+            break;
         case NodeTypes.IN_LIST_OPERATOR_NODE:
-            return inListOperatorNode((InListOperatorNode)node);
+            inListOperatorNode((InListOperatorNode)node, str);
+            break;
         case NodeTypes.ROW_CTOR_NODE:
-            return rowCtorNode((RowConstructorNode)node);
+            rowCtorNode((RowConstructorNode)node, str);
+            break;
         case NodeTypes.BETWEEN_OPERATOR_NODE:
-            return betweenOperatorNode((BetweenOperatorNode)node);
+            betweenOperatorNode((BetweenOperatorNode)node, str);
+            break;
         case NodeTypes.CONDITIONAL_NODE:
-            return conditionalNode((ConditionalNode)node);
+            conditionalNode((ConditionalNode)node, str);
+            break;
         case NodeTypes.SIMPLE_CASE_NODE:
-            return simpleCaseNode((SimpleCaseNode)node);
+            simpleCaseNode((SimpleCaseNode)node, str);
+            break;
         case NodeTypes.COALESCE_FUNCTION_NODE:
-            return coalesceFunctionNode((CoalesceFunctionNode)node);
+            coalesceFunctionNode((CoalesceFunctionNode)node, str);
+            break;
         case NodeTypes.AGGREGATE_NODE:
-            return aggregateNode((AggregateNode)node);
+            aggregateNode((AggregateNode)node, str);
+            break;
         case NodeTypes.UNTYPED_NULL_CONSTANT_NODE:
         case NodeTypes.SQL_BOOLEAN_CONSTANT_NODE:
         case NodeTypes.BOOLEAN_CONSTANT_NODE:
@@ -239,106 +389,137 @@ public class NodeToString
         case NodeTypes.BLOB_CONSTANT_NODE:
         case NodeTypes.CLOB_CONSTANT_NODE:
         case NodeTypes.XML_CONSTANT_NODE:
-            return constantNode((ConstantNode)node);
+            constantNode((ConstantNode)node, str);
+            break;
         case NodeTypes.PARAMETER_NODE:
-            return parameterNode((ParameterNode)node);
+            parameterNode((ParameterNode)node, str);
+            break;
         case NodeTypes.DEFAULT_NODE:
-            return defaultNode((DefaultNode)node);
+            defaultNode((DefaultNode)node, str);
+            break;
         case NodeTypes.USER_NODE:
-            return "USER";
+            str.append("USER");
+            break;
         case NodeTypes.CURRENT_USER_NODE:
-            return "CURRENT_USER";
+            str.append("CURRENT_USER");
+            break;
         case NodeTypes.SESSION_USER_NODE:
-            return "SESSION_USER";
+            str.append("SESSION_USER");
+            break;
         case NodeTypes.SYSTEM_USER_NODE:
-            return "SYSTEM_USER";
+            str.append("SYSTEM_USER");
+            break;
         case NodeTypes.CURRENT_ISOLATION_NODE:
-            return "CURRENT ISOLATION";
+            str.append("CURRENT ISOLATION");
+            break;
         case NodeTypes.IDENTITY_VAL_NODE:
-            return "IDENTITY_VAL_LOCAL()";
+            str.append("IDENTITY_VAL_LOCAL()");
+            break;
         case NodeTypes.CURRENT_SCHEMA_NODE:
-            return "CURRENT SCHEMA";
+            str.append("CURRENT SCHEMA");
+            break;
         case NodeTypes.CURRENT_ROLE_NODE:
-            return "CURRENT_ROLE";
+            str.append("CURRENT_ROLE");
+            break;
         case NodeTypes.CURRENT_DATETIME_OPERATOR_NODE:
-            return currentDatetimeOperatorNode((CurrentDatetimeOperatorNode)node);
+            currentDatetimeOperatorNode((CurrentDatetimeOperatorNode)node, str);
+            break;
         case NodeTypes.CAST_NODE:
-            return castNode((CastNode)node);
+            castNode((CastNode)node, str);
+            break;
         case NodeTypes.EXPLICIT_COLLATE_NODE:
-            return explicitCollateNode((ExplicitCollateNode)node);
+            explicitCollateNode((ExplicitCollateNode)node, str);
+            break;
         case NodeTypes.NEXT_SEQUENCE_NODE:
-            return nextSequenceNode((NextSequenceNode)node);
+            nextSequenceNode((NextSequenceNode)node, str);
+            break;
         case NodeTypes.CURRENT_SEQUENCE_NODE:
-            return currentSequenceNode((CurrentSequenceNode)node);
+            currentSequenceNode((CurrentSequenceNode)node, str);
+            break;
         case NodeTypes.JAVA_TO_SQL_VALUE_NODE:
-            return javaToSQLValueNode((JavaToSQLValueNode)node);
+            javaToSQLValueNode((JavaToSQLValueNode)node, str);
+            break;
         case NodeTypes.SQL_TO_JAVA_VALUE_NODE:
-            return sqlToJavaValueNode((SQLToJavaValueNode)node);
+            sqlToJavaValueNode((SQLToJavaValueNode)node, str);
+            break;
         case NodeTypes.STATIC_METHOD_CALL_NODE:
-            return staticMethodCallNode((StaticMethodCallNode)node);
+            staticMethodCallNode((StaticMethodCallNode)node, str);
+            break;
         case NodeTypes.CALL_STATEMENT_NODE:
-            return callStatementNode((CallStatementNode)node);
+            callStatementNode((CallStatementNode)node, str);
+            break;
         case NodeTypes.INDEX_DEFINITION_NODE:
-            return indexDefinitionNode((IndexDefinitionNode)node);
+            indexDefinitionNode((IndexDefinitionNode)node, str);
+            break;
         case NodeTypes.DECLARE_STATEMENT_NODE:
-            return declareStatementNode((DeclareStatementNode)node);
+            declareStatementNode((DeclareStatementNode)node, str);
+            break;
         case NodeTypes.FETCH_STATEMENT_NODE:
-            return fetchStatementNode((FetchStatementNode)node);
+            fetchStatementNode((FetchStatementNode)node, str);
+            break;
         case NodeTypes.CLOSE_STATEMENT_NODE:
-            return closeStatementNode((CloseStatementNode)node);
+            closeStatementNode((CloseStatementNode)node, str);
+            break;
         case NodeTypes.PREPARE_STATEMENT_NODE:
-            return prepareStatementNode((PrepareStatementNode)node);
+            prepareStatementNode((PrepareStatementNode)node, str);
+            break;
         case NodeTypes.EXECUTE_STATEMENT_NODE:
-            return executeStatementNode((ExecuteStatementNode)node);
+            executeStatementNode((ExecuteStatementNode)node, str);
+            break;
         case NodeTypes.DEALLOCATE_STATEMENT_NODE:
-            return deallocateStatementNode((DeallocateStatementNode)node);
+            deallocateStatementNode((DeallocateStatementNode)node, str);
+            break;
         case NodeTypes.COPY_STATEMENT_NODE:
-            return copyStatementNode((CopyStatementNode)node);
+            copyStatementNode((CopyStatementNode)node, str);
+            break;
         case NodeTypes.CREATE_SCHEMA_NODE:
-            return createSchemaNode((CreateSchemaNode)node);
+            createSchemaNode((CreateSchemaNode)node, str);
+            break;
         case NodeTypes.DROP_SEQUENCE_NODE:
-            return dropSequenceNode((DropSequenceNode)node);
+            dropSequenceNode((DropSequenceNode)node, str);
+            break;
         case NodeTypes.ALTER_TABLE_NODE:
-            return alterTableNode((AlterTableNode)node);
+            alterTableNode((AlterTableNode)node, str);
+            break;
         case NodeTypes.AT_RENAME_COLUMN_NODE:
-            return alterTableRenameColumnNode((AlterTableRenameColumnNode)node);
+            alterTableRenameColumnNode((AlterTableRenameColumnNode)node, str);
+            break;
         case NodeTypes.DROP_COLUMN_NODE:
         case NodeTypes.MODIFY_COLUMN_TYPE_NODE:
         case NodeTypes.MODIFY_COLUMN_DEFAULT_NODE:
         case NodeTypes.MODIFY_COLUMN_CONSTRAINT_NODE:
         case NodeTypes.MODIFY_COLUMN_CONSTRAINT_NOT_NULL_NODE:
-            return modifyColumnNode((ModifyColumnNode)node);
+            modifyColumnNode((ModifyColumnNode)node, str);
+            break;
         case NodeTypes.AT_DROP_INDEX_NODE:
-            return alterDropIndexNode((AlterDropIndexNode)node);
+            alterDropIndexNode((AlterDropIndexNode)node, str);
+            break;
         case NodeTypes.NEW_INVOCATION_NODE:
-            return newInvocationNode((NewInvocationNode)node);
+            newInvocationNode((NewInvocationNode)node, str);
+            break;
         default:
-            return "**UNKNOWN(" + node.getNodeType() +")**";
+            str.append("**UNKNOWN(").append(node.getNodeType()).append(")**");
         }
     }
 
-    protected String indexDefinitionNode(IndexDefinitionNode node) throws StandardException
-    {
-        StringBuilder builder = new StringBuilder("INDEX ");
-
-        String indexName = maybeQuote(node.getName());
-
-        if (indexName != null)
-            builder.append(indexName).append(' ');
-
-        builder.append('(')
-               .append(indexColumnList(node.getIndexColumnList()))
-               .append(')');
-
+    protected void indexDefinitionNode(IndexDefinitionNode node, StringBuilder str)
+            throws StandardException {
+        str.append("INDEX ");
+        if (node.getName() != null) {
+            maybeQuote(node.getName(), str);
+            str.append(' ');
+        }
+        str.append('(');
+        indexColumnList(node.getIndexColumnList(), str);
+        str.append(')');
         StorageFormatNode storage = node.getStorageFormat();
         if (storage != null)
-            builder.append(toString(storage));
-
-        return builder.toString();
+            toString(storage, str);
     }
 
-    protected String storageFormatNode(StorageFormatNode node) throws StandardException {
-        StringBuilder str = new StringBuilder(" STORAGE_FORMAT ");
+    protected void storageFormatNode(StorageFormatNode node, StringBuilder str)
+            throws StandardException {
+        str.append(" STORAGE_FORMAT ");
         str.append(node.getFormat());
         boolean first = true;
         for (Map.Entry<String,String> entry : node.getOptions().entrySet()) {
@@ -357,212 +538,226 @@ public class NodeToString
         if (!first) {
             str.append(")");
         }
-        return str.toString();
     }
 
-    protected String createSchemaNode(CreateSchemaNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("CREATE SCHEMA ");
+    protected void createSchemaNode(CreateSchemaNode node, StringBuilder str)
+            throws StandardException {
+        str.append("CREATE SCHEMA ");
         str.append(existenceCheck(node.getExistenceCheck()));
-        str.append(maybeQuote(node.getSchemaName()));
+        maybeQuote(node.getSchemaName(), str);
         if(node.getAuthorizationID() != null) {
             str.append(" AUTHORIZATION ");
-            str.append(maybeQuote(node.getAuthorizationID()));
+            maybeQuote(node.getAuthorizationID(), str);
         }
         if(node.getDefaultCharacterAttributes() != null) {
             if(node.getDefaultCharacterAttributes().getCharacterSet() != null) {
                 str.append(" DEFAULT CHARACTER SET ");
-                str.append(maybeQuote(node.getDefaultCharacterAttributes().getCharacterSet()));
+                maybeQuote(node.getDefaultCharacterAttributes().getCharacterSet(), str);
             }
             if(node.getDefaultCharacterAttributes().getCollation() != null) {
                 str.append(" DEFAULT COLLATION ");
-                str.append(maybeQuote(node.getDefaultCharacterAttributes().getCollation()));
+                maybeQuote(node.getDefaultCharacterAttributes().getCollation(), str);
             }
         }
-        return str.toString();
     }
 
-    protected String createTableNode(CreateTableNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("CREATE TABLE ");
+    protected void createTableNode(CreateTableNode node, StringBuilder str)
+            throws StandardException {
+        str.append("CREATE TABLE ");
         str.append(existenceCheck(node.getExistenceCheck()));
-        str.append(toString(node.getObjectName()));
+        toString(node.getObjectName(), str);
         if (node.getTableElementList() != null) {
             str.append("(");
-            str.append(toString(node.getTableElementList()));
+            toString(node.getTableElementList(), str);
             str.append(")");
         }
         if (node.getQueryExpression() != null) {
             str.append(" AS (");
-            str.append(toString(node.getQueryExpression()));
+            toString(node.getQueryExpression(), str);
             str.append(") WITH ");
             if (!node.isWithData()) str.append("NO ");
             str.append("DATA");
         }
         if (node.getStorageFormat() != null)
-            str.append(toString(node.getStorageFormat()));
-        return str.toString();
+            toString(node.getStorageFormat(), str);
     }
 
-    protected String createViewNode(CreateViewNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("CREATE VIEW ");
+    protected void createViewNode(CreateViewNode node, StringBuilder str)
+            throws StandardException {
+        str.append("CREATE VIEW ");
         str.append(existenceCheck(node.getExistenceCheck()));
-        str.append(toString(node.getObjectName()));
+        toString(node.getObjectName(), str);
         if (node.getResultColumns() != null) {
             str.append("(");
-            str.append(toString(node.getResultColumns()));
+            toString(node.getResultColumns(), str);
             str.append(")");
         }
         str.append(" AS (");
-        str.append(toString(node.getParsedQueryExpression()));
+        toString(node.getParsedQueryExpression(), str);
         str.append(")");
-        return str.toString();
     }
 
-    protected String tableElementList(TableElementList node) throws StandardException {
-        return nodeList(node);
+    protected void tableElementList(TableElementList node, StringBuilder str)
+            throws StandardException {
+        nodeList(node, str);
     }
 
-    protected String tableNameList(TableNameList node) throws StandardException {
-        return nodeList(node);
+    protected void tableNameList(TableNameList node, StringBuilder str)
+            throws StandardException {
+        nodeList(node, str);
     }
 
-    protected String columnDefinitionNode(ColumnDefinitionNode node)
+    protected void columnDefinitionNode(ColumnDefinitionNode node, StringBuilder str)
             throws StandardException {
-        String basis = maybeQuote(node.getColumnName()) + " " + node.getType();
+        maybeQuote(node.getColumnName(), str);
+        str.append(' ').append(node.getType());
         if( node.getDefaultNode() != null ) {
-            return basis + toString(node.getDefaultNode());
+            toString(node.getDefaultNode(), str);
         }
-        return basis;
     }
 
-    protected String constraintDefinitionNode(ConstraintDefinitionNode node)
+    protected void constraintDefinitionNode(ConstraintDefinitionNode node, StringBuilder str)
             throws StandardException {
-        StringBuilder str = new StringBuilder();
-        if (node.getConstraintName() != null) {
-            str.append("CONSTRAINT ");
-            str.append(toString(node.getConstraintName()));
-            str.append(" ");
-        }
-        switch (node.getConstraintType()) {
-        case PRIMARY_KEY:
-            str.append("PRIMARY KEY(");
-            str.append(toString(node.getColumnList()));
-            str.append(")");
-            break;
-        case UNIQUE:
-            str.append("UNIQUE(");
-            str.append(toString(node.getColumnList()));
-            str.append(")");
-            break;
-        case DROP:
+        int start = mark(str);
+        if (node.getConstraintType() == ConstraintType.DROP) {
+            str.append("DROP ");
             if(node.getVerifyType() == ConstraintType.DROP) {
-                str.insert(0, "DROP ");
+                if (node.getConstraintName() != null) {
+                    str.append("CONSTRAINT ");
+                    toString(node.getConstraintName(), str);
+                    str.append(" ");
+                }
             } else {
-                str.setLength(0);
-                str.append("DROP ");
                 str.append(node.getVerifyType().name().replace("_", " "));
                 if(node.getConstraintName() != null) {
                     str.append(" ");
-                    str.append(toString(node.getConstraintName()));
+                    toString(node.getConstraintName(), str);
                 }
             }
-            break;
-        default:
-            str.append("**UNKNOWN(");
-            str.append(node.getConstraintType());
-            str.append(")");
+        }
+        else {
+            if (node.getConstraintName() != null) {
+                str.append("CONSTRAINT ");
+                toString(node.getConstraintName(), str);
+                str.append(" ");
+            }
+            switch (node.getConstraintType()) {
+            case PRIMARY_KEY:
+                str.append("PRIMARY KEY(");
+                toString(node.getColumnList(), str);
+                str.append(")");
+                break;
+            case UNIQUE:
+                str.append("UNIQUE(");
+                toString(node.getColumnList(), str);
+                str.append(")");
+                break;
+            default:
+                str.append("**UNKNOWN(");
+                str.append(node.getConstraintType());
+                str.append(")");
+            }
         }
         if(node.getExistenceCheck() != null) {
             str.append(" ");
             str.append(existenceCheck(node.getExistenceCheck()));
         }
-        return str.toString().trim();
+        // Same as trim(): nothing is ever written with leading blanks.
+        start = unmark(str, start);
+        int end = str.length();
+        while ((end > start) && (str.charAt(end - 1) <= ' '))
+            end--;
+        str.setLength(end);
     }
 
-    protected String fkConstraintDefinitionNode(FKConstraintDefinitionNode node)
+    protected void fkConstraintDefinitionNode(FKConstraintDefinitionNode node, StringBuilder str)
             throws StandardException {
-        StringBuilder str = new StringBuilder();
         if (node.getConstraintName() != null) {
             str.append("CONSTRAINT ");
-            str.append(toString(node.getConstraintName()));
+            toString(node.getConstraintName(), str);
             str.append(" ");
         }
         if (node.isGrouping())
             str.append("GROUPING ");
         str.append("FOREIGN KEY(");
-        str.append(toString(node.getColumnList()));
+        toString(node.getColumnList(), str);
         str.append(") REFERENCES ");
-        str.append(toString(node.getRefTableName()));
+        toString(node.getRefTableName(), str);
         str.append("(");
-        str.append(toString(node.getColumnList()));
+        toString(node.getColumnList(), str);
         str.append(")");
         if (node.isDeferrable())
             str.append(" DEFERRABALE");
         if (node.isInitiallyDeferred())
             str.append(" INITIALLY DEFERRED");
-        return str.toString();
     }
 
-    protected String createIndexNode(CreateIndexNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("CREATE ");
+    protected void createIndexNode(CreateIndexNode node, StringBuilder str)
+            throws StandardException {
+        str.append("CREATE ");
         if (node.isUnique())
             str.append("UNIQUE ");
         str.append("INDEX");
         str.append(" ");
         str.append(existenceCheck(node.getExistenceCheck()));
-        str.append(toString(node.getIndexName()));
+        toString(node.getIndexName(), str);
         str.append(" ON ");
         str.append(node.getIndexTableName());
         str.append("(");
-        str.append(toString(node.getIndexColumnList()));
+        toString(node.getIndexColumnList(), str);
         str.append(")");
         if (node.getJoinType() != null) {
-            str.append(String.format(" USING %s JOIN",
-                                     node.getJoinType() == JoinNode.JoinType.LEFT_OUTER ? "LEFT" : "RIGHT"));
+            str.append(" USING ");
+            str.append(node.getJoinType() == JoinNode.JoinType.LEFT_OUTER ? "LEFT" : "RIGHT");
+            str.append(" JOIN");
         }
-        return str.toString();
     }
 
-    protected String indexColumnList(IndexColumnList node) throws StandardException {
-
-        StringBuilder buffer = new StringBuilder();
+    protected void indexColumnList(IndexColumnList node, StringBuilder str)
+            throws StandardException {
         int firstFunctionArg = node.firstFunctionArg();
         int lastFunctionArg = node.lastFunctionArg();
         int arg = 0;
         while (arg < node.size()) {
             if (arg > 0) {
-                buffer.append(", ");
+                str.append(", ");
             }
             if (arg == firstFunctionArg) {
-                buffer.append(node.functionName());
-                buffer.append('(');
+                str.append(node.functionName());
+                str.append('(');
             }
-            buffer.append(toString(node.get(arg)));
+            toString(node.get(arg), str);
             if (arg == lastFunctionArg) {
-                buffer.append(')');
+                str.append(')');
             }
             arg++;
         }
-        return buffer.toString();
     }
 
-    protected String indexColumn(IndexColumn node) throws StandardException {
-        StringBuilder str = new StringBuilder();
+    protected void indexColumn(IndexColumn node, StringBuilder str)
+            throws StandardException {
         if (node.getTableName() != null) {
-            str.append(toString(node.getTableName()));
+            toString(node.getTableName(), str);
             str.append(".");
         }
-        str.append(maybeQuote(node.getColumnName()));
+        maybeQuote(node.getColumnName(), str);
         if (!node.isAscending())
             str.append(" DESC");
-        return str.toString();
     }
 
-    protected String createAliasNode(CreateAliasNode node) throws StandardException {
-        StringBuilder str = new StringBuilder(node.statementToString());
-        if (node.isCreateOrReplace())
-            str.insert(6, " OR REPLACE");
+    protected void createAliasNode(CreateAliasNode node, StringBuilder str)
+            throws StandardException {
+        String statement = node.statementToString();
+        if (node.isCreateOrReplace()) {
+            str.append(statement, 0, 6);
+            str.append(" OR REPLACE");
+            str.append(statement, 6, statement.length());
+        }
+        else {
+            str.append(statement);
+        }
         str.append(' ');
-        str.append(toString(node.getObjectName()));
+        toString(node.getObjectName(), str);
         switch (node.getAliasType()) {
         case PROCEDURE:
         case FUNCTION:
@@ -590,107 +785,113 @@ public class NodeToString
             }
             break;
         }
-        return str.toString();
     }
 
-    protected String renameNode(RenameNode node) throws StandardException {
+    protected void renameNode(RenameNode node, StringBuilder str)
+            throws StandardException {
         if (node.isAlterTable()) {
-            return "ALTER TABLE " + toString(node.getObjectName()) +
-                "RENAME COLUMN " + maybeQuote(node.getOldObjectName()) +
-                " TO " + maybeQuote(node.getNewObjectName());
+            str.append("ALTER TABLE ");
+            toString(node.getObjectName(), str);
+            str.append("RENAME COLUMN ");
+            maybeQuote(node.getOldObjectName(), str);
+            str.append(" TO ");
+            maybeQuote(node.getNewObjectName(), str);
         }
         else if (node.getRenameType() == RenameNode.RenameType.INDEX
                     || node.getRenameType() == RenameNode.RenameType.COLUMN) {
-            if (node.getObjectName() == null) {
-                return node.statementToString() + " " + maybeQuote(node.getOldObjectName()) +
-                    " TO " + maybeQuote(node.getNewObjectName());
-            }
-            else {
-                return node.statementToString() + " " + toString(node.getObjectName()) +
-                    "." + maybeQuote(node.getOldObjectName()) +
-                    " TO " + maybeQuote(node.getNewObjectName());
+            str.append(node.statementToString()).append(' ');
+            if (node.getObjectName() != null) {
+                toString(node.getObjectName(), str);
+                str.append('.');
             }
+            maybeQuote(node.getOldObjectName(), str);
+            str.append(" TO ");
+            maybeQuote(node.getNewObjectName(), str);
         }
         else {
-            return node.statementToString() + " " + toString(node.getObjectName()) +
-                " TO " + toString(node.getNewTableName());
+            str.append(node.statementToString()).append(' ');
+            toString(node.getObjectName(), str);
+            str.append(" TO ");
+            toString(node.getNewTableName(), str);
         }
     }
 
-    protected String dropIndexNode(DropIndexNode node) throws StandardException {
-        StringBuilder str = new StringBuilder(node.statementToString());
+    protected void dropIndexNode(DropIndexNode node, StringBuilder str)
+            throws StandardException {
+        str.append(node.statementToString());
         str.append(" ");
         str.append(existenceCheck(node.getExistenceCheck()));
         if (node.getObjectName() != null) {
-            str.append(toString(node.getObjectName()));
+            toString(node.getObjectName(), str);
             str.append(".");
         }
-        str.append(maybeQuote(node.getIndexName()));
-        return str.toString();
+        maybeQuote(node.getIndexName(), str);
     }
 
-    protected String cursorNode(CursorNode node) throws StandardException {
-        String result = toString(node.getResultSetNode());
-        result = result + orderByListFetchFirstOffset(node.getOrderByList(),
-                                                      node.getFetchFirstClause(),
-                                                      node.getOffsetClause());
-        return result;
+    protected void cursorNode(CursorNode node, StringBuilder str)
+            throws StandardException {
+        toString(node.getResultSetNode(), str);
+        orderByListFetchFirstOffset(node.getOrderByList(),
+                                    node.getFetchFirstClause(),
+                                    node.getOffsetClause(),
+                                    str);
     }
 
-    protected String selectNode(SelectNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("SELECT ");
+    protected void selectNode(SelectNode node, StringBuilder str)
+            throws StandardException {
+        str.append("SELECT ");
         if (node.isDistinct())
             str.append("DISTINCT ");
-        str.append(toString(node.getResultColumns()));
+        toString(node.getResultColumns(), str);
         if (!node.getFromList().isEmpty()) {
             str.append(" FROM ");
-            str.append(toString(node.getFromList()));
+            toString(node.getFromList(), str);
         }
         if (node.getWhereClause() != null) {
             str.append(" WHERE ");
-            str.append(toString(node.getWhereClause()));
+            toString(node.getWhereClause(), str);
         }
         if (node.getGroupByList() != null) {
             str.append(" ");
-            str.append(toString(node.getGroupByList()));
+            toString(node.getGroupByList(), str);
         }
         if (node.getHavingClause() != null) {
             str.append(" HAVING ");
-            str.append(toString(node.getHavingClause()));
+            toString(node.getHavingClause(), str);
         }
         if (node.getWindows() != null) {
             str.append(" ");
-            str.append(windowList(node.getWindows())); // Does not have NodeType.
+            windowList(node.getWindows(), str); // Does not have NodeType.
         }
-        return str.toString();
     }
 
-    protected String insertNode(InsertNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("INSERT INTO ");
-        str.append(toString(node.getTargetTableName()));
+    protected void insertNode(InsertNode node, StringBuilder str)
+            throws StandardException {
+        str.append("INSERT INTO ");
+        toString(node.getTargetTableName(), str);
         if (node.getTargetColumnList() != null) {
             str.append("(");
-            str.append(toString(node.getTargetColumnList()));
+            toString(node.getTargetColumnList(), str);
             str.append(")");
         }
         str.append(" ");
-        str.append(toString(node.getResultSetNode()));
+        toString(node.getResultSetNode(), str);
         if (node.getOrderByList() != null) {
             str.append(" ");
-            str.append(toString(node.getOrderByList()));
+            toString(node.getOrderByList(), str);
         }
         if (node.getReturningList() != null) {
             str.append(" RETURNING ");
-            str.append(toString(node.getReturningList()));
+            toString(node.getReturningList(), str);
         }
-        return str.toString();
     }
 
-    protected String updateNode(UpdateNode unode) throws StandardException {
+    protected void updateNode(UpdateNode unode, StringBuilder str)
+            throws StandardException {
         // Cf. Parser's getUpdateNode().
         SelectNode snode = (SelectNode)unode.getResultSetNode();
-        StringBuilder str = new StringBuilder("UPDATE ");
-        str.append(toString(snode.getFromList().get(0)));
+        str.append("UPDATE ");
+        toString(snode.getFromList().get(0), str);
         str.append(" SET ");
         boolean first = true;
         for (ResultColumn col : snode.getResultColumns()) {
@@ -698,162 +899,202 @@ public class NodeToString
                 first = false;
             else
                 str.append(", ");
-            str.append(toString(col.getReference()));
+            toString(col.getReference(), str);
             str.append(" = ");
-            str.append(maybeParens(col.getExpression()));
+            maybeParens(col.getExpression(), str);
         }
         if (snode.getWhereClause() != null) {
             str.append(" WHERE ");
-            str.append(toString(snode.getWhereClause()));
+            toString(snode.getWhereClause(), str);
         }
         if (unode.getReturningList() != null) {
             str.append(" RETURNING ");
-            str.append(toString(unode.getReturningList()));
+            toString(unode.getReturningList(), str);
         }
-        return str.toString();
     }
 
-    protected String deleteNode(DeleteNode dnode) throws StandardException {
+    protected void deleteNode(DeleteNode dnode, StringBuilder str)
+            throws StandardException {
         // Cf. Parser's getDeleteNode().
         SelectNode snode = (SelectNode)dnode.getResultSetNode();
-        StringBuilder str = new StringBuilder("DELETE FROM ");
-        str.append(toString(snode.getFromList().get(0)));
+        str.append("DELETE FROM ");
+        toString(snode.getFromList().get(0), str);
         if (snode.getWhereClause() != null) {
             str.append(" WHERE ");
-            str.append(toString(snode.getWhereClause()));
+            toString(snode.getWhereClause(), str);
         }
         if (dnode.getReturningList() != null) {
             str.append(" RETURNING ");
-            str.append(toString(dnode.getReturningList()));
+            toString(dnode.getReturningList(), str);
         }
-        return str.toString();
     }
 
-    protected String subqueryNode(SubqueryNode node) throws StandardException {
-        String str = toString(node.getResultSet());
-        str = str + orderByListFetchFirstOffset(node.getOrderByList(),
-                                                node.getFetchFirst(),
-                                                node.getOffset());
-        str = "(" + str + ")";
+    protected void subqueryNode(SubqueryNode node, StringBuilder str)
+            throws StandardException {
+        String operator;
         switch (node.getSubqueryType()) {
         case FROM:
         case EXPRESSION:
         default:
-            return str;
+            operator = null;
+            break;
         case EXISTS:
-            return "EXISTS " + str;
+            str.append("EXISTS ");
+            operator = null;
+            break;
         case NOT_EXISTS:
-            return "NOT EXISTS " + str;
+            str.append("NOT EXISTS ");
+            operator = null;
+            break;
         case IN:
-            return maybeParens(node.getLeftOperand()) + " IN " + str;
+            operator = " IN ";
+            break;
         case NOT_IN:
-            return maybeParens(node.getLeftOperand()) + " NOT IN " + str;
+            operator = " NOT IN ";
+            break;
         case EQ_ANY:
-            return maybeParens(node.getLeftOperand()) + " = ANY " + str;
+            operator = " = ANY ";
+            break;
         case EQ_ALL:
-            return maybeParens(node.getLeftOperand()) + " = ALL " + str;
+            operator = " = ALL ";
+            break;
         case NE_ANY:
-            return maybeParens(node.getLeftOperand()) + " <> ANY " + str;
+            operator = " <> ANY ";
+            break;
         case NE_ALL:
-            return maybeParens(node.getLeftOperand()) + " <> ALL " + str;
+            operator = " <> ALL ";
+            break;
         case GT_ANY:
-            return maybeParens(node.getLeftOperand()) + " > ANY " + str;
+            operator = " > ANY ";
+            break;
         case GT_ALL:
-            return maybeParens(node.getLeftOperand()) + " > ALL " + str;
+            operator = " > ALL ";
+            break;
         case GE_ANY:
-            return maybeParens(node.getLeftOperand()) + " >= ANY " + str;
+            operator = " >= ANY ";
+            break;
         case GE_ALL:
-            return maybeParens(node.getLeftOperand()) + " > ANY " + str;
+            operator = " > ANY ";
+            break;
         case LT_ANY:
-            return maybeParens(node.getLeftOperand()) + " < ANY " + str;
+            operator = " < ANY ";
+            break;
         case LT_ALL:
-            return maybeParens(node.getLeftOperand()) + " < ALL " + str;
+            operator = " < ALL ";
+            break;
         case LE_ANY:
-            return maybeParens(node.getLeftOperand()) + " <= ANY " + str;
+            operator = " <= ANY ";
+            break;
         case LE_ALL:
-            return maybeParens(node.getLeftOperand()) + " <= ALL " + str;
+            operator = " <= ALL ";
+            break;
         }
+        if (operator != null) {
+            maybeParens(node.getLeftOperand(), str);
+            str.append(operator);
+        }
+        str.append('(');
+        toString(node.getResultSet(), str);
+        orderByListFetchFirstOffset(node.getOrderByList(),
+                                    node.getFetchFirst(),
+                                    node.getOffset(),
+                                    str);
+        str.append(')');
     }
 
-    protected String rowResultSetNode(RowResultSetNode node) throws StandardException {
-        return "VALUES(" + toString(node.getResultColumns()) + ")";
+    protected void rowResultSetNode(RowResultSetNode node, StringBuilder str)
+            throws StandardException {
+        str.append("VALUES(");
+        toString(node.getResultColumns(), str);
+        str.append(")");
     }
 
-    protected String rowsResultSetNode(RowsResultSetNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("VALUES");
-        boolean first = true;
-        for (RowResultSetNode row : node.getRows()) {
-            if (first)
-                first = false;
-            else
+    protected void rowsResultSetNode(RowsResultSetNode node, StringBuilder str)
+            throws StandardException {
+        str.append("VALUES");
+        // By index, so that columnar rows are not all turned into nodes at once.
+        int size = node.getRowCount();
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
                 str.append(", ");
             str.append("(");
-            str.append(toString(row.getResultColumns()));
+            toString(node.getRow(i).getResultColumns(), str);
             str.append(")");
         }
-        return str.toString();
     }
 
-    protected String resultColumnList(ResultColumnList node) throws StandardException {
-        return nodeList(node);
+    protected void resultColumnList(ResultColumnList node, StringBuilder str)
+            throws StandardException {
+        nodeList(node, str);
     }
 
-    protected String resultColumn(ResultColumn node) throws StandardException {
-        if (node.getReference() != null)
-            return toString(node.getReference());
+    protected void resultColumn(ResultColumn node, StringBuilder str)
+            throws StandardException {
+        if (node.getReference() != null) {
+            toString(node.getReference(), str);
+            return;
+        }
 
         String n = maybeQuote(node.getName());
-        if (node.getExpression() == null)
-            return n;
+        if (node.getExpression() == null) {
+            str.append(n);
+            return;
+        }
 
-        String x = maybeParens(node.getExpression());
-        if ((n == null) || n.equals(x))
-            return x;
-        else
-            return x + " AS " + n;
+        int start = mark(str);
+        maybeParens(node.getExpression(), str);
+        start = unmark(str, start);
+        if ((n != null) && !regionEquals(str, start, n)) {
+            str.append(" AS ");
+            str.append(n);
+        }
     }
 
-    protected String allResultColumn(AllResultColumn node) throws StandardException {
+    protected void allResultColumn(AllResultColumn node, StringBuilder str)
+            throws StandardException {
         if (node.getFullTableName() == null) {
-            return "*";
+            str.append("*");
         } else {
-            return maybeQuote(node.getFullTableName()) + ".*";
+            maybeQuote(node.getFullTableName(), str);
+            str.append(".*");
         }
     }
 
-    protected String fromList(FromList node) throws StandardException {
-        return nodeList(node);
+    protected void fromList(FromList node, StringBuilder str)
+            throws StandardException {
+        nodeList(node, str);
     }
 
-    protected String fromBaseTable(FromBaseTable node) throws StandardException {
-        String tn = toString(node.getOrigTableName());
-        String n = maybeQuote(node.getCorrelationName());
-        if (n == null)
-            return tn;
-        else
-            return tn + " AS " + n;
+    protected void fromBaseTable(FromBaseTable node, StringBuilder str)
+            throws StandardException {
+        toString(node.getOrigTableName(), str);
+        if (node.getCorrelationName() != null) {
+            str.append(" AS ");
+            maybeQuote(node.getCorrelationName(), str);
+        }
     }
 
-    protected String fromSubquery(FromSubquery node) throws StandardException {
-        StringBuilder str = new StringBuilder(toString(node.getSubquery()));
+    protected void fromSubquery(FromSubquery node, StringBuilder str)
+            throws StandardException {
+        str.append('(');
+        toString(node.getSubquery(), str);
         if (node.getOrderByList() != null) {
             str.append(' ');
-            str.append(toString(node.getOrderByList()));
+            toString(node.getOrderByList(), str);
         }
-        str.insert(0, '(');
         str.append(')');
         str.append(" AS ");
-        str.append(maybeQuote(node.getCorrelationName()));
+        maybeQuote(node.getCorrelationName(), str);
         if (node.getResultColumns() != null) {
             str.append('(');
-            str.append(toString(node.getResultColumns()));
+            toString(node.getResultColumns(), str);
             str.append(')');
         }
-        return str.toString();
     }
 
-    protected String joinNode(JoinNode node) throws StandardException {
-        StringBuilder str = new StringBuilder(toString(node.getLeftResultSet()));
+    protected void joinNode(JoinNode node, StringBuilder str)
+            throws StandardException {
+        toString(node.getLeftResultSet(), str);
         JoinNode.JoinType joinType = JoinNode.JoinType.INNER;
         if (node instanceof HalfOuterJoinNode)
             joinType = ((HalfOuterJoinNode)node).isRightOuterJoin() ?
@@ -865,54 +1106,106 @@ public class NodeToString
             str.append("NATURAL ");
         str.append(JoinNode.joinTypeToString(joinType));
         str.append(' ');
-        str.append(toString(node.getRightResultSet()));
+        toString(node.getRightResultSet(), str);
         if (node.getJoinClause() != null) {
             str.append(" ON ");
-            str.append(maybeParens(node.getJoinClause()));
+            maybeParens(node.getJoinClause(), str);
         }
         if (node.getUsingClause() != null) {
             str.append(" USING (");
-            str.append(toString(node.getUsingClause()));
+            toString(node.getUsingClause(), str);
             str.append(')');
         }
-        return str.toString();
     }
 
-    protected String unionNode(UnionNode node) throws StandardException {
-        return toString(node.getLeftResultSet()) + " UNION " +
-               toString(node.getRightResultSet());
+    protected void unionNode(UnionNode node, StringBuilder str)
+            throws StandardException {
+        toString(node.getLeftResultSet(), str);
+        str.append(" UNION ");
+        toString(node.getRightResultSet(), str);
     }
 
-    protected String tableName(TableName node) throws StandardException {
+    protected void tableName(TableName node, StringBuilder str)
+            throws StandardException {
         String schema = node.getSchemaName();
-        String table = node.getTableName();
-
-        if (schema == null)
-            return maybeQuote(table);
-        else
-            return maybeQuote(schema) + "." + maybeQuote(table);
+        if (schema != null) {
+            maybeQuote(schema, str);
+            str.append('.');
+        }
+        maybeQuote(node.getTableName(), str);
     }
 
-    protected String columnReference(ColumnReference node) throws StandardException {
+    protected void columnReference(ColumnReference node, StringBuilder str)
+            throws StandardException {
         // TODO does maybeQuote(node.getTableName()) deal with schema names correctly?
         String tableName = node.getTableName();
-        String columnName = node.getColumnName();
+        if (tableName != null) {
+            maybeQuote(tableName, str);
+            str.append('.');
+        }
+        maybeQuote(node.getColumnName(), str);
+    }
+
+    /** Quote a column name if it contains $. Final for the same reason
+     * as the old hooks at the end: quoting goes through the form that
+     * appends. */
+    protected final String maybeQuote(String identifier) {
+        if ((identifier == null) || !needsQuotes(identifier))
+            return identifier;
+        StringBuilder str = new StringBuilder(identifier.length() + 2);
+        quote(identifier, str);
+        return str.toString();
+    }
 
-        if (tableName != null)
-            return maybeQuote(tableName) + "." + maybeQuote(columnName);
+    /** Append an identifier, quoting it if necessary. */
+    protected void maybeQuote(String identifier, StringBuilder str) {
+        if ((identifier == null) || !needsQuotes(identifier))
+            str.append(identifier);
         else
-            return maybeQuote(columnName);
+            quote(identifier, str);
     }
 
-    /** Quote a column name if it contains $ */
-    protected String maybeQuote(String identifier) {
+    /** Does this identifier need quotes to be read back the same? */
+    protected static boolean needsQuotes(String identifier) {
         // If identifier is lowercase and does not match IDENTIFIER from SQLGrammer.jj, no need for quotes
-        if (identifier == null)
-            return null;
-        else if (identifier.matches("[a-z_][a-z0-9_$]*") && !isReserved(identifier))
-            return identifier;
-        else
-            return '"' + identifier.replace("\"", "\"\"") + '"';
+        // That is, [a-z_][a-z0-9_$]* and not reserved.
+        int len = identifier.length();
+        if (len == 0)
+            return true;
+        char ch = identifier.charAt(0);
+        if (!(((ch >= 'a') && (ch <= 'z')) || (ch == '_')))
+            return true;
+        for (int i = 1; i < len; i++) {
+            ch = identifier.charAt(i);
+            if (!(((ch >= 'a') && (ch <= 'z')) || ((ch >= '0') && (ch <= '9')) ||
+                  (ch == '_') || (ch == '$')))
+                return true;
+        }
+        // Already lowercase.
+        return RESERVED_WORDS.contains(identifier);
+    }
+
+    protected static void quote(String identifier, StringBuilder str) {
+        str.append('"');
+        for (int i = 0; i < identifier.length(); i++) {
+            char ch = identifier.charAt(i);
+            if (ch == '"')
+                str.append('"');
+            str.append(ch);
+        }
+        str.append('"');
+    }
+
+    /** Does the text appended since <code>start</code> equal <code>s</code>? */
+    protected static boolean regionEquals(StringBuilder str, int start, String s) {
+        int len = s.length();
+        if (str.length() - start != len)
+            return false;
+        for (int i = 0; i < len; i++) {
+            if (str.charAt(start + i) != s.charAt(i))
+                return false;
+        }
+        return true;
     }
 
     public static boolean isReserved(String word) {
@@ -1139,167 +1432,181 @@ public class NodeToString
         return result;
     }
 
-    protected String virtualColumnNode(VirtualColumnNode node) throws StandardException {
-        return maybeQuote(node.getSourceResultColumn().getName());
+
+    protected void virtualColumnNode(VirtualColumnNode node, StringBuilder str)
+            throws StandardException {
+        maybeQuote(node.getSourceResultColumn().getName(), str);
     }
 
-    protected String groupByList(GroupByList node) throws StandardException {
-        return "GROUP BY " + nodeList(node);
+    protected void groupByList(GroupByList node, StringBuilder str)
+            throws StandardException {
+        str.append("GROUP BY ");
+        nodeList(node, str);
     }
 
-    protected String groupByColumn(GroupByColumn node) throws StandardException {
-        return maybeParens(node.getColumnExpression());
+    protected void groupByColumn(GroupByColumn node, StringBuilder str)
+            throws StandardException {
+        maybeParens(node.getColumnExpression(), str);
     }
 
-    protected String orderByList(OrderByList node) throws StandardException {
-        return "ORDER BY " + nodeList(node);
+    protected void orderByList(OrderByList node, StringBuilder str)
+            throws StandardException {
+        str.append("ORDER BY ");
+        nodeList(node, str);
     }
 
-    protected String orderByColumn(OrderByColumn node) throws StandardException {
-        String result = maybeParens(node.getExpression());
+    protected void orderByColumn(OrderByColumn node, StringBuilder str)
+            throws StandardException {
+        maybeParens(node.getExpression(), str);
         if (!node.isAscending()) {
-            result += " DESC";
+            str.append(" DESC");
         }
         if (node.isNullsOrderedLow()) {
-            result += " NULLS FIRST";
+            str.append(" NULLS FIRST");
         }
-        return result;
     }
 
-    protected String partitionByList(PartitionByList node) throws StandardException {
-        return "PARTITION BY " + nodeList(node);
+    protected void partitionByList(PartitionByList node, StringBuilder str)
+            throws StandardException {
+        str.append("PARTITION BY ");
+        nodeList(node, str);
     }
 
-    protected String partitionByColumn(PartitionByColumn node) throws StandardException {
-        return toString(node.getColumnExpression());
+    protected void partitionByColumn(PartitionByColumn node, StringBuilder str)
+            throws StandardException {
+        toString(node.getColumnExpression(), str);
     }
 
-    protected String windowList(WindowList node) throws StandardException {
-        return "WINDOW " + nodeList(node);
+    protected void windowList(WindowList node, StringBuilder str)
+            throws StandardException {
+        str.append("WINDOW ");
+        nodeList(node, str);
     }
 
-    protected String windowDefinitionNode(WindowDefinitionNode node)
+    protected void windowDefinitionNode(WindowDefinitionNode node, StringBuilder str)
             throws StandardException {
-        StringBuffer str = new StringBuffer("");
         if (!node.isInline()) {
             str.append(node.getName());
             str.append(" AS ");
         }
         str.append("(");
         if (node.getPartitionByList() != null)
-            str.append(toString(node.getPartitionByList()));
+            toString(node.getPartitionByList(), str);
         if (node.getOrderByList() != null) {
             if (node.getPartitionByList() != null)
                 str.append(" ");
-            str.append(toString(node.getOrderByList()));
+            toString(node.getOrderByList(), str);
         }
         str.append(")");
-        return str.toString();
     }
 
-    protected String windowReferenceNode(WindowReferenceNode node)
+    protected void windowReferenceNode(WindowReferenceNode node, StringBuilder str)
             throws StandardException {
-        return node.getName();
+        str.append(node.getName());
     }
 
-    protected String aggregateWindowFunctionNode(AggregateWindowFunctionNode node)
+    protected void aggregateWindowFunctionNode(AggregateWindowFunctionNode node, StringBuilder str)
             throws StandardException {
-        return toString(node.getAggregateFunction()) +
-            " OVER " + toString(node.getWindow());
+        toString(node.getAggregateFunction(), str);
+        str.append(" OVER ");
+        toString(node.getWindow(), str);
     }
 
-    protected String rowNumberFunctionNode(RowNumberFunctionNode node)
+    protected void rowNumberFunctionNode(RowNumberFunctionNode node, StringBuilder str)
             throws StandardException {
-        return node.getOperator().toUpperCase() + "()" +
-            " OVER " + toString(node.getWindow());
+        str.append(node.getOperator().toUpperCase());
+        str.append("() OVER ");
+        toString(node.getWindow(), str);
     }
 
-    protected String binaryLogicalOperatorNode(BinaryLogicalOperatorNode node)
+    protected void binaryLogicalOperatorNode(BinaryLogicalOperatorNode node, StringBuilder str)
             throws StandardException {
-        return infixBinary(node);
+        infixBinary(node, str);
     }
 
-    protected String binaryComparisonOperatorNode(BinaryComparisonOperatorNode node)
+    protected void binaryComparisonOperatorNode(BinaryComparisonOperatorNode node, StringBuilder str)
         throws StandardException {
-        return infixBinary(node);
+        infixBinary(node, str);
     }
 
-    protected String binaryArithmeticOperatorNode(BinaryArithmeticOperatorNode node)
+    protected void binaryArithmeticOperatorNode(BinaryArithmeticOperatorNode node, StringBuilder str)
             throws StandardException {
-        return infixBinary(node);
+        infixBinary(node, str);
     }
 
-    protected String binaryBitOperatorNode(BinaryBitOperatorNode node)
+    protected void binaryBitOperatorNode(BinaryBitOperatorNode node, StringBuilder str)
             throws StandardException {
-        return infixBinary(node);
+        infixBinary(node, str);
     }
 
-    protected String concatenationOperatorNode(ConcatenationOperatorNode node)
+    protected void concatenationOperatorNode(ConcatenationOperatorNode node, StringBuilder str)
             throws StandardException {
-        return infixBinary(node);
+        infixBinary(node, str);
     }
 
-    protected String leftRightFuncOperatorNode(LeftRightFuncOperatorNode node)
+    protected void leftRightFuncOperatorNode(LeftRightFuncOperatorNode node, StringBuilder str)
             throws StandardException {
-        return functionBinary(node);
+        functionBinary(node, str);
     }
 
-    protected String simpleStringOperatorNode(SimpleStringOperatorNode node)
+    protected void simpleStringOperatorNode(SimpleStringOperatorNode node, StringBuilder str)
             throws StandardException {
-        return functionUnary(node);
+        functionUnary(node, str);
     }
 
-    protected String notNode(NotNode node) throws StandardException {
-        return prefixUnary(node);
+    protected void notNode(NotNode node, StringBuilder str) throws StandardException {
+        prefixUnary(node, str);
     }
 
-    protected String isNullNode(IsNullNode node) throws StandardException {
-        return suffixUnary(node);
+    protected void isNullNode(IsNullNode node, StringBuilder str) throws StandardException {
+        suffixUnary(node, str);
     }
 
-    protected String unaryArithmeticOperatorNode(UnaryArithmeticOperatorNode node)
+    protected void unaryArithmeticOperatorNode(UnaryArithmeticOperatorNode node, StringBuilder str)
             throws StandardException {
-        return functionUnary(node);
+        functionUnary(node, str);
     }
 
-    protected String unaryPrefixOperatorNode(UnaryArithmeticOperatorNode node)
+    protected void unaryPrefixOperatorNode(UnaryArithmeticOperatorNode node, StringBuilder str)
             throws StandardException {
-        return prefixUnary(node);
+        prefixUnary(node, str);
     }
 
-    protected String unaryBitOperatorNode(UnaryBitOperatorNode node)
+    protected void unaryBitOperatorNode(UnaryBitOperatorNode node, StringBuilder str)
             throws StandardException {
-        return prefixUnary(node);
+        prefixUnary(node, str);
     }
 
-    protected String extractOperatorNode(ExtractOperatorNode node)
+    protected void extractOperatorNode(ExtractOperatorNode node, StringBuilder str)
             throws StandardException {
-        return node.getOperator().substring("EXTRACT ".length()).toUpperCase() + "(" +
-            toString(node.getOperand()) + ")";
+        str.append(node.getOperator().substring("EXTRACT ".length()).toUpperCase());
+        str.append("(");
+        toString(node.getOperand(), str);
+        str.append(")");
     }
 
-    protected String unaryDateTimestampOperatorNode(UnaryDateTimestampOperatorNode node)
+    protected void unaryDateTimestampOperatorNode(UnaryDateTimestampOperatorNode node, StringBuilder str)
             throws StandardException {
-        return functionUnary(node);
+        functionUnary(node, str);
     }
 
-    protected String timestampOperatorNode(TimestampOperatorNode node)
+    protected void timestampOperatorNode(TimestampOperatorNode node, StringBuilder str)
             throws StandardException {
-        return functionBinary(node);
+        functionBinary(node, str);
     }
 
-    protected String lengthOperatorNode(LengthOperatorNode node)
+    protected void lengthOperatorNode(LengthOperatorNode node, StringBuilder str)
             throws StandardException {
-        return functionUnary(node);
+        functionUnary(node, str);
     }
 
-    protected String octetLengthOperatorNode(OctetLengthOperatorNode node)
+    protected void octetLengthOperatorNode(OctetLengthOperatorNode node, StringBuilder str)
             throws StandardException {
-        return functionUnary(node);
+        functionUnary(node, str);
     }
 
-    protected String isNode(IsNode node) throws StandardException {
-        StringBuilder str = new StringBuilder(maybeParens(node.getLeftOperand()));
+    protected void isNode(IsNode node, StringBuilder str) throws StandardException {
+        maybeParens(node.getLeftOperand(), str);
         str.append(" IS ");
         if (node.isNegated())
             str.append("NOT ");
@@ -1309,48 +1616,50 @@ public class NodeToString
             if (value == null)
                 str.append("UNKNOWN");
             else
-                str.append(value.toString().toUpperCase());
+                str.append(value.booleanValue() ? "TRUE" : "FALSE");
         }
         else
-            str.append(maybeParens(rightOperand));
-        return str.toString();
+            maybeParens(rightOperand, str);
     }
 
-    protected String aggregateNode(AggregateNode node) throws StandardException {
-        if (node.getOperand() == null)
-            return node.getAggregateName();
-        else
-            return node.getAggregateName() + "(" + toString(node.getOperand()) + ")";
+    protected void aggregateNode(AggregateNode node, StringBuilder str)
+            throws StandardException {
+        str.append(node.getAggregateName());
+        if (node.getOperand() != null) {
+            str.append("(");
+            toString(node.getOperand(), str);
+            str.append(")");
+        }
     }
 
-    protected String likeEscapeOperatorNode(LikeEscapeOperatorNode node)
+    protected void likeEscapeOperatorNode(LikeEscapeOperatorNode node, StringBuilder str)
             throws StandardException {
-        String like = maybeParens(node.getReceiver()) +
-            " " + node.getOperator().toUpperCase() + " " +
-            maybeParens(node.getLeftOperand());
-        if (node.getRightOperand() != null)
-            like += " ESCAPE " + maybeParens(node.getRightOperand());
-        return like;
+        maybeParens(node.getReceiver(), str);
+        str.append(" ").append(node.getOperator().toUpperCase()).append(" ");
+        maybeParens(node.getLeftOperand(), str);
+        if (node.getRightOperand() != null) {
+            str.append(" ESCAPE ");
+            maybeParens(node.getRightOperand(), str);
+        }
     }
 
-    protected String ternaryOperatorNode(TernaryOperatorNode node)
+    protected void ternaryOperatorNode(TernaryOperatorNode node, StringBuilder str)
             throws StandardException {
-        StringBuilder str = new StringBuilder(node.getOperator().toUpperCase());
+        str.append(node.getOperator().toUpperCase());
         str.append("(");
-        str.append(toString(node.getReceiver()));
+        toString(node.getReceiver(), str);
         str.append(", ");
-        str.append(toString(node.getLeftOperand()));
+        toString(node.getLeftOperand(), str);
         if (node.getRightOperand() != null) {
             str.append(", ");
-            str.append(toString(node.getRightOperand()));
+            toString(node.getRightOperand(), str);
         }
         str.append(")");
-        return str.toString();
     }
 
-    protected String timestampFunctionNode(TernaryOperatorNode node)
+    protected void timestampFunctionNode(TernaryOperatorNode node, StringBuilder str)
             throws StandardException {
-        String interval = toString(node.getReceiver());
+        String interval;
         switch ((Integer)((ConstantNode)node.getReceiver()).getValue()) {
         case TernaryOperatorNode.YEAR_INTERVAL:
             interval = "YEAR";
@@ -1379,22 +1688,34 @@ public class NodeToString
         case TernaryOperatorNode.FRAC_SECOND_INTERVAL:
             interval = "MICROSECOND>";
             break;
+        default:
+            interval = null;
+            break;
         }
-        return node.getOperator().toUpperCase() + "(" +
-            interval + ", " +
-            toString(node.getLeftOperand()) + ", " +
-            toString(node.getRightOperand()) + ")";
+        str.append(node.getOperator().toUpperCase());
+        str.append("(");
+        if (interval != null)
+            str.append(interval);
+        else
+            toString(node.getReceiver(), str);
+        str.append(", ");
+        toString(node.getLeftOperand(), str);
+        str.append(", ");
+        toString(node.getRightOperand(), str);
+        str.append(")");
     }
 
-    protected String trimOperatorNode(TrimOperatorNode node)
+    protected void trimOperatorNode(TrimOperatorNode node, StringBuilder str)
             throws StandardException {
         if ((node.getRightOperand() instanceof ConstantNode) &&
             " ".equals(((ConstantNode)node.getRightOperand()).getValue())) {
-            return node.getOperator().toUpperCase() + "(" +
-                toString(node.getLeftOperand()) + ")";
+            str.append(node.getOperator().toUpperCase());
+            str.append("(");
+            toString(node.getLeftOperand(), str);
+            str.append(")");
         }
         else {
-            StringBuilder str = new StringBuilder("TRIM(");
+            str.append("TRIM(");
             if ("LTRIM".equals(node.getOperator()))
                 str.append("LEADING");
             else if ("RTRIM".equals(node.getOperator()))
@@ -1402,216 +1723,341 @@ public class NodeToString
             else
                 str.append("BOTH");
             str.append(" ");
-            str.append(toString(node.getRightOperand()));
+            toString(node.getRightOperand(), str);
             str.append(" FROM ");
-            str.append(toString(node.getLeftOperand()));
-            return str.toString();
+            toString(node.getLeftOperand(), str);
         }
     }
 
-    protected String inListOperatorNode(InListOperatorNode node) throws StandardException {
-        return maybeParens(node.getLeftOperand()) +
-            " " + (node.isNegated() ? "NOT IN" : "IN") +
-            " (" + toString(node.getRightOperandList()) + ")";
+    protected void inListOperatorNode(InListOperatorNode node, StringBuilder str)
+            throws StandardException {
+        maybeParens(node.getLeftOperand(), str);
+        str.append(node.isNegated() ? " NOT IN (" : " IN (");
+        toString(node.getRightOperandList(), str);
+        str.append(")");
     }
 
-    protected String valueNodeList(ValueNodeList node) throws StandardException {
-        return nodeList(node, true);
+    protected void valueNodeList(ValueNodeList node, StringBuilder str)
+            throws StandardException {
+        nodeList(node, true, str);
     }
 
-    protected String betweenOperatorNode(BetweenOperatorNode node)
+    protected void betweenOperatorNode(BetweenOperatorNode node, StringBuilder str)
             throws StandardException {
-        return maybeParens(node.getLeftOperand()) +
-            " BETWEEN " + maybeParens(node.getRightOperandList().get(0)) +
-            " AND " + maybeParens(node.getRightOperandList().get(1));
+        maybeParens(node.getLeftOperand(), str);
+        str.append(" BETWEEN ");
+        maybeParens(node.getRightOperandList().get(0), str);
+        str.append(" AND ");
+        maybeParens(node.getRightOperandList().get(1), str);
     }
 
-    protected String conditionalNode(ConditionalNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("CASE");
+    protected void conditionalNode(ConditionalNode node, StringBuilder str)
+            throws StandardException {
+        str.append("CASE");
         while (true) {
             str.append(" WHEN ");
-            str.append(maybeParens(node.getTestCondition()));
+            maybeParens(node.getTestCondition(), str);
             str.append(" THEN ");
-            str.append(maybeParens(node.getThenNode()));
+            maybeParens(node.getThenNode(), str);
             ValueNode elseNode = node.getElseNode();
             if (elseNode instanceof ConditionalNode)
                 node = (ConditionalNode)elseNode;
             else {
                 str.append(" ELSE ");
-                str.append(maybeParens(elseNode));
+                maybeParens(elseNode, str);
                 break;
             }
         }
         str.append(" END");
-        return str.toString();
     }
 
-    protected String simpleCaseNode(SimpleCaseNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("CASE ");
-        str.append(maybeParens(node.getOperand()));
+    protected void simpleCaseNode(SimpleCaseNode node, StringBuilder str)
+            throws StandardException {
+        str.append("CASE ");
+        maybeParens(node.getOperand(), str);
         for (int i = 0; i < node.getNumberOfCases(); i++) {
             str.append(" WHEN ");
-            str.append(maybeParens(node.getCaseOperand(i)));
+            maybeParens(node.getCaseOperand(i), str);
             str.append(" THEN ");
-            str.append(maybeParens(node.getResultValue(i)));
+            maybeParens(node.getResultValue(i), str);
         }
         if (node.getElseValue() != null) {
             str.append(" ELSE ");
-            str.append(maybeParens(node.getElseValue()));
+            maybeParens(node.getElseValue(), str);
         }
         str.append(" END");
-        return str.toString();
     }
 
-    protected String coalesceFunctionNode(CoalesceFunctionNode node)
+    protected void coalesceFunctionNode(CoalesceFunctionNode node, StringBuilder str)
             throws StandardException {
-        return functionCall(node.getFunctionName(),
-                                                node.getArgumentsList());
+        functionCall(node.getFunctionName(), node.getArgumentsList(), str);
     }
 
-    protected String constantNode(ConstantNode node) throws StandardException {
+    protected void constantNode(ConstantNode node, StringBuilder str)
+            throws StandardException {
         Object value = node.getValue();
         if (value == null)
-            return "NULL";
-        else if (value instanceof String)
-            return "'" + ((String)value).replace("'", "''") + "'";
+            str.append("NULL");
+        else if (value instanceof String) {
+            String string = (String)value;
+            str.append('\'');
+            for (int i = 0; i < string.length(); i++) {
+                char ch = string.charAt(i);
+                if (ch == '\'')
+                    str.append('\'');
+                str.append(ch);
+            }
+            str.append('\'');
+        }
         else if (value instanceof byte[])
-            return hexConstant((byte[])value);
+            hexConstant((byte[])value, str);
         else if (value instanceof Double)
-            return String.format(Locale.ENGLISH, "%e", (Double)value);
+            str.append(String.format(Locale.ENGLISH, "%e", (Double)value));
         else if (value instanceof Boolean)
-            return value.toString().toUpperCase();
+            str.append(((Boolean)value).booleanValue() ? "TRUE" : "FALSE");
         else
-            return value.toString();
+            str.append(value.toString());
     }
 
-    protected String defaultNode(DefaultNode node) throws StandardException {
-        return " DEFAULT "+ node.getDefaultText();
+    protected void defaultNode(DefaultNode node, StringBuilder str)
+            throws StandardException {
+        str.append(" DEFAULT ").append(node.getDefaultText());
     }
 
-    protected String prefixUnary(UnaryOperatorNode node) throws StandardException {
-        return node.getOperator().toUpperCase() + " " +
-            maybeParens(node.getOperand());
+    protected void prefixUnary(UnaryOperatorNode node, StringBuilder str)
+            throws StandardException {
+        str.append(node.getOperator().toUpperCase()).append(' ');
+        maybeParens(node.getOperand(), str);
     }
 
-    protected String suffixUnary(UnaryOperatorNode node) throws StandardException {
-        return maybeParens(node.getOperand()) + " " +
-            node.getOperator().toUpperCase();
+    protected void suffixUnary(UnaryOperatorNode node, StringBuilder str)
+            throws StandardException {
+        maybeParens(node.getOperand(), str);
+        str.append(' ').append(node.getOperator().toUpperCase());
     }
 
-    protected String functionUnary(UnaryOperatorNode node) throws StandardException {
-        return node.getOperator().toUpperCase() + "(" +
-            toString(node.getOperand()) + ")";
+    protected void functionUnary(UnaryOperatorNode node, StringBuilder str)
+            throws StandardException {
+        str.append(node.getOperator().toUpperCase()).append('(');
+        toString(node.getOperand(), str);
+        str.append(')');
     }
 
-    protected String infixBinary(BinaryOperatorNode node) throws StandardException {
-        return maybeParens(node.getLeftOperand()) +
-            " " + node.getOperator().toUpperCase() + " " +
-            maybeParens(node.getRightOperand());
+    protected void infixBinary(BinaryOperatorNode node, StringBuilder str)
+            throws StandardException {
+        maybeParens(node.getLeftOperand(), str);
+        str.append(' ').append(node.getOperator().toUpperCase()).append(' ');
+        maybeParens(node.getRightOperand(), str);
     }
 
-    protected String functionBinary(BinaryOperatorNode node) throws StandardException {
-        return node.getOperator().toUpperCase() + "(" +
-            toString(node.getLeftOperand()) + ", " +
-            toString(node.getRightOperand()) + ")";
+    protected void functionBinary(BinaryOperatorNode node, StringBuilder str)
+            throws StandardException {
+        str.append(node.getOperator().toUpperCase()).append('(');
+        toString(node.getLeftOperand(), str);
+        str.append(", ");
+        toString(node.getRightOperand(), str);
+        str.append(')');
     }
 
-    protected String functionCall(String functionName, ValueNodeList args)
+    protected void functionCall(String functionName, ValueNodeList args, StringBuilder str)
             throws StandardException {
-        return functionName + "(" + nodeList(args, true) + ")";
+        str.append(functionName).append('(');
+        nodeList(args, true, str);
+        str.append(')');
     }
 
-    protected String nodeList(QueryTreeNodeList<? extends QueryTreeNode> nl)
+    protected void nodeList(QueryTreeNodeList<? extends QueryTreeNode> nl, StringBuilder str)
             throws StandardException {
-        return nodeList(nl, false);
+        nodeList(nl, false, str);
     }
 
-    protected String nodeList(QueryTreeNodeList<? extends QueryTreeNode> nl, boolean expr)
+    protected void nodeList(QueryTreeNodeList<? extends QueryTreeNode> nl, boolean expr,
+                            StringBuilder str)
             throws StandardException {
-        StringBuilder str = new StringBuilder();
         boolean first = true;
         for (QueryTreeNode node : nl) {
             if (first)
                 first = false;
             else
                 str.append(", ");
-            str.append(expr ? maybeParens(node) : toString(node));
+            if (expr)
+                maybeParens(node, str);
+            else
+                toString(node, str);
+        }
+    }
+
+    /**
+     * Append the node, in parentheses if it is more than a single
+     * token. For most nodes, that is known from the type of node, in
+     * {@link #needsParens}. Otherwise, the opening parenthesis is
+     * inserted after the fact, which only moves this node's own text.
+     */
+    protected void maybeParens(QueryTreeNode node, StringBuilder str)
+            throws StandardException {
+        Boolean parens = needsParens(node);
+        if (parens != null) {
+            if (parens)
+                str.append('(');
+            toString(node, str);
+            if (parens)
+                str.append(')');
+        }
+        else if (stream != null) {
+            stream.mark(str, StreamingBuffer.PARENS);
+            toString(node, str);
+            stream.unmarkParens(str);
+        }
+        else {
+            int start = str.length();
+            toString(node, str);
+            if (str.indexOf(" ", start) >= 0) {
+                str.insert(start, '(');
+                str.append(')');
+            }
         }
-        return str.toString();
     }
 
-    protected String maybeParens(QueryTreeNode node) throws StandardException {
-        String str = toString(node);
+    /**
+     * Whether the node is more than a single token as generated, or
+     * <code>null</code> if that is only known from the text. A subclass
+     * that generates one of these node types differently should
+     * override this too.
+     */
+    protected Boolean needsParens(QueryTreeNode node) {
         if (node instanceof ConstantNode)
-            return str;
-        else if (str.indexOf(' ') < 0)
-            return str;
+            return Boolean.FALSE;
+        switch (node.getNodeType()) {
+        case NodeTypes.AND_NODE:
+        case NodeTypes.OR_NODE:
+        case NodeTypes.BINARY_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_NOT_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_GREATER_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_THAN_OPERATOR_NODE:
+        case NodeTypes.BINARY_LESS_EQUALS_OPERATOR_NODE:
+        case NodeTypes.BINARY_PLUS_OPERATOR_NODE:
+        case NodeTypes.BINARY_TIMES_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIVIDE_OPERATOR_NODE:
+        case NodeTypes.BINARY_DIV_OPERATOR_NODE:
+        case NodeTypes.BINARY_MINUS_OPERATOR_NODE:
+        case NodeTypes.MOD_OPERATOR_NODE:
+        case NodeTypes.BINARY_BIT_OPERATOR_NODE:
+        case NodeTypes.CONCATENATION_OPERATOR_NODE:
+        case NodeTypes.NOT_NODE:
+        case NodeTypes.IS_NULL_NODE:
+        case NodeTypes.IS_NOT_NULL_NODE:
+        case NodeTypes.IS_NODE:
+        case NodeTypes.UNARY_PLUS_OPERATOR_NODE:
+        case NodeTypes.UNARY_MINUS_OPERATOR_NODE:
+        case NodeTypes.UNARY_BITNOT_OPERATOR_NODE:
+        case NodeTypes.LIKE_OPERATOR_NODE:
+        case NodeTypes.IN_LIST_OPERATOR_NODE:
+        case NodeTypes.BETWEEN_OPERATOR_NODE:
+            // Operators, with spaces around them.
+            return Boolean.TRUE;
+        case NodeTypes.COLUMN_REFERENCE:
+            {
+                ColumnReference column = (ColumnReference)node;
+                return (hasSpace(column.getTableName()) ||
+                        hasSpace(column.getColumnName()));
+            }
+        case NodeTypes.PARAMETER_NODE:
+            return Boolean.FALSE;
+        default:
+            return null;
+        }
+    }
+
+    protected static boolean hasSpace(String name) {
+        return ((name != null) && (name.indexOf(' ') >= 0));
+    }
+
+    /**
+     * Note the current position, which text appended after it can be
+     * compared against or trimmed back to until {@link #unmark}.
+     */
+    protected int mark(StringBuilder str) {
+        if (stream != null)
+            return stream.mark(str, StreamingBuffer.HOLD);
+        else
+            return str.length();
+    }
+
+    /** Return where the marked position is now. */
+    protected int unmark(StringBuilder str, int start) {
+        if (stream != null)
+            return stream.unmark(str);
         else
-            return "(" + str + ")";
+            return start;
     }
 
-    protected String hexConstant(byte[] value) {
-        StringBuilder str = new StringBuilder("X'");
+    protected void hexConstant(byte[] value, StringBuilder str) {
+        str.append("X'");
         for (byte b : value) {
             str.append(Integer.toString((int)b & 0xFF, 16).toUpperCase());
         }
         str.append("'");
-        return str.toString();
     }
 
-    protected String parameterNode(ParameterNode node) throws StandardException {
-        return "$" + (node.getParameterNumber() + 1);
+    protected void parameterNode(ParameterNode node, StringBuilder str)
+            throws StandardException {
+        str.append('$').append(node.getParameterNumber() + 1);
     }
 
-    protected String currentDatetimeOperatorNode(CurrentDatetimeOperatorNode node)
+    protected void currentDatetimeOperatorNode(CurrentDatetimeOperatorNode node, StringBuilder str)
             throws StandardException {
         switch (node.getField()) {
         case DATE:
-            return "CURRENT_DATE";
+            str.append("CURRENT_DATE");
+            break;
         case TIME:
-            return "CURRENT_TIME";
+            str.append("CURRENT_TIME");
+            break;
         case TIMESTAMP:
-            return "CURRENT_TIMESTAMP";
+            str.append("CURRENT_TIMESTAMP");
+            break;
         default:
-            return "**UNKNOWN(" + node.getField() +")**";
+            str.append("**UNKNOWN(").append(node.getField()).append(")**");
         }
     }
 
-    protected String castNode(CastNode node) throws StandardException {
-        return "CAST(" + toString(node.getCastOperand()) +
-            " AS " + node.getType().toString() + ")";
+    protected void castNode(CastNode node, StringBuilder str) throws StandardException {
+        str.append("CAST(");
+        toString(node.getCastOperand(), str);
+        str.append(" AS ").append(node.getType().toString()).append(')');
     }
 
-    protected String explicitCollateNode(ExplicitCollateNode node)
+    protected void explicitCollateNode(ExplicitCollateNode node, StringBuilder str)
             throws StandardException {
-        return maybeParens(node.getOperand()) +
-            " COLLATE " + node.getCollation();
+        maybeParens(node.getOperand(), str);
+        str.append(" COLLATE ").append(node.getCollation());
     }
 
-    protected String nextSequenceNode(NextSequenceNode node)
+    protected void nextSequenceNode(NextSequenceNode node, StringBuilder str)
             throws StandardException {
-        return "NEXT VALUE FOR " + toString(node.getSequenceName ());
+        str.append("NEXT VALUE FOR ");
+        toString(node.getSequenceName (), str);
     }
 
-    protected String currentSequenceNode(CurrentSequenceNode node)
+    protected void currentSequenceNode(CurrentSequenceNode node, StringBuilder str)
             throws StandardException {
-        return "CURRENT VALUE FOR " + toString(node.getSequenceName ());
+        str.append("CURRENT VALUE FOR ");
+        toString(node.getSequenceName (), str);
     }
 
-    protected String javaToSQLValueNode(JavaToSQLValueNode node)
+    protected void javaToSQLValueNode(JavaToSQLValueNode node, StringBuilder str)
             throws StandardException {
-        return toString(node.getJavaValueNode());
+        toString(node.getJavaValueNode(), str);
     }
 
-    protected String sqlToJavaValueNode(SQLToJavaValueNode node)
+    protected void sqlToJavaValueNode(SQLToJavaValueNode node, StringBuilder str)
             throws StandardException {
-        return toString(node.getSQLValueNode());
+        toString(node.getSQLValueNode(), str);
     }
 
-    protected String staticMethodCallNode(StaticMethodCallNode node)
+    protected void staticMethodCallNode(StaticMethodCallNode node, StringBuilder str)
             throws StandardException {
-        StringBuilder str = new StringBuilder();
-
         if (node.getProcedureName() != null) {
             // Can't call tableName or toString because we need to avoid quoting
             TableName name = node.getProcedureName();
@@ -1632,77 +2078,84 @@ public class NodeToString
         JavaValueNode[] params = node.getMethodParameters();
         for (int i = 0; i < params.length; i++) {
             if (i > 0) str.append(", ");
-            str.append(maybeParens(params[i]));
+            maybeParens(params[i], str);
         }
         str.append(")");
-        return str.toString();
     }
 
-    protected String callStatementNode(CallStatementNode node) throws StandardException {
-        return "CALL " + javaToSQLValueNode(node.methodCall());
+    protected void callStatementNode(CallStatementNode node, StringBuilder str)
+            throws StandardException {
+        str.append("CALL ");
+        javaToSQLValueNode(node.methodCall(), str);
     }
 
-    protected String dropTableNode(DropTableNode node) throws StandardException {
-        return ddlStatementNode(node, node.getExistenceCheck());
+    protected void dropTableNode(DropTableNode node, StringBuilder str)
+            throws StandardException {
+        ddlStatementNode(node, node.getExistenceCheck(), str);
     }
 
-    protected String dropViewNode(DropViewNode node) throws StandardException {
-        return ddlStatementNode(node, node.getExistenceCheck());
+    protected void dropViewNode(DropViewNode node, StringBuilder str)
+            throws StandardException {
+        ddlStatementNode(node, node.getExistenceCheck(), str);
     }
 
-    protected String dropTriggerNode(DropTriggerNode node) throws StandardException {
-        return ddlStatementNode(node, null);
+    protected void dropTriggerNode(DropTriggerNode node, StringBuilder str)
+            throws StandardException {
+        ddlStatementNode(node, null, str);
     }
 
-    protected String ddlStatementNode(DDLStatementNode node, ExistenceCheck existenceCheck) throws StandardException {
-        return node.statementToString() +
-            " " +
-            existenceCheck(existenceCheck) +
-            toString(node.getObjectName());
+    protected void ddlStatementNode(DDLStatementNode node, ExistenceCheck existenceCheck,
+                                    StringBuilder str)
+            throws StandardException {
+        str.append(node.statementToString());
+        str.append(" ");
+        str.append(existenceCheck(existenceCheck));
+        toString(node.getObjectName(), str);
     }
 
-    protected String explainStatementNode(ExplainStatementNode node)
+    protected void explainStatementNode(ExplainStatementNode node, StringBuilder str)
             throws StandardException {
-        String detail;
+        str.append("EXPLAIN ");
         switch (node.getDetail()) {
         case BRIEF:
-            detail = "BRIEF ";
+            str.append("BRIEF ");
             break;
         case VERBOSE:
-            detail = "VERBOSE ";
+            str.append("VERBOSE ");
             break;
         case NORMAL:
         default:
-            detail = "";
             break;
         }
-        return "EXPLAIN " + detail + toString(node.getStatement());
+        toString(node.getStatement(), str);
     }
 
-    protected String transactionControlNode(TransactionControlNode node)
+    protected void transactionControlNode(TransactionControlNode node, StringBuilder str)
             throws StandardException {
-        return node.statementToString();
+        str.append(node.statementToString());
     }
 
-    protected String setTransactionIsolationNode(SetTransactionIsolationNode node)
+    protected void setTransactionIsolationNode(SetTransactionIsolationNode node, StringBuilder str)
             throws StandardException {
-        return node.statementToString() + " " + node.getIsolationLevel().getSyntax();
+        str.append(node.statementToString()).append(' ')
+           .append(node.getIsolationLevel().getSyntax());
     }
 
-    protected String setTransactionAccessNode(SetTransactionAccessNode node)
+    protected void setTransactionAccessNode(SetTransactionAccessNode node, StringBuilder str)
             throws StandardException {
-        return node.statementToString() + " " + node.getAccessMode().getSyntax();
+        str.append(node.statementToString()).append(' ')
+           .append(node.getAccessMode().getSyntax());
     }
 
-    protected String setConstraintsNode(SetConstraintsNode node)
+    protected void setConstraintsNode(SetConstraintsNode node, StringBuilder str)
             throws StandardException {
-        StringBuilder str = new StringBuilder(node.statementToString());
+        str.append(node.statementToString());
         str.append(" ");
         if (node.isAll()) {
             str.append("ALL");
         }
         else {
-            str.append(toString(node.getConstraints()));
+            toString(node.getConstraints(), str);
         }
         str.append(" ");
         if (node.isDeferred()) {
@@ -1711,91 +2164,100 @@ public class NodeToString
         else {
             str.append("IMMEDIATE");
         }
-        return str.toString();
     }
 
-    protected String setConfigurationNode(SetConfigurationNode node)
+    protected void setConfigurationNode(SetConfigurationNode node, StringBuilder str)
             throws StandardException {
-        return node.statementToString() + " = '" + node.getValue() + "'";
+        str.append(node.statementToString()).append(" = '")
+           .append(node.getValue()).append('\'');
     }
 
-    protected String showConfigurationNode(ShowConfigurationNode node)
+    protected void showConfigurationNode(ShowConfigurationNode node, StringBuilder str)
             throws StandardException {
-        return node.statementToString();
+        str.append(node.statementToString());
     }
 
-    protected String rowCtorNode(RowConstructorNode row) throws StandardException
+    protected void rowCtorNode(RowConstructorNode row, StringBuilder str)
+            throws StandardException
     {
         ValueNodeList list = row.getNodeList();
 
         switch(list.size())
         {
             case 0:
-                return "EMPTY";
+                str.append("EMPTY");
+                return;
             case 1:
                 QueryTreeNode node = list.get(0);
-                if (!(node instanceof RowConstructorNode))
-                    return toString(node);
+                if (!(node instanceof RowConstructorNode)) {
+                    toString(node, str);
+                    return;
+                }
         }
 
-        StringBuilder bd = new StringBuilder();
+        boolean first = true;
         for (QueryTreeNode node : list )
         {
-            doPrint(node, bd);
-            bd.append(", ");
+            if (first)
+                first = false;
+            else
+                str.append(", ");
+            doPrint(node, str);
         }
-
-        return bd.substring(0, bd.length() -2); // delete the last (<COMMA> <SPACE>)
     }
 
-    protected String declareStatementNode(DeclareStatementNode node)
+    protected void declareStatementNode(DeclareStatementNode node, StringBuilder str)
             throws StandardException {
-        return "DECLARE " + node.getName() + " CURSOR FOR " +
-            toString(node.getStatement());
+        str.append("DECLARE ").append(node.getName()).append(" CURSOR FOR ");
+        toString(node.getStatement(), str);
     }
 
-    protected String fetchStatementNode(FetchStatementNode node)
+    protected void fetchStatementNode(FetchStatementNode node, StringBuilder str)
             throws StandardException {
-        return "FETCH " +
-            ((node.getCount() < 0) ? "ALL" : Integer.toString(node.getCount())) +
-            " FROM " + node.getName();
+        str.append("FETCH ");
+        if (node.getCount() < 0)
+            str.append("ALL");
+        else
+            str.append(node.getCount());
+        str.append(" FROM ").append(node.getName());
     }
 
-    protected String closeStatementNode(CloseStatementNode node)
+    protected void closeStatementNode(CloseStatementNode node, StringBuilder str)
             throws StandardException {
-        return "CLOSE " + node.getName();
+        str.append("CLOSE ").append(node.getName());
     }
 
-    protected String prepareStatementNode(PrepareStatementNode node)
+    protected void prepareStatementNode(PrepareStatementNode node, StringBuilder str)
             throws StandardException {
-        return "PREPARE " + node.getName() + " AS " +
-            toString(node.getStatement());
+        str.append("PREPARE ").append(node.getName()).append(" AS ");
+        toString(node.getStatement(), str);
     }
 
-    protected String executeStatementNode(ExecuteStatementNode node)
+    protected void executeStatementNode(ExecuteStatementNode node, StringBuilder str)
             throws StandardException {
-        return "EXECUTE " + node.getName() +
-            "(" + nodeList(node.getParameterList(), true) + ")";
+        str.append("EXECUTE ").append(node.getName()).append('(');
+        nodeList(node.getParameterList(), true, str);
+        str.append(')');
     }
 
-    protected String deallocateStatementNode(DeallocateStatementNode node)
+    protected void deallocateStatementNode(DeallocateStatementNode node, StringBuilder str)
             throws StandardException {
-        return "DEALLOCATE " + node.getName();
+        str.append("DEALLOCATE ").append(node.getName());
     }
 
-    protected String copyStatementNode(CopyStatementNode node)
+    protected void copyStatementNode(CopyStatementNode node, StringBuilder str)
             throws StandardException {
-        StringBuilder str = new StringBuilder("COPY ");
+        str.append("COPY ");
         if (node.getSubquery() != null) {
             str.append("(");
-            str.append(toString(node.getSubquery()));
+            toString(node.getSubquery(), str);
             str.append(")");
         }
         else {
             str.append(node.getTableName());
             if (node.getColumnList() != null) {
                 str.append("(");
-                str.append(toString(node.getColumnList()));
+                toString(node.getColumnList(), str);
                 str.append(")");
             }
         }
@@ -1850,7 +2312,6 @@ public class NodeToString
         if (options) {
             str.append(")");
         }
-        return str.toString();
     }
 
     protected boolean copyOptionString(StringBuilder str, String keyword, String value, boolean options) {
@@ -1873,16 +2334,17 @@ public class NodeToString
     protected void doPrint(QueryTreeNode node, StringBuilder bd) throws StandardException
     {
         if (node instanceof RowConstructorNode)
-            bd.append(rowCtorNode((RowConstructorNode)node));
+            rowCtorNode((RowConstructorNode)node, bd);
         else
-            bd.append(toString(node));
+            toString(node, bd);
     }
 
-    protected String groupConcat(GroupConcatNode node) throws StandardException
+    protected void groupConcat(GroupConcatNode node, StringBuilder str)
+            throws StandardException
     {
-        StringBuilder ret = new StringBuilder("GROUP_CONCAT(");
+        str.append("GROUP_CONCAT(");
         if(node.isDistinct()) {
-            ret.append("DISTINCT ");
+            str.append("DISTINCT ");
         }
         // GROUP_CONCAT comes through non-uniform:
         // A single column is a raw ValueNode
@@ -1890,37 +2352,36 @@ public class NodeToString
         if(node.getOperand() instanceof JavaToSQLValueNode) {
             JavaToSQLValueNode javaNode = (JavaToSQLValueNode)node.getOperand();
             NewInvocationNode niNode = (NewInvocationNode)javaNode.getJavaValueNode();
-            ret.append(javaValueNodeArray(niNode.getMethodParameters()));
+            javaValueNodeArray(niNode.getMethodParameters(), str);
         } else {
-            ret.append(toString(node.getOperand()));
+            toString(node.getOperand(), str);
         }
-        ret.append(" ");
+        str.append(" ");
         if (node.getOrderBy() != null) {
-            ret.append(toString(node.getOrderBy()));
-            ret.append(" ");
+            toString(node.getOrderBy(), str);
+            str.append(" ");
         }
-        ret.append("SEPARATOR '");
-        ret.append(node.getSeparator());
-        ret.append("\')");
-        return ret.toString();
+        str.append("SEPARATOR '");
+        str.append(node.getSeparator());
+        str.append("\')");
     }
 
-    protected String dropSequenceNode(DropSequenceNode node) throws StandardException {
-        StringBuilder str = new StringBuilder("DROP SEQUENCE ");
+    protected void dropSequenceNode(DropSequenceNode node, StringBuilder str)
+            throws StandardException {
+        str.append("DROP SEQUENCE ");
         if(node.getExistenceCheck() != null) {
             str.append(existenceCheck(node.getExistenceCheck()));
         }
-        str.append(toString(node.getObjectName()));
+        toString(node.getObjectName(), str);
         str.append(statementTypeDrop(node.getDropBehavior()));
-        return str.toString();
     }
 
-    protected String alterTableNode(AlterTableNode node) throws StandardException {
-        StringBuilder str = new StringBuilder();
+    protected void alterTableNode(AlterTableNode node, StringBuilder str)
+            throws StandardException {
         str.append(node.isTruncateTable() ? "TRUNCATE" : "ALTER");
         str.append(" TABLE ");
         str.append(existenceCheck(node.getExistenceCheck()));
-        str.append(toString(node.getObjectName()));
+        toString(node.getObjectName(), str);
         if(node.getTableElementList() != null) {
             for(int i = 0; i < node.getTableElementList().size(); ++i) {
                 str.append(" ");
@@ -1944,28 +2405,29 @@ public class NodeToString
                         str.append("ADD ");
                         break;
                 }
-                str.append(toString(elementNode));
+                toString(elementNode, str);
             }
         }
-        return str.toString();
     }
 
-    protected String alterTableRenameColumnNode(AlterTableRenameColumnNode node) {
-        return "RENAME COLUMN " +
-            maybeQuote(node.oldName()) +
-            " TO " +
-            maybeQuote(node.newName());
+    protected void alterTableRenameColumnNode(AlterTableRenameColumnNode node, StringBuilder str) {
+        str.append("RENAME COLUMN ");
+        maybeQuote(node.oldName(), str);
+        str.append(" TO ");
+        maybeQuote(node.newName(), str);
     }
 
-    protected String modifyColumnNode(ModifyColumnNode node) throws StandardException {
+    protected void modifyColumnNode(ModifyColumnNode node, StringBuilder str)
+            throws StandardException {
         if(node.getNodeType() == NodeTypes.DROP_COLUMN_NODE) {
-            return "DROP COLUMN " +
-                    existenceCheck(node.getExistenceCheck()) +
-                    maybeQuote(node.getColumnName());
+            str.append("DROP COLUMN ");
+            str.append(existenceCheck(node.getExistenceCheck()));
+            maybeQuote(node.getColumnName(), str);
+            return;
         }
 
-        StringBuilder str = new StringBuilder("ALTER COLUMN ");
-        str.append(maybeQuote(node.getColumnName()));
+        str.append("ALTER COLUMN ");
+        maybeQuote(node.getColumnName(), str);
         switch(node.getNodeType()) {
             case NodeTypes.MODIFY_COLUMN_TYPE_NODE:
                 str.append(" SET DATA TYPE ");
@@ -1986,7 +2448,7 @@ public class NodeToString
                         str.append(" AS ");
                         if(node.getGenerationClauseNode() != null) {
                             str.append("(");
-                            str.append(toString(node.getGenerationClauseNode().getGEnerationExpression()));
+                            toString(node.getGenerationClauseNode().getGEnerationExpression(), str);
                             str.append(")");
                         } else {
                             str.append("IDENTITY (");
@@ -1998,7 +2460,7 @@ public class NodeToString
                         }
                     } else if(node.getDefaultNode() != null) {
                         str.append(" SET");
-                        str.append(defaultNode(node.getDefaultNode()));
+                        defaultNode(node.getDefaultNode(), str);
                     } else {
                         str.append(" DROP DEFAULT");
                     }
@@ -2011,50 +2473,59 @@ public class NodeToString
                 str.append(" NOT NULL");
                 break;
         }
-        return str.toString();
     }
 
-    protected String alterDropIndexNode(AlterDropIndexNode node) {
-        return "DROP INDEX " + maybeQuote(node.getIndexName());
+    protected void alterDropIndexNode(AlterDropIndexNode node, StringBuilder str) {
+        str.append("DROP INDEX ");
+        maybeQuote(node.getIndexName(), str);
     }
 
-    protected String newInvocationNode(NewInvocationNode node) throws StandardException {
-        StringBuilder str = new StringBuilder();
-        str.append(maybeQuote(node.getMethodName()));
+    protected void newInvocationNode(NewInvocationNode node, StringBuilder str)
+            throws StandardException {
+        maybeQuote(node.getMethodName(), str);
         str.append("(");
-        str.append(javaValueNodeArray(node.getMethodParameters()));
+        javaValueNodeArray(node.getMethodParameters(), str);
         str.append(")");
-        return str.toString();
     }
 
-    protected String javaValueNodeArray(JavaValueNode[] nodes) throws StandardException {
-        if(nodes == null || nodes.length == 0) {
-            return "";
+    protected void javaValueNodeArray(JavaValueNode[] nodes, StringBuilder str)
+            throws StandardException {
+        if(nodes == null) {
+            return;
         }
-        StringBuilder str = new StringBuilder();
         for(int i = 0; i < nodes.length; ++i) {
             if(i > 0) {
                 str.append(", ");
             }
-            str.append(toString(nodes[i]));
+            toString(nodes[i], str);
         }
-        return str.toString();
     }
 
-    protected String orderByListFetchFirstOffset(OrderByList orderByList,
-                                                 ValueNode fetchFirst,
-                                                 ValueNode offset) throws StandardException {
-        String result = "";
+    protected void orderByListFetchFirstOffset(OrderByList orderByList,
+                                               ValueNode fetchFirst,
+                                               ValueNode offset,
+                                               StringBuilder str)
+            throws StandardException {
         if (orderByList != null) {
-            result += " " + toString(orderByList);
+            str.append(" ");
+            toString(orderByList, str);
         }
         if (fetchFirst != null) {
-            result += " LIMIT " + toString(fetchFirst);
+            str.append(" LIMIT ");
+            toString(fetchFirst, str);
         }
         if (offset != null) {
-            result += " OFFSET " + toString(offset);
+            str.append(" OFFSET ");
+            toString(offset, str);
+        }
+    }
+
+    /** An <code>IOException</code> from streaming, carried out through
+     * the rendering methods. */
+    protected static class WriteException extends StandardException {
+        public WriteException(IOException cause) {
+            super(cause);
         }
-        return result;
     }
 
     protected String existenceCheck(ExistenceCheck existenceCheck) {
@@ -2085,4 +2556,845 @@ public class NodeToString
                 throw new IllegalArgumentException("dropBehavior: " + dropBehavior);
         }
     }
+
+    /*
+     * The hooks as they were before they appended to a shared builder.
+     * They still return the SQL, for existing callers. But they are
+     * final, so that a subclass overriding one fails to compile instead
+     * of never being called; override the form that takes a
+     * StringBuilder instead.
+     */
+
+    protected final String indexDefinitionNode(IndexDefinitionNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        indexDefinitionNode(node, str);
+        return str.toString();
+    }
+
+    protected final String storageFormatNode(StorageFormatNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        storageFormatNode(node, str);
+        return str.toString();
+    }
+
+    protected final String createSchemaNode(CreateSchemaNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        createSchemaNode(node, str);
+        return str.toString();
+    }
+
+    protected final String createTableNode(CreateTableNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        createTableNode(node, str);
+        return str.toString();
+    }
+
+    protected final String createViewNode(CreateViewNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        createViewNode(node, str);
+        return str.toString();
+    }
+
+    protected final String tableElementList(TableElementList node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        tableElementList(node, str);
+        return str.toString();
+    }
+
+    protected final String tableNameList(TableNameList node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        tableNameList(node, str);
+        return str.toString();
+    }
+
+    protected final String columnDefinitionNode(ColumnDefinitionNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        columnDefinitionNode(node, str);
+        return str.toString();
+    }
+
+    protected final String constraintDefinitionNode(ConstraintDefinitionNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        constraintDefinitionNode(node, str);
+        return str.toString();
+    }
+
+    protected final String fkConstraintDefinitionNode(FKConstraintDefinitionNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        fkConstraintDefinitionNode(node, str);
+        return str.toString();
+    }
+
+    protected final String createIndexNode(CreateIndexNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        createIndexNode(node, str);
+        return str.toString();
+    }
+
+    protected final String indexColumnList(IndexColumnList node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        indexColumnList(node, str);
+        return str.toString();
+    }
+
+    protected final String indexColumn(IndexColumn node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        indexColumn(node, str);
+        return str.toString();
+    }
+
+    protected final String createAliasNode(CreateAliasNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        createAliasNode(node, str);
+        return str.toString();
+    }
+
+    protected final String renameNode(RenameNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        renameNode(node, str);
+        return str.toString();
+    }
+
+    protected final String dropIndexNode(DropIndexNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        dropIndexNode(node, str);
+        return str.toString();
+    }
+
+    protected final String cursorNode(CursorNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        cursorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String selectNode(SelectNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        selectNode(node, str);
+        return str.toString();
+    }
+
+    protected final String insertNode(InsertNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        insertNode(node, str);
+        return str.toString();
+    }
+
+    protected final String updateNode(UpdateNode unode) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        updateNode(unode, str);
+        return str.toString();
+    }
+
+    protected final String deleteNode(DeleteNode dnode) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        deleteNode(dnode, str);
+        return str.toString();
+    }
+
+    protected final String subqueryNode(SubqueryNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        subqueryNode(node, str);
+        return str.toString();
+    }
+
+    protected final String rowResultSetNode(RowResultSetNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        rowResultSetNode(node, str);
+        return str.toString();
+    }
+
+    protected final String rowsResultSetNode(RowsResultSetNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        rowsResultSetNode(node, str);
+        return str.toString();
+    }
+
+    protected final String resultColumnList(ResultColumnList node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        resultColumnList(node, str);
+        return str.toString();
+    }
+
+    protected final String resultColumn(ResultColumn node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        resultColumn(node, str);
+        return str.toString();
+    }
+
+    protected final String allResultColumn(AllResultColumn node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        allResultColumn(node, str);
+        return str.toString();
+    }
+
+    protected final String fromList(FromList node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        fromList(node, str);
+        return str.toString();
+    }
+
+    protected final String fromBaseTable(FromBaseTable node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        fromBaseTable(node, str);
+        return str.toString();
+    }
+
+    protected final String fromSubquery(FromSubquery node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        fromSubquery(node, str);
+        return str.toString();
+    }
+
+    protected final String joinNode(JoinNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        joinNode(node, str);
+        return str.toString();
+    }
+
+    protected final String unionNode(UnionNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        unionNode(node, str);
+        return str.toString();
+    }
+
+    protected final String tableName(TableName node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        tableName(node, str);
+        return str.toString();
+    }
+
+    protected final String columnReference(ColumnReference node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        columnReference(node, str);
+        return str.toString();
+    }
+
+    protected final String virtualColumnNode(VirtualColumnNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        virtualColumnNode(node, str);
+        return str.toString();
+    }
+
+    protected final String groupByList(GroupByList node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        groupByList(node, str);
+        return str.toString();
+    }
+
+    protected final String groupByColumn(GroupByColumn node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        groupByColumn(node, str);
+        return str.toString();
+    }
+
+    protected final String orderByList(OrderByList node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        orderByList(node, str);
+        return str.toString();
+    }
+
+    protected final String orderByColumn(OrderByColumn node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        orderByColumn(node, str);
+        return str.toString();
+    }
+
+    protected final String partitionByList(PartitionByList node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        partitionByList(node, str);
+        return str.toString();
+    }
+
+    protected final String partitionByColumn(PartitionByColumn node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        partitionByColumn(node, str);
+        return str.toString();
+    }
+
+    protected final String windowList(WindowList node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        windowList(node, str);
+        return str.toString();
+    }
+
+    protected final String windowDefinitionNode(WindowDefinitionNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        windowDefinitionNode(node, str);
+        return str.toString();
+    }
+
+    protected final String windowReferenceNode(WindowReferenceNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        windowReferenceNode(node, str);
+        return str.toString();
+    }
+
+    protected final String aggregateWindowFunctionNode(AggregateWindowFunctionNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        aggregateWindowFunctionNode(node, str);
+        return str.toString();
+    }
+
+    protected final String rowNumberFunctionNode(RowNumberFunctionNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        rowNumberFunctionNode(node, str);
+        return str.toString();
+    }
+
+    protected final String binaryLogicalOperatorNode(BinaryLogicalOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        binaryLogicalOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String binaryComparisonOperatorNode(BinaryComparisonOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        binaryComparisonOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String binaryArithmeticOperatorNode(BinaryArithmeticOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        binaryArithmeticOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String binaryBitOperatorNode(BinaryBitOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        binaryBitOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String concatenationOperatorNode(ConcatenationOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        concatenationOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String leftRightFuncOperatorNode(LeftRightFuncOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        leftRightFuncOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String simpleStringOperatorNode(SimpleStringOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        simpleStringOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String notNode(NotNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        notNode(node, str);
+        return str.toString();
+    }
+
+    protected final String isNullNode(IsNullNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        isNullNode(node, str);
+        return str.toString();
+    }
+
+    protected final String unaryArithmeticOperatorNode(UnaryArithmeticOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        unaryArithmeticOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String unaryPrefixOperatorNode(UnaryArithmeticOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        unaryPrefixOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String unaryBitOperatorNode(UnaryBitOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        unaryBitOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String extractOperatorNode(ExtractOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        extractOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String unaryDateTimestampOperatorNode(UnaryDateTimestampOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        unaryDateTimestampOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String timestampOperatorNode(TimestampOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        timestampOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String lengthOperatorNode(LengthOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        lengthOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String octetLengthOperatorNode(OctetLengthOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        octetLengthOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String isNode(IsNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        isNode(node, str);
+        return str.toString();
+    }
+
+    protected final String aggregateNode(AggregateNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        aggregateNode(node, str);
+        return str.toString();
+    }
+
+    protected final String likeEscapeOperatorNode(LikeEscapeOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        likeEscapeOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String ternaryOperatorNode(TernaryOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        ternaryOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String timestampFunctionNode(TernaryOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        timestampFunctionNode(node, str);
+        return str.toString();
+    }
+
+    protected final String trimOperatorNode(TrimOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        trimOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String inListOperatorNode(InListOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        inListOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String valueNodeList(ValueNodeList node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        valueNodeList(node, str);
+        return str.toString();
+    }
+
+    protected final String betweenOperatorNode(BetweenOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        betweenOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String conditionalNode(ConditionalNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        conditionalNode(node, str);
+        return str.toString();
+    }
+
+    protected final String simpleCaseNode(SimpleCaseNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        simpleCaseNode(node, str);
+        return str.toString();
+    }
+
+    protected final String coalesceFunctionNode(CoalesceFunctionNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        coalesceFunctionNode(node, str);
+        return str.toString();
+    }
+
+    protected final String constantNode(ConstantNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        constantNode(node, str);
+        return str.toString();
+    }
+
+    protected final String defaultNode(DefaultNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        defaultNode(node, str);
+        return str.toString();
+    }
+
+    protected final String prefixUnary(UnaryOperatorNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        prefixUnary(node, str);
+        return str.toString();
+    }
+
+    protected final String suffixUnary(UnaryOperatorNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        suffixUnary(node, str);
+        return str.toString();
+    }
+
+    protected final String functionUnary(UnaryOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        functionUnary(node, str);
+        return str.toString();
+    }
+
+    protected final String infixBinary(BinaryOperatorNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        infixBinary(node, str);
+        return str.toString();
+    }
+
+    protected final String functionBinary(BinaryOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        functionBinary(node, str);
+        return str.toString();
+    }
+
+    protected final String functionCall(String functionName, ValueNodeList args)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        functionCall(functionName, args, str);
+        return str.toString();
+    }
+
+    protected final String nodeList(QueryTreeNodeList<? extends QueryTreeNode> nl)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        nodeList(nl, str);
+        return str.toString();
+    }
+
+    protected final String nodeList(QueryTreeNodeList<? extends QueryTreeNode> nl, boolean expr)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        nodeList(nl, expr, str);
+        return str.toString();
+    }
+
+    protected final String maybeParens(QueryTreeNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        maybeParens(node, str);
+        return str.toString();
+    }
+
+    protected final String hexConstant(byte[] value) {
+        StringBuilder str = new StringBuilder();
+        hexConstant(value, str);
+        return str.toString();
+    }
+
+    protected final String parameterNode(ParameterNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        parameterNode(node, str);
+        return str.toString();
+    }
+
+    protected final String currentDatetimeOperatorNode(CurrentDatetimeOperatorNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        currentDatetimeOperatorNode(node, str);
+        return str.toString();
+    }
+
+    protected final String castNode(CastNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        castNode(node, str);
+        return str.toString();
+    }
+
+    protected final String explicitCollateNode(ExplicitCollateNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        explicitCollateNode(node, str);
+        return str.toString();
+    }
+
+    protected final String nextSequenceNode(NextSequenceNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        nextSequenceNode(node, str);
+        return str.toString();
+    }
+
+    protected final String currentSequenceNode(CurrentSequenceNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        currentSequenceNode(node, str);
+        return str.toString();
+    }
+
+    protected final String javaToSQLValueNode(JavaToSQLValueNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        javaToSQLValueNode(node, str);
+        return str.toString();
+    }
+
+    protected final String sqlToJavaValueNode(SQLToJavaValueNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        sqlToJavaValueNode(node, str);
+        return str.toString();
+    }
+
+    protected final String staticMethodCallNode(StaticMethodCallNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        staticMethodCallNode(node, str);
+        return str.toString();
+    }
+
+    protected final String callStatementNode(CallStatementNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        callStatementNode(node, str);
+        return str.toString();
+    }
+
+    protected final String dropTableNode(DropTableNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        dropTableNode(node, str);
+        return str.toString();
+    }
+
+    protected final String dropViewNode(DropViewNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        dropViewNode(node, str);
+        return str.toString();
+    }
+
+    protected final String dropTriggerNode(DropTriggerNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        dropTriggerNode(node, str);
+        return str.toString();
+    }
+
+    protected final String ddlStatementNode(DDLStatementNode node, ExistenceCheck existenceCheck)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        ddlStatementNode(node, existenceCheck, str);
+        return str.toString();
+    }
+
+    protected final String explainStatementNode(ExplainStatementNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        explainStatementNode(node, str);
+        return str.toString();
+    }
+
+    protected final String transactionControlNode(TransactionControlNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        transactionControlNode(node, str);
+        return str.toString();
+    }
+
+    protected final String setTransactionIsolationNode(SetTransactionIsolationNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        setTransactionIsolationNode(node, str);
+        return str.toString();
+    }
+
+    protected final String setTransactionAccessNode(SetTransactionAccessNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        setTransactionAccessNode(node, str);
+        return str.toString();
+    }
+
+    protected final String setConstraintsNode(SetConstraintsNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        setConstraintsNode(node, str);
+        return str.toString();
+    }
+
+    protected final String setConfigurationNode(SetConfigurationNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        setConfigurationNode(node, str);
+        return str.toString();
+    }
+
+    protected final String showConfigurationNode(ShowConfigurationNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        showConfigurationNode(node, str);
+        return str.toString();
+    }
+
+    protected final String rowCtorNode(RowConstructorNode row) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        rowCtorNode(row, str);
+        return str.toString();
+    }
+
+    protected final String declareStatementNode(DeclareStatementNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        declareStatementNode(node, str);
+        return str.toString();
+    }
+
+    protected final String fetchStatementNode(FetchStatementNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        fetchStatementNode(node, str);
+        return str.toString();
+    }
+
+    protected final String closeStatementNode(CloseStatementNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        closeStatementNode(node, str);
+        return str.toString();
+    }
+
+    protected final String prepareStatementNode(PrepareStatementNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        prepareStatementNode(node, str);
+        return str.toString();
+    }
+
+    protected final String executeStatementNode(ExecuteStatementNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        executeStatementNode(node, str);
+        return str.toString();
+    }
+
+    protected final String deallocateStatementNode(DeallocateStatementNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        deallocateStatementNode(node, str);
+        return str.toString();
+    }
+
+    protected final String copyStatementNode(CopyStatementNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        copyStatementNode(node, str);
+        return str.toString();
+    }
+
+    protected final String groupConcat(GroupConcatNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        groupConcat(node, str);
+        return str.toString();
+    }
+
+    protected final String dropSequenceNode(DropSequenceNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        dropSequenceNode(node, str);
+        return str.toString();
+    }
+
+    protected final String alterTableNode(AlterTableNode node) throws StandardException {
+        StringBuilder str = new StringBuilder();
+        alterTableNode(node, str);
+        return str.toString();
+    }
+
+    protected final String alterTableRenameColumnNode(AlterTableRenameColumnNode node) {
+        StringBuilder str = new StringBuilder();
+        alterTableRenameColumnNode(node, str);
+        return str.toString();
+    }
+
+    protected final String modifyColumnNode(ModifyColumnNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        modifyColumnNode(node, str);
+        return str.toString();
+    }
+
+    protected final String alterDropIndexNode(AlterDropIndexNode node) {
+        StringBuilder str = new StringBuilder();
+        alterDropIndexNode(node, str);
+        return str.toString();
+    }
+
+    protected final String newInvocationNode(NewInvocationNode node)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        newInvocationNode(node, str);
+        return str.toString();
+    }
+
+    protected final String javaValueNodeArray(JavaValueNode[] nodes)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        javaValueNodeArray(nodes, str);
+        return str.toString();
+    }
+
+    protected final String orderByListFetchFirstOffset(OrderByList orderByList,
+                                                       ValueNode fetchFirst,
+                                                       ValueNode offset)
+            throws StandardException {
+        StringBuilder str = new StringBuilder();
+        orderByListFetchFirstOffset(orderByList, fetchFirst, offset, str);
+        return str.toString();
+    }
+
 }
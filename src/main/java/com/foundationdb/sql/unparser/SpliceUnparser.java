@@ -0,0 +1,103 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.unparser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.*;
+
+/**
+ * Turn an edited tree back into SQL text, copying the original text
+ * of any subtree that has not changed.
+ * <p>
+ * The edits are tracked by {@link PersistentTree}: any node that is
+ * still part of the original tree is unchanged, since changing it
+ * would have meant copying it and all its ancestors. Only the copies
+ * and new nodes are generated, so the cost is about proportional to
+ * the size of the change, and the rest keeps its original spelling,
+ * spacing and comments.
+ */
+public class SpliceUnparser extends NodeToString
+{
+    private final PersistentTree<?> original;
+    private final String sqlText;
+
+    /**
+     * @param original the tree as parsed
+     * @param sqlText the SQL it was parsed from, as from {@link SQLParser#getSQLText}
+     */
+    public SpliceUnparser(PersistentTree<?> original, String sqlText) {
+        this.original = original;
+        this.sqlText = sqlText;
+    }
+
+    @Override
+    public void toString(QueryTreeNode node, StringBuilder str) throws StandardException {
+        if (canSplice(node))
+            splice(node, str);
+        else
+            super.toString(node, str);
+    }
+
+    @Override
+    protected void maybeParens(QueryTreeNode node, StringBuilder str)
+            throws StandardException {
+        if (!canSplice(node)) {
+            super.maybeParens(node, str);
+        }
+        else if (isAtomic(node)) {
+            splice(node, str);
+        }
+        else {
+            // Whether the original needed parentheses depended on the
+            // original context; the text alone does not tell.
+            str.append('(');
+            splice(node, str);
+            str.append(')');
+        }
+    }
+
+    /** Can the original text of this node be used? */
+    protected boolean canSplice(QueryTreeNode node) {
+        if (!original.contains(node))
+            return false;
+        switch (node.getNodeType()) {
+        case NodeTypes.COLUMN_REFERENCE:
+        case NodeTypes.TABLE_NAME:
+            // Offsets are just for the last identifier.
+            return false;
+        }
+        int begin = node.getBeginOffset();
+        int end = node.getEndOffset();
+        return ((begin >= 0) && (end >= begin) && (end < sqlText.length()));
+    }
+
+    /** Is this node's text a single operand, whatever its context? */
+    protected boolean isAtomic(QueryTreeNode node) {
+        return ((node instanceof ConstantNode) ||
+                (node instanceof ParameterNode));
+    }
+
+    protected void splice(QueryTreeNode node, StringBuilder str) {
+        int begin = node.getBeginOffset();
+        int end = node.getEndOffset() + 1;
+        // Some spans start right after the preceding keyword.
+        while ((begin < end) && Character.isWhitespace(sqlText.charAt(begin)))
+            begin++;
+        str.append(sqlText, begin, end);
+    }
+
+}
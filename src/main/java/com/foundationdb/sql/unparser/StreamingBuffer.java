@@ -0,0 +1,129 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.unparser;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Drains the front of {@link NodeToString}'s <code>StringBuilder</code>
+ * to an <code>Appendable</code> whenever it grows past a limit.
+ * <p>
+ * Text can only be written once nothing will go back and change
+ * it. Such places are bracketed by {@link #mark} / {@link #unmark}, and
+ * nothing from the first open mark on is written. A mark for
+ * optional parentheses is settled early, as soon as its text contains
+ * a space, so that only single tokens are ever held back for it.
+ */
+class StreamingBuffer
+{
+    static final byte HOLD = 0, PARENS = 1, OPENED = 2;
+
+    private final Appendable out;
+    private final int limit;
+    private char[] chars;
+    private long flushed;
+    private long[] starts = new long[16];
+    private byte[] kinds = new byte[16];
+    private int depth;
+
+    public StreamingBuffer(Appendable out, int limit) {
+        this.out = out;
+        this.limit = limit;
+    }
+
+    /** Write out what can be written, if the buffer is over the limit. */
+    public void checkpoint(StringBuilder str) throws IOException {
+        if (str.length() < limit)
+            return;
+        int end = str.length();
+        for (int i = 0; i < depth; i++) {
+            int start = (int)(starts[i] - flushed);
+            if (kinds[i] == PARENS) {
+                if (str.indexOf(" ", start) < 0) {
+                    end = start;
+                    break;
+                }
+                str.insert(start, '(');
+                kinds[i] = OPENED;
+                for (int j = i + 1; j < depth; j++)
+                    starts[j]++;
+            }
+            else if (kinds[i] == HOLD) {
+                end = start;
+                break;
+            }
+        }
+        if (end > 0)
+            write(str, end);
+    }
+
+    /** Write out everything. */
+    public void finish(StringBuilder str) throws IOException {
+        assert (depth == 0) : "unbalanced mark";
+        write(str, str.length());
+    }
+
+    /** Keep text from the current end on, returning its position. */
+    public int mark(StringBuilder str, byte kind) {
+        if (depth == starts.length) {
+            starts = Arrays.copyOf(starts, depth * 2);
+            kinds = Arrays.copyOf(kinds, depth * 2);
+        }
+        starts[depth] = flushed + str.length();
+        kinds[depth] = kind;
+        depth++;
+        return str.length();
+    }
+
+    /** Pop the innermost mark, returning its current position. */
+    public int unmark(StringBuilder str) {
+        depth--;
+        return (int)(starts[depth] - flushed);
+    }
+
+    /** Pop the innermost mark, which is for optional parentheses,
+     * and add them if they are needed. */
+    public void unmarkParens(StringBuilder str) {
+        depth--;
+        if (kinds[depth] == OPENED) {
+            str.append(')');
+        }
+        else {
+            int start = (int)(starts[depth] - flushed);
+            if (str.indexOf(" ", start) >= 0) {
+                str.insert(start, '(');
+                str.append(')');
+            }
+        }
+    }
+
+    protected void write(StringBuilder str, int end) throws IOException {
+        if (out instanceof Writer) {
+            if ((chars == null) || (chars.length < end))
+                chars = new char[Math.max(end, limit)];
+            str.getChars(0, end, chars, 0);
+            ((Writer)out).write(chars, 0, end);
+        }
+        else {
+            out.append(str, 0, end);
+        }
+        str.delete(0, end);
+        flushed += end;
+    }
+}
@@ -84,6 +84,7 @@ public class ViewDefinition
 
     /**
      * Get the view as an equivalent subquery belonging to the given context.
+     * To expand many references to views, bound and typed, see {@link ViewExpander}.
      */
     public FromSubquery copySubquery(SQLParserContext parserContext) 
             throws StandardException {
@@ -0,0 +1,298 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.views;
+
+import com.foundationdb.sql.parser.*;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.compiler.ColumnBinder;
+import com.foundationdb.sql.compiler.ColumnBinding;
+import com.foundationdb.sql.compiler.SchemaCatalog;
+import com.foundationdb.sql.compiler.TypeComputer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replace references to views with their definitions.
+ * <p>
+ * For each view, a template is made the first time it is used: the
+ * definition as a {@link FromSubquery}, with any views it uses
+ * expanded in turn, bound with a {@link ColumnBinder} and typed with a
+ * {@link TypeComputer}. Each reference then gets a {@link TreeCopier}
+ * copy of the template, whose column bindings are moved over to the
+ * copied nodes, so that the definition is not copied through the node
+ * factory, bound or typed again. {@link #bind} binds a statement
+ * without going back into the expanded views.
+ * <p>
+ * Redefining or dropping a view discards its template and those of
+ * the views that use it, directly or not. A view that uses itself,
+ * directly or not, is an error when expanded.
+ */
+public class ViewExpander
+{
+    /** A view and its template, once made. */
+    static class Entry {
+        ViewDefinition view;
+        FromSubquery template;
+        // Whether the template's columns can be found without binding it again.
+        boolean bound;
+
+        Entry(ViewDefinition view) {
+            this.view = view;
+        }
+    }
+
+    private final SchemaCatalog catalog;
+    private final SQLParser parser = new SQLParser();
+    private final Map<String,Entry> views = new HashMap<String,Entry>();
+    // Table or view name to the views whose templates use it.
+    private final Map<String,Set<String>> dependents = new HashMap<String,Set<String>>();
+    private int templatesMade;
+
+    public ViewExpander(SchemaCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /** Add a view, or replace one with the same name. */
+    public synchronized void define(ViewDefinition view) {
+        String key = key(view.getName());
+        views.put(key, new Entry(view));
+        invalidate(key);
+    }
+
+    /** Remove a view. */
+    public synchronized void drop(TableName name) {
+        String key = key(name);
+        views.remove(key);
+        invalidate(key);
+    }
+
+    public synchronized boolean isView(TableName name) {
+        return views.containsKey(key(name));
+    }
+
+    /** The number of templates made so far, including remade ones. */
+    public synchronized int getTemplatesMade() {
+        return templatesMade;
+    }
+
+    /** Replace the views referenced anywhere in the statement with
+     * bound and typed derived tables.
+     */
+    public StatementNode expand(StatementNode stmt) throws StandardException {
+        return (StatementNode)stmt.accept(new Expander(null, stmt.getParserContext()));
+    }
+
+    /** Expand views in the statement and bind it, leaving the expanded
+     * views as they were bound.
+     */
+    public StatementNode bind(StatementNode stmt) throws StandardException {
+        stmt = expand(stmt);
+        binder().bind(stmt);
+        return stmt;
+    }
+
+    /** A binder that does not go back into expanded views. */
+    protected ColumnBinder binder() {
+        return new ColumnBinder(catalog) {
+                @Override
+                protected boolean isBound(FromSubquery fromSubquery) {
+                    Object userData = fromSubquery.getUserData();
+                    return ((userData instanceof Entry) && ((Entry)userData).bound);
+                }
+            };
+    }
+
+    /** Get a copy of the view's template for a reference to it. */
+    protected FromSubquery expansion(FromBaseTable reference, FromSubquery template,
+                                     SQLParserContext parserContext)
+            throws StandardException {
+        FromSubquery expansion = (FromSubquery)
+            new BindingCopier(parserContext).copy(template);
+        TableName viewName = ((Entry)template.getUserData()).view.getName();
+        String schemaName = viewName.getSchemaName();
+        if (schemaName == null)
+            schemaName = catalog.getDefaultSchema();
+        if (reference.getCorrelationName() != null) {
+            expansion.setCorrelationName(reference.getCorrelationName());
+        }
+        else {
+            expansion.setCorrelationName(viewName.getTableName());
+            if (schemaName != null)
+                expansion.setOrigTableName((TableName)
+                    parserContext.getNodeFactory().getNode(NodeTypes.TABLE_NAME,
+                                                           schemaName,
+                                                           viewName.getTableName(),
+                                                           parserContext));
+        }
+        return expansion;
+    }
+
+    /** Get the template for a view, making it if need be.
+     * @param expanding the views whose templates are being made, to catch cycles.
+     * @return <code>null</code> if not a view.
+     */
+    protected synchronized FromSubquery template(String key, List<String> expanding)
+            throws StandardException {
+        Entry entry = views.get(key);
+        if (entry == null)
+            return null;
+        if (entry.template != null)
+            return entry.template;
+        if (expanding.contains(key)) {
+            StringBuilder str = new StringBuilder("Circular view definition: ");
+            for (String each : expanding.subList(expanding.indexOf(key), expanding.size())) {
+                str.append(each).append(" -> ");
+            }
+            str.append(key);
+            throw new StandardException(str.toString());
+        }
+        expanding.add(key);
+        try {
+            Expander expander = new Expander(expanding, parser);
+            FromSubquery template = entry.view.copySubquery(parser);
+            template = (FromSubquery)template.accept(expander);
+            binder().bindDerivedTable(template);
+            template.accept(new TypeComputer());
+            template.setUserData(entry);
+            entry.bound = !hasAllColumns(template.getSubquery());
+            entry.template = template;
+            templatesMade++;
+            for (String used : expander.used) {
+                Set<String> users = dependents.get(used);
+                if (users == null) {
+                    users = new HashSet<String>();
+                    dependents.put(used, users);
+                }
+                users.add(key);
+            }
+        }
+        finally {
+            expanding.remove(expanding.size() - 1);
+        }
+        return entry.template;
+    }
+
+    /** Discard the templates of views that use this name. */
+    protected void invalidate(String key) {
+        Entry entry = views.get(key);
+        if (entry != null)
+            entry.template = null;
+        Set<String> users = dependents.remove(key);
+        if (users != null) {
+            for (String user : users) {
+                invalidate(user);
+            }
+        }
+    }
+
+    protected String key(TableName name) {
+        String schemaName = name.getSchemaName();
+        if (schemaName == null)
+            schemaName = catalog.getDefaultSchema();
+        if (schemaName == null)
+            return name.getTableName();
+        return schemaName + "." + name.getTableName();
+    }
+
+    protected static boolean hasAllColumns(ResultSetNode query) {
+        while (query instanceof SetOperatorNode) {
+            query = ((SetOperatorNode)query).getLeftResultSet();
+        }
+        ResultColumnList resultColumns = query.getResultColumns();
+        if (resultColumns != null) {
+            for (ResultColumn resultColumn : resultColumns) {
+                if (resultColumn instanceof AllResultColumn)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /** Replace base tables that are views with their expansions. */
+    class Expander implements Visitor {
+        List<String> expanding;
+        SQLParserContext parserContext;
+        Set<String> used = new HashSet<String>();
+
+        Expander(List<String> expanding, SQLParserContext parserContext) {
+            this.expanding = (expanding != null) ? expanding : new ArrayList<String>();
+            this.parserContext = parserContext;
+        }
+
+        public Visitable visit(Visitable node) throws StandardException {
+            if (node instanceof FromBaseTable) {
+                FromBaseTable table = (FromBaseTable)node;
+                if (table.getUpdateOrDelete() == null) {
+                    String key = key(table.getOrigTableName());
+                    used.add(key);
+                    FromSubquery template = template(key, expanding);
+                    if (template != null)
+                        return expansion(table, template, parserContext);
+                }
+            }
+            return node;
+        }
+
+        public boolean skipChildren(Visitable node) {
+            return false;
+        }
+
+        public boolean visitChildrenFirst(Visitable node) {
+            return false;
+        }
+
+        public boolean stopTraversal() {
+            return false;
+        }
+    }
+
+    /** Copy a template, moving its column bindings to the copied nodes. */
+    static class BindingCopier extends TreeCopier {
+        BindingCopier(SQLParserContext parserContext) {
+            super(parserContext);
+        }
+
+        @Override
+        protected void fixUp(Map<QueryTreeNode,QueryTreeNode> copies) {
+            for (QueryTreeNode copy : copies.values()) {
+                if (!(copy instanceof ColumnReference))
+                    continue;
+                ColumnBinding binding = ColumnBinding.of((ColumnReference)copy);
+                if (binding == null)
+                    continue;
+                FromTable fromTable = (FromTable)copies.get(binding.getFromTable());
+                ResultColumn resultColumn = (ResultColumn)copies.get(binding.getResultColumn());
+                if ((fromTable == null) && (resultColumn == null))
+                    continue;
+                if (fromTable == null)
+                    fromTable = binding.getFromTable();
+                if (resultColumn == null)
+                    resultColumn = binding.getResultColumn();
+                copy.setUserData(new ColumnBinding(fromTable, binding.getColumn(),
+                                                   resultColumn, binding.getType(),
+                                                   binding.getOuterLevels()));
+            }
+        }
+    }
+
+}
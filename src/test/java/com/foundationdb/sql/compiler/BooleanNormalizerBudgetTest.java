@@ -0,0 +1,82 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.AndNode;
+import com.foundationdb.sql.parser.CursorNode;
+import com.foundationdb.sql.parser.OrNode;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.SelectNode;
+import com.foundationdb.sql.parser.StatementNode;
+import com.foundationdb.sql.parser.ValueNode;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BooleanNormalizerBudgetTest
+{
+    private SQLParser parser;
+    private BooleanNormalizer booleanNormalizer;
+    private NodeToString unparser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        booleanNormalizer = new BooleanNormalizer(parser);
+        unparser = new NodeToString();
+    }
+
+    @Test
+    public void testLongDisjunction() throws Exception {
+        int n = 3000;
+        StringBuilder sql = new StringBuilder("SELECT * FROM t WHERE ");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sql.append(" OR ");
+            sql.append("(a = ").append(i).append(" AND b = ").append(i).append(")");
+        }
+        StatementNode stmt = booleanNormalizer.normalize(parser.parseStatement(sql.toString()));
+        assertFalse(booleanNormalizer.isBudgetExceeded());
+        // Too deep to unparse on the default stack; walk the chain instead.
+        AndNode top = (AndNode)((SelectNode)((CursorNode)stmt).getResultSetNode()).getWhereClause();
+        assertTrue(top.getRightOperand().isBooleanTrue());
+        ValueNode next = top.getLeftOperand();
+        for (int i = 0; i < n; i++) {
+            OrNode or = (OrNode)next;
+            assertEquals("(a = " + i + ") AND ((b = " + i + ") AND TRUE)",
+                         unparser.toString(or.getLeftOperand()));
+            next = or.getRightOperand();
+        }
+        assertTrue(next.isBooleanFalse());
+    }
+
+    @Test
+    public void testExpansionBudget() throws Exception {
+        String sql = "SELECT * FROM t WHERE (a, b) NOT IN ((1, 2), (3, 4)) AND (c, d) NOT IN ((5, 6), (7, 8))";
+        StatementNode stmt = booleanNormalizer.normalize(parser.parseStatement(sql));
+        assertFalse(booleanNormalizer.isBudgetExceeded());
+        assertFalse(unparser.toString(stmt).contains("NOT IN"));
+
+        booleanNormalizer.setExpansionBudget(6);
+        stmt = booleanNormalizer.normalize(parser.parseStatement(sql));
+        assertTrue(booleanNormalizer.isBudgetExceeded());
+        assertEquals("SELECT * FROM t WHERE ((a <> 3) OR ((b <> 4) OR FALSE)) AND (((a <> 1) OR ((b <> 2) OR FALSE)) AND (((c, d) NOT IN (5, 6, 7, 8)) AND TRUE))",
+                     unparser.toString(stmt));
+    }
+
+}
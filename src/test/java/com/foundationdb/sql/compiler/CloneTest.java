@@ -13,3 +13,122 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.TestBase;
+
+import com.foundationdb.sql.parser.QueryTreeNode;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.StatementNode;
+
+import org.junit.Test;
+import static junit.framework.Assert.*;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+@RunWith(Parameterized.class)
+public class CloneTest extends ASTTransformTestBase implements TestBase.GenerateAndCheckResult
+{
+    public static final File RESOURCE_DIR = 
+        new File(ASTTransformTestBase.RESOURCE_DIR, "clone");
+
+    @Parameters(name="{0}")
+    public static Collection<Object[]> statements() throws Exception {
+        return sqlAndExpected(RESOURCE_DIR);
+    }
+
+    public CloneTest(String caseName, String sql, 
+                     String expected, String error) {
+        super(caseName, sql, expected, error);
+    }
+
+    @Test
+    public void testClone() throws Exception {
+        generateAndCheckResult();
+    }
+
+    @Override
+    public String generateResult() throws Exception {
+        StatementNode stmt = parser.parseStatement(sql);
+        stmt = (StatementNode)parser.getNodeFactory().copyNode(stmt, parser);
+        return unparser.toString(stmt);
+    }
+
+    @Override
+    public void checkResult(String result) {
+        assertEquals(caseName, expected, result);
+    }
+
+    /** Check that every field of every node was either copied or is equal. */
+    @Test
+    public void testFieldsCovered() throws Exception {
+        StatementNode stmt = parser.parseStatement(sql);
+        // Separate context so that tree printing does not mark nodes as already seen.
+        SQLParser copyParser = new SQLParser();
+        StatementNode copy = (StatementNode)copyParser.getNodeFactory().copyNode(stmt, copyParser);
+        assertEqualsWithoutHashes(caseName, getTree(stmt), getTree(copy));
+        Map<Object,Object> originals = new IdentityHashMap<Object,Object>();
+        Deque<Object[]> pending = new ArrayDeque<Object[]>();
+        pending.push(new Object[] { stmt, copy });
+        while (!pending.isEmpty()) {
+            Object[] pair = pending.pop();
+            Object original = pair[0], copied = pair[1];
+            if (originals.put(original, copied) != null)
+                continue;
+            assertNotSame(caseName, original, copied);
+            assertEquals(caseName, original.getClass(), copied.getClass());
+            for (Class<?> c = original.getClass(); c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()))
+                        continue;
+                    field.setAccessible(true);
+                    String name = caseName + " " + c.getSimpleName() + "." + field.getName();
+                    Object ovalue = field.get(original), cvalue = field.get(copied);
+                    if (ovalue instanceof QueryTreeNode) {
+                        assertNotNull(name, cvalue);
+                        pending.push(new Object[] { ovalue, cvalue });
+                    }
+                    else if ((ovalue instanceof Collection) &&
+                             !((Collection<?>)ovalue).isEmpty() &&
+                             (((Collection<?>)ovalue).iterator().next() instanceof QueryTreeNode)) {
+                        assertNotSame(name, ovalue, cvalue);
+                        assertEquals(name, ((Collection<?>)ovalue).size(), ((Collection<?>)cvalue).size());
+                        Iterator<?> oiter = ((Collection<?>)ovalue).iterator();
+                        Iterator<?> citer = ((Collection<?>)cvalue).iterator();
+                        while (oiter.hasNext())
+                            pending.push(new Object[] { oiter.next(), citer.next() });
+                    }
+                    else if ((ovalue instanceof Object[]) &&
+                             QueryTreeNode.class.isAssignableFrom(ovalue.getClass().getComponentType())) {
+                        // A shared array would let an edit of one tree change the other.
+                        assertNotSame(name, ovalue, cvalue);
+                        Object[] oarray = (Object[])ovalue, carray = (Object[])cvalue;
+                        assertEquals(name, oarray.length, carray.length);
+                        for (int i = 0; i < oarray.length; i++) {
+                            if (oarray[i] == null)
+                                assertNull(name, carray[i]);
+                            else
+                                pending.push(new Object[] { oarray[i], carray[i] });
+                        }
+                    }
+                    else if (!field.getName().equals("pc")) {
+                        assertEquals(name, ovalue, cvalue);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.*;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+import com.foundationdb.sql.types.TypeId;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ColumnBinderTest
+{
+    private SQLParser parser;
+    private SchemaCatalog catalog;
+    private ColumnBinder binder;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        DataTypeDescriptor varchar = DataTypeDescriptor.getType(TypeId.VARCHAR_ID, true, 10);
+        catalog = new SchemaCatalog.Builder("s")
+            .addTable("s", "t")
+            .addColumn("a", DataTypeDescriptor.INTEGER)
+            .addColumn("b", varchar)
+            .addColumn("c", DataTypeDescriptor.BIGINT)
+            .addTable("s", "u")
+            .addColumn("a", DataTypeDescriptor.INTEGER)
+            .addColumn("d", DataTypeDescriptor.DOUBLE)
+            .addTable("x", "t")
+            .addColumn("e", DataTypeDescriptor.BOOLEAN)
+            .build();
+        binder = new ColumnBinder(catalog);
+    }
+
+    /** Bind and list what each column reference is bound to, in order. */
+    protected List<String> bind(String sql) throws StandardException {
+        StatementNode stmt = parser.parseStatement(sql);
+        binder.bind(stmt);
+        final List<String> result = new ArrayList<String>();
+        stmt.accept(new Visitor() {
+                public Visitable visit(Visitable node) {
+                    if (node instanceof ColumnReference)
+                        result.add(ColumnBinding.of((ColumnReference)node).toString());
+                    return node;
+                }
+                public boolean visitChildrenFirst(Visitable node) {
+                    return false;
+                }
+                public boolean stopTraversal() {
+                    return false;
+                }
+                public boolean skipChildren(Visitable node) {
+                    return false;
+                }
+            });
+        return result;
+    }
+
+    protected String bindError(String sql) throws StandardException {
+        try {
+            bind(sql);
+        }
+        catch (StandardException ex) {
+            return ex.getMessage();
+        }
+        fail("Bound " + sql);
+        return null;
+    }
+
+    @Test
+    public void testSimple() throws Exception {
+        assertEquals("[s.t.a from t, s.t.b from t, s.t.c from t]",
+                     bind("SELECT a, t.b FROM t WHERE s.t.c > 1").toString());
+        assertEquals("[s.t.a from q, x.t.e from t]",
+                     bind("SELECT q.a FROM s.t q, x.t WHERE e").toString());
+    }
+
+    @Test
+    public void testTypes() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT b, d FROM t, u");
+        binder.bind(stmt);
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        ResultColumnList rcl = select.getResultColumns();
+        assertEquals("VARCHAR(10)", rcl.get(0).getExpression().getType().toString());
+        assertEquals("DOUBLE", rcl.get(1).getExpression().getType().toString());
+        assertSame(catalog.getTable("s", "t"), select.getFromList().get(0).getUserData());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        assertEquals("Ambiguous column name: a",
+                     bindError("SELECT a FROM t, u"));
+        assertEquals("Column not found: z",
+                     bindError("SELECT z FROM t"));
+        assertEquals("Column not found: t.d",
+                     bindError("SELECT t.d FROM t, u"));
+        assertEquals("Table not found: s.v",
+                     bindError("SELECT 1 FROM s.v"));
+    }
+
+    @Test
+    public void testJoins() throws Exception {
+        assertEquals("[s.t.a from t, s.u.d from u, s.t.a from t, s.u.a from u]",
+                     bind("SELECT a, d FROM t INNER JOIN u USING (a) " +
+                          "WHERE t.a = u.a").toString());
+        assertEquals("[s.u.a from u]",
+                     bind("SELECT a FROM t NATURAL RIGHT OUTER JOIN u").toString());
+        assertEquals("[s.t.b from t, s.t.a from t, s.u.a from u]",
+                     bind("SELECT b FROM t LEFT OUTER JOIN u ON t.a = u.a").toString());
+    }
+
+    @Test
+    public void testSubqueries() throws Exception {
+        assertEquals("[s.t.b from t, s.u.a from u, s.u.d from u, s.t.c from t outer 1, s.t.a from t]",
+                     bind("SELECT b FROM t WHERE a IN " +
+                          "(SELECT u.a FROM u WHERE d > t.c)").toString());
+        assertEquals("[s.t.a from q, s.t.a from t]",
+                     bind("SELECT q.z FROM (SELECT a AS z FROM t) AS q").toString());
+        assertEquals("[s.u.d from q]",
+                     bind("SELECT q.d FROM (SELECT * FROM u) AS q").toString());
+    }
+
+    @Test
+    public void testSetOperators() throws Exception {
+        assertEquals("[s.t.a from t, s.t.a from t, s.u.a from u]",
+                     bind("SELECT a FROM t UNION SELECT a FROM u").toString());
+        assertEquals("[s.t.c from t, s.t.c from t, s.u.a from u]",
+                     bind("SELECT c + 1 FROM t INTERSECT SELECT a FROM u").toString());
+        assertEquals("[s.u.d from u, s.u.d from u, s.t.a from t, s.t.c from t]",
+                     bind("SELECT d FROM u EXCEPT SELECT a FROM t WHERE c > 0").toString());
+        assertEquals("[s.t.b from t, s.u.a from u, s.u.a from u, s.u.a from u, s.t.a from t]",
+                     bind("SELECT b FROM t WHERE a IN " +
+                          "(SELECT a FROM u UNION SELECT a FROM u)").toString());
+    }
+
+    @Test
+    public void testOrderBy() throws Exception {
+        assertEquals("[s.t.a from t, s.t.a from t, s.t.c from t]",
+                     bind("SELECT a AS z FROM t ORDER BY z, c").toString());
+    }
+
+}
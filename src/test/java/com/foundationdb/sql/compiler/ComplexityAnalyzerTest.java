@@ -0,0 +1,174 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.*;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+public class ComplexityAnalyzerTest
+{
+    private SQLParser parser;
+    private ComplexityAnalyzer analyzer;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        analyzer = new ComplexityAnalyzer();
+    }
+
+    protected ComplexityAnalyzer.Profile analyze(String sql) throws StandardException {
+        return analyzer.analyze(parser.parseStatement(sql));
+    }
+
+    @Test
+    public void testSimple() throws Exception {
+        ComplexityAnalyzer.Profile profile = analyze("SELECT a FROM t WHERE a = 1");
+        assertEquals(1, profile.getTables());
+        assertEquals(1, profile.getMaxFromListTables());
+        assertEquals(0, profile.getJoins());
+        assertEquals(0, profile.getSubqueries());
+        assertEquals(0, profile.getMaxSubqueryDepth());
+        assertEquals(3, profile.getMaxPredicateSize());
+        assertEquals(1, profile.getMaxCnfClauses());
+        assertTrue(new ComplexityAnalyzer.Limits().check(profile).isEmpty());
+    }
+
+    @Test
+    public void testJoins() throws Exception {
+        ComplexityAnalyzer.Profile profile =
+            analyze("SELECT * FROM t1 JOIN t2 ON t1.a = t2.a JOIN t3 ON t2.b = t3.b, t4");
+        assertEquals(4, profile.getTables());
+        assertEquals(4, profile.getMaxFromListTables());
+        assertEquals(2, profile.getJoins());
+        assertEquals(2, profile.getMaxJoinDepth());
+        assertFalse(profile.hasBushyJoins());
+
+        profile = analyze("SELECT * FROM (t1 JOIN t2 ON t1.a = t2.a) JOIN (t3 JOIN t4 ON t3.b = t4.b) ON t1.c = t3.c");
+        assertEquals(3, profile.getJoins());
+        assertEquals(2, profile.getMaxJoinDepth());
+        assertTrue(profile.hasBushyJoins());
+    }
+
+    @Test
+    public void testSubqueries() throws Exception {
+        ComplexityAnalyzer.Profile profile =
+            analyze("SELECT a FROM t1 WHERE EXISTS (SELECT 1 FROM t2 WHERE t2.b = t1.b AND t2.c IN (SELECT c FROM t3))");
+        assertEquals(2, profile.getSubqueries());
+        assertEquals(2, profile.getMaxSubqueryDepth());
+        assertEquals(1, profile.getCorrelatedSubqueries());
+
+        profile = analyze("SELECT x.a FROM (SELECT a FROM t1) x, t2");
+        assertEquals(1, profile.getSubqueries());
+        assertEquals(1, profile.getMaxSubqueryDepth());
+        assertEquals(0, profile.getCorrelatedSubqueries());
+        assertEquals(2, profile.getMaxFromListTables());
+    }
+
+    @Test
+    public void testCorrelatedThroughLevels() throws Exception {
+        ComplexityAnalyzer.Profile profile =
+            analyze("SELECT a FROM t1 WHERE EXISTS (SELECT 1 FROM t2 WHERE EXISTS (SELECT 1 FROM t3 WHERE t3.b = t1.b))");
+        assertEquals(2, profile.getCorrelatedSubqueries());
+    }
+
+    @Test
+    public void testBoundCorrelation() throws Exception {
+        SchemaCatalog catalog = new SchemaCatalog.Builder("s")
+            .addTable("s", "t1").addColumn("a", DataTypeDescriptor.INTEGER)
+            .addTable("s", "t2").addColumn("b", DataTypeDescriptor.INTEGER)
+            .build();
+        StatementNode stmt = parser.parseStatement("SELECT a FROM t1 WHERE EXISTS (SELECT 1 FROM t2 WHERE b = a)");
+        assertEquals(0, analyzer.analyze(stmt).getCorrelatedSubqueries());
+        new ColumnBinder(catalog).bind(stmt);
+        assertEquals(1, analyzer.analyze(stmt).getCorrelatedSubqueries());
+    }
+
+    @Test
+    public void testCnfClauses() throws Exception {
+        ComplexityAnalyzer.Profile profile =
+            analyze("SELECT * FROM t WHERE (a = 1 AND b = 1) OR (a = 2 AND b = 2) OR (a = 3 AND b = 3)");
+        assertEquals(8, profile.getMaxCnfClauses());
+        profile = analyze("SELECT * FROM t WHERE NOT ((a = 1 OR b = 1) AND (a = 2 OR b = 2))");
+        assertEquals(4, profile.getMaxCnfClauses());
+        profile = analyze("SELECT * FROM t WHERE a = 1 AND b = 2 AND c = 3");
+        assertEquals(3, profile.getMaxCnfClauses());
+    }
+
+    @Test
+    public void testCnfSaturates() throws Exception {
+        StringBuilder sql = new StringBuilder("SELECT * FROM t WHERE ");
+        for (int i = 0; i < 70; i++) {
+            if (i > 0) sql.append(" OR ");
+            sql.append("(a = ").append(i).append(" AND b = ").append(i).append(")");
+        }
+        ComplexityAnalyzer.Profile profile = analyze(sql.toString());
+        assertEquals(Long.MAX_VALUE, profile.getMaxCnfClauses());
+        List<String> over = new ComplexityAnalyzer.Limits().check(profile);
+        assertEquals(1, over.size());
+        assertTrue(over.get(0).startsWith("CNF clauses"));
+    }
+
+    @Test
+    public void testInLists() throws Exception {
+        ComplexityAnalyzer.Profile profile =
+            analyze("SELECT * FROM t WHERE a IN (1,2,3) AND b NOT IN (1,2,3,4)");
+        assertEquals(4, profile.getMaxInListSize());
+        assertEquals(4, profile.getNotInExpansion());
+        profile = analyze("SELECT * FROM t WHERE NOT ((a,b) IN ((1,2),(3,4)))");
+        assertEquals(4, profile.getNotInExpansion());
+        profile = analyze("SELECT * FROM t WHERE NOT (a NOT IN (1,2,3))");
+        assertEquals(0, profile.getNotInExpansion());
+    }
+
+    @Test
+    public void testNotInOutsideSubquery() throws Exception {
+        ComplexityAnalyzer.Profile profile =
+            analyze("SELECT * FROM t1 WHERE NOT EXISTS (SELECT 1 FROM t2 WHERE t2.a IN (1,2,3))");
+        assertEquals(0, profile.getNotInExpansion());
+    }
+
+    @Test
+    public void testFunctions() throws Exception {
+        ComplexityAnalyzer.Profile profile =
+            analyze("SELECT a, COUNT(*), MAX(b), ROW_NUMBER() OVER (ORDER BY a), SUM(b) OVER (PARTITION BY a) FROM t GROUP BY a HAVING MIN(b) > 0");
+        assertEquals(3, profile.getAggregates());
+        assertEquals(2, profile.getWindowFunctions());
+    }
+
+    @Test
+    public void testCheck() throws Exception {
+        ComplexityAnalyzer.Limits limits = new ComplexityAnalyzer.Limits();
+        limits.setMaxFromListTables(2);
+        analyzer.check(parser.parseStatement("SELECT * FROM t1, t2"), limits);
+        try {
+            analyzer.check(parser.parseStatement("SELECT * FROM t1, t2, t3"), limits);
+            fail("over limit");
+        }
+        catch (StandardException ex) {
+            assertEquals("Statement too complex: tables in one FROM list 3 over limit 2",
+                         ex.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.CursorNode;
+import com.foundationdb.sql.parser.InListOperatorNode;
+import com.foundationdb.sql.parser.NodeFactory;
+import com.foundationdb.sql.parser.NodeTypes;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.SelectNode;
+import com.foundationdb.sql.parser.StatementNode;
+import com.foundationdb.sql.parser.ValueNode;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SortedConstantListTest
+{
+    private SQLParser parser;
+    private InListCanonicalizer inListCanonicalizer;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        inListCanonicalizer = new InListCanonicalizer(parser);
+    }
+
+    @Test
+    public void testLongs() throws Exception {
+        StringBuilder sql = new StringBuilder("SELECT * FROM t WHERE x IN (");
+        for (int i = 0; i < 3000; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append((i * 7919) % 1000);
+        }
+        sql.append(")");
+        SortedConstantList list = sortedList(sql.toString());
+        assertTrue(list instanceof SortedConstantList.Longs);
+        SortedConstantList.Longs longs = (SortedConstantList.Longs)list;
+        assertEquals(1000, longs.size());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, longs.get(i));
+        assertTrue(longs.contains(999));
+        assertFalse(longs.contains(1000));
+        assertTrue(longs.contains(new BigDecimal("12.00")));
+        assertFalse(longs.contains(new BigDecimal("12.5")));
+    }
+
+    @Test
+    public void testDoubles() throws Exception {
+        SortedConstantList list = sortedList("SELECT * FROM t WHERE x IN (2.5E0, 1.0E0, 2.5E0)");
+        assertTrue(list instanceof SortedConstantList.Doubles);
+        assertEquals("[1.0, 2.5]", list.toString());
+        assertTrue(((SortedConstantList.Doubles)list).contains(2.5));
+    }
+
+    @Test
+    public void testReals() throws Exception {
+        NodeFactory nodeFactory = parser.getNodeFactory();
+        List<ValueNode> nodes = new ArrayList<ValueNode>();
+        for (float value : new float[] { 0.1f, 2.5f }) {
+            nodes.add((ValueNode)nodeFactory.getNode(NodeTypes.FLOAT_CONSTANT_NODE,
+                                                     Float.valueOf(value),
+                                                     parser));
+        }
+        SortedConstantList.Doubles list =
+            (SortedConstantList.Doubles)SortedConstantList.of(nodes);
+        assertTrue(list.isReal());
+        assertTrue(list.contains(new BigDecimal("0.1")));
+        assertTrue(list.contains(0.1));
+        assertTrue(list.contains(new BigDecimal("2.5")));
+        assertFalse(list.contains(new BigDecimal("0.2")));
+        // At double precision, 0.1 is not the same as the REAL.
+        assertFalse(new SortedConstantList.Doubles(new double[] { 0.1f, 2.5f })
+                    .contains(new BigDecimal("0.1")));
+    }
+
+    @Test
+    public void testMixed() throws Exception {
+        assertNull(sortedList("SELECT * FROM t WHERE x IN (1, 2.5)"));
+        assertNull(sortedList("SELECT * FROM t WHERE x IN ('a', 'b')"));
+    }
+
+    protected SortedConstantList sortedList(String sql) throws Exception {
+        StatementNode stmt = inListCanonicalizer.canonicalize(parser.parseStatement(sql));
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        return inListCanonicalizer.getSortedList((InListOperatorNode)select.getWhereClause());
+    }
+
+}
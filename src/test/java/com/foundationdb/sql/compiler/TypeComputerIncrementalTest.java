@@ -0,0 +1,175 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.*;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TypeComputerIncrementalTest
+{
+    static class CountingTypeComputer extends TypeComputer {
+        int computed;
+        ValueNode failAt;
+
+        @Override
+        protected DataTypeDescriptor computeType(ValueNode node) throws StandardException {
+            if (node == failAt)
+                throw new StandardException("Cannot type " + node);
+            computed++;
+            if (node.getNodeType() == NodeTypes.COLUMN_REFERENCE)
+                return DataTypeDescriptor.INTEGER;
+            return super.computeType(node);
+        }
+    }
+
+    private SQLParser parser;
+    private CountingTypeComputer typeComputer;
+    private StatementNode stmt;
+    private SelectNode select;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        typeComputer = new CountingTypeComputer();
+        stmt = parser.parseStatement("SELECT a + 1, b FROM t WHERE a > 2 AND b < 3");
+        select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+    }
+
+    protected int compute() throws StandardException {
+        typeComputer.computed = 0;
+        typeComputer.compute(stmt);
+        return typeComputer.computed;
+    }
+
+    protected ValueNode doubleConstant(double value) throws StandardException {
+        return (ValueNode)parser.getNodeFactory().getNode(NodeTypes.DOUBLE_CONSTANT_NODE,
+                                                          Double.valueOf(value),
+                                                          parser);
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+        int full = compute();
+        assertTrue(full > 0);
+        assertEquals(0, compute());
+        DataTypeDescriptor whereType = select.getWhereClause().getType();
+        typeComputer.computed = 0;
+        typeComputer.computeAll(stmt);
+        // Including the constants typed by the parser.
+        assertTrue(typeComputer.computed > full);
+        assertSame(whereType, select.getWhereClause().getType());
+        assertEquals(0, compute());
+    }
+
+    @Test
+    public void testAfterFailure() throws Exception {
+        AndNode and = (AndNode)select.getWhereClause();
+        BinaryComparisonOperatorNode lt = (BinaryComparisonOperatorNode)and.getRightOperand();
+        typeComputer.failAt = lt.getLeftOperand();
+        try {
+            compute();
+            fail("Expected failure");
+        }
+        catch (StandardException ex) {
+        }
+        typeComputer.failAt = null;
+        StatementNode other = parser.parseStatement("SELECT a + 1, b FROM t WHERE a > 2 AND b < 3");
+        CountingTypeComputer fresh = new CountingTypeComputer();
+        fresh.compute(other);
+        // The same instance carries on as if the failure had not happened.
+        stmt = parser.parseStatement("SELECT a + 1, b FROM t WHERE a > 2 AND b < 3");
+        assertEquals(fresh.computed, compute());
+        assertEquals(0, compute());
+    }
+
+    @Test
+    public void testSameType() throws Exception {
+        compute();
+        AndNode and = (AndNode)select.getWhereClause();
+        DataTypeDescriptor andType = and.getType();
+        BinaryComparisonOperatorNode gt = (BinaryComparisonOperatorNode)and.getLeftOperand();
+        gt.setRightOperand(doubleConstant(2.5));
+        // Just the comparison: its type is the same, so the AND is kept.
+        assertEquals(1, compute());
+        assertSame(andType, and.getType());
+        assertFalse(gt.isTypeStale());
+    }
+
+    @Test
+    public void testChangedType() throws Exception {
+        compute();
+        ResultColumn column = select.getResultColumns().get(0);
+        assertEquals("INTEGER", column.getType().toString());
+        BinaryArithmeticOperatorNode plus = (BinaryArithmeticOperatorNode)column.getExpression();
+        plus.setRightOperand(doubleConstant(1.0));
+        // The addition and then the result column above it.
+        assertEquals(2, compute());
+        assertEquals("DOUBLE", plus.getType().toString());
+        assertEquals("DOUBLE", column.getType().toString());
+    }
+
+    @Test
+    public void testReplacedByVisitor() throws Exception {
+        compute();
+        ResultColumn column = select.getResultColumns().get(0);
+        BinaryArithmeticOperatorNode plus = (BinaryArithmeticOperatorNode)column.getExpression();
+        final ValueNode one = plus.getRightOperand();
+        final ValueNode replacement = doubleConstant(1.0);
+        assertEquals("DOUBLE NOT NULL", replacement.getType().toString());
+        // Replaced through acceptChildren rather than the setter.
+        stmt.accept(new Visitor() {
+                public Visitable visit(Visitable node) {
+                    return (node == one) ? replacement : node;
+                }
+                public boolean skipChildren(Visitable node) {
+                    return false;
+                }
+                public boolean visitChildrenFirst(Visitable node) {
+                    return false;
+                }
+                public boolean stopTraversal() {
+                    return false;
+                }
+            });
+        assertSame(replacement, plus.getRightOperand());
+        assertTrue(plus.isTypeStale());
+        // Not the replacement, which has a type, but the addition and the result column.
+        assertEquals(2, compute());
+        assertEquals("DOUBLE", plus.getType().toString());
+        assertEquals("DOUBLE", column.getType().toString());
+    }
+
+    @Test
+    public void testNewNode() throws Exception {
+        compute();
+        AndNode and = (AndNode)select.getWhereClause();
+        ValueNode isNull = (ValueNode)
+            parser.getNodeFactory().getNode(NodeTypes.IS_NULL_NODE,
+                                            and.getRightOperand(),
+                                            parser);
+        and.setRightOperand(isNull);
+        // The new node and the AND.
+        assertEquals(2, compute());
+        assertSame(DataTypeDescriptor.BOOLEAN_NOT_NULL, isNull.getType());
+    }
+
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.compiler;
+
+import com.foundationdb.sql.parser.CursorNode;
+import com.foundationdb.sql.parser.ResultColumn;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.SelectNode;
+import com.foundationdb.sql.parser.StatementNode;
+import com.foundationdb.sql.types.TypeId;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class TypeRegistryConcurrencyTest
+{
+    static final String SQL = "SELECT 1 + 2.5, 'a' || 'b', CAST(1 AS BIGINT) * 2e0, 1 = 1, CAST('2001-01-01' AS DATE), CAST(3 AS SMALLINT) - CAST(1 AS TINYINT)";
+
+    static final int THREADS = 8, ROUNDS = 200;
+
+    /** What one thread sees; should be the same for all. */
+    static String snapshot() throws Exception {
+        StringBuilder str = new StringBuilder();
+        for (TypeId typeId : TypeId.getAllBuiltinTypeIds()) {
+            TypeCompiler compiler = TypeCompiler.getTypeCompiler(typeId);
+            str.append(typeId.getSQLTypeName()).append('=');
+            if (compiler == TypeCompiler.getTypeCompiler(typeId))
+                str.append(System.identityHashCode(compiler));
+            else        // A new one each time.
+                str.append(compiler.getClass().getSimpleName());
+            str.append(' ');
+            String name = typeId.getSQLTypeName();
+            TypeId byName = TypeId.getBuiltInTypeId(name);
+            assertSame(byName, TypeId.getBuiltInTypeId(name.toLowerCase()));
+            str.append(System.identityHashCode(byName)).append('\n');
+        }
+        SQLParser parser = new SQLParser();
+        StatementNode stmt = parser.parseStatement(SQL);
+        new TypeComputer().compute(stmt);
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        for (ResultColumn column : select.getResultColumns()) {
+            str.append(column.getExpression().getType()).append('\n');
+        }
+        return str.toString();
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<Set<String>>> futures = new ArrayList<Future<Set<String>>>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(new Callable<Set<String>>() {
+                        public Set<String> call() throws Exception {
+                            start.await();
+                            Set<String> seen = new HashSet<String>();
+                            for (int j = 0; j < ROUNDS; j++)
+                                seen.add(snapshot());
+                            return seen;
+                        }
+                    }));
+            }
+            // Let the threads be the first to touch the registries.
+            start.countDown();
+            Set<String> all = new HashSet<String>();
+            for (Future<Set<String>> future : futures)
+                all.addAll(future.get());
+            assertEquals(1, all.size());
+            assertEquals(snapshot(), all.iterator().next());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testNames() {
+        assertSame(TypeId.INTEGER_ID, TypeId.getBuiltInTypeId("INT"));
+        assertSame(TypeId.INTEGER_ID, TypeId.getBuiltInTypeId("integer"));
+        assertSame(TypeId.REAL_ID, TypeId.getBuiltInTypeId("Float"));
+        assertSame(TypeId.VARBIT_ID, TypeId.getBuiltInTypeId("varchar () for bit data"));
+        assertNull(TypeId.getBuiltInTypeId("NO SUCH TYPE"));
+    }
+
+    @Test
+    public void testCompilers() {
+        assertSame(TypeCompiler.getTypeCompiler(TypeId.DECIMAL_ID),
+                   TypeCompiler.getTypeCompiler(TypeId.NUMERIC_ID));
+        assertSame(TypeCompiler.getTypeCompiler(TypeId.INTEGER_ID),
+                   TypeCompiler.getTypeCompiler(TypeId.INTEGER_UNSIGNED_ID));
+        assertSame(TypeId.DECIMAL_ID, 
+                   TypeCompiler.getTypeCompiler(TypeId.NUMERIC_ID).getTypeId());
+    }
+
+}
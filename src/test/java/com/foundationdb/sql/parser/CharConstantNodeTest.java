@@ -0,0 +1,88 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CharConstantNodeTest
+{
+    private SQLParser parser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+    }
+
+    @Test
+    public void testPlain() throws StandardException {
+        CharConstantNode node = literal("'{\"k\": [1, 2, \"\\u00e9\"]}'");
+        assertEquals("CHAR(23) NOT NULL", node.getType().toString());
+        assertEquals("{\"k\": [1, 2, \"\\u00e9\"]}", node.getString());
+    }
+
+    @Test
+    public void testUnescaped() throws StandardException {
+        assertEquals("it's", literal("'it''s'").getValue());
+        assertEquals("a\tb", literal("E'a\\tb'").getValue());
+        assertEquals("", literal("''").getValue());
+    }
+
+    @Test
+    public void testCodePoints() throws StandardException {
+        CharConstantNode node = literal("'x\uD83D\uDE00y'");
+        assertEquals(3, node.getType().getMaximumWidth());
+        assertEquals("x\uD83D\uDE00y", node.getValue());
+    }
+
+    @Test
+    public void testCopies() throws StandardException {
+        CharConstantNode node = literal("'payload'");
+        CharConstantNode copy = (CharConstantNode)
+            parser.getNodeFactory().copyNode(node, parser);
+        assertEquals("payload", copy.getValue());
+        CharConstantNode loaded = (CharConstantNode)
+            NodeSerializer.deserialize(NodeSerializer.serialize(node), parser);
+        assertEquals("payload", loaded.getValue());
+        assertTrue(node.isEquivalent(loaded));
+        node.setValue("other");
+        assertEquals("other", node.getString());
+    }
+
+    @Test
+    public void testFromSource() throws StandardException {
+        CharConstantNode node =
+            CharConstantNode.fromSource("'abc'", 1, 4, parser);
+        assertEquals("CHAR(3) NOT NULL", node.getType().toString());
+        assertSame(node.getValue(), node.getValue());
+        assertEquals("abc", node.getValue());
+        // Reading the value leaves the source in place.
+        assertEquals("'abc'", node.getSourceString());
+        assertEquals(1, node.getSourceBegin());
+        assertEquals(4, node.getSourceEnd());
+    }
+
+    protected CharConstantNode literal(String literal) throws StandardException {
+        CursorNode cursor = (CursorNode)parser.parseStatement("SELECT " + literal);
+        SelectNode select = (SelectNode)cursor.getResultSetNode();
+        return (CharConstantNode)select.getResultColumns().get(0).getExpression();
+    }
+
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class FingerprinterTest
+{
+    private SQLParser parser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+    }
+
+    protected long treeFingerprint(String sql) throws StandardException {
+        return parser.fingerprint(parser.parseStatement(sql));
+    }
+
+    protected long tokenFingerprint(String sql) throws StandardException {
+        return parser.fingerprint(sql);
+    }
+
+    protected void assertSame(String sql1, String sql2) throws StandardException {
+        assertEquals(sql1 + " / " + sql2, treeFingerprint(sql1), treeFingerprint(sql2));
+        assertEquals(sql1 + " / " + sql2, tokenFingerprint(sql1), tokenFingerprint(sql2));
+    }
+
+    protected void assertDifferent(String sql1, String sql2) throws StandardException {
+        assertFalse(sql1 + " / " + sql2, treeFingerprint(sql1) == treeFingerprint(sql2));
+        assertFalse(sql1 + " / " + sql2, tokenFingerprint(sql1) == tokenFingerprint(sql2));
+    }
+
+    @Test
+    public void testLiterals() throws StandardException {
+        assertSame("SELECT a FROM t WHERE b = 1 AND c = 'x'",
+                   "SELECT a FROM t WHERE b = -2.5 AND c = ?");
+        assertDifferent("SELECT a FROM t WHERE b = 1",
+                        "SELECT a FROM t WHERE b = c");
+        assertDifferent("SELECT a FROM t WHERE b = 1",
+                        "SELECT a FROM t WHERE b > 1");
+    }
+
+    @Test
+    public void testSignAfterKeyword() throws StandardException {
+        assertDifferent("SELECT CURRENT_DATE - 1 FROM t",
+                        "SELECT CURRENT_DATE + 1 FROM t");
+        assertDifferent("SELECT CURRENT_TIMESTAMP - 1 FROM t",
+                        "SELECT CURRENT_TIMESTAMP + 1 FROM t");
+        assertDifferent("SELECT CASE WHEN a THEN 1 ELSE 2 END - 1 FROM t",
+                        "SELECT CASE WHEN a THEN 1 ELSE 2 END + 1 FROM t");
+        assertSame("SELECT CURRENT_DATE - 1 FROM t",
+                   "SELECT CURRENT_DATE - 7 FROM t");
+    }
+
+    @Test
+    public void testInLists() throws StandardException {
+        assertSame("SELECT a FROM t WHERE b IN (1)",
+                   "SELECT a FROM t WHERE b IN (1, 2, -3, ?)");
+        assertDifferent("SELECT a FROM t WHERE b IN (1, 2)",
+                        "SELECT a FROM t WHERE b IN (1, c)");
+        assertDifferent("SELECT a FROM t WHERE b IN (1, 2)",
+                        "SELECT a FROM t WHERE b NOT IN (1, 2)");
+    }
+
+    @Test
+    public void testFlags() throws StandardException {
+        assertDifferent("SELECT DISTINCT a FROM t",
+                        "SELECT a FROM t");
+        assertDifferent("SELECT a FROM t UNION SELECT a FROM u",
+                        "SELECT a FROM t UNION ALL SELECT a FROM u");
+        assertDifferent("SELECT a FROM t INTERSECT SELECT a FROM u",
+                        "SELECT a FROM t EXCEPT SELECT a FROM u");
+        assertDifferent("SELECT a FROM t ORDER BY a",
+                        "SELECT a FROM t ORDER BY a DESC");
+        assertDifferent("SELECT a FROM t ORDER BY a NULLS FIRST",
+                        "SELECT a FROM t ORDER BY a NULLS LAST");
+        assertDifferent("SELECT * FROM t LEFT JOIN u ON t.a = u.a",
+                        "SELECT * FROM t RIGHT JOIN u ON t.a = u.a");
+        assertDifferent("SELECT a FROM t WHERE b IN (SELECT b FROM u)",
+                        "SELECT a FROM t WHERE b NOT IN (SELECT b FROM u)");
+        assertDifferent("SELECT a FROM t WHERE b IN (SELECT b FROM u)",
+                        "SELECT a FROM t WHERE b = ANY (SELECT b FROM u)");
+        assertDifferent("SELECT a FROM t WHERE b = ANY (SELECT b FROM u)",
+                        "SELECT a FROM t WHERE b = ALL (SELECT b FROM u)");
+    }
+
+    @Test
+    public void testOperators() throws StandardException {
+        assertDifferent("SELECT CAST(a AS INT) FROM t",
+                        "SELECT CAST(a AS VARCHAR(3)) FROM t");
+        // The tokens of a length are just a literal.
+        assertFalse(treeFingerprint("SELECT CAST(a AS VARCHAR(3)) FROM t") ==
+                    treeFingerprint("SELECT CAST(a AS VARCHAR(10)) FROM t"));
+        assertDifferent("SELECT EXTRACT(YEAR FROM a) FROM t",
+                        "SELECT EXTRACT(MONTH FROM a) FROM t");
+        assertDifferent("SELECT TRIM(LEADING 'x' FROM a) FROM t",
+                        "SELECT TRIM(TRAILING 'x' FROM a) FROM t");
+        assertDifferent("SELECT a FROM t FOR UPDATE",
+                        "SELECT a FROM t");
+        assertDifferent("SELECT a FROM t FOR UPDATE OF a",
+                        "SELECT a FROM t FOR UPDATE OF b");
+        assertSame("SELECT TRIM(LEADING 'x' FROM a) FROM t",
+                   "SELECT TRIM(LEADING 'y' FROM a) FROM t");
+    }
+
+    @Test
+    public void testIdentifiers() throws StandardException {
+        assertSame("select A from T where B = 1",
+                   "SELECT a FROM t WHERE \"b\" = 2");
+        assertDifferent("SELECT a FROM t",
+                        "SELECT a FROM u");
+        assertDifferent("SELECT a FROM t",
+                        "SELECT \"A\" FROM t");
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.TestBase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runner.RunWith;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+/** Check that {@link FlatTree} navigation matches the parser corpus trees. */
+@RunWith(Parameterized.class)
+public class FlatTreeTest extends TestBase
+{
+    protected SQLParser parser;
+    protected String[] featureLines;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        if (featureLines != null)
+            parseFeatures(featureLines, parser.getFeatures());
+    }
+
+    @Parameters(name="{0}")
+    public static Collection<Object[]> queries() throws Exception {
+        return sqlAndExpectedAndExtra(SQLParserTest.RESOURCE_DIR, ".features");
+    }
+
+    public FlatTreeTest(String caseName, String sql,
+                        String expected, String error, String[] featureLines) {
+        super(caseName, sql, expected, error);
+        this.featureLines = featureLines;
+    }
+
+    @Test
+    public void testFlatten() throws Exception {
+        if (error != null) return;
+        StatementNode stmt = parser.parseStatement(sql);
+        FlatTree flat = FlatTree.fromTree(stmt, sql);
+        StringBuilder expected = new StringBuilder();
+        appendTree(expected, stmt, 0);
+        StringBuilder actual = new StringBuilder();
+        appendFlat(actual, flat.cursor(), 0);
+        assertEquals(caseName, expected.toString(), actual.toString());
+        assertEquals(caseName, flat.size(), flat.getSubtreeEnd(0));
+        for (int i = 1; i < flat.size(); i++) {
+            int parent = flat.getParent(i);
+            assertTrue(caseName, (parent < i) && (i < flat.getSubtreeEnd(parent)));
+        }
+    }
+
+    protected void appendTree(StringBuilder str, QueryTreeNode node, int depth) 
+            throws Exception {
+        append(str, depth, node.getNodeType(), 
+               node.getBeginOffset(), node.getEndOffset());
+        PersistentTree.ChildrenCollector children = new PersistentTree.ChildrenCollector();
+        children.collect(node);
+        for (QueryTreeNode child : new ArrayList<QueryTreeNode>(children.getChildren())) {
+            appendTree(str, child, depth + 1);
+        }
+    }
+
+    protected void appendFlat(StringBuilder str, FlatTree.Cursor cursor, int depth) {
+        FlatTree flat = cursor.getTree();
+        append(str, depth, cursor.getNodeType(),
+               flat.getBeginOffset(cursor.getNode()), flat.getEndOffset(cursor.getNode()));
+        FlatTree.Cursor child = cursor.copy();
+        if (child.toFirstChild()) {
+            do {
+                assertEquals(cursor.getNode(), flat.getParent(child.getNode()));
+                appendFlat(str, child, depth + 1);
+            } while (child.toNextSibling());
+        }
+    }
+
+    protected void append(StringBuilder str, int depth, int nodeType, int begin, int end) {
+        for (int i = 0; i < depth; i++)
+            str.append("  ");
+        str.append(nodeType).append(' ').append(begin).append('-').append(end).append('\n');
+    }
+
+}
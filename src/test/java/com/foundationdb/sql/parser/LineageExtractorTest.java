@@ -0,0 +1,96 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.Set;
+
+public class LineageExtractorTest
+{
+    private SQLParser parser;
+    private LineageExtractor extractor;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        extractor = new LineageExtractor();
+    }
+
+    protected String lineage(String sql) throws StandardException {
+        LineageExtractor.Lineage lineage = 
+            extractor.extract(parser.parseStatement(sql));
+        StringBuilder str = new StringBuilder();
+        str.append("read:");
+        for (TableName table : lineage.getTablesRead())
+            str.append(' ').append(table.getFullTableName());
+        str.append("; written:");
+        for (TableName table : lineage.getTablesWritten())
+            str.append(' ').append(table.getFullTableName());
+        str.append("; columns:");
+        for (Map.Entry<TableName,Set<String>> entry : lineage.getColumns().entrySet())
+            str.append(' ').append(entry.getKey().getFullTableName()).append(entry.getValue());
+        if (!lineage.getUnresolvedColumns().isEmpty())
+            str.append("; unresolved: ").append(lineage.getUnresolvedColumns());
+        return str.toString();
+    }
+
+    @Test
+    public void testSelect() throws StandardException {
+        assertEquals("read: s.t u; written:; columns: s.t[a, c, b] u[d, e]",
+                     lineage("SELECT x.a, u.d FROM s.t x INNER JOIN u ON x.c = u.e " + 
+                             "WHERE x.b > 1 ORDER BY x.a"));
+        assertEquals("read: t; written:; columns: t[*]",
+                     lineage("SELECT * FROM t"));
+        assertEquals("read: t u; written:; columns:; unresolved: [a]",
+                     lineage("SELECT a FROM t, u"));
+    }
+
+    @Test
+    public void testJoinColumns() throws StandardException {
+        assertEquals("read: t1 t2; written:; columns: t1[k, a] t2[k]; unresolved: [b]",
+                     lineage("SELECT t1.a, b FROM t1 JOIN t2 USING (k)"));
+        assertEquals("read: t1 t2 t3; written:; columns: t1[k] t2[k] t3[k]",
+                     lineage("SELECT k FROM t1 JOIN t2 USING (k) JOIN t3 USING (k)"));
+        assertEquals("read: t1 t2; written:; columns: t1[*, a] t2[*]",
+                     lineage("SELECT t1.a FROM t1 NATURAL JOIN t2"));
+    }
+
+    @Test
+    public void testSubqueries() throws StandardException {
+        assertEquals("read: t u; written:; columns: t[a, b] u[c, d]",
+                     lineage("SELECT a FROM t WHERE b IN (SELECT c FROM u WHERE u.d = t.a)"));
+        assertEquals("read: t; written:; columns: t[a]",
+                     lineage("SELECT q.z FROM (SELECT a AS z FROM t) AS q"));
+    }
+
+    @Test
+    public void testModify() throws StandardException {
+        assertEquals("read: u; written: t; columns: t[a, b] u[c]",
+                     lineage("INSERT INTO t(a, b) SELECT c, 1 FROM u"));
+        assertEquals("read:; written: t; columns: t[b, a, c]",
+                     lineage("UPDATE t SET a = b + 1 WHERE c = 2"));
+        assertEquals("read: u; written: t; columns: u[d] t[c]",
+                     lineage("DELETE FROM t x WHERE x.c IN (SELECT d FROM u)"));
+    }
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+
+public class LiteralRowBatchTest
+{
+    private SQLParser parser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        parser.getFeatures().add(SQLParserFeature.COLUMNAR_VALUES);
+    }
+
+    @Test
+    public void testColumns() throws StandardException {
+        RowsResultSetNode rows = values("INSERT INTO t VALUES (1, 9000000000, 12.50, 1.5e0, 'one', NULL), (-2, 3, -0.25, NULL, 'it''s', 'x'), (NULL, 4, 0.00, 2e0, E'a\\tb', '')");
+        LiteralRowBatch batch = rows.getBatch();
+        assertNotNull(batch);
+        assertEquals(3, batch.getRowCount());
+        assertEquals(6, batch.getColumnCount());
+        assertEquals(LiteralRowBatch.ColumnType.LONG, batch.getColumnType(0));
+        assertEquals(LiteralRowBatch.ColumnType.LONG, batch.getColumnType(1));
+        assertEquals(LiteralRowBatch.ColumnType.DECIMAL, batch.getColumnType(2));
+        assertEquals(LiteralRowBatch.ColumnType.DOUBLE, batch.getColumnType(3));
+        assertEquals(LiteralRowBatch.ColumnType.STRING, batch.getColumnType(4));
+        assertEquals(LiteralRowBatch.ColumnType.STRING, batch.getColumnType(5));
+        assertEquals(-2L, batch.getLong(1, 0));
+        assertTrue(batch.isNull(2, 0));
+        assertEquals(9000000000L, batch.getValue(0, 1));
+        assertEquals(3, batch.getValue(1, 1));
+        assertEquals(2, batch.getScale(2));
+        assertEquals(new BigDecimal("-0.25"), batch.getValue(1, 2));
+        assertEquals(2.0, batch.getDouble(2, 3), 0.0);
+        assertTrue(batch.isNull(1, 3));
+        assertEquals("it's", batch.getString(1, 4));
+        assertEquals("a\tb", batch.getString(2, 4));
+        assertTrue(batch.isNull(0, 5));
+        assertEquals("", batch.getValue(2, 5));
+    }
+
+    @Test
+    public void testSameNodes() throws StandardException {
+        String sql = "INSERT INTO t VALUES (1, 'a', 2.5, 1e1), (2, NULL, 3.0, -1e0), (3, 'c''d', NULL, NULL)";
+        StatementNode batched = parser.parseStatement(sql);
+        StatementNode plain = new SQLParser().parseStatement(sql);
+        assertNotNull(values(batched).getBatch());
+        NodeToString unparser = new NodeToString();
+        assertEquals(unparser.toString(plain), unparser.toString(batched));
+        // Unparsing goes a row at a time and keeps the columns.
+        assertNotNull(values(batched).getBatch());
+        assertEquals(3, values(batched).getRows().size());
+        assertNull(values(batched).getBatch());
+    }
+
+    @Test
+    public void testNotLiterals() throws StandardException {
+        RowsResultSetNode rows = values("INSERT INTO t VALUES (1, 'a'), (2, 'b'), (3 + 1, 'c'), (4, 'd')");
+        assertNull(rows.getBatch());
+        assertEquals(4, rows.getRowCount());
+        rows = values("INSERT INTO t VALUES (1, 'a'), (2, 3)");
+        assertNull(rows.getBatch());
+        rows = values("INSERT INTO t VALUES (1, 1.5), (2, 1.25)");
+        assertNull(rows.getBatch());
+        rows = values("INSERT INTO t VALUES (?, 1), (2, 1)");
+        assertNull(rows.getBatch());
+    }
+
+    @Test
+    public void testNotEnabled() throws StandardException {
+        parser.getFeatures().remove(SQLParserFeature.COLUMNAR_VALUES);
+        assertNull(values("INSERT INTO t VALUES (1), (2)").getBatch());
+    }
+
+    @Test
+    public void testCopies() throws StandardException {
+        StatementNode stmt = parser.parseStatement("INSERT INTO t VALUES (1, 'one'), (2, 'two')");
+        StatementNode copy = (StatementNode)parser.getNodeFactory().copyNode(stmt, parser);
+        assertNotNull(values(copy).getBatch());
+        assertEquals(unparse(stmt), unparse(copy));
+        copy = (StatementNode)TreeCopier.copy(stmt, parser);
+        assertNotNull(values(copy).getBatch());
+        assertEquals(unparse(stmt), unparse(copy));
+        StatementNode loaded = (StatementNode)
+            NodeSerializer.deserialize(NodeSerializer.serialize(stmt), new SQLParser());
+        assertEquals("two", values(loaded).getBatch().getString(1, 1));
+        assertEquals(unparse(stmt), unparse(loaded));
+    }
+
+    protected static String unparse(StatementNode stmt) throws StandardException {
+        return new NodeToString().toString(stmt);
+    }
+
+    protected RowsResultSetNode values(String sql) throws StandardException {
+        return values(parser.parseStatement(sql));
+    }
+
+    protected static RowsResultSetNode values(StatementNode stmt) {
+        return (RowsResultSetNode)((InsertNode)stmt).getResultSetNode();
+    }
+
+}
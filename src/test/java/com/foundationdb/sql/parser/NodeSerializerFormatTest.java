@@ -0,0 +1,180 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.types.CharacterTypeAttributes;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+import com.foundationdb.sql.types.TypeId;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+/** Check {@link NodeSerializer} on deep trees and malformed input. */
+public class NodeSerializerFormatTest
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private SQLParser parser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+    }
+
+    @Test
+    public void testDeepTree() throws StandardException {
+        NodeFactory nodeFactory = parser.getNodeFactory();
+        ValueNode expr = constant(0);
+        for (int i = 1; i < 100000; i++) {
+            expr = (ValueNode)nodeFactory.getNode(NodeTypes.BINARY_PLUS_OPERATOR_NODE,
+                                                  expr, constant(i),
+                                                  parser);
+        }
+        byte[] bytes = NodeSerializer.serialize(expr);
+        QueryTreeNode loaded = NodeSerializer.deserialize(bytes, new SQLParser());
+        assertArrayEquals(bytes, NodeSerializer.serialize(loaded));
+    }
+
+    @Test
+    public void testFieldMismatch() throws StandardException {
+        byte[] bytes = subquery();
+        assertMalformed(replaceString(bytes, "subqueryType", "subqueryKind"),
+                        "field subqueryKind");
+    }
+
+    @Test
+    public void testEnumClasses() throws StandardException {
+        byte[] bytes = collated();
+        String enumClass = CharacterTypeAttributes.CollationDerivation.class.getName();
+        assertMalformed(replaceString(bytes, enumClass, Thread.State.class.getName()),
+                        "is not allowed");
+        assertMalformed(replaceString(bytes, enumClass, CharacterTypeAttributes.class.getName()),
+                        "is not an enum");
+    }
+
+    @Test
+    public void testTruncated() throws StandardException {
+        byte[] bytes = subquery();
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] truncated = new byte[i];
+            System.arraycopy(bytes, 0, truncated, 0, i);
+            try {
+                NodeSerializer.deserialize(truncated, parser);
+                fail("Truncated at " + i);
+            }
+            catch (StandardException ex) {
+            }
+        }
+    }
+
+    @Test
+    public void testBadLengths() throws StandardException {
+        // BYTES, BOOLEANS and INTS with more elements than there is input.
+        for (int tag : new int[] { 13, 19, 24 }) {
+            for (long length : new long[] { 1, 0xFFFFFFFL, -1L }) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                out.write('F'); out.write('D'); out.write('B'); out.write('S');
+                writeVarint(out, NodeSerializer.FORMAT_VERSION);
+                writeVarint(out, 0);
+                out.write(tag);
+                writeVarint(out, length);
+                assertMalformed(out.toByteArray(), "truncated");
+            }
+        }
+    }
+
+    protected ValueNode constant(int value) throws StandardException {
+        return (ValueNode)parser.getNodeFactory().getNode(NodeTypes.INT_CONSTANT_NODE,
+                                                          Integer.valueOf(value),
+                                                          parser);
+    }
+
+    protected byte[] subquery() throws StandardException {
+        return NodeSerializer.serialize(parser.parseStatement("SELECT a FROM t WHERE b IN (SELECT c FROM u)"));
+    }
+
+    protected byte[] collated() throws StandardException {
+        CharConstantNode node = CharConstantNode.fromSource("'abc'", 1, 4, parser);
+        CharacterTypeAttributes attrs =
+            new CharacterTypeAttributes(null, "en_us_ci",
+                                        CharacterTypeAttributes.CollationDerivation.EXPLICIT);
+        node.setType(new DataTypeDescriptor(TypeId.VARCHAR_ID, false, 3, attrs));
+        return NodeSerializer.serialize(node);
+    }
+
+    protected void assertMalformed(byte[] bytes, String message) {
+        try {
+            NodeSerializer.deserialize(bytes, parser);
+            fail("Expected " + message);
+        }
+        catch (StandardException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains(message));
+        }
+    }
+
+    /** Change one entry of the string table at the start of the encoding. */
+    protected static byte[] replaceString(byte[] bytes, String from, String to) {
+        int[] position = { 4 };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(bytes, 0, 4);
+        writeVarint(out, readVarint(bytes, position)); // Version
+        int nstrings = (int)readVarint(bytes, position);
+        writeVarint(out, nstrings);
+        boolean found = false;
+        for (int i = 0; i < nstrings; i++) {
+            int nbytes = (int)readVarint(bytes, position);
+            String str = new String(bytes, position[0], nbytes, UTF8);
+            position[0] += nbytes;
+            if (str.equals(from)) {
+                str = to;
+                found = true;
+            }
+            byte[] strBytes = str.getBytes(UTF8);
+            writeVarint(out, strBytes.length);
+            out.write(strBytes, 0, strBytes.length);
+        }
+        assertTrue(from, found);
+        out.write(bytes, position[0], bytes.length - position[0]);
+        return out.toByteArray();
+    }
+
+    protected static long readVarint(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = bytes[position[0]++];
+            value |= (long)(b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+            shift += 7;
+        }
+        return value;
+    }
+
+    protected static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int)value);
+    }
+
+}
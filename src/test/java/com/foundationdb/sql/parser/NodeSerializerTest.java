@@ -0,0 +1,76 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.TestBase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.junit.runner.RunWith;
+
+import java.io.*;
+import java.util.*;
+
+/** Check that the parser corpus round-trips through {@link NodeSerializer}. */
+@RunWith(Parameterized.class)
+public class NodeSerializerTest extends TestBase implements TestBase.GenerateAndCheckResult
+{
+    protected SQLParser parser;
+    protected String[] featureLines;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        if (featureLines != null)
+            parseFeatures(featureLines, parser.getFeatures());
+    }
+
+    @Parameters(name="{0}")
+    public static Collection<Object[]> queries() throws Exception {
+        return sqlAndExpectedAndExtra(SQLParserTest.RESOURCE_DIR, ".features");
+    }
+
+    public NodeSerializerTest(String caseName, String sql,
+                              String expected, String error, String[] featureLines) {
+        super(caseName, sql, expected, error);
+        this.featureLines = featureLines;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        generateAndCheckResult();
+    }
+
+    @Override
+    public String generateResult() throws Exception {
+        StatementNode stmt = parser.parseStatement(sql);
+        byte[] bytes = NodeSerializer.serialize(stmt);
+        SQLParser other = new SQLParser();
+        stmt = (StatementNode)NodeSerializer.deserialize(bytes, other);
+        StringWriter str = new StringWriter();
+        stmt.treePrint(str);
+        return str.toString().trim();
+    }
+
+    @Override
+    public void checkResult(String result) throws IOException {
+        assertEqualsWithoutHashes(caseName, expected, result);
+    }
+
+}
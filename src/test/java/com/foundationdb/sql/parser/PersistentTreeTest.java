@@ -0,0 +1,191 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.unparser.NodeToString;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PersistentTreeTest
+{
+    private SQLParser parser;
+    private NodeToString unparser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        unparser = new NodeToString();
+    }
+
+    @Test
+    public void testReplaceShares() throws StandardException {
+        StatementNode stmt = parser.parseStatement("SELECT a, b FROM t WHERE x > 0 AND y < 5");
+        PersistentTree<StatementNode> tree = new PersistentTree<StatementNode>(stmt);
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        AndNode and = (AndNode)select.getWhereClause();
+        BinaryComparisonOperatorNode gt = (BinaryComparisonOperatorNode)and.getLeftOperand();
+
+        PersistentTree<StatementNode>.Editor editor = tree.edit();
+        ValueNode ten = (ValueNode)
+            parser.getNodeFactory().getNode(NodeTypes.INT_CONSTANT_NODE, 10, parser);
+        editor.replace(gt.getRightOperand(), ten);
+
+        assertEquals("SELECT a, b FROM t WHERE (x > 10) AND (y < 5)",
+                     unparser.toString(editor.getRoot()));
+        assertEquals("SELECT a, b FROM t WHERE (x > 0) AND (y < 5)",
+                     unparser.toString(tree.getRoot()));
+
+        SelectNode editedSelect = (SelectNode)((CursorNode)editor.getRoot()).getResultSetNode();
+        assertNotSame(select, editedSelect);
+        assertSame(select.getFromList(), editedSelect.getFromList());
+        assertSame(select.getResultColumns(), editedSelect.getResultColumns());
+        assertSame(and.getRightOperand(),
+                   ((AndNode)editedSelect.getWhereClause()).getRightOperand());
+    }
+
+    @Test
+    public void testModifyList() throws StandardException {
+        StatementNode stmt = parser.parseStatement("SELECT a, b FROM t");
+        PersistentTree<StatementNode> tree = new PersistentTree<StatementNode>(stmt);
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        ResultColumnList rcl = select.getResultColumns();
+
+        PersistentTree<StatementNode>.Editor editor = tree.edit();
+        ResultColumnList editedRCL = editor.modify(rcl);
+        assertSame(editedRCL, editor.modify(rcl));
+        assertSame(editedRCL, editor.modify(editedRCL));
+        editedRCL.remove(1);
+
+        assertEquals("SELECT a FROM t", unparser.toString(editor.getRoot()));
+        assertEquals("SELECT a, b FROM t", unparser.toString(tree.getRoot()));
+        assertTrue(editor.isModified(stmt));
+        assertFalse(editor.isModified(select.getFromList()));
+    }
+
+    @Test
+    public void testReplaceAfterModify() throws StandardException {
+        StatementNode stmt = parser.parseStatement("SELECT a, b FROM t WHERE x > 0 AND y < 5");
+        PersistentTree<StatementNode> tree = new PersistentTree<StatementNode>(stmt);
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        AndNode and = (AndNode)select.getWhereClause();
+        BinaryComparisonOperatorNode gt = (BinaryComparisonOperatorNode)and.getLeftOperand();
+        ValueNode zero = gt.getRightOperand();
+
+        PersistentTree<StatementNode>.Editor editor = tree.edit();
+        editor.modify(zero);
+        ValueNode ten = constant(10);
+        editor.replace(zero, ten);
+        assertEquals("SELECT a, b FROM t WHERE (x > 10) AND (y < 5)",
+                     unparser.toString(editor.getRoot()));
+        assertSame(ten, editor.modify(zero));
+
+        // Replacing the replacement.
+        editor.replace(ten, constant(11));
+        assertEquals("SELECT a, b FROM t WHERE (x > 11) AND (y < 5)",
+                     unparser.toString(editor.getRoot()));
+
+        // Nothing under a replaced node can be edited any more.
+        editor.replace(gt, constant(1));
+        assertEquals("SELECT a, b FROM t WHERE 1 AND (y < 5)",
+                     unparser.toString(editor.getRoot()));
+        try {
+            editor.modify(gt.getLeftOperand());
+            fail("Modified under replaced node");
+        }
+        catch (IllegalArgumentException ex) {
+        }
+
+        assertEquals("SELECT a, b FROM t WHERE (x > 0) AND (y < 5)",
+                     unparser.toString(tree.getRoot()));
+    }
+
+    @Test
+    public void testSharedNode() throws StandardException {
+        StatementNode stmt = parser.parseStatement("SELECT a FROM t WHERE x > y AND z < 5");
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        AndNode and = (AndNode)select.getWhereClause();
+        BinaryComparisonOperatorNode gt = (BinaryComparisonOperatorNode)and.getLeftOperand();
+        ValueNode x = gt.getLeftOperand();
+        gt.setRightOperand(x);  // The same node twice.
+        PersistentTree<StatementNode> tree = new PersistentTree<StatementNode>(stmt);
+        assertTrue(tree.isShared(x));
+        assertFalse(tree.isShared(gt));
+
+        PersistentTree<StatementNode>.Editor editor = tree.edit();
+        try {
+            editor.modify(x);
+            fail("Modified shared node");
+        }
+        catch (IllegalArgumentException ex) {
+        }
+        try {
+            editor.replace(x, constant(10));
+            fail("Replaced shared node");
+        }
+        catch (IllegalArgumentException ex) {
+        }
+
+        // Its parent still has just one path.
+        BinaryComparisonOperatorNode editedGt = editor.modify(gt);
+        editedGt.setRightOperand(constant(10));
+        assertEquals("SELECT a FROM t WHERE (x > 10) AND (z < 5)",
+                     unparser.toString(editor.getRoot()));
+        assertEquals("SELECT a FROM t WHERE (x > x) AND (z < 5)",
+                     unparser.toString(tree.getRoot()));
+    }
+
+    @Test
+    public void testFunctionArgument() throws StandardException {
+        StatementNode stmt = parser.parseStatement("SELECT foo(x, 1) FROM t");
+        PersistentTree<StatementNode> tree = new PersistentTree<StatementNode>(stmt);
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        JavaToSQLValueNode call = (JavaToSQLValueNode)
+            select.getResultColumns().get(0).getExpression();
+        MethodCallNode method = (MethodCallNode)call.getJavaValueNode();
+        ValueNode x = ((SQLToJavaValueNode)method.getMethodParameters()[0]).getSQLValueNode();
+
+        PersistentTree<StatementNode>.Editor editor = tree.edit();
+        editor.replace(x, constant(42));
+        assertEquals("SELECT (foo(42, 1)) FROM t", unparser.toString(editor.getRoot()));
+        assertEquals("SELECT (foo(x, 1)) FROM t", unparser.toString(tree.getRoot()));
+    }
+
+    @Test
+    public void testColumnarRows() throws StandardException {
+        parser.getFeatures().add(SQLParserFeature.COLUMNAR_VALUES);
+        StatementNode stmt = parser.parseStatement("INSERT INTO t VALUES (1, 'a'), (2, 'b')");
+        RowsResultSetNode rows = (RowsResultSetNode)((InsertNode)stmt).getResultSetNode();
+        PersistentTree<StatementNode> tree = new PersistentTree<StatementNode>(stmt);
+        // Finding the children did not change the shared node.
+        assertNotNull(rows.getBatch());
+
+        PersistentTree<StatementNode>.Editor editor = tree.edit();
+        editor.modify(rows.getResultColumns()).remove(1);
+        assertNotNull(rows.getBatch());
+        assertEquals("INSERT INTO t VALUES(1, 'a'), (2, 'b')",
+                     unparser.toString(tree.getRoot()));
+    }
+
+    protected ValueNode constant(int value) throws StandardException {
+        return (ValueNode)
+            parser.getNodeFactory().getNode(NodeTypes.INT_CONSTANT_NODE, value, parser);
+    }
+
+}
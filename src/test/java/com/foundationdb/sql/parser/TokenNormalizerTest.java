@@ -0,0 +1,92 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TokenNormalizerTest
+{
+    private SQLParser parser;
+    private StringBuilder str;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        str = new StringBuilder();
+    }
+
+    protected void assertNormalized(String expected, String sql) throws StandardException {
+        str.setLength(0);
+        assertEquals(sql, expected, parser.normalize(sql, str).toString());
+    }
+
+    @Test
+    public void testLiterals() throws StandardException {
+        assertNormalized("SELECT a FROM t WHERE b = ? AND c > ? AND d < ?",
+                         "select a from t where b = 'x' and c > -1.5e3 and d < $1");
+        assertNormalized("SELECT a - ? FROM t",
+                         "SELECT a-1 FROM t");
+    }
+
+    @Test
+    public void testSignAfterKeyword() throws StandardException {
+        assertNormalized("SELECT CURRENT_DATE - ? FROM t",
+                         "SELECT current_date - 1 FROM t");
+        assertNormalized("SELECT CURRENT_TIMESTAMP + ?, CURRENT_TIME - ? FROM t",
+                         "SELECT CURRENT_TIMESTAMP + 1, CURRENT_TIME -2 FROM t");
+        assertNormalized("SELECT CASE when a then ? ELSE ? END - ? FROM t",
+                         "SELECT CASE WHEN a THEN 1 ELSE 2 END - 1 FROM t");
+        assertNormalized("SELECT NULL - ?, TRUE + ?, FALSE - ? FROM t",
+                         "SELECT NULL - 1, TRUE + 1, FALSE - 1 FROM t");
+        assertNormalized("SELECT a FROM t WHERE b = ? AND c IN (?) AND d = ?",
+                         "SELECT a FROM t WHERE b = - 1 AND c IN (-1, +2) AND d = +3");
+    }
+
+    @Test
+    public void testWhitespaceAndComments() throws StandardException {
+        assertNormalized("SELECT t.a, count(*) FROM t GROUP BY t.a",
+                         "SELECT   t . a,\n  count(*) -- total\n FROM t /* all */ GROUP BY t.a;");
+        assertNormalized("INSERT INTO t(a, b) VALUES(?, ?)",
+                         "insert into t (a,b) values (1, 'two')");
+    }
+
+    @Test
+    public void testInLists() throws StandardException {
+        assertNormalized("SELECT a FROM t WHERE b IN (?)",
+                         "SELECT a FROM t WHERE b IN (1, 2, -3)");
+        assertNormalized("SELECT a FROM t WHERE b IN (?, c)",
+                         "SELECT a FROM t WHERE b IN (1, c)");
+    }
+
+    @Test
+    public void testIdentifiers() throws StandardException {
+        assertNormalized("SELECT a, \"B\" FROM t",
+                         "SELECT A, \"B\" FROM T");
+    }
+
+    @Test
+    public void testFeatures() throws StandardException {
+        parser.getFeatures().add(SQLParserFeature.DOUBLE_QUOTED_STRING);
+        assertNormalized("SELECT a FROM t WHERE b = ?",
+                         "SELECT a FROM t WHERE b = \"x\"");
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.parser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.TestBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time copying the parser test corpus with {@link TreeCopier} against
+ * the old chain of <code>copyFrom</code> calls through the node factory.
+ * <p>
+ * Not a test, so not run with the suite. Run with the test classpath
+ * from the project directory, optionally giving the number of times to
+ * copy the corpus per round and the number of rounds.
+ */
+public class TreeCopierBenchmark extends TestBase
+{
+    /** The standard factory, but with the default <code>copyNode</code>. */
+    static class CopyFromFactory extends NodeFactory {
+        private final NodeFactory nodes = new NodeFactoryImpl();
+
+        public QueryTreeNode getNode(int nodeType, SQLParserContext pc)
+                throws StandardException {
+            return nodes.getNode(nodeType, pc);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int repeat = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        SQLParser plans = new SQLParser();
+        SQLParser chains = new SQLParser();
+        chains.setNodeFactory(new CopyFromFactory());
+        List<StatementNode> statements = new ArrayList<StatementNode>();
+        for (Object[] test : sqlAndExpectedAndExtra(SQLParserTest.RESOURCE_DIR, ".features")) {
+            SQLParser parser = new SQLParser();
+            if (test[4] != null)
+                parseFeatures((String[])test[4], parser.getFeatures());
+            StatementNode stmt;
+            try {
+                stmt = parser.parseStatement((String)test[1]);
+                // Only statements that both ways can copy.
+                copy(stmt, chains);
+            }
+            catch (Exception ex) {
+                continue;
+            }
+            statements.add(stmt);
+        }
+        System.out.println(statements.size() + " statements x " + repeat);
+        for (int i = 0; i < rounds; i++) {
+            long chainTime = time(statements, chains, repeat);
+            long planTime = time(statements, plans, repeat);
+            System.out.println(String.format("copyFrom %6.1f ms   TreeCopier %6.1f ms",
+                                             chainTime / 1.0e6, planTime / 1.0e6));
+        }
+    }
+
+    protected static long time(List<StatementNode> statements, SQLParser parser, int repeat)
+            throws StandardException {
+        long start = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            for (StatementNode stmt : statements) {
+                copy(stmt, parser);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    protected static QueryTreeNode copy(StatementNode stmt, SQLParser parser)
+            throws StandardException {
+        return parser.getNodeFactory().copyNode(stmt, parser);
+    }
+
+}
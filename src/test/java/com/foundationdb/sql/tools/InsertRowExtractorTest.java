@@ -0,0 +1,211 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.tools;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.ResultColumnList;
+import com.foundationdb.sql.parser.SQLParserException;
+import com.foundationdb.sql.parser.TableName;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class InsertRowExtractorTest
+{
+    private static final String DUMP =
+        "-- MySQL dump 10.13\n" +
+        "/*!40101 SET @OLD_CHARACTER_SET_CLIENT=@@CHARACTER_SET_CLIENT */;\n" +
+        "DROP TABLE IF EXISTS `t`;\n" +
+        "CREATE TABLE `t` (\n" +
+        "  `id` int NOT NULL,\n" +
+        "  `name` varchar(32) DEFAULT 'a;b'\n" +
+        ");\n" +
+        "LOCK TABLES `t` WRITE;\n" +
+        "INSERT INTO `t` VALUES (1,'O\\'Reilly',3.50,NULL,1.5e2,0x4142),(-2,'a\\nb;c',-0.25,'x',-1E0,X'ff'),\n" +
+        "(9000000000,'',0.00,TRUE,2e0,_binary 'raw');\n" +
+        "UNLOCK TABLES;\n";
+
+    /** Keeps what it is given as strings. */
+    static class Recorder implements InsertRowExtractor.RowHandler {
+        List<String> events = new ArrayList<String>();
+        List<List<Object>> rows = new ArrayList<List<Object>>();
+
+        public void startInsert(TableName table, ResultColumnList columns) {
+            StringBuilder str = new StringBuilder("INSERT ");
+            str.append(table.getFullTableName());
+            if (columns != null) {
+                for (int i = 0; i < columns.size(); i++)
+                    str.append((i == 0) ? " (" : ", ").append(columns.get(i).getName());
+                str.append(")");
+            }
+            events.add(str.toString());
+        }
+
+        public void row(Object[] values) {
+            rows.add(Arrays.asList(values.clone()));
+        }
+
+        public void statement(String sql) {
+            events.add(sql);
+        }
+    }
+
+    @Test
+    public void testDump() throws Exception {
+        Recorder recorder = new Recorder();
+        long count = new InsertRowExtractor().extract(new StringReader(DUMP), recorder);
+        assertEquals(3, count);
+        assertEquals(Arrays.asList("DROP TABLE IF EXISTS `t`",
+                                   "CREATE TABLE `t` ( `id` int NOT NULL, `name` varchar(32) DEFAULT 'a;b' )",
+                                   "LOCK TABLES `t` WRITE",
+                                   "INSERT t",
+                                   "UNLOCK TABLES"),
+                     recorder.events);
+        List<Object> row = recorder.rows.get(0);
+        assertEquals(Integer.valueOf(1), row.get(0));
+        assertEquals("O'Reilly", row.get(1));
+        assertEquals(new BigDecimal("3.50"), row.get(2));
+        assertNull(row.get(3));
+        assertEquals(Double.valueOf(150.0), row.get(4));
+        assertArrayEquals(new byte[] { 'A', 'B' }, (byte[])row.get(5));
+        row = recorder.rows.get(1);
+        assertEquals(Integer.valueOf(-2), row.get(0));
+        assertEquals("a\nb;c", row.get(1));
+        assertEquals(new BigDecimal("-0.25"), row.get(2));
+        assertEquals(Double.valueOf(-1.0), row.get(4));
+        assertArrayEquals(new byte[] { (byte)0xFF }, (byte[])row.get(5));
+        row = recorder.rows.get(2);
+        assertEquals(Long.valueOf(9000000000L), row.get(0));
+        assertEquals("", row.get(1));
+        assertEquals(Boolean.TRUE, row.get(3));
+        assertEquals("raw", row.get(5));
+    }
+
+    @Test
+    public void testColumnList() throws Exception {
+        Recorder recorder = new Recorder();
+        new InsertRowExtractor().extract(new StringReader("insert into s.t(a, \"b\") values (0, 'x''y') ; INSERT INTO u SELECT * FROM t"), recorder);
+        assertEquals(Arrays.asList("INSERT s.t (a, b)",
+                                   "INSERT INTO u SELECT * FROM t"),
+                     recorder.events);
+        assertEquals(Arrays.<Object>asList(0, "x'y"), recorder.rows.get(0));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        assertError("INSERT INTO t VALUES (1, 2), (3)", "Row value size is different");
+        assertError("INSERT INTO t VALUES (1, 'abc", "Unterminated string");
+        assertError("INSERT INTO t VALUES (1, NOW())", "Unsupported value NOW");
+        assertError("INSERT INTO t VALUES (1 2)", "Expected , or )");
+    }
+
+    protected void assertError(String sql, String message) throws Exception {
+        try {
+            new InsertRowExtractor().extract(new StringReader(sql), new Recorder());
+            fail("no error for " + sql);
+        }
+        catch (SQLParserException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith(message));
+        }
+    }
+
+    /** Makes a long statement as it is read. */
+    static class GeneratedInsert extends Reader {
+        private final int rows;
+        private int row = -1;
+        private String pending = "INSERT INTO big VALUES ";
+        private int pos;
+
+        GeneratedInsert(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (pos == pending.length()) {
+                if (++row > rows)
+                    return -1;
+                pending = (row == rows) ? ";" :
+                    ((row > 0) ? "," : "") + "(" + row + ",'row " + row + "'," + row + ".5)";
+                pos = 0;
+            }
+            int n = Math.min(len, pending.length() - pos);
+            pending.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /** Only checks the rows. */
+    static class Checker implements InsertRowExtractor.RowHandler {
+        long count;
+
+        public void startInsert(TableName table, ResultColumnList columns) {
+        }
+
+        public void row(Object[] values) {
+            assertEquals((int)count, values[0]);
+            assertEquals("row " + count, values[1]);
+            assertEquals(BigDecimal.valueOf(count * 10 + 5, 1), values[2]);
+            count++;
+        }
+
+        public void statement(String sql) {
+            fail(sql);
+        }
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        Checker checker = new Checker();
+        assertEquals(100000, new InsertRowExtractor().extract(new GeneratedInsert(100000), checker));
+        assertEquals(100000, checker.count);
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        InsertRowExtractor extractor = new InsertRowExtractor();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            List<Checker> checkers = new ArrayList<Checker>();
+            for (int i = 0; i < 8; i++) {
+                Checker checker = new Checker();
+                checkers.add(checker);
+                futures.add(executor.submit(extractor.task(new GeneratedInsert(1000 * (i + 1)), checker)));
+            }
+            for (int i = 0; i < 8; i++) {
+                assertEquals(1000 * (i + 1), futures.get(i).get().longValue());
+                assertEquals(1000 * (i + 1), checkers.get(i).count);
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.tools;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.*;
+
+public class QueryLogAnalyzerTest
+{
+    private static final String LOG = 
+        "SELECT a FROM t WHERE b = 1\n" +
+        "select a from t where b = 2\n" +
+        "\n" +
+        "SELECT a FROM t WHERE b IN (1, 2, 3)\n" +
+        "INSERT INTO u(x) SELECT a FROM t\n" +
+        "SELECT FROM WHERE\n" +
+        "SELECT a FROM t WHERE b = 3\n";
+
+    @Test
+    public void testLines() throws Exception {
+        QueryLogAnalyzer analyzer = new QueryLogAnalyzer();
+        analyzer.setThreads(2);
+        analyzer.setBatchSize(2);
+        analyzer.analyze(new StringReader(LOG));
+        assertEquals(6, analyzer.getStatementCount());
+        assertEquals(1, analyzer.getErrorCount());
+        List<QueryLogAnalyzer.Summary> statements = analyzer.getStatements();
+        assertEquals(3, statements.size());
+        QueryLogAnalyzer.Summary first = statements.get(0);
+        assertEquals(3, first.getCount());
+        assertEquals("SELECT", first.getStatementType());
+        assertEquals("SELECT a FROM t WHERE b = ?", first.getSample());
+        assertEquals(Collections.singleton("t"), first.getTables());
+        for (QueryLogAnalyzer.Summary summary : statements) {
+            if (summary.getStatementType().equals("INSERT"))
+                assertEquals(new TreeSet<String>(Arrays.asList("t", "u")), 
+                             summary.getTables());
+        }
+        assertEquals(QueryLogAnalyzer.PARSE_ERROR, 
+                     analyzer.getErrors().get(0).getStatementType());
+    }
+
+    @Test
+    public void testScripts() throws Exception {
+        QueryLogAnalyzer analyzer = new QueryLogAnalyzer();
+        analyzer.setThreads(1);
+        analyzer.setScripts(true);
+        analyzer.analyze(new StringReader("SELECT a\n  FROM t;\nSELECT b FROM t; SELECT a FROM t;\n"));
+        assertEquals(3, analyzer.getStatementCount());
+        assertEquals(2, analyzer.getStatements().size());
+        StringBuilder csv = new StringBuilder();
+        analyzer.writeCSV(csv);
+        assertEquals("fingerprint,statement_type,count,tables,sample,error", 
+                     csv.toString().split("\n")[0]);
+        assertTrue(csv.toString(), 
+                   csv.toString().contains(",\"SELECT\",2,\"t\",\"SELECT a FROM t\",\n"));
+    }
+
+}
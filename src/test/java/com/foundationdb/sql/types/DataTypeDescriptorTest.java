@@ -0,0 +1,118 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.types;
+
+import com.foundationdb.sql.compiler.TypeComputer;
+import com.foundationdb.sql.parser.CursorNode;
+import com.foundationdb.sql.parser.ResultColumnList;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.SelectNode;
+import com.foundationdb.sql.parser.StatementNode;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.sql.Types;
+
+public class DataTypeDescriptorTest
+{
+    @Test
+    public void testShared() throws Exception {
+        assertSame(DataTypeDescriptor.BOOLEAN_NOT_NULL,
+                   DataTypeDescriptor.getType(TypeId.BOOLEAN_ID, false));
+        assertSame(DataTypeDescriptor.BIGINT,
+                   DataTypeDescriptor.getBuiltInDataTypeDescriptor(Types.BIGINT));
+        assertSame(DataTypeDescriptor.getType(TypeId.DATE_ID, true),
+                   DataTypeDescriptor.getBuiltInDataTypeDescriptor("DATE"));
+        DataTypeDescriptor v1 = DataTypeDescriptor.getType(TypeId.VARCHAR_ID, true, 10);
+        DataTypeDescriptor v2 = DataTypeDescriptor.getBuiltInDataTypeDescriptor(Types.VARCHAR, 10);
+        assertSame(v1, v2);
+        assertNotSame(v1, DataTypeDescriptor.getType(TypeId.VARCHAR_ID, true, 11));
+        DataTypeDescriptor d1 = new DataTypeDescriptor(TypeId.DECIMAL_ID, 10, 2, true, 12);
+        DataTypeDescriptor d2 = new DataTypeDescriptor(TypeId.DECIMAL_ID, 10, 2, true, 12);
+        assertEquals(d1, d2);
+        assertEquals(d1.hashCode(), d2.hashCode());
+        assertSame(DataTypeDescriptor.intern(d1), DataTypeDescriptor.intern(d2));
+    }
+
+    @Test
+    public void testNullability() throws Exception {
+        DataTypeDescriptor type = DataTypeDescriptor.getType(TypeId.VARCHAR_ID, true, 20);
+        DataTypeDescriptor notNull = type.getNullabilityType(false);
+        assertFalse(notNull.isNullable());
+        assertSame(notNull, type.getNullabilityType(false));
+        assertSame(type, notNull.getNullabilityType(true));
+        assertSame(DataTypeDescriptor.INTEGER_NOT_NULL,
+                   DataTypeDescriptor.INTEGER.getNullabilityType(false));
+    }
+
+    @Test
+    public void testDominant() throws Exception {
+        DataTypeDescriptor type = DataTypeDescriptor.getType(TypeId.VARCHAR_ID, false, 20);
+        DataTypeDescriptor other = DataTypeDescriptor.getType(TypeId.VARCHAR_ID, true, 10);
+        DataTypeDescriptor dominant = type.getDominantType(other);
+        assertEquals("VARCHAR(20)", dominant.toString());
+        assertSame(type.getNullabilityType(true), dominant);
+        assertSame(DataTypeDescriptor.BIGINT,
+                   DataTypeDescriptor.INTEGER.getDominantType(DataTypeDescriptor.BIGINT_NOT_NULL));
+        DataTypeDescriptor real = DataTypeDescriptor.getType(TypeId.REAL_ID, false);
+        assertSame(DataTypeDescriptor.INTEGER.getDominantType(real),
+                   DataTypeDescriptor.INTEGER.getDominantType(real));
+    }
+
+    @Test
+    public void testCollationDerivation() throws Exception {
+        DataTypeDescriptor base = DataTypeDescriptor.getType(TypeId.VARCHAR_ID, true, 10);
+        CharacterTypeAttributes implicit =
+            new CharacterTypeAttributes(null, "en_us_ci",
+                                        CharacterTypeAttributes.CollationDerivation.IMPLICIT);
+        CharacterTypeAttributes explicit =
+            new CharacterTypeAttributes(null, "en_us_ci",
+                                        CharacterTypeAttributes.CollationDerivation.EXPLICIT);
+        // Interned first, so that the explicit one would be merged into it.
+        DataTypeDescriptor implicitType =
+            DataTypeDescriptor.intern(new DataTypeDescriptor(base.getNullabilityType(false), implicit));
+        DataTypeDescriptor explicitType =
+            DataTypeDescriptor.intern(new DataTypeDescriptor(base, explicit));
+        assertSame(implicitType, DataTypeDescriptor.intern(new DataTypeDescriptor(base.getNullabilityType(false), implicit)));
+        DataTypeDescriptor explicitNotNull = explicitType.getNullabilityType(false);
+        assertNotSame(implicitType, explicitNotNull);
+        assertEquals(CharacterTypeAttributes.CollationDerivation.EXPLICIT,
+                     explicitNotNull.getCharacterAttributes().getCollationDerivation());
+        CharacterTypeAttributes other =
+            new CharacterTypeAttributes(null, "sv_se_ci",
+                                        CharacterTypeAttributes.CollationDerivation.IMPLICIT);
+        DataTypeDescriptor dominant =
+            explicitNotNull.getDominantType(new DataTypeDescriptor(base, other));
+        assertEquals("en_us_ci", dominant.getCharacterAttributes().getCollation());
+        assertEquals(CharacterTypeAttributes.CollationDerivation.EXPLICIT,
+                     dominant.getCharacterAttributes().getCollationDerivation());
+    }
+
+    @Test
+    public void testComputed() throws Exception {
+        SQLParser parser = new SQLParser();
+        StatementNode stmt = parser.parseStatement("SELECT 1 IS NULL, 'x' IS NOT NULL, 1 + 2, 3 + 4, 'a' || 'b', 'c' || 'd' FROM t");
+        new TypeComputer().compute(stmt);
+        ResultColumnList columns = ((SelectNode)((CursorNode)stmt).getResultSetNode()).getResultColumns();
+        assertSame(DataTypeDescriptor.BOOLEAN_NOT_NULL, columns.get(0).getExpression().getType());
+        assertSame(DataTypeDescriptor.BOOLEAN_NOT_NULL, columns.get(1).getExpression().getType());
+        assertSame(columns.get(2).getExpression().getType(), columns.get(3).getExpression().getType());
+        assertSame(columns.get(4).getExpression().getType(), columns.get(5).getExpression().getType());
+    }
+
+}
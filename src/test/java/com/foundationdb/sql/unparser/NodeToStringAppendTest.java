@@ -0,0 +1,150 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.unparser;
+
+import com.foundationdb.sql.parser.CursorNode;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.SelectNode;
+import com.foundationdb.sql.parser.StatementNode;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+public class NodeToStringAppendTest
+{
+    private SQLParser parser;
+    private NodeToString unparser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+        unparser = new NodeToString();
+    }
+
+    @Test
+    public void testAppendAfterExisting() throws Exception {
+        String[] sqls = {
+            "SELECT a + 1 AS x, b FROM t WHERE (x > 0 AND y < 5) OR z IS NULL",
+            "SELECT \"a b\", c AS c FROM t AS u ORDER BY a DESC",
+            "UPDATE t SET a = b * 2 WHERE c IN (1, 2, 3)",
+            "ALTER TABLE t DROP CONSTRAINT c1",
+        };
+        StringBuilder str = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (String sql : sqls) {
+            StatementNode stmt = parser.parseStatement(sql);
+            expected.append(unparser.toString(stmt)).append(";\n");
+            unparser.toString(stmt, str);
+            str.append(";\n");
+        }
+        assertEquals(expected.toString(), str.toString());
+    }
+
+    @Test
+    public void testLeftDeepChain() throws Exception {
+        StringBuilder sql = new StringBuilder("SELECT * FROM t WHERE a0 = 0");
+        String expected = "(a0 = 0)";
+        for (int i = 1; i < 500; i++) {
+            sql.append(" AND a").append(i).append(" = ").append(i);
+            if (i > 1)
+                expected = "(" + expected + ")";
+            expected = expected + " AND (a" + i + " = " + i + ")";
+        }
+        StatementNode stmt = parser.parseStatement(sql.toString());
+        assertEquals("SELECT * FROM t WHERE " + expected, unparser.toString(stmt));
+        StringWriter out = new StringWriter();
+        unparser.toString(stmt, out, 64);
+        assertEquals("SELECT * FROM t WHERE " + expected, out.toString());
+    }
+
+    @Test
+    public void testQuotedColumnParens() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT \"a b\" + 1, c + 1 FROM t");
+        assertEquals("SELECT ((\"a b\") + 1), (c + 1) FROM t", unparser.toString(stmt));
+    }
+
+    @Test
+    public void testStreamingBounded() throws Exception {
+        StringBuilder sql = new StringBuilder("INSERT INTO t VALUES");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) sql.append(",");
+            sql.append("(").append(i).append(", 'row ").append(i).append("', ")
+               .append(i).append(" * 2 + 1)");
+        }
+        StatementNode stmt = parser.parseStatement(sql.toString());
+        final StringBuilder written = new StringBuilder();
+        final int[] stats = new int[2];
+        Writer out = new Writer() {
+                @Override
+                public void write(char[] cbuf, int off, int len) {
+                    written.append(cbuf, off, len);
+                    stats[0]++;
+                    stats[1] = Math.max(stats[1], len);
+                }
+                @Override
+                public void flush() {
+                }
+                @Override
+                public void close() {
+                }
+            };
+        unparser.toString(stmt, out, 256);
+        assertEquals(unparser.toString(stmt), written.toString());
+        assertTrue("writes " + stats[0], stats[0] > 100);
+        assertTrue("largest write " + stats[1], stats[1] < 512);
+    }
+
+    @Test
+    public void testOldHooks() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT a, b + 1 FROM t WHERE c > 0");
+        SelectNode select = (SelectNode)((CursorNode)stmt).getResultSetNode();
+        StringBuilder str = new StringBuilder();
+        unparser.selectNode(select, str);
+        assertEquals(str.toString(), unparser.selectNode(select));
+        // An override of a hook that is no longer called must not compile.
+        for (Method method : NodeToString.class.getDeclaredMethods()) {
+            if (method.getReturnType() != String.class)
+                continue;
+            Class<?>[] params = Arrays.copyOf(method.getParameterTypes(),
+                                              method.getParameterTypes().length + 1);
+            params[params.length - 1] = StringBuilder.class;
+            try {
+                NodeToString.class.getDeclaredMethod(method.getName(), params);
+            }
+            catch (NoSuchMethodException ex) {
+                continue;
+            }
+            assertTrue(method.toString(), Modifier.isFinal(method.getModifiers()));
+        }
+    }
+
+    @Test
+    public void testAppendable() throws Exception {
+        StatementNode stmt = parser.parseStatement("SELECT \"Select\", \"x\"\"y\", \"from\" FROM t");
+        StringWriter out = new StringWriter();
+        unparser.toString(stmt, out);
+        assertEquals("SELECT \"Select\", \"x\"\"y\", \"from\" FROM t", out.toString());
+    }
+
+}
@@ -30,6 +30,7 @@ import org.junit.runners.Parameterized.Parameters;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.io.StringWriter;
 import java.util.Collection;
 import java.util.EnumSet;
 
@@ -68,6 +69,15 @@ public class NodeToStringTest extends TestBase implements TestBase.GenerateAndCh
         generateAndCheckResult();
     }
 
+    @Test
+    public void testStreaming() throws Exception {
+        if (expected == null) return;
+        StatementNode stmt = parser.parseStatement(sql);
+        StringWriter out = new StringWriter();
+        unparser.toString(stmt, out, 4);
+        assertEquals(caseName, expected, out.toString());
+    }
+
     @Override
     public String generateResult() throws Exception {
         StatementNode stmt = parser.parseStatement(sql);
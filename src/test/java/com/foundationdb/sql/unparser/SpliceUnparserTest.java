@@ -0,0 +1,84 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.unparser;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.parser.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SpliceUnparserTest
+{
+    private SQLParser parser;
+
+    @Before
+    public void before() {
+        parser = new SQLParser();
+    }
+
+    @Test
+    public void testUnchanged() throws StandardException {
+        String sql = "select a,b  -- columns\n from t where x=1";
+        StatementNode stmt = parser.parseStatement(sql);
+        PersistentTree<StatementNode> tree = new PersistentTree<StatementNode>(stmt);
+        assertEquals(sql, new SpliceUnparser(tree, parser.getSQLText()).toString(stmt));
+    }
+
+    @Test
+    public void testAddPredicate() throws StandardException {
+        StatementNode stmt = parser.parseStatement("SELECT a, /* keep */ b FROM t WHERE x+1=2 ORDER BY a");
+        String sqlText = parser.getSQLText();
+        PersistentTree<StatementNode> tree = new PersistentTree<StatementNode>(stmt);
+        ValueNode tenant = whereClause("SELECT * FROM t WHERE tenant_id = 42");
+
+        PersistentTree<StatementNode>.Editor editor = tree.edit();
+        SelectNode select = editor.modify((SelectNode)((CursorNode)stmt).getResultSetNode());
+        ValueNode and = (ValueNode)
+            parser.getNodeFactory().getNode(NodeTypes.AND_NODE,
+                                            select.getWhereClause(), tenant,
+                                            parser);
+        select.setWhereClause(and);
+
+        assertEquals("SELECT a, /* keep */ b FROM t WHERE (x+1=2) AND (tenant_id = 42) ORDER BY a",
+                     new SpliceUnparser(tree, sqlText).toString(editor.getRoot()));
+    }
+
+    @Test
+    public void testRenameTable() throws StandardException {
+        StatementNode stmt = parser.parseStatement("INSERT INTO t VALUES (1,'one'),\n  (2,'two')");
+        String sqlText = parser.getSQLText();
+        PersistentTree<StatementNode> tree = new PersistentTree<StatementNode>(stmt);
+        TableName u = (TableName)
+            parser.getNodeFactory().getNode(NodeTypes.TABLE_NAME,
+                                            "s", "u",
+                                            parser);
+
+        PersistentTree<StatementNode>.Editor editor = tree.edit();
+        editor.replace(((InsertNode)stmt).getTargetTableName(), u);
+
+        assertEquals("INSERT INTO s.u VALUES (1,'one'),\n  (2,'two')",
+                     new SpliceUnparser(tree, sqlText).toString(editor.getRoot()));
+    }
+
+    protected ValueNode whereClause(String sql) throws StandardException {
+        CursorNode cursor = (CursorNode)new SQLParser().parseStatement(sql);
+        return ((SelectNode)cursor.getResultSetNode()).getWhereClause();
+    }
+
+}
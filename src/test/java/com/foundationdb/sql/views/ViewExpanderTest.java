@@ -0,0 +1,113 @@
+/**
+ * Copyright 2011-2013 FoundationDB, LLC
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.foundationdb.sql.views;
+
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.compiler.ColumnBinding;
+import com.foundationdb.sql.compiler.SchemaCatalog;
+import com.foundationdb.sql.parser.*;
+import com.foundationdb.sql.types.DataTypeDescriptor;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ViewExpanderTest
+{
+    private SQLParser parser;
+    private SchemaCatalog catalog;
+    private ViewExpander expander;
+
+    @Before
+    public void before() throws Exception {
+        parser = new SQLParser();
+        catalog = new SchemaCatalog.Builder("s")
+            .addTable("s", "t")
+            .addColumn("a", DataTypeDescriptor.INTEGER)
+            .addColumn("b", DataTypeDescriptor.DOUBLE)
+            .build();
+        expander = new ViewExpander(catalog);
+        define("CREATE VIEW v1 AS SELECT a, b FROM t");
+        define("CREATE VIEW v2 AS SELECT x.a, b + 1 AS c FROM v1 x WHERE b > 1");
+    }
+
+    protected void define(String sql) throws StandardException {
+        expander.define(new ViewDefinition(sql, parser));
+    }
+
+    protected SelectNode bind(String sql) throws StandardException {
+        StatementNode stmt = expander.bind(parser.parseStatement(sql));
+        return (SelectNode)((CursorNode)stmt).getResultSetNode();
+    }
+
+    protected ColumnBinding binding(SelectNode select, int column) {
+        ValueNode expression = select.getResultColumns().get(column).getExpression();
+        return ColumnBinding.of((ColumnReference)expression);
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        SelectNode select = bind("SELECT a, c FROM v2");
+        assertEquals(2, expander.getTemplatesMade());
+        FromSubquery v2 = (FromSubquery)select.getFromList().get(0);
+        assertEquals("v2", v2.getExposedName());
+        assertSame(catalog.getTable("s", "t").getColumn("a"), binding(select, 0).getColumn());
+        assertSame(v2, binding(select, 0).getFromTable());
+        assertNull(binding(select, 1).getColumn());
+        assertEquals("DOUBLE", binding(select, 1).getType().toString());
+        // Inside the copy, bindings refer to the copied nodes.
+        SelectNode inner = (SelectNode)v2.getSubquery();
+        assertSame(inner.getFromList().get(0), binding(inner, 0).getFromTable());
+
+        select = bind("SELECT p.a, s.v2.a FROM v2 p, s.v2");
+        assertEquals(2, expander.getTemplatesMade());
+        assertNotSame(select.getFromList().get(0), select.getFromList().get(1));
+        assertSame(select.getFromList().get(1), binding(select, 1).getFromTable());
+    }
+
+    @Test
+    public void testRedefine() throws Exception {
+        bind("SELECT a FROM v2");
+        define("CREATE VIEW v1 AS SELECT b AS a, a AS b FROM t");
+        SelectNode select = bind("SELECT a FROM v2");
+        assertEquals(4, expander.getTemplatesMade());
+        assertSame(catalog.getTable("s", "t").getColumn("b"), binding(select, 0).getColumn());
+        bind("SELECT a FROM v1");
+        assertEquals(4, expander.getTemplatesMade());
+    }
+
+    @Test
+    public void testAllColumns() throws Exception {
+        define("CREATE VIEW v3 AS SELECT * FROM v1");
+        SelectNode select = bind("SELECT b FROM v3");
+        assertSame(catalog.getTable("s", "t").getColumn("b"), binding(select, 0).getColumn());
+    }
+
+    @Test
+    public void testCycle() throws Exception {
+        define("CREATE VIEW c1 AS SELECT * FROM c2");
+        define("CREATE VIEW c2 AS SELECT * FROM c1");
+        try {
+            expander.expand(parser.parseStatement("SELECT * FROM c1"));
+            fail("Expanded cycle");
+        }
+        catch (StandardException ex) {
+            assertEquals("Circular view definition: s.c1 -> s.c2 -> s.c1", ex.getMessage());
+        }
+    }
+
+}
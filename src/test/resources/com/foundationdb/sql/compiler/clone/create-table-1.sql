@@ -0,0 +1 @@
+CREATE TABLE t1 (c1 INT PRIMARY KEY, c2 DOUBLE, INDEX idx1 (c1, c2))
\ No newline at end of file
@@ -0,0 +1 @@
+INSERT INTO t1(a, b) VALUES (1, 'one'), (2, 'two'), (3, NULL)
\ No newline at end of file
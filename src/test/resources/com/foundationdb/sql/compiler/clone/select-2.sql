@@ -0,0 +1 @@
+SELECT a, (SELECT MAX(b) FROM t2 WHERE t2.id = t1.id) FROM t1 INNER JOIN t3 ON t1.x = t3.x WHERE a IN (1, 2, 3) ORDER BY a DESC
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT foo(a, 1), bar(b) FROM t1 WHERE baz(c, d, 3) > 0
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT * FROM t WHERE 1 = 1 AND x > 2 * 3 + 1
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT a + 0, 0 + a, a * 1, 1.5 * 2, 7 / 2, 7.0 / 2, CAST(a AS INT) + 0, 1 * CAST(a AS INT), CAST(a AS BIGINT) * 1, CAST(a AS SMALLINT) - 0 FROM t
\ No newline at end of file
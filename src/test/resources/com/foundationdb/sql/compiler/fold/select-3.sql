@@ -0,0 +1 @@
+SELECT * FROM t WHERE NOT (NOT p) AND (x = 1 OR 2 < 1) AND NOT (1 = 1 AND 2 = 3)
\ No newline at end of file
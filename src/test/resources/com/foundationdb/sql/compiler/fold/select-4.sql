@@ -0,0 +1 @@
+SELECT CAST('5' AS INT), CAST(' 12 ' AS BIGINT), CAST(2.5 AS INT), CAST('abc' AS INT), CAST(42 AS VARCHAR(10)), CAST(1.25 AS DECIMAL(5,2)) FROM t
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT CASE WHEN 1 = 1 THEN a ELSE b END, CASE WHEN 1 > 2 THEN a ELSE b END, CASE WHEN 1 = 1 THEN a ELSE ? END FROM t
\ No newline at end of file
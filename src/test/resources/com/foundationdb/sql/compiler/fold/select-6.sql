@@ -0,0 +1 @@
+SELECT 2147483647 + 1, 9223372036854775807 + 1, 10 / 0, 1.0E0 + 2 FROM t ORDER BY 1 + 1
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT * FROM t WHERE x = ? AND 1 = 0 OR y > 3
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT CASE WHEN 0.1E0 = 0.1 THEN a ELSE b END, CASE WHEN 0.1E0 > 0.1 THEN a ELSE b END, CASE WHEN 0.1 < 0.1E0 THEN a ELSE b END, CASE WHEN 1 = 1.0E0 THEN a ELSE b END FROM t
\ No newline at end of file
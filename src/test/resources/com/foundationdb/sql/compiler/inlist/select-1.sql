@@ -0,0 +1 @@
+SELECT * FROM t WHERE x IN (5, 3, 9, 3, 1, 5, 1.0)
\ No newline at end of file
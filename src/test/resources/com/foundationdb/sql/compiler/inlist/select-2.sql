@@ -0,0 +1 @@
+SELECT * FROM t WHERE y IN ('b', 'a', 'b', 'c') AND z NOT IN (2.5, 1.25, 2.50)
\ No newline at end of file
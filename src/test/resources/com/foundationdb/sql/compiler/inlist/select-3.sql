@@ -0,0 +1 @@
+SELECT * FROM t WHERE x IN (1, 2, 3) AND y IN (3, ?, 1, 3) AND (a, b) IN ((2, 1), (1, 2), (2, 1))
\ No newline at end of file
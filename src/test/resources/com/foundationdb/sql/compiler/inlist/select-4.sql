@@ -0,0 +1 @@
+SELECT * FROM t WHERE x IN (3.0E0, 1.5E0, 3.0E0, 2) AND y IN (x, 1, 1)
\ No newline at end of file
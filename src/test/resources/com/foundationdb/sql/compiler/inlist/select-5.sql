@@ -0,0 +1 @@
+SELECT * FROM t WHERE x IN (1, 1.0E0, 2, 1.0, 1.0E0)
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT * FROM t WHERE (a = 1 AND b = 2) OR (a = 3 AND b = 4) OR (a = 5 AND NOT b = 6)
\ No newline at end of file
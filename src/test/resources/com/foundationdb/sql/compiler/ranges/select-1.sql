@@ -0,0 +1 @@
+SELECT * FROM t WHERE x > 5 AND x >= 7 AND x < 100 AND x < 50
\ No newline at end of file
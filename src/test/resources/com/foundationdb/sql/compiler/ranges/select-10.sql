@@ -0,0 +1 @@
+SELECT * FROM s1.t, s2.t WHERE s1.t.x > 5 AND s2.t.x < 3 AND s1.t.x > 7
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT * FROM t WHERE x > 5 AND y = 1 AND x < 3
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT * FROM t WHERE x BETWEEN 1 AND 10 AND x BETWEEN 5 AND 20 AND 3 < x
\ No newline at end of file
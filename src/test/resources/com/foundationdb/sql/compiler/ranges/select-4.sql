@@ -0,0 +1 @@
+SELECT * FROM t WHERE x IN (1, 3, 5, 7, 3) AND x > 2 AND x <= 5
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT * FROM t WHERE x >= 4 AND x <= 4 AND (y = 1 OR x = 9) AND t.x > 100
\ No newline at end of file
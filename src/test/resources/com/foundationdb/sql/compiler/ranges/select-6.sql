@@ -0,0 +1 @@
+SELECT * FROM t WHERE x >= 1 AND x < 10 AND z = 'a' AND z = 'b'
\ No newline at end of file
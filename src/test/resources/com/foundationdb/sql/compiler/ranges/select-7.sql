@@ -0,0 +1 @@
+SELECT * FROM t JOIN u ON t.a = u.a AND u.b = 2 AND u.b IN (3, 4)
\ No newline at end of file
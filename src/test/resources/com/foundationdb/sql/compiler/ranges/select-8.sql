@@ -0,0 +1 @@
+SELECT * FROM t WHERE x = 1 AND x = 1.0 AND NOT (x BETWEEN 3 AND 5)
\ No newline at end of file
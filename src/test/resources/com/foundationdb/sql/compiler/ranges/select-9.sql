@@ -0,0 +1 @@
+SELECT * FROM t WHERE x > 0.1E0 AND x > 0.1 AND y > 1.0E0 AND y >= 2.0E0
\ No newline at end of file
@@ -0,0 +1 @@
+INSERT INTO t(id, big, price, ratio, name, note) VALUES (1, 9000000000, 12.50, 1.5e0, 'one', NULL), (-2, -9000000001, -0.25, -2E3, 'it''s', 'x'), (NULL, 3, 0.00, NULL, E'a\tb', '')
\ No newline at end of file
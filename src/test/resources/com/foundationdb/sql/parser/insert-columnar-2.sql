@@ -0,0 +1 @@
+INSERT INTO t VALUES (1, 'a'), (2, 'b'), (3 + 1, 'c'), (4, 'd')
\ No newline at end of file
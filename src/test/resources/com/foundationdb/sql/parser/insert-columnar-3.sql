@@ -0,0 +1 @@
+INSERT INTO t VALUES (1, 1.5), (2, 1.25), (.5, 'x')
\ No newline at end of file
@@ -0,0 +1 @@
+SELECT 0, 2147483647, 2147483648, -2147483648, -2147483649, 9223372036854775807, 9223372036854775808, -9223372036854775808, -9223372036854775809, 00000000000000000000000042, 1.5, .5, 5. FROM t LIMIT 10 OFFSET 2147483648